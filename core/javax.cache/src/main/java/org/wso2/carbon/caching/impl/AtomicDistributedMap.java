@@ -0,0 +1,40 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+import java.util.Map;
+
+/**
+ * A distributed map which supports conditional updates that are atomic across the cluster. Maps returned by a
+ * {@link DistributedMapProvider} may implement this interface, in which case
+ * {@link javax.cache.Cache#replace(Object, Object, Object)} compares against the distributed entry instead of the
+ * local copy.
+ */
+public interface AtomicDistributedMap<K, V> extends Map<K, V> {
+
+    /**
+     * Replace the value of a key only if it is currently mapped to a value equal to the given one. No other member
+     * can change the entry between the comparison and the update.
+     *
+     * @param key      the key
+     * @param oldValue the value expected to be mapped to the key
+     * @param newValue the new value
+     * @return true if the value was replaced
+     */
+    boolean replace(K key, V oldValue, V newValue);
+}
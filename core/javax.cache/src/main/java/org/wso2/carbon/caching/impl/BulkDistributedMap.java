@@ -0,0 +1,43 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A distributed map which supports multi key operations that do not need a remote call per key. Maps returned by a
+ * {@link DistributedMapProvider} may implement this interface, in which case bulk cache operations use it.
+ */
+public interface BulkDistributedMap<K, V> extends Map<K, V> {
+
+    /**
+     * Get the values of a set of keys
+     *
+     * @param keys the keys
+     * @return the keys which have values, mapped to their values
+     */
+    Map<K, V> getAll(Set<K> keys);
+
+    /**
+     * Remove a set of keys
+     *
+     * @param keys the keys
+     */
+    void removeAll(Set<K> keys);
+}
@@ -34,6 +34,10 @@ public class CacheCleanupTask implements Runnable {
     private static final Log log = LogFactory.getLog(CacheCleanupTask.class);
     private List<CacheImpl> caches = new CopyOnWriteArrayList<CacheImpl>();
 
+    // Expiry only visits the entries which are due, hence it runs more often than the eviction sweep
+    private static final int EVICTION_SWEEP_FREQUENCY = 6;
+    private int runCount;
+
     public void addCacheForMonitoring(CacheImpl cache) {
         caches.add(cache);
     }
@@ -57,8 +61,13 @@ public class CacheCleanupTask implements Runnable {
             PrivilegedCarbonContext cc = PrivilegedCarbonContext.getThreadLocalCarbonContext();
             cc.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
             cc.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+            boolean runEviction = runCount++ % EVICTION_SWEEP_FREQUENCY == 0;
             for (CacheImpl cache : caches) {
-                cache.runCacheExpiry();
+                cache.expireDueEntries();
+                if (runEviction) {
+                    cache.runCacheEviction();
+                    cache.moveIdleEntriesOffHeap();
+                }
                 if (log.isDebugEnabled()) {
                     log.debug("Cache expiry completed for cache " + cache.getName());
                 }
@@ -17,7 +17,14 @@
 */
 package org.wso2.carbon.caching.impl;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.caching.impl.offheap.OffHeapStore;
+import org.wso2.carbon.caching.impl.offheap.OffHeapValue;
+
 import javax.cache.Cache;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
@@ -26,11 +33,18 @@ import java.io.Serializable;
 public class CacheEntry<K, V> implements Cache.Entry<K, V>, Serializable {
 
     private static final long serialVersionUID = 1996179870860085427L;
+    private static final Log log = LogFactory.getLog(CacheEntry.class);
 
     private K key;
-    private V value;
+    private volatile V value;
     private long lastAccessed;
     private long lastModified;
+    // Last access time sent to the other members of the cluster. Only meaningful on the local member
+    private transient long lastReplicatedAccess;
+    // The serialized value of an entry which has been moved off-heap, in which case value is null
+    private transient volatile OffHeapValue offHeapValue;
+    // Set once the value has failed to serialize, so that it is not attempted again
+    private transient boolean offHeapRejected;
 
     public CacheEntry(K key, V value) {
         this.key = key;
@@ -51,7 +65,103 @@ public class CacheEntry<K, V> implements Cache.Entry<K, V>, Serializable {
 
     public V getValue() {
         lastAccessed = System.currentTimeMillis();
-        return value;
+        return readValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V readValue() {
+        V currentValue = value;
+        if (currentValue == null) {
+            OffHeapValue currentOffHeapValue = offHeapValue;
+            if (currentOffHeapValue != null) {
+                currentValue = (V) currentOffHeapValue.read();
+                if (currentValue == null) {
+                    // The value may have been moved back on-heap in the meantime
+                    currentValue = value;
+                }
+            }
+        }
+        return currentValue;
+    }
+
+    boolean isOffHeap() {
+        return offHeapValue != null;
+    }
+
+    boolean isOffHeapRejected() {
+        return offHeapRejected;
+    }
+
+    /**
+     * Create a copy of this entry of which the value is held in an off-heap store. This entry itself is not
+     * changed, since it may also be referenced from elsewhere.
+     *
+     * @param store the off-heap store
+     * @return the off-heap copy, or null if the store is full or the value cannot be serialized
+     */
+    CacheEntry<K, V> copyOffHeap(OffHeapStore store) {
+        V currentValue = value;
+        if (currentValue == null || offHeapRejected) {
+            return null;
+        }
+        OffHeapValue storedValue;
+        try {
+            storedValue = store.store(currentValue);
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Cache entry " + key + " cannot be moved off-heap", e);
+            }
+            offHeapRejected = true;
+            return null;
+        }
+        if (storedValue == null) {
+            return null;
+        }
+        CacheEntry<K, V> copy = new CacheEntry<K, V>(key, null);
+        copy.lastAccessed = lastAccessed;
+        copy.lastModified = lastModified;
+        copy.lastReplicatedAccess = lastReplicatedAccess;
+        copy.offHeapValue = storedValue;
+        return copy;
+    }
+
+    /**
+     * Move the value of an off-heap entry back on-heap, and release its off-heap copy
+     *
+     * @return the number of off-heap bytes released
+     */
+    @SuppressWarnings("unchecked")
+    synchronized int moveOnHeap() {
+        OffHeapValue currentOffHeapValue = offHeapValue;
+        if (currentOffHeapValue == null) {
+            return 0;
+        }
+        V restoredValue = (V) currentOffHeapValue.read();
+        if (restoredValue == null) {
+            return 0;
+        }
+        value = restoredValue;
+        offHeapValue = null;
+        return currentOffHeapValue.release() ? currentOffHeapValue.getAllocatedBytes() : 0;
+    }
+
+    /**
+     * Release the off-heap copy of the value of an entry which has been removed from the cache. The value cannot
+     * be read afterwards, unless it has been set again.
+     *
+     * @return the number of off-heap bytes released
+     */
+    synchronized int releaseOffHeap() {
+        OffHeapValue currentOffHeapValue = offHeapValue;
+        if (currentOffHeapValue == null || !currentOffHeapValue.release()) {
+            return 0;
+        }
+        return currentOffHeapValue.getAllocatedBytes();
+    }
+
+    int getOffHeapBytes() {
+        OffHeapValue currentOffHeapValue = offHeapValue;
+        return currentOffHeapValue == null ? 0 : currentOffHeapValue.getAllocatedBytes();
     }
 
     public long getLastAccessed() {
@@ -66,19 +176,37 @@ public class CacheEntry<K, V> implements Cache.Entry<K, V>, Serializable {
         this.lastAccessed = lastAccessed;
     }
 
+    public long getLastReplicatedAccess() {
+        return lastReplicatedAccess;
+    }
+
+    public void setLastReplicatedAccess(long lastReplicatedAccess) {
+        this.lastReplicatedAccess = lastReplicatedAccess;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
         CacheEntry that = (CacheEntry) o;
-        return key.equals(that.key) && value.equals(that.value);
+        return key.equals(that.key) && readValue().equals(that.readValue());
     }
 
     @Override
     public int hashCode() {
         int result = key.hashCode();
-        result = 31 * result + value.hashCode();
+        result = 31 * result + readValue().hashCode();
         return result;
     }
+
+    // An entry which has been moved off-heap is sent to the other members with its value
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("key", key);
+        fields.put("value", readValue());
+        fields.put("lastAccessed", lastAccessed);
+        fields.put("lastModified", lastModified);
+        out.writeFields();
+    }
 }
@@ -0,0 +1,210 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+import javax.cache.CacheException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools shared by all the caches of all tenants, for running cache loaders and replicating access
+ * timestamps.
+ * <p/>
+ * Cache loader tasks are queued per tenant, and each tenant has at most one task waiting in the shared thread
+ * pool at any given time. A tenant which submits many loads therefore has its tasks interleaved with the tasks of
+ * other tenants, instead of occupying all the loader threads. The number of pending loads of a tenant is bounded
+ * by {@link #MAX_PENDING_LOADS_PER_TENANT}.
+ */
+public class CacheExecutionService {
+
+    private static final int CACHE_LOADER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int TIME_STAMP_REPLICATOR_THREADS = 2;
+    static final int MAX_PENDING_LOADS_PER_TENANT = 1000;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor cacheLoaderExecutor;
+    private final ScheduledExecutorService timestampReplicator;
+    private final Map<Integer, TenantTaskQueue> tenantTaskQueues = new ConcurrentHashMap<Integer, TenantTaskQueue>();
+    private final AtomicInteger pendingLoads = new AtomicInteger();
+
+    public CacheExecutionService() {
+        cacheLoaderExecutor = new ThreadPoolExecutor(CACHE_LOADER_THREADS, CACHE_LOADER_THREADS,
+                IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("CacheLoader"));
+        cacheLoaderExecutor.allowCoreThreadTimeOut(true);
+        timestampReplicator = Executors.newScheduledThreadPool(TIME_STAMP_REPLICATOR_THREADS,
+                new NamedThreadFactory("TimeStampReplicator"));
+    }
+
+    /**
+     * Queue a cache loader task of a cache
+     *
+     * @param cache the cache on behalf of which the task runs
+     * @param task  the task
+     * @throws CacheException if the owner tenant of the cache already has too many pending loads
+     */
+    void submitLoad(CacheImpl cache, FutureTask<?> task) {
+        int tenantId = cache.getOwnerTenantId();
+        TenantTaskQueue taskQueue = tenantTaskQueues.get(tenantId);
+        if (taskQueue == null) {
+            synchronized (tenantTaskQueues) {
+                if ((taskQueue = tenantTaskQueues.get(tenantId)) == null) {
+                    taskQueue = new TenantTaskQueue();
+                    tenantTaskQueues.put(tenantId, taskQueue);
+                }
+            }
+        }
+        taskQueue.add(cache, task);
+    }
+
+    /**
+     * Cancel the cache loader tasks of a cache which have not started yet
+     *
+     * @param cache the cache
+     */
+    void cancelLoads(CacheImpl cache) {
+        TenantTaskQueue taskQueue = tenantTaskQueues.get(cache.getOwnerTenantId());
+        if (taskQueue != null) {
+            taskQueue.cancel(cache);
+        }
+    }
+
+    ScheduledFuture<?> scheduleTimestampReplication(Runnable task, long frequencyMillis) {
+        return timestampReplicator.scheduleAtFixedRate(task, frequencyMillis, frequencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of cache loader tasks which are waiting for a thread, across all tenants
+     */
+    public int getPendingLoadCount() {
+        return pendingLoads.get();
+    }
+
+    /**
+     * @param tenantId the tenant ID
+     * @return the number of cache loader tasks of the tenant which are waiting for a thread
+     */
+    public int getPendingLoadCount(int tenantId) {
+        TenantTaskQueue taskQueue = tenantTaskQueues.get(tenantId);
+        return taskQueue == null ? 0 : taskQueue.size();
+    }
+
+    public int getActiveLoaderCount() {
+        return cacheLoaderExecutor.getActiveCount();
+    }
+
+    /**
+     * The pending loader tasks of a single tenant. The queue is scheduled on the shared thread pool with one task
+     * at a time, which runs the next pending task and schedules the queue again if more tasks are pending.
+     */
+    private final class TenantTaskQueue implements Runnable {
+        private final Queue<PendingTask> tasks = new LinkedList<PendingTask>();
+        private boolean scheduled;
+
+        synchronized void add(CacheImpl cache, FutureTask<?> task) {
+            if (tasks.size() >= MAX_PENDING_LOADS_PER_TENANT) {
+                throw new CacheException("Too many pending cache loads for tenant " + cache.getOwnerTenantId());
+            }
+            tasks.add(new PendingTask(cache, task));
+            pendingLoads.incrementAndGet();
+            if (!scheduled) {
+                scheduled = true;
+                cacheLoaderExecutor.execute(this);
+            }
+        }
+
+        synchronized void cancel(CacheImpl cache) {
+            for (Iterator<PendingTask> iterator = tasks.iterator(); iterator.hasNext(); ) {
+                PendingTask pendingTask = iterator.next();
+                if (pendingTask.cache == cache) {
+                    iterator.remove();
+                    pendingLoads.decrementAndGet();
+                    pendingTask.task.cancel(false);
+                }
+            }
+        }
+
+        synchronized int size() {
+            return tasks.size();
+        }
+
+        @Override
+        public void run() {
+            PendingTask pendingTask;
+            synchronized (this) {
+                pendingTask = tasks.poll();
+                if (pendingTask == null) {
+                    scheduled = false;
+                    return;
+                }
+                pendingLoads.decrementAndGet();
+            }
+            try {
+                pendingTask.task.run();
+            } finally {
+                synchronized (this) {
+                    if (tasks.isEmpty()) {
+                        scheduled = false;
+                    } else {
+                        // Go to the back of the shared queue, behind the tasks of the other tenants
+                        cacheLoaderExecutor.execute(this);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class PendingTask {
+        private final CacheImpl cache;
+        private final FutureTask<?> task;
+
+        private PendingTask(CacheImpl cache, FutureTask<?> task) {
+            this.cache = cache;
+            this.task = task;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private NamedThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread th = new Thread(runnable);
+            th.setName(namePrefix + "-" + threadCount.incrementAndGet());
+            th.setDaemon(true);
+            return th;
+        }
+    }
+}
@@ -19,7 +19,11 @@ package org.wso2.carbon.caching.impl;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.caching.impl.eviction.BoundedEvictionAlgorithm;
 import org.wso2.carbon.caching.impl.eviction.EvictionAlgorithm;
+import org.wso2.carbon.caching.impl.eviction.EvictionTracker;
+import org.wso2.carbon.caching.impl.expiry.TimingWheel;
+import org.wso2.carbon.caching.impl.offheap.OffHeapStore;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
@@ -48,13 +52,12 @@ import javax.management.ObjectName;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TODO: class description
@@ -64,11 +67,12 @@ import java.util.concurrent.TimeUnit;
 @SuppressWarnings("unchecked")
 public class CacheImpl<K, V> implements Cache<K, V> {
     private static final Log log = LogFactory.getLog(CacheImpl.class);
-    private static final int TIME_STAMP_REPLICATOR_THREADS = 2;
     private static final int TIME_STAMP_REPLICATING_INTERVAL = 50;
+    // Fraction of the ACCESSED expiry duration by which an access timestamp has to move to get replicated
+    private static final double TIME_STAMP_REPLICATION_THRESHOLD = 0.01;
+    private static final int TIME_STAMP_BYTES = 8;
+    private double timestampReplicationThreshold;
     private static final long MAX_CLEANUP_TIME = 60000;
-    private int timeStampReplicatorCount;
-    private static final int CACHE_LOADER_THREADS = 2;
     private static final long DEFAULT_CACHE_EXPIRY_MINS = 15;
     private static final long DEFAULT_CACHE_EXPIRY_MILLIS = DEFAULT_CACHE_EXPIRY_MINS * 60 * 1000;
     private static final float CACHE_OVERCAPACITY_FACTOR = 0.75f;
@@ -81,14 +85,18 @@ public class CacheImpl<K, V> implements Cache<K, V> {
     private Map<K, Long> distributedTimestampMap;
     private Map<K, Long> localTimestampMap;
     private long capacity = CachingConstants.DEFAULT_CACHE_CAPACITY;
-    private final Map<K, CacheEntry<K, V>> localCache = new ConcurrentHashMap<K, CacheEntry<K, V>>((int)capacity, 0.75f, 50);
+    private final ConcurrentMap<K, CacheEntry<K, V>> localCache = new ConcurrentHashMap<K, CacheEntry<K, V>>((int)capacity, 0.75f, 50);
     private CacheConfiguration<K, V> cacheConfiguration;
 
     private List<CacheEntryListener> cacheEntryListeners = new ArrayList<CacheEntryListener>();
     private Status status;
     private CacheStatisticsImpl cacheStatistics;
     private ObjectName cacheMXBeanObjName;
-    private final ExecutorService cacheLoadExecService = Executors.newFixedThreadPool(CACHE_LOADER_THREADS);
+    private ScheduledFuture<?> timestampReplicationTask;
+
+    // Fetches from the distributed cache which are in progress, by key
+    private final Map<K, Long> pendingFetches = new ConcurrentHashMap<K, Long>();
+    private final AtomicLong fetchVersionSequence = new AtomicLong();
 
     private String ownerTenantDomain;
     private int ownerTenantId;
@@ -96,6 +104,16 @@ public class CacheImpl<K, V> implements Cache<K, V> {
 
     private EvictionAlgorithm evictionAlgorithm = CachingConstants.DEFAULT_EVICTION_ALGORITHM;
 
+    // Only available when a BoundedEvictionAlgorithm is in use
+    private volatile EvictionTracker<K> evictionTracker;
+
+    private final TimingWheel<K> expiryWheel = new TimingWheel<K>();
+    private volatile long accessedExpiryMillis = DEFAULT_CACHE_EXPIRY_MILLIS;
+    private volatile long modifiedExpiryMillis = DEFAULT_CACHE_EXPIRY_MILLIS;
+
+    // Whether the values of idle entries are moved into the shared off-heap store
+    private volatile boolean offHeapEnabled;
+
     public CacheImpl(String cacheName, CacheManager cacheManager) {
         CarbonContext carbonContext = CarbonContext.getThreadLocalCarbonContext();
         if (carbonContext == null) {
@@ -130,6 +148,8 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                             cacheName, ownerTenantDomain, cacheManager.getName()), new TimestampMapEntryListenerImpl());
             initTimestampReplicator();
         }
+        evictionTracker = createEvictionTracker(evictionAlgorithm);
+        offHeapEnabled = CacheManagerFactoryImpl.getOffHeapStore().isOffHeapCache(cacheName);
         cacheStatistics = new CacheStatisticsImpl();
         registerMBean();
         CacheManagerFactoryImpl.addCacheForMonitoring(this);
@@ -153,25 +173,19 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                 Util.getDistributedMapNameOfCache(CachingConstants.TIMESTAMP_CACHE_PREFIX + cacheName,
                         ownerTenantDomain, cacheManager.getName()), new TimestampMapEntryListenerImpl());
 
+        initTimestampReplicator();
         isLocalCache = false;
 
-        initTimestampReplicator();
         // copy cache entries from localCache to distributed cache
         for (Map.Entry<K, CacheEntry<K, V>> entry : localCache.entrySet()) {
             distributedCache.put(entry.getKey(), entry.getValue());
         }
     }
 
-    private void initTimestampReplicator(){
-
-        ScheduledExecutorService timeStampReplicator = Executors.newScheduledThreadPool(TIME_STAMP_REPLICATOR_THREADS, new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable runnable) {
-                Thread th = new Thread(runnable);
-                th.setName("TimeStampReplicator (" + ownerTenantDomain + ")-" + cacheName + "-" + timeStampReplicatorCount++);
-                return th;
-            }
-        });
+    private synchronized void initTimestampReplicator(){
+        if (timestampReplicationTask != null) {
+            timestampReplicationTask.cancel(false);
+        }
         localTimestampMap = new ConcurrentHashMap<K, Long>();
         String replicateFrequency = System.getProperty("timestamp.replication.frequency");
         int frequency = TIME_STAMP_REPLICATING_INTERVAL;
@@ -179,8 +193,20 @@ public class CacheImpl<K, V> implements Cache<K, V> {
             frequency = Integer.parseInt(replicateFrequency);
         }
         log.debug("Timestamp Replication Frequency set to " + frequency);
-        timeStampReplicator.scheduleAtFixedRate(new TimestampReplicateTask(), frequency, frequency,
-                TimeUnit.MILLISECONDS);
+        String replicateThreshold = System.getProperty("timestamp.replication.threshold");
+        timestampReplicationThreshold = TIME_STAMP_REPLICATION_THRESHOLD;
+        if (replicateThreshold != null) {
+            timestampReplicationThreshold = Double.parseDouble(replicateThreshold);
+        }
+        timestampReplicationTask = CacheManagerFactoryImpl.getExecutionService().
+                scheduleTimestampReplication(new TimestampReplicateTask(), frequency);
+    }
+
+    private synchronized void stopTimestampReplicator() {
+        if (timestampReplicationTask != null) {
+            timestampReplicationTask.cancel(false);
+            timestampReplicationTask = null;
+        }
     }
 
     private MBeanServer getMBeanServer() {
@@ -219,42 +245,162 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        CacheEntry entry = localCache.get(key);
+        CacheEntry<K, V> entry = localCache.get(key);
         V value = null;
         if (entry != null) {
-            value = (V) entry.getValue();
+            value = readValue(entry);
+            recordAccess(key);
             if (!isLocalCache) {
-               // distributedTimestampMap.put(key, lastAccessed);
-                synchronized (key){
-                    localTimestampMap.put(key,lastAccessed);
-                }
+                replicateAccessTimestamp(key, entry, lastAccessed);
             }
             notifyCacheEntryRead(key, value);
         } else if(!isLocalCache) {    // Try reading it from the distributed cache
-            entry = distributedCache.get(key);
+            entry = fetchFromDistributedCache(key, lastAccessed);
             if(entry != null){
-                entry.setLastAccessed(lastAccessed);
-                localCache.put(key, entry);
                 value = (V) entry.getValue();
-                //distributedTimestampMap.put(key, lastAccessed);
-                synchronized (key){
-                    localTimestampMap.put(key,lastAccessed);
-                }
+                replicateAccessTimestamp(key, entry, lastAccessed);
                 notifyCacheEntryRead(key, value);
             }
         }
         return value;
     }
 
+    /**
+     * Read an entry from the distributed cache into the local near cache.
+     * <p/>
+     * Each fetch is stamped with a version which an invalidation of the same key discards. The fetched entry is
+     * only kept locally if its fetch version is still current once the value has arrived, hence a value which
+     * was invalidated while it was in flight is returned to the caller but not cached.
+     *
+     * @see #storeFetched(Object, Long, CacheEntry, long)
+     */
+    private CacheEntry<K, V> fetchFromDistributedCache(K key, long accessTime) {
+        Long fetchVersion = fetchVersionSequence.incrementAndGet();
+        pendingFetches.put(key, fetchVersion);
+        CacheEntry<K, V> entry = null;
+        try {
+            entry = distributedCache.get(key);
+        } finally {
+            storeFetched(key, fetchVersion, entry, accessTime);
+        }
+        return entry;
+    }
+
+    /**
+     * Read a set of entries from the distributed cache into the local near cache, using a single bulk read if the
+     * distributed cache supports it. The entries are versioned in the same way as in
+     * {@link #fetchFromDistributedCache(Object, long)}.
+     */
+    private Map<K, CacheEntry<K, V>> fetchAllFromDistributedCache(Set<K> keys, long accessTime) {
+        Map<K, Long> fetchVersions = new HashMap<K, Long>(keys.size());
+        for (K key : keys) {
+            Long fetchVersion = fetchVersionSequence.incrementAndGet();
+            pendingFetches.put(key, fetchVersion);
+            fetchVersions.put(key, fetchVersion);
+        }
+        Map<K, CacheEntry<K, V>> entries = null;
+        try {
+            if (distributedCache instanceof BulkDistributedMap) {
+                entries = ((BulkDistributedMap<K, CacheEntry<K, V>>) distributedCache).getAll(keys);
+            } else {
+                entries = new HashMap<K, CacheEntry<K, V>>(keys.size());
+                for (K key : keys) {
+                    CacheEntry<K, V> entry = distributedCache.get(key);
+                    if (entry != null) {
+                        entries.put(key, entry);
+                    }
+                }
+            }
+        } finally {
+            for (Map.Entry<K, Long> fetchVersion : fetchVersions.entrySet()) {
+                K key = fetchVersion.getKey();
+                storeFetched(key, fetchVersion.getValue(), entries == null ? null : entries.get(key), accessTime);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Keep a fetched entry in the local cache if its fetch version is still current. The version is only released
+     * after the entry has been stored, so that an invalidation which discards it while the entry is being stored is
+     * seen, and the stored entry is dropped again.
+     */
+    private void storeFetched(K key, Long fetchVersion, CacheEntry<K, V> entry, long accessTime) {
+        if (entry == null || !fetchVersion.equals(pendingFetches.get(key))) {
+            pendingFetches.remove(key, fetchVersion);
+            return;
+        }
+        entry.setLastAccessed(accessTime);
+        putLocal(key, entry);
+        if (!pendingFetches.remove(key, fetchVersion)) {
+            removeLocalIfUnchanged(key, entry);
+        }
+    }
+
+    /**
+     * Drop the local copy of an entry which has been changed on another member. The new value is fetched from the
+     * distributed cache when it is read next.
+     */
+    private void invalidateLocal(K key) {
+        pendingFetches.remove(key);
+        removeLocal(key);
+    }
+
+    /**
+     * Read the value of a local entry which has been hit, moving it back on-heap if it has been moved off-heap.
+     */
+    private V readValue(CacheEntry<K, V> entry) {
+        if (entry.isOffHeap()) {
+            int releasedBytes = entry.moveOnHeap();
+            if (releasedBytes > 0) {
+                cacheStatistics.recordOffHeapPromotion(releasedBytes);
+            }
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Queue the access timestamp of an entry for replication. Timestamps are coalesced per key until the next
+     * replication run, and an access which moves the timestamp by less than a small fraction of the ACCESSED
+     * expiry duration is not replicated at all.
+     */
+    private void replicateAccessTimestamp(K key, CacheEntry entry, long accessTime) {
+        if (accessTime - entry.getLastReplicatedAccess() < accessedExpiryMillis * timestampReplicationThreshold) {
+            cacheStatistics.recordSkippedTimestamp();
+            return;
+        }
+        entry.setLastReplicatedAccess(accessTime);
+        localTimestampMap.put(key, accessTime);
+    }
+
     @Override
     public Map<K, V> getAll(Set<? extends K> keys) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        Map<K, CacheEntry<K, V>> source = localCache;
         Map<K, V> destination = new HashMap<K, V>(keys.size());
+        Set<K> missingKeys = null;
         for (K key : keys) {
-            destination.put(key, source.get(key).getValue());
+            CacheEntry<K, V> entry = localCache.get(key);
+            if (entry != null) {
+                destination.put(key, readValue(entry));
+                recordAccess(key);
+                if (!isLocalCache) {
+                    replicateAccessTimestamp(key, entry, lastAccessed);
+                }
+            } else if (!isLocalCache) {
+                if (missingKeys == null) {
+                    missingKeys = new HashSet<K>();
+                }
+                missingKeys.add(key);
+            }
+        }
+        if (missingKeys != null) {
+            // Read all the local misses from the distributed cache at once
+            for (CacheEntry<K, V> entry : fetchAllFromDistributedCache(missingKeys, lastAccessed).values()) {
+                destination.put(entry.getKey(), entry.getValue());
+                replicateAccessTimestamp(entry.getKey(), entry, lastAccessed);
+            }
         }
         return destination;
     }
@@ -269,7 +415,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                 CacheEntry<K, V> value = entry.getValue();
                 if(!localCache.containsKey(key) ||
                         value.getLastModified() > localCache.get(key).getLastModified()){
-                    localCache.put(key, value);
+                    putLocal(key, value);
                     distributedTimestampMap.put(key,value.getLastAccessed());
                 }
             }
@@ -289,34 +435,12 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         lastAccessed = System.currentTimeMillis();
         boolean containsKey = localCache.containsKey(key);
         if(!containsKey && !isLocalCache){
+            // The value itself is fetched lazily, when it is read
             containsKey = distributedCache.containsKey(key);
-            if(containsKey){
-                CacheEntry<K, V> value = distributedCache.get(key);
-                if (value != null) {
-                    if (distributedTimestampMap.containsKey(key)) {
-                        Long distributedLastAccessed = distributedTimestampMap.get(key);
-                        setLastAccessed(value, distributedLastAccessed);
-                    }
-                    localCache.put(key, value);
-                } else {
-                    if (distributedCache.containsKey(key)) {
-//                        log.warn("Cache value is null but key [" + key + "] is available!");
-                    }
-                    containsKey = false;
-                }
-            }
         }
         return containsKey;
     }
 
-    private void setLastAccessed(CacheEntry<K, V> value, Long distributedLastAccessed) {
-        if (distributedLastAccessed != null && distributedLastAccessed > value.getLastAccessed()) {
-            value.setLastAccessed(distributedLastAccessed);
-        } else {
-            value.setLastAccessed(System.currentTimeMillis());
-        }
-    }
-
     @Override
     public Future<V> load(K key) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
@@ -333,7 +457,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         FutureTask<V> task = new FutureTask<V>(new CacheLoaderLoadCallable<K, V>(this, cacheLoader, key,
                 carbonContext.getTenantDomain(),
                 carbonContext.getTenantId()));
-        cacheLoadExecService.submit(task);
+        CacheManagerFactoryImpl.getExecutionService().submitLoad(this, task);
         return task;
     }
 
@@ -364,7 +488,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                         carbonContext.getTenantDomain(),
                         carbonContext.getTenantId());
         FutureTask<Map<K, ? extends V>> task = new FutureTask<Map<K, ? extends V>>(callable);
-        cacheLoadExecService.submit(task);
+        CacheManagerFactoryImpl.getExecutionService().submitLoad(this, task);
         return task;
     }
 
@@ -377,16 +501,140 @@ public class CacheImpl<K, V> implements Cache<K, V> {
     }
 
     private void internalPut(K key, V value) {
+        if (internalPutLocal(key, value) && !isLocalCache) {
+            this.distributedCache.put(key, new CacheEntry(key, value));
+        }
+    }
+
+    private boolean internalPutLocal(K key, V value) {
         // If the cache capacity has been exceeded by more than CACHE_OVERCAPACITY_FACTOR, do not put anymore until cache gets cleared
-        if(localCache.size() >= capacity * (1 + CACHE_OVERCAPACITY_FACTOR)){
+        if (evictionTracker == null && localCache.size() >= capacity * (1 + CACHE_OVERCAPACITY_FACTOR)) {
+            return false;
+        }
+        putLocal(key, new CacheEntry(key, value));
+        return true;
+    }
+
+    /**
+     * Add an entry to the local cache. If a BoundedEvictionAlgorithm is in use, entries are evicted right away
+     * until the cache is within its capacity.
+     */
+    private void putLocal(K key, CacheEntry<K, V> entry) {
+        CacheEntry<K, V> replacedEntry = localCache.put(key, entry);
+        if (replacedEntry != null && replacedEntry != entry) {
+            releaseOffHeap(replacedEntry);
+        }
+        expiryWheel.schedule(key, getExpiryTime(entry));
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.recordWrite(key);
+            evictOverCapacityEntries(tracker);
+        }
+    }
+
+    /**
+     * Replace a local entry only if it has not been replaced or removed in the meantime.
+     */
+    private boolean replaceLocal(K key, CacheEntry<K, V> entry, CacheEntry<K, V> newEntry) {
+        if (!localCache.replace(key, entry, newEntry)) {
+            return false;
+        }
+        releaseOffHeap(entry);
+        expiryWheel.schedule(key, getExpiryTime(newEntry));
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.recordWrite(key);
+        }
+        return true;
+    }
+
+    private void evictOverCapacityEntries(EvictionTracker<K> tracker) {
+        K victim;
+        while (localCache.size() > capacity && (victim = tracker.nextVictim()) != null) {
+            evict(victim);
+        }
+    }
+
+    private void recordAccess(K key) {
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.recordAccess(key);
+        }
+    }
+
+    private CacheEntry<K, V> removeLocal(K key) {
+        return removeLocal(key, false);
+    }
+
+    /**
+     * Remove an entry from the local cache and release its off-heap copy, if any.
+     *
+     * @param keepValue whether the value of an off-heap entry is moved back on-heap, so that it can still be
+     *                  read from the removed entry
+     */
+    private CacheEntry<K, V> removeLocal(K key, boolean keepValue) {
+        CacheEntry<K, V> entry = localCache.remove(key);
+        expiryWheel.cancel(key);
+        if (entry != null) {
+            EvictionTracker<K> tracker = evictionTracker;
+            if (tracker != null) {
+                tracker.recordRemoval(key);
+            }
+            if (keepValue && entry.isOffHeap()) {
+                cacheStatistics.recordOffHeapRelease(entry.moveOnHeap());
+            } else {
+                releaseOffHeap(entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove a local entry only if it still holds the value of the given entry, which may have been moved off-heap
+     * in the meantime.
+     */
+    private void removeLocalIfUnchanged(K key, CacheEntry<K, V> entry) {
+        CacheEntry<K, V> currentEntry = localCache.get(key);
+        if (currentEntry == null || !currentEntry.equals(entry) || !localCache.remove(key, currentEntry)) {
             return;
         }
-        this.localCache.put(key, new CacheEntry(key, value));
-        if (!isLocalCache) {
-            this.distributedCache.put(key, new CacheEntry(key, value));
+        expiryWheel.cancel(key);
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.recordRemoval(key);
+        }
+        releaseOffHeap(currentEntry);
+    }
+
+    private void releaseOffHeap(CacheEntry<K, V> entry) {
+        if (entry.isOffHeap()) {
+            cacheStatistics.recordOffHeapRelease(entry.releaseOffHeap());
         }
     }
 
+    private void clearLocal() {
+        for (CacheEntry<K, V> entry : localCache.values()) {
+            releaseOffHeap(entry);
+        }
+        localCache.clear();
+        expiryWheel.clear();
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.clear();
+        }
+    }
+
+    private EvictionTracker<K> createEvictionTracker(EvictionAlgorithm evictionAlgorithm) {
+        if (!(evictionAlgorithm instanceof BoundedEvictionAlgorithm)) {
+            return null;
+        }
+        EvictionTracker<K> tracker = ((BoundedEvictionAlgorithm) evictionAlgorithm).createTracker(capacity);
+        for (K key : localCache.keySet()) {
+            tracker.recordWrite(key);
+        }
+        return tracker;
+    }
+
     @Override
     public void put(K key, V value) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
@@ -471,6 +719,9 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
+        // Entries are sent to the distributed cache in one bulk update
+        Map<K, CacheEntry<K, V>> distributedEntries =
+                isLocalCache ? null : new HashMap<K, CacheEntry<K, V>>(map.size());
         for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
             K key = entry.getKey();
             boolean entryExists = false;
@@ -478,13 +729,18 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                 entryExists = true;
             }
             V value = entry.getValue();
-            internalPut(key, value);
+            if (internalPutLocal(key, value) && distributedEntries != null) {
+                distributedEntries.put(key, new CacheEntry<K, V>(key, value));
+            }
             if (entryExists) {
                 notifyCacheEntryUpdated(key, value);
             } else {
                 notifyCacheEntryCreated(key, value);
             }
         }
+        if (distributedEntries != null && !distributedEntries.isEmpty()) {
+            distributedCache.putAll(distributedEntries);
+        }
     }
 
     @Override
@@ -505,7 +761,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        CacheEntry entry = localCache.remove((K) key);
+        CacheEntry entry = removeLocal((K) key, !cacheEntryListeners.isEmpty());
         if (!isLocalCache) {
             distributedCache.remove(key);
             distributedTimestampMap.remove(key);
@@ -523,7 +779,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        CacheEntry<K, V> cacheEntry = localCache.remove(key);
+        CacheEntry<K, V> cacheEntry = removeLocal(key);
         if (!isLocalCache) {
             distributedCache.remove(key);
             distributedTimestampMap.remove(key);
@@ -538,7 +794,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        CacheEntry entry = localCache.remove(key);
+        CacheEntry entry = removeLocal(key, true);
         if (!isLocalCache) {
             distributedCache.remove(key);
             distributedTimestampMap.remove(key);
@@ -557,13 +813,28 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        Map<K, CacheEntry<K, V>> map = localCache;
-        if (map.containsKey(key) && map.get(key).equals(new CacheEntry(key, oldValue))) {
-            internalPut(key, newValue);
-            notifyCacheEntryUpdated(key, newValue);
-            return true;
+        if (!isLocalCache && distributedCache instanceof AtomicDistributedMap) {
+            // The local copy may not have caught up with a change made on another member, so the distributed entry is
+            // compared instead
+            AtomicDistributedMap<K, CacheEntry<K, V>> atomicCache =
+                    (AtomicDistributedMap<K, CacheEntry<K, V>>) distributedCache;
+            if (!atomicCache.replace(key, new CacheEntry<K, V>(key, oldValue), new CacheEntry<K, V>(key, newValue))) {
+                invalidateLocal(key);
+                return false;
+            }
+            internalPutLocal(key, newValue);
+        } else {
+            CacheEntry<K, V> entry = localCache.get(key);
+            if (entry == null || !entry.equals(new CacheEntry<K, V>(key, oldValue)) ||
+                    !replaceLocal(key, entry, new CacheEntry<K, V>(key, newValue))) {
+                return false;
+            }
+            if (!isLocalCache) {
+                distributedCache.put(key, new CacheEntry<K, V>(key, newValue));
+            }
         }
-        return false;
+        notifyCacheEntryUpdated(key, newValue);
+        return true;
     }
 
     @Override
@@ -600,14 +871,29 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        Map<K, CacheEntry<K, V>> map = localCache;
         for (K key : keys) {
-            CacheEntry entry = map.remove(key);
+            CacheEntry entry = removeLocal(key, !cacheEntryListeners.isEmpty());
             if(!isLocalCache){
-                distributedCache.remove(key);
-                distributedTimestampMap.remove(key);
+                localTimestampMap.remove(key);
+            }
+            if (entry != null) {
+                notifyCacheEntryRemoved(key, (V) entry.getValue());
+            }
+        }
+        if (!isLocalCache && !keys.isEmpty()) {
+            Set<K> keySet = new HashSet<K>(keys);
+            removeAll(distributedCache, keySet);
+            removeAll(distributedTimestampMap, keySet);
+        }
+    }
+
+    private static <X, Y> void removeAll(Map<X, Y> map, Set<X> keys) {
+        if (map instanceof BulkDistributedMap) {
+            ((BulkDistributedMap<X, Y>) map).removeAll(keys);
+        } else {
+            for (X key : keys) {
+                map.remove(key);
             }
-            notifyCacheEntryRemoved(key, (V) entry.getValue());
         }
     }
 
@@ -620,7 +906,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         for (Map.Entry<K, CacheEntry<K, V>> entry : map.entrySet()) {
             notifyCacheEntryRemoved(entry.getKey(), entry.getValue().getValue());
         }
-        map.clear();
+        clearLocal();
         if(!isLocalCache){
             distributedCache.clear();
             distributedTimestampMap.clear();
@@ -748,7 +1034,9 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
         lastAccessed = System.currentTimeMillis();
-        localCache.clear();
+        stopTimestampReplicator();
+        CacheManagerFactoryImpl.getExecutionService().cancelLoads(this);
+        clearLocal();
 
         if (!isLocalCache) {
             distributedCache.clear();
@@ -775,7 +1063,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
 
     public void expire(K key) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
-        CacheEntry entry = localCache.remove(key);
+        CacheEntry entry = removeLocal(key, !cacheEntryListeners.isEmpty());
         if(!isLocalCache){
             try {
                 distributedCache.remove(key);
@@ -796,7 +1084,7 @@ public class CacheImpl<K, V> implements Cache<K, V> {
     public void evict(K key) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         checkStatusStarted();
-        localCache.remove(key);
+        removeLocal(key);
         /*if (log.isDebugEnabled()) {
             log.debug("Evicted entry:" + key + ", from local cache:" + cacheName);
         }*/
@@ -815,17 +1103,77 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Drop the local copies of entries which have been invalidated on another member, without touching the
+     * distributed cache. The new values are loaded when they are read next.
+     *
+     * @param keys the keys of the invalidated entries
+     */
+    public void invalidateLocalEntries(Collection<?> keys) {
+        Util.checkAccess(ownerTenantDomain, ownerTenantId);
+        for (Object key : keys) {
+            invalidateLocal((K) key);
+        }
+    }
+
+    /**
+     * Drop the local copies of all entries, when the whole cache has been invalidated on another member, without
+     * touching the distributed cache.
+     */
+    public void invalidateAllLocalEntries() {
+        Util.checkAccess(ownerTenantDomain, ownerTenantId);
+        pendingFetches.clear();
+        clearLocal();
+    }
+
     public void setCacheConfiguration(CacheConfigurationImpl cacheConfiguration) {
         Util.checkAccess(ownerTenantDomain, ownerTenantId);
         this.cacheConfiguration = cacheConfiguration;
+        updateExpiryDurations();
+        // Existing entries have been scheduled using the previous expiry durations
+        for (CacheEntry<K, V> entry : localCache.values()) {
+            expiryWheel.schedule(entry.getKey(), getExpiryTime(entry));
+        }
+    }
+
+    int getOwnerTenantId() {
+        return ownerTenantId;
     }
 
     public void setCapacity(long capacity) {
         this.capacity = capacity;
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            tracker.setCapacity(capacity);
+            evictOverCapacityEntries(tracker);
+        }
     }
 
     public void setEvictionAlgorithm(EvictionAlgorithm evictionAlgorithm) {
         this.evictionAlgorithm = evictionAlgorithm;
+        this.evictionTracker = createEvictionTracker(evictionAlgorithm);
+    }
+
+    /**
+     * Set whether the values of entries which have been idle for the configured off-heap idle time are moved into
+     * the off-heap store shared by all caches. By default this is only enabled for the caches of which the name
+     * matches {@link OffHeapStore#CACHES_PROPERTY}. Disabling it moves all the off-heap values back on-heap.
+     *
+     * @param offHeapEnabled whether idle entries are moved off-heap
+     */
+    public void setOffHeapEnabled(boolean offHeapEnabled) {
+        this.offHeapEnabled = offHeapEnabled;
+        if (!offHeapEnabled) {
+            for (CacheEntry<K, V> entry : localCache.values()) {
+                if (entry.isOffHeap()) {
+                    cacheStatistics.recordOffHeapRelease(entry.moveOnHeap());
+                }
+            }
+        }
+    }
+
+    public boolean isOffHeapEnabled() {
+        return offHeapEnabled;
     }
 
     private static final class CacheEntryIterator<K, V> implements Iterator<Entry<K, V>> {
@@ -891,26 +1239,58 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         return result;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Expire the entries which are due and evict entries if the cache has grown beyond its capacity
+     */
     void runCacheExpiry() {
-        CacheConfiguration cacheConfiguration = getConfiguration();
-
-        CacheConfiguration.Duration modifiedExpiry =
-                cacheConfiguration.getExpiry(CacheConfiguration.ExpiryType.MODIFIED);
-        long modifiedExpiryDuration =
-                modifiedExpiry == null ?
-                        DEFAULT_CACHE_EXPIRY_MILLIS :
-                        modifiedExpiry.getTimeUnit().toMillis(modifiedExpiry.getDurationAmount());
-
-        CacheConfiguration.Duration accessedExpiry =
-                cacheConfiguration.getExpiry(CacheConfiguration.ExpiryType.ACCESSED);
-        long accessedExpiryDuration =
-                accessedExpiry == null ?
-                        DEFAULT_CACHE_EXPIRY_MILLIS :
-                        accessedExpiry.getTimeUnit().toMillis(accessedExpiry.getDurationAmount());
+        expireDueEntries();
+        runCacheEviction();
+    }
 
-        Collection<CacheEntry<K, V>> cacheEntries = getAll();
+    /**
+     * Expire the entries of which the ACCESSED or MODIFIED expiry duration has elapsed. Only the entries found
+     * in the elapsed buckets of the expiry wheel are looked at.
+     */
+    void expireDueEntries() {
+        long start = System.currentTimeMillis();
+        List<K> dueKeys = expiryWheel.advance(start);
+        for (int i = 0; i < dueKeys.size(); i++) {
+            K key = dueKeys.get(i);
+            CacheEntry<K, V> entry = localCache.get(key);
+            if (entry == null) {
+                continue;
+            }
+            long expiryTime = getExpiryTime(entry);
+            if (System.currentTimeMillis() >= expiryTime) {
+                expire(key);
+                if (log.isDebugEnabled()) {
+                    log.debug("Expired: Cache:" + cacheName + ", entry:" + key);
+                }
+            } else {
+                // The entry has been accessed since it was scheduled
+                expiryWheel.schedule(key, expiryTime);
+            }
+            if (System.currentTimeMillis() - start > MAX_CLEANUP_TIME) {
+                // Leave the rest to the next run
+                for (int j = i + 1; j < dueKeys.size(); j++) {
+                    expiryWheel.schedule(dueKeys.get(j), start);
+                }
+                break;
+            }
+        }
+    }
 
+    @SuppressWarnings("unchecked")
+    void runCacheEviction() {
+        EvictionTracker<K> tracker = evictionTracker;
+        if (tracker != null) {
+            // Caches using a BoundedEvictionAlgorithm are kept within their capacity on every put
+            evictOverCapacityEntries(tracker);
+            return;
+        }
+        if (localCache.size() < capacity) {
+            return;
+        }
         long evictionListSize = 0;
         if (localCache.size() > capacity) {
             evictionListSize = localCache.size() - capacity; // Evict all extra entries
@@ -936,44 +1316,77 @@ public class CacheImpl<K, V> implements Cache<K, V> {
                 }
             }
         });
+        evictionList.addAll(getAll());
+
         long start = System.currentTimeMillis();
-        for (CacheEntry<K, V> localCacheEntry : cacheEntries) { // All Cache entries in a Cache
-            K key = localCacheEntry.getKey();
-            if (localCache.size() >= capacity) {
-                evictionList.add(localCacheEntry);
+        for (int i = 0; i < evictionListSize; i++) {
+            CacheEntry entry = evictionAlgorithm.getEntryForEviction(evictionList);
+            if (entry != null) {
+                this.evict((K) entry.getKey());
             }
-
-            long lastAccessed = localCacheEntry.getLastAccessed();
-            long lastModified = localCacheEntry.getLastModified();
-            long now = System.currentTimeMillis();
-
-            if (now - lastAccessed >= accessedExpiryDuration ||
-                    now - lastModified >= modifiedExpiryDuration) {
-                expire(key);
-                if (log.isDebugEnabled()) {
-                    log.debug("Expired: Cache:" + cacheName + ", entry:" + key);
-                }
-                if (System.currentTimeMillis() - start > MAX_CLEANUP_TIME) {
-                    break;
-                }
+            if (System.currentTimeMillis() - start > MAX_CLEANUP_TIME) {
+                break;
             }
         }
+        log.info("Evicted " + evictionListSize + " entries from cache " + cacheName);
+    }
 
-        if (localCache.size() >= capacity) {
-            start = System.currentTimeMillis();
-            for (int i = 0; i < evictionListSize; i++) {
-                CacheEntry entry = evictionAlgorithm.getEntryForEviction(evictionList);
-                if (entry != null) {
-                    this.evict((K) entry.getKey());
+    /**
+     * Move the values of the entries which have not been accessed within the off-heap idle time into the shared
+     * off-heap store. An entry is replaced by an off-heap copy only if it has not been changed in the meantime.
+     * Values which cannot be serialized stay on-heap, as do all the remaining values once the store is full.
+     */
+    void moveIdleEntriesOffHeap() {
+        if (!offHeapEnabled) {
+            return;
+        }
+        OffHeapStore store = CacheManagerFactoryImpl.getOffHeapStore();
+        long idleSince = System.currentTimeMillis() - store.getIdleTimeMillis();
+        for (Map.Entry<K, CacheEntry<K, V>> mapEntry : localCache.entrySet()) {
+            CacheEntry<K, V> entry = mapEntry.getValue();
+            if (entry.isOffHeap() || entry.isOffHeapRejected() || entry.getLastAccessed() > idleSince) {
+                continue;
+            }
+            CacheEntry<K, V> offHeapEntry = entry.copyOffHeap(store);
+            if (offHeapEntry == null) {
+                if (entry.isOffHeapRejected()) {
+                    continue;
                 }
-                if (System.currentTimeMillis() - start > MAX_CLEANUP_TIME) {
-                    break;
+                if (log.isDebugEnabled()) {
+                    log.debug("Off-heap store is full. Cache " + cacheName + " keeps its idle entries on-heap.");
                 }
+                break;
+            }
+            if (localCache.replace(mapEntry.getKey(), entry, offHeapEntry)) {
+                cacheStatistics.recordOffHeapDemotion(offHeapEntry.getOffHeapBytes());
+            } else {
+                offHeapEntry.releaseOffHeap();
             }
-            log.info("Evicted " + evictionListSize + " entries from cache " + cacheName);
         }
     }
 
+    private long getExpiryTime(CacheEntry<K, V> entry) {
+        return Math.min(entry.getLastAccessed() + accessedExpiryMillis, entry.getLastModified() + modifiedExpiryMillis);
+    }
+
+    private void updateExpiryDurations() {
+        CacheConfiguration cacheConfiguration = getConfiguration();
+
+        CacheConfiguration.Duration modifiedExpiry =
+                cacheConfiguration.getExpiry(CacheConfiguration.ExpiryType.MODIFIED);
+        modifiedExpiryMillis =
+                modifiedExpiry == null ?
+                        DEFAULT_CACHE_EXPIRY_MILLIS :
+                        modifiedExpiry.getTimeUnit().toMillis(modifiedExpiry.getDurationAmount());
+
+        CacheConfiguration.Duration accessedExpiry =
+                cacheConfiguration.getExpiry(CacheConfiguration.ExpiryType.ACCESSED);
+        accessedExpiryMillis =
+                accessedExpiry == null ?
+                        DEFAULT_CACHE_EXPIRY_MILLIS :
+                        accessedExpiry.getTimeUnit().toMillis(accessedExpiry.getDurationAmount());
+    }
+
     /**
      * Callable used for cache loader.
      *
@@ -1014,22 +1427,37 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Sends the access timestamps collected since the last run to the cluster, as a single bulk update
+     */
     private class TimestampReplicateTask implements Runnable{
 
         @Override
         public void run() {
-           if(!isLocalCache){
-               if(localTimestampMap != null && localTimestampMap.size() > 0){
-                   Iterator<Map.Entry<K,Long>> iterator = localTimestampMap.entrySet().iterator();
-                   while (iterator.hasNext()){
-                       Map.Entry<K, Long> entry = iterator.next();
-                       synchronized (entry.getKey()){
-                       distributedTimestampMap.put(entry.getKey(),entry.getValue());
-                       iterator.remove();
-                       }
-                   }
-               }
-           }
+            if (isLocalCache || localTimestampMap == null || localTimestampMap.isEmpty()) {
+                return;
+            }
+            Map<K, Long> batch = new HashMap<K, Long>(localTimestampMap.size());
+            long bytes = 0;
+            for (Map.Entry<K, Long> entry : localTimestampMap.entrySet()) {
+                K key = entry.getKey();
+                Long timestamp = entry.getValue();
+                // A newer timestamp of the same key stays queued for the next run
+                if (localTimestampMap.remove(key, timestamp)) {
+                    batch.put(key, timestamp);
+                    bytes += Util.estimateSize(key) + TIME_STAMP_BYTES;
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                distributedTimestampMap.putAll(batch);
+                cacheStatistics.recordTimestampReplication(batch.size(), bytes);
+            } catch (Exception e) {
+                // Do not let the exception cancel the scheduled replication
+                log.warn("Could not replicate access timestamps of cache " + cacheName + ". " + e.getMessage());
+            }
         }
     }
 
@@ -1080,75 +1508,65 @@ public class CacheImpl<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Invalidates the local copies of entries changed by other members. Values are not fetched eagerly.
+     */
     private class MapEntryListenerImpl implements MapEntryListener{
 
         @Override
         public <X> void entryAdded(X key) {
-            if (!localCache.containsKey(key)) return;
-            CacheEntry<K, V> value = distributedCache.get(key);
-            if (value != null) {
-                if (distributedTimestampMap.containsKey(key)) {
-                    Long distributedLastAccessed = distributedTimestampMap.get(key);
-                    setLastAccessed(value, distributedLastAccessed);
-                } else {
-                    distributedTimestampMap.put((K) key, value.getLastAccessed());
-                }
-                localCache.put((K) key, value);
-            }
+            invalidateLocal((K) key);
         }
 
         @Override
         public <X> void entryRemoved(X key) {
-            localCache.remove((K)key);
+            invalidateLocal((K) key);
         }
 
         @Override
         public <X> void entryUpdated(X key) {
-            if (!localCache.containsKey(key)) return;
-            CacheEntry<K, V> value = distributedCache.get(key);
-            if (value != null) {
-                if (distributedTimestampMap.containsKey(key)) {
-                    Long distributedLastAccessed = distributedTimestampMap.get(key);
-                    setLastAccessed(value, distributedLastAccessed);
-                }else{
-                    distributedTimestampMap.put((K) key,value.getLastAccessed());
-                }
-                localCache.put((K)key, value);
-            }
+            invalidateLocal((K) key);
         }
     }
 
-    private class TimestampMapEntryListenerImpl implements MapEntryListener{
+    /**
+     * Applies the access timestamps replicated by other members to the local entries. The timestamps are taken from
+     * the events, and only read back from the distributed map if the provider does not deliver them.
+     */
+    private class TimestampMapEntryListenerImpl implements MapEntryValueListener {
 
         @Override
         public <X> void entryAdded(X key) {
-            if (!localCache.containsKey(key)) return;
-            CacheEntry<K, V> value = localCache.get(key);
-            if (value != null) {
-            	Long timeStamp = distributedTimestampMap.get(key);
-            	if(timeStamp != null){
-            		value.setLastAccessed(timeStamp);
-            	} else {
-            		value.setLastAccessed(new Date().getTime());
-            	}
+            if (localCache.containsKey(key)) {
+                setLastAccessed(key, distributedTimestampMap.get(key));
             }
         }
 
+        @Override
+        public <X, Y> void entryAdded(X key, Y value) {
+            setLastAccessed(key, (Long) value);
+        }
+
         @Override
         public <X> void entryRemoved(X key) {
         }
 
         @Override
         public <X> void entryUpdated(X key) {
-            if (!localCache.containsKey(key)) return;
-            CacheEntry<K, V> value = localCache.get(key);
-            if (value != null) {
-            	Long timeStamp = distributedTimestampMap.get(key);
-            	if(timeStamp != null){
-            		value.setLastAccessed(timeStamp);            		
-            	} else {
-            		value.setLastAccessed(new Date().getTime());
-            	}
+            if (localCache.containsKey(key)) {
+                setLastAccessed(key, distributedTimestampMap.get(key));
+            }
+        }
+
+        @Override
+        public <X, Y> void entryUpdated(X key, Y value) {
+            setLastAccessed(key, (Long) value);
+        }
+
+        private void setLastAccessed(Object key, Long timeStamp) {
+            CacheEntry<K, V> entry = localCache.get(key);
+            if (entry != null) {
+                entry.setLastAccessed(timeStamp != null ? timeStamp : new Date().getTime());
             }
         }
     }
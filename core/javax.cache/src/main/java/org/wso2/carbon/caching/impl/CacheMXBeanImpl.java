@@ -22,13 +22,12 @@ import org.wso2.carbon.context.PrivilegedCarbonContext;
 import javax.cache.Cache;
 import javax.cache.CacheStatistics;
 import javax.cache.Status;
-import javax.cache.mbeans.CacheMXBean;
 import java.util.Date;
 
 /**
  * TODO: class description
  */
-public class CacheMXBeanImpl implements CacheMXBean {
+public class CacheMXBeanImpl implements CarbonCacheMXBean {
 
     private final Cache cache;
     private String ownerTenantDomain;
@@ -156,6 +155,70 @@ public class CacheMXBeanImpl implements CacheMXBean {
         }
     }
 
+    @Override
+    public int getTenantPendingLoadCount() {
+        return CacheManagerFactoryImpl.getExecutionService().getPendingLoadCount(ownerTenantId);
+    }
+
+    @Override
+    public int getPendingLoadCount() {
+        return CacheManagerFactoryImpl.getExecutionService().getPendingLoadCount();
+    }
+
+    @Override
+    public int getActiveLoaderCount() {
+        return CacheManagerFactoryImpl.getExecutionService().getActiveLoaderCount();
+    }
+
+    @Override
+    public long getTimestampReplicationBatches() {
+        return getCacheStatisticsImpl().getTimestampReplicationBatches();
+    }
+
+    @Override
+    public long getReplicatedTimestamps() {
+        return getCacheStatisticsImpl().getReplicatedTimestamps();
+    }
+
+    @Override
+    public long getSkippedTimestamps() {
+        return getCacheStatisticsImpl().getSkippedTimestamps();
+    }
+
+    @Override
+    public long getTimestampReplicationBytes() {
+        return getCacheStatisticsImpl().getTimestampReplicationBytes();
+    }
+
+    @Override
+    public int getLastTimestampReplicationBatchSize() {
+        return getCacheStatisticsImpl().getLastTimestampReplicationBatchSize();
+    }
+
+    @Override
+    public long getOffHeapEntries() {
+        return getCacheStatisticsImpl().getOffHeapEntries();
+    }
+
+    @Override
+    public long getOffHeapBytes() {
+        return getCacheStatisticsImpl().getOffHeapBytes();
+    }
+
+    @Override
+    public long getOffHeapDemotions() {
+        return getCacheStatisticsImpl().getOffHeapDemotions();
+    }
+
+    @Override
+    public long getOffHeapPromotions() {
+        return getCacheStatisticsImpl().getOffHeapPromotions();
+    }
+
+    private CacheStatisticsImpl getCacheStatisticsImpl() {
+        return (CacheStatisticsImpl) getCacheStatistics();
+    }
+
     private void setTenantCredentialsInCarbonContext() {
         PrivilegedCarbonContext cc = PrivilegedCarbonContext.getThreadLocalCarbonContext();
         cc.setTenantId(ownerTenantId);
@@ -17,6 +17,9 @@
 */
 package org.wso2.carbon.caching.impl;
 
+import org.wso2.carbon.caching.impl.offheap.OffHeapStore;
+
+import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.CacheManagerFactory;
 import javax.cache.CachingShutdownException;
@@ -33,7 +36,10 @@ import java.util.concurrent.TimeUnit;
  */
 public class CacheManagerFactoryImpl implements CacheManagerFactory {
 
+    private static final int CACHE_EXPIRY_INTERVAL = 5;
     private static CacheCleanupTask cacheCleanupTask = new CacheCleanupTask();
+    private static CacheExecutionService executionService = new CacheExecutionService();
+    private static OffHeapStore offHeapStore = OffHeapStore.createDefaultStore();
     private static Random randomGenerator = new Random();
 
     static {
@@ -47,7 +53,22 @@ public class CacheManagerFactoryImpl implements CacheManagerFactory {
         };
         ScheduledExecutorService cacheExpiryScheduler =
                 Executors.newScheduledThreadPool(10, threadFactory);
-        cacheExpiryScheduler.scheduleWithFixedDelay(cacheCleanupTask, 30, 30, TimeUnit.SECONDS);
+        cacheExpiryScheduler.scheduleWithFixedDelay(cacheCleanupTask, CACHE_EXPIRY_INTERVAL, CACHE_EXPIRY_INTERVAL,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the thread pools shared by all caches, for cache loaders and timestamp replication
+     */
+    public static CacheExecutionService getExecutionService() {
+        return executionService;
+    }
+
+    /**
+     * @return the off-heap store shared by all caches, for the values of idle entries
+     */
+    public static OffHeapStore getOffHeapStore() {
+        return offHeapStore;
     }
 
     static void addCacheForMonitoring(CacheImpl cache) {
@@ -99,6 +120,29 @@ public class CacheManagerFactoryImpl implements CacheManagerFactory {
         return cacheManager;
     }
 
+    /**
+     * Get a cache of the current tenant, without creating the cache or its cache manager if they do not exist.
+     *
+     * @param cacheManagerName the name of the cache manager
+     * @param cacheName        the name of the cache
+     * @return the cache, or null if it has not been created
+     */
+    public <K, V> Cache<K, V> getExistingCache(String cacheManagerName, String cacheName) {
+        String tenantDomain = Util.getTenantDomain();
+        if (tenantDomain == null) {
+            return null;
+        }
+        Map<String, CacheManager> cacheManagers = globalCacheManagerMap.get(tenantDomain);
+        if (cacheManagers == null) {
+            return null;
+        }
+        CacheManager cacheManager = cacheManagers.get(cacheManagerName);
+        if (!(cacheManager instanceof CarbonCacheManager)) {
+            return null;
+        }
+        return ((CarbonCacheManager) cacheManager).getExistingCache(cacheName);
+    }
+
     @Override
     public CacheManager getCacheManager(ClassLoader classLoader, String name) {
         // Since we have a single CacheManager, we don't have to take the ClassLoader into consideration
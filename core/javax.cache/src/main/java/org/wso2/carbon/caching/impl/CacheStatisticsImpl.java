@@ -20,6 +20,7 @@ package org.wso2.carbon.caching.impl;
 import javax.cache.CacheStatistics;
 import javax.cache.Status;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TODO: class description
@@ -34,6 +35,106 @@ public class CacheStatisticsImpl implements CacheStatistics {
     private long cacheRemovals;
     private long cacheEvictions;
 
+    private final AtomicLong timestampReplicationBatches = new AtomicLong();
+    private final AtomicLong replicatedTimestamps = new AtomicLong();
+    private final AtomicLong skippedTimestamps = new AtomicLong();
+    private final AtomicLong timestampReplicationBytes = new AtomicLong();
+    private volatile int lastTimestampReplicationBatchSize;
+
+    private final AtomicLong offHeapEntries = new AtomicLong();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+    private final AtomicLong offHeapDemotions = new AtomicLong();
+    private final AtomicLong offHeapPromotions = new AtomicLong();
+
+    /**
+     * Record a batch of access timestamps sent to the cluster
+     *
+     * @param batchSize the number of timestamps in the batch
+     * @param bytes     the estimated size of the batch in bytes
+     */
+    void recordTimestampReplication(int batchSize, long bytes) {
+        timestampReplicationBatches.incrementAndGet();
+        replicatedTimestamps.addAndGet(batchSize);
+        timestampReplicationBytes.addAndGet(bytes);
+        lastTimestampReplicationBatchSize = batchSize;
+    }
+
+    /**
+     * Record an access timestamp which was not replicated since it was too close to the last replicated one
+     */
+    void recordSkippedTimestamp() {
+        skippedTimestamps.incrementAndGet();
+    }
+
+    /**
+     * Record an idle entry which has been moved off-heap
+     *
+     * @param bytes the number of off-heap bytes allocated for the entry
+     */
+    void recordOffHeapDemotion(int bytes) {
+        offHeapDemotions.incrementAndGet();
+        offHeapEntries.incrementAndGet();
+        offHeapBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Record an off-heap entry which has been moved back on-heap since it was read
+     *
+     * @param bytes the number of off-heap bytes released
+     */
+    void recordOffHeapPromotion(int bytes) {
+        offHeapPromotions.incrementAndGet();
+        recordOffHeapRelease(bytes);
+    }
+
+    /**
+     * Record the release of the off-heap copy of an entry
+     *
+     * @param bytes the number of off-heap bytes released, 0 if nothing was released
+     */
+    void recordOffHeapRelease(int bytes) {
+        if (bytes > 0) {
+            offHeapEntries.decrementAndGet();
+            offHeapBytes.addAndGet(-bytes);
+        }
+    }
+
+    public long getOffHeapEntries() {
+        return offHeapEntries.get();
+    }
+
+    public long getOffHeapBytes() {
+        return offHeapBytes.get();
+    }
+
+    public long getOffHeapDemotions() {
+        return offHeapDemotions.get();
+    }
+
+    public long getOffHeapPromotions() {
+        return offHeapPromotions.get();
+    }
+
+    public long getTimestampReplicationBatches() {
+        return timestampReplicationBatches.get();
+    }
+
+    public long getReplicatedTimestamps() {
+        return replicatedTimestamps.get();
+    }
+
+    public long getSkippedTimestamps() {
+        return skippedTimestamps.get();
+    }
+
+    public long getTimestampReplicationBytes() {
+        return timestampReplicationBytes.get();
+    }
+
+    public int getLastTimestampReplicationBatchSize() {
+        return lastTimestampReplicationBatchSize;
+    }
+
     @Override
     public void clear() {
         cacheGets = 0;
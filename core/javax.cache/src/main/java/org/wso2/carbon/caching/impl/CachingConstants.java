@@ -18,7 +18,7 @@
 package org.wso2.carbon.caching.impl;
 
 import org.wso2.carbon.caching.impl.eviction.EvictionAlgorithm;
-import org.wso2.carbon.caching.impl.eviction.LeastRecentlyUsedEvictionAlgorithm;
+import org.wso2.carbon.caching.impl.eviction.EvictionUtil;
 
 /**
  * TODO: class description
@@ -26,7 +26,7 @@ import org.wso2.carbon.caching.impl.eviction.LeastRecentlyUsedEvictionAlgorithm;
 public final class CachingConstants {
 
     public static final int DEFAULT_CACHE_CAPACITY = 10000;
-    public static final EvictionAlgorithm DEFAULT_EVICTION_ALGORITHM = new LeastRecentlyUsedEvictionAlgorithm();
+    public static final EvictionAlgorithm DEFAULT_EVICTION_ALGORITHM = EvictionUtil.getDefaultEvictionAlgorithm();
     public static final double CACHE_EVICTION_FACTOR = 0.25;
     public static final long MAX_CACHE_IDLE_TIME_MILLIS = 15 * 60 * 1000; // 15mins
 
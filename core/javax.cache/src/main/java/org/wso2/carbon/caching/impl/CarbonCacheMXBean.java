@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+import javax.cache.mbeans.CacheMXBean;
+
+/**
+ * CacheMXBean with additional Carbon specific attributes
+ */
+public interface CarbonCacheMXBean extends CacheMXBean {
+
+    /**
+     * @return the number of cache loader tasks of the owner tenant which are waiting for a thread
+     */
+    int getTenantPendingLoadCount();
+
+    /**
+     * @return the number of cache loader tasks of all tenants which are waiting for a thread
+     */
+    int getPendingLoadCount();
+
+    /**
+     * @return the number of cache loader threads which are currently running a task
+     */
+    int getActiveLoaderCount();
+
+    /**
+     * @return the number of access timestamp batches sent to the cluster
+     */
+    long getTimestampReplicationBatches();
+
+    /**
+     * @return the number of access timestamps sent to the cluster
+     */
+    long getReplicatedTimestamps();
+
+    /**
+     * @return the number of access timestamps which were not sent, since they were too close to the last sent one
+     */
+    long getSkippedTimestamps();
+
+    /**
+     * @return the estimated number of bytes of access timestamps sent to the cluster
+     */
+    long getTimestampReplicationBytes();
+
+    /**
+     * @return the number of access timestamps in the last batch sent to the cluster
+     */
+    int getLastTimestampReplicationBatchSize();
+
+    /**
+     * @return the number of entries of which the value is held off-heap
+     */
+    long getOffHeapEntries();
+
+    /**
+     * @return the number of off-heap bytes allocated for the values of this cache
+     */
+    long getOffHeapBytes();
+
+    /**
+     * @return the number of idle entries which have been moved off-heap
+     */
+    long getOffHeapDemotions();
+
+    /**
+     * @return the number of off-heap entries which have been moved back on-heap since they were read
+     */
+    long getOffHeapPromotions();
+}
@@ -0,0 +1,29 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+/**
+ * A {@link MapEntryListener} which is also notified of the new values of changed entries, so that it does not have to
+ * read them back from the distributed Map. A provider which cannot deliver the values notifies it through the
+ * {@link MapEntryListener} methods instead.
+ */
+public interface MapEntryValueListener extends MapEntryListener {
+    <X, Y> void entryAdded(X key, Y value);
+
+    <X, Y> void entryUpdated(X key, Y value);
+}
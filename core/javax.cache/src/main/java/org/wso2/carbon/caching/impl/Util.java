@@ -70,6 +70,36 @@ public final class Util {
                 cacheManagerName + "#" + cacheName;
     }
 
+    /**
+     * Estimate of the serialized size of a cache key, used for replication statistics. Numbers are counted as 8 bytes,
+     * and other keys as the UTF-8 encoded length of their string form.
+     *
+     * @param key the cache key
+     * @return the estimated size in bytes
+     */
+    static long estimateSize(Object key) {
+        if (key instanceof Number) {
+            return 8;
+        }
+        String keyString = String.valueOf(key);
+        long bytes = 0;
+        for (int i = 0; i < keyString.length(); i++) {
+            char c = keyString.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < keyString.length() &&
+                    Character.isLowSurrogate(keyString.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
     public static String getTenantDomain() {
         return getCarbonContext().getTenantDomain();
     }
@@ -0,0 +1,37 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.eviction;
+
+/**
+ * An {@link EvictionAlgorithm} which keeps the cache within its capacity on every put, using an
+ * {@link EvictionTracker} owned by each cache.
+ * <p/>
+ * A cache which uses a bounded eviction algorithm evicts entries as soon as its capacity is exceeded, hence the
+ * periodic cache cleanup task does not have to sort the cache entries to find eviction candidates.
+ */
+public interface BoundedEvictionAlgorithm extends EvictionAlgorithm {
+
+    /**
+     * Create the eviction bookkeeping for a single cache
+     *
+     * @param capacity the maximum number of entries of the cache
+     * @param <K>      the type of the cache key
+     * @return a new EvictionTracker
+     */
+    <K> EvictionTracker<K> createTracker(long capacity);
+}
@@ -0,0 +1,68 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.eviction;
+
+/**
+ * Per cache bookkeeping used by a {@link BoundedEvictionAlgorithm} to keep a cache within its capacity
+ * while entries are being added, instead of waiting for the periodic cache cleanup task.
+ * <p/>
+ * All operations are expected to run in amortized constant time.
+ *
+ * @param <K> the type of the cache key
+ */
+public interface EvictionTracker<K> {
+
+    /**
+     * Record that an entry has been added to, or updated in, the cache
+     *
+     * @param key the key of the entry
+     */
+    void recordWrite(K key);
+
+    /**
+     * Record that an entry has been read from the cache. Implementations may drop access records under
+     * contention, since they only affect the precision of the eviction order.
+     *
+     * @param key the key of the entry
+     */
+    void recordAccess(K key);
+
+    /**
+     * Record that an entry has been removed from the cache
+     *
+     * @param key the key of the entry
+     */
+    void recordRemoval(K key);
+
+    /**
+     * Select the next entry to be evicted and stop tracking it
+     *
+     * @return the key of the entry to be evicted, or null if nothing is being tracked
+     */
+    K nextVictim();
+
+    /**
+     * Stop tracking all entries
+     */
+    void clear();
+
+    /**
+     * @param capacity the new maximum number of entries of the cache
+     */
+    void setCapacity(long capacity);
+}
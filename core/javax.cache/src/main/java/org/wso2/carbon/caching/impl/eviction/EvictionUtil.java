@@ -17,6 +17,8 @@
 */
 package org.wso2.carbon.caching.impl.eviction;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.caching.impl.CacheImpl;
 import org.wso2.carbon.caching.impl.CarbonCacheManager;
 
@@ -24,6 +26,34 @@ import org.wso2.carbon.caching.impl.CarbonCacheManager;
  * TODO: class description
  */
 public class EvictionUtil {
+    private static final Log log = LogFactory.getLog(EvictionUtil.class);
+
+    /**
+     * System property used to select the default eviction algorithm. One of LRU, MRU, RANDOM or SLRU
+     */
+    public static final String EVICTION_ALGORITHM_PROPERTY = "cache.eviction.algorithm";
+
+    /**
+     * Get the eviction algorithm which is used by caches that have not been configured with one explicitly.
+     * Defaults to {@link LeastRecentlyUsedEvictionAlgorithm} if the {@link #EVICTION_ALGORITHM_PROPERTY} system
+     * property has not been set.
+     *
+     * @return the default eviction algorithm
+     */
+    public static EvictionAlgorithm getDefaultEvictionAlgorithm() {
+        String algorithm = System.getProperty(EVICTION_ALGORITHM_PROPERTY);
+        if (algorithm == null || "LRU".equalsIgnoreCase(algorithm)) {
+            return new LeastRecentlyUsedEvictionAlgorithm();
+        } else if ("MRU".equalsIgnoreCase(algorithm)) {
+            return new MostRecentlyUsedEvictionAlgorithm();
+        } else if ("RANDOM".equalsIgnoreCase(algorithm)) {
+            return new RandomEvictionAlgorithm();
+        } else if ("SLRU".equalsIgnoreCase(algorithm)) {
+            return new SegmentedLeastRecentlyUsedEvictionAlgorithm();
+        }
+        log.warn("Unknown cache eviction algorithm " + algorithm + ". Using LRU eviction.");
+        return new LeastRecentlyUsedEvictionAlgorithm();
+    }
 
     /**
      * @deprecated Do not use this method
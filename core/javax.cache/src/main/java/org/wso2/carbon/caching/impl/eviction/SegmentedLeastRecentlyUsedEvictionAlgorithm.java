@@ -0,0 +1,169 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.eviction;
+
+import org.wso2.carbon.caching.impl.CacheEntry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Segmented LRU (SLRU) eviction algorithm.
+ * <p/>
+ * Newly added entries go into a probationary segment. Entries which are read again while on probation are
+ * promoted to a protected segment, which is limited to {@link #PROTECTED_SEGMENT_RATIO} of the cache capacity.
+ * Entries demoted from the protected segment go back to probation. Victims are taken from the least recently
+ * used end of the probationary segment first, so that a burst of one-time entries cannot flush the frequently
+ * used entries out of the cache.
+ * <p/>
+ * Both segments are linked hash maps, hence recording a read or a write and selecting a victim are constant
+ * time operations.
+ */
+public class SegmentedLeastRecentlyUsedEvictionAlgorithm implements BoundedEvictionAlgorithm {
+
+    public static final double PROTECTED_SEGMENT_RATIO = 0.8;
+
+    @Override
+    public CacheEntry getEntryForEviction(TreeSet<CacheEntry> evictionSet) {
+        return evictionSet.pollFirst();
+    }
+
+    @Override
+    public <K> EvictionTracker<K> createTracker(long capacity) {
+        return new SegmentedLRUTracker<K>(capacity);
+    }
+
+    private static final class SegmentedLRUTracker<K> implements EvictionTracker<K> {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // Both segments are access ordered, so the eldest entry is the least recently used one
+        private final LinkedHashMap<K, Boolean> probationSegment = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+        private final LinkedHashMap<K, Boolean> protectedSegment = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+        private long maxProtectedSize;
+
+        private SegmentedLRUTracker(long capacity) {
+            setCapacity(capacity);
+        }
+
+        @Override
+        public void recordWrite(K key) {
+            lock.lock();
+            try {
+                if (protectedSegment.get(key) == null && probationSegment.put(key, Boolean.TRUE) != null) {
+                    // An update of an entry which is on probation counts as a reuse
+                    promote(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void recordAccess(K key) {
+            // Reads are on the hot path of the cache; losing an access record under contention only makes
+            // the eviction order slightly less accurate, so do not block readers
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                if (protectedSegment.get(key) == null && probationSegment.containsKey(key)) {
+                    promote(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void recordRemoval(K key) {
+            lock.lock();
+            try {
+                if (probationSegment.remove(key) == null) {
+                    protectedSegment.remove(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public K nextVictim() {
+            lock.lock();
+            try {
+                K victim = removeEldest(probationSegment);
+                if (victim == null) {
+                    victim = removeEldest(protectedSegment);
+                }
+                return victim;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void clear() {
+            lock.lock();
+            try {
+                probationSegment.clear();
+                protectedSegment.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void setCapacity(long capacity) {
+            lock.lock();
+            try {
+                // Keep the protected segment strictly smaller than the cache, so that an entry which has just
+                // been added is never the eviction victim
+                maxProtectedSize = Math.max(0, Math.min(capacity - 1, (long) (capacity * PROTECTED_SEGMENT_RATIO)));
+                while (protectedSegment.size() > maxProtectedSize) {
+                    probationSegment.put(removeEldest(protectedSegment), Boolean.TRUE);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void promote(K key) {
+            probationSegment.remove(key);
+            if (maxProtectedSize == 0) {
+                probationSegment.put(key, Boolean.TRUE);
+                return;
+            }
+            protectedSegment.put(key, Boolean.TRUE);
+            if (protectedSegment.size() > maxProtectedSize) {
+                probationSegment.put(removeEldest(protectedSegment), Boolean.TRUE);
+            }
+        }
+
+        private K removeEldest(Map<K, Boolean> segment) {
+            Iterator<K> iterator = segment.keySet().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            K eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+}
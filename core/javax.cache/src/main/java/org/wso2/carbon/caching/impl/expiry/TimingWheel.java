@@ -0,0 +1,193 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.expiry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel which indexes cache keys by their expiry deadline.
+ * <p/>
+ * The wheel has {@link #LEVELS} levels of {@link #WHEEL_SIZE} buckets each. A bucket on level n covers
+ * WHEEL_SIZE^n ticks, and keys held on a higher level are cascaded down to a lower level as the wheel turns.
+ * Scheduling and cancelling a key are constant time operations, and advancing the wheel only touches the
+ * buckets of the ticks that have passed, so the cost of finding the keys which are due is proportional to
+ * the number of those keys rather than the number of keys in the wheel.
+ * <p/>
+ * Deadlines are recorded at the time of scheduling. Since the last accessed time of a cache entry changes on
+ * every read, a key which is returned by {@link #advance(long)} has to be checked against its entry and
+ * scheduled again if it is not due yet.
+ *
+ * @param <K> the type of the cache key
+ */
+public class TimingWheel<K> {
+
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Set<K>[][] buckets;
+    private final Map<K, Timer> timers = new HashMap<K, Timer>();
+    private long currentTick;
+
+    public TimingWheel() {
+        this(DEFAULT_TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startTimeMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new Set[LEVELS][WHEEL_SIZE];
+        this.currentTick = startTimeMillis / tickMillis;
+    }
+
+    /**
+     * Schedule a key for expiry, replacing any existing schedule of the same key
+     *
+     * @param key      the cache key
+     * @param deadline the time in milliseconds at which the key expires
+     */
+    public synchronized void schedule(K key, long deadline) {
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = new Timer();
+            timers.put(key, timer);
+        } else {
+            timer.bucket.remove(key);
+        }
+        timer.deadlineTick = (deadline + tickMillis - 1) / tickMillis;
+        place(key, timer);
+    }
+
+    /**
+     * Stop tracking the expiry of a key
+     *
+     * @param key the cache key
+     */
+    public synchronized void cancel(K key) {
+        Timer timer = timers.remove(key);
+        if (timer != null) {
+            timer.bucket.remove(key);
+        }
+    }
+
+    /**
+     * Stop tracking all keys
+     */
+    public synchronized void clear() {
+        timers.clear();
+        for (Set<K>[] level : buckets) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                level[i] = null;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Turn the wheel up to the given time. The keys which are due are removed from the wheel.
+     *
+     * @param now the current time in milliseconds
+     * @return the keys of which the deadline has passed
+     */
+    public synchronized List<K> advance(long now) {
+        List<K> dueKeys = new ArrayList<K>();
+        long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Move the keys of the higher level bucket which has just become current, down the wheel
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+            }
+            int index = (int) (currentTick & WHEEL_MASK);
+            Set<K> bucket = buckets[0][index];
+            if (bucket != null && !bucket.isEmpty()) {
+                for (K key : bucket) {
+                    timers.remove(key);
+                    dueKeys.add(key);
+                }
+                buckets[0][index] = null;
+            }
+            if (timers.isEmpty()) {
+                // Nothing left to be found on the way, so jump straight to the target
+                currentTick = targetTick;
+            }
+        }
+        return dueKeys;
+    }
+
+    private void cascade(int level, int index) {
+        Set<K> bucket = buckets[level][index];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+        buckets[level][index] = null;
+        for (K key : bucket) {
+            place(key, timers.get(key));
+        }
+    }
+
+    private void place(K key, Timer timer) {
+        long delay = timer.deadlineTick - currentTick;
+        long tick = timer.deadlineTick;
+        if (delay <= 0) {
+            // Already due, will be returned on the next tick
+            delay = 1;
+            tick = currentTick + 1;
+        } else if (delay > MAX_DELAY_TICKS) {
+            // Park it as far as the wheel reaches; it will be cascaded and placed again from there
+            delay = MAX_DELAY_TICKS;
+            tick = currentTick + MAX_DELAY_TICKS;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Set<K> bucket = buckets[level][index];
+        if (bucket == null) {
+            bucket = new HashSet<K>();
+            buckets[level][index] = bucket;
+        }
+        bucket.add(key);
+        timer.bucket = bucket;
+    }
+
+    private static final class Timer {
+        private long deadlineTick;
+        private Set<?> bucket;
+    }
+}
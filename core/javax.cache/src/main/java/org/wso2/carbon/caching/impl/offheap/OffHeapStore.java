@@ -0,0 +1,228 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.offheap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage for serialized cache values outside of the Java heap, shared by all the caches which hold their idle
+ * entries off-heap.
+ * <p/>
+ * The memory is allocated as direct buffer slabs of {@link #SLAB_SIZE} bytes, on demand and up to the configured
+ * capacity. Each slab is split into blocks of {@link #BLOCK_SIZE} bytes, and a value occupies as many blocks as
+ * its serialized form needs. Freed blocks are reused by later values, hence the slabs are never released.
+ */
+public class OffHeapStore {
+    private static final Log log = LogFactory.getLog(OffHeapStore.class);
+
+    /**
+     * System property holding the maximum amount of memory, in megabytes, used to store cache values off-heap
+     */
+    public static final String CAPACITY_PROPERTY = "cache.offheap.capacity";
+
+    /**
+     * System property holding the number of seconds for which an entry is not accessed before it is moved
+     * off-heap
+     */
+    public static final String IDLE_TIME_PROPERTY = "cache.offheap.idle.time";
+
+    /**
+     * System property holding a comma separated list of cache name prefixes. Caches of which the name starts with
+     * one of these prefixes hold their idle entries off-heap.
+     */
+    public static final String CACHES_PROPERTY = "cache.offheap.caches";
+
+    public static final int BLOCK_SIZE = 512;
+    public static final int SLAB_SIZE = 4 * 1024 * 1024;
+    private static final int BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+    private static final long DEFAULT_CAPACITY_MB = 64;
+    private static final long DEFAULT_IDLE_TIME_SECONDS = 5 * 60;
+
+    private final long capacity;
+    private final long idleTimeMillis;
+    private final String[] cachePrefixes;
+
+    // Slabs are only added while holding the lock of the store. A value which refers to the blocks of a slab is
+    // always handed over to other threads through a concurrent map, which makes the slab visible to them as well.
+    private final ByteBuffer[] slabs;
+    private int slabCount;
+    private int[] freeBlocks = new int[BLOCKS_PER_SLAB];
+    private int freeBlockCount;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public OffHeapStore(long capacity, long idleTimeMillis, String... cachePrefixes) {
+        this.slabs = new ByteBuffer[(int) Math.max(1, capacity / SLAB_SIZE)];
+        this.capacity = (long) slabs.length * SLAB_SIZE;
+        this.idleTimeMillis = idleTimeMillis;
+        this.cachePrefixes = cachePrefixes;
+    }
+
+    /**
+     * Create the store configured by the {@link #CAPACITY_PROPERTY}, {@link #IDLE_TIME_PROPERTY} and
+     * {@link #CACHES_PROPERTY} system properties. No memory is allocated until a value is stored.
+     *
+     * @return the off-heap store
+     */
+    public static OffHeapStore createDefaultStore() {
+        long capacityMB = getLongProperty(CAPACITY_PROPERTY, DEFAULT_CAPACITY_MB);
+        long idleTimeSeconds = getLongProperty(IDLE_TIME_PROPERTY, DEFAULT_IDLE_TIME_SECONDS);
+        String caches = System.getProperty(CACHES_PROPERTY);
+        String[] cachePrefixes = caches == null || caches.trim().length() == 0 ?
+                new String[0] : caches.trim().split("\\s*,\\s*");
+        return new OffHeapStore(capacityMB * 1024 * 1024, idleTimeSeconds * 1000, cachePrefixes);
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value " + value + " for " + name + ". Using " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Check whether a cache has been configured to hold its idle entries off-heap
+     *
+     * @param cacheName the name of the cache
+     * @return true if the name of the cache starts with one of the configured prefixes
+     */
+    public boolean isOffHeapCache(String cacheName) {
+        for (String prefix : cachePrefixes) {
+            if (cacheName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serialize a value into the store
+     *
+     * @param value the value
+     * @return the stored value, or null if there is not enough free memory left in the store
+     * @throws IOException if the value could not be serialized
+     */
+    public OffHeapValue store(Object value) throws IOException {
+        if (!(value instanceof Serializable)) {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BLOCK_SIZE);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        byte[] data = bytes.toByteArray();
+
+        int[] blocks = allocate((data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        if (blocks == null) {
+            return null;
+        }
+        for (int i = 0; i < blocks.length; i++) {
+            int offset = i * BLOCK_SIZE;
+            getBlock(blocks[i]).put(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+        }
+        return new OffHeapValue(this, blocks, data.length, value.getClass().getClassLoader());
+    }
+
+    byte[] read(int[] blocks, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < blocks.length; i++) {
+            int offset = i * BLOCK_SIZE;
+            getBlock(blocks[i]).get(data, offset, Math.min(BLOCK_SIZE, length - offset));
+        }
+        return data;
+    }
+
+    synchronized void free(int[] blocks) {
+        for (int block : blocks) {
+            freeBlocks[freeBlockCount++] = block;
+        }
+        usedBytes.addAndGet(-(long) blocks.length * BLOCK_SIZE);
+    }
+
+    private synchronized int[] allocate(int blockCount) {
+        while (freeBlockCount < blockCount) {
+            if (slabCount == slabs.length) {
+                return null;
+            }
+            addSlab();
+        }
+        int[] blocks = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = freeBlocks[--freeBlockCount];
+        }
+        usedBytes.addAndGet((long) blockCount * BLOCK_SIZE);
+        return blocks;
+    }
+
+    private void addSlab() {
+        slabs[slabCount] = ByteBuffer.allocateDirect(SLAB_SIZE);
+        int firstBlock = slabCount * BLOCKS_PER_SLAB;
+        slabCount++;
+        if (freeBlocks.length < slabCount * BLOCKS_PER_SLAB) {
+            int[] newFreeBlocks = new int[slabCount * BLOCKS_PER_SLAB];
+            System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeBlockCount);
+            freeBlocks = newFreeBlocks;
+        }
+        // Pushed in reverse so that the blocks of a new slab are handed out in order
+        for (int block = firstBlock + BLOCKS_PER_SLAB - 1; block >= firstBlock; block--) {
+            freeBlocks[freeBlockCount++] = block;
+        }
+    }
+
+    // A view of a single block, which does not share its position with concurrent readers and writers
+    private ByteBuffer getBlock(int block) {
+        ByteBuffer view = slabs[block / BLOCKS_PER_SLAB].duplicate();
+        view.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+        return view;
+    }
+
+    /**
+     * @return the number of bytes of the blocks which currently hold values
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the maximum number of bytes this store allocates
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the time for which an entry is not accessed before it is moved off-heap
+     */
+    public long getIdleTimeMillis() {
+        return idleTimeMillis;
+    }
+}
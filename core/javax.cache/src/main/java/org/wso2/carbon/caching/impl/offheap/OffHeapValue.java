@@ -0,0 +1,117 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.offheap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * A serialized value held in an {@link OffHeapStore}. The blocks of the value are returned to the store once it
+ * has been released, after which the value can no longer be read.
+ */
+public class OffHeapValue {
+    private static final Log log = LogFactory.getLog(OffHeapValue.class);
+
+    private final OffHeapStore store;
+    private final int[] blocks;
+    private final int length;
+    // The value is deserialized using the class loader of its class, which need not be visible to this bundle
+    private final ClassLoader classLoader;
+    private boolean released;
+
+    OffHeapValue(OffHeapStore store, int[] blocks, int length, ClassLoader classLoader) {
+        this.store = store;
+        this.blocks = blocks;
+        this.length = length;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Deserialize a copy of the value
+     *
+     * @return the value, or null if it has been released or could not be deserialized
+     */
+    public Object read() {
+        byte[] data;
+        synchronized (this) {
+            if (released) {
+                return null;
+            }
+            data = store.read(blocks, length);
+        }
+        try {
+            ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(data), classLoader);
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            log.error("Could not read off-heap cache value", e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the blocks of the value to the store
+     *
+     * @return true if the value was released by this call, false if it had already been released
+     */
+    public synchronized boolean release() {
+        if (released) {
+            return false;
+        }
+        released = true;
+        store.free(blocks);
+        return true;
+    }
+
+    /**
+     * @return the number of bytes of the blocks holding the value
+     */
+    public int getAllocatedBytes() {
+        return blocks.length * OffHeapStore.BLOCK_SIZE;
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+        private final ClassLoader classLoader;
+
+        private ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException ignored) {
+                    // Fall back to the default resolution, e.g. for classes of the JDK
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
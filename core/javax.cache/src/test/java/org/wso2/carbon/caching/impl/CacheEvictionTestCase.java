@@ -22,6 +22,7 @@ import org.testng.annotations.Test;
 import org.wso2.carbon.caching.impl.eviction.LeastRecentlyUsedEvictionAlgorithm;
 import org.wso2.carbon.caching.impl.eviction.MostRecentlyUsedEvictionAlgorithm;
 import org.wso2.carbon.caching.impl.eviction.RandomEvictionAlgorithm;
+import org.wso2.carbon.caching.impl.eviction.SegmentedLeastRecentlyUsedEvictionAlgorithm;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 
 import javax.cache.Cache;
@@ -242,4 +243,58 @@ public class CacheEvictionTestCase {
                     (int) (CachingConstants.DEFAULT_CACHE_CAPACITY * (1 - CachingConstants.CACHE_EVICTION_FACTOR)));
         }
     }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testSLRUCacheEviction() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager("testSLRUCacheEviction-manager");
+        String cacheName = "testSLRUCacheEviction";
+        Cache<String, Integer> cache = cacheManager.getCache(cacheName);
+
+        if (cache instanceof CacheImpl) {
+            CacheImpl cacheImpl = (CacheImpl) cache;
+            cacheImpl.setEvictionAlgorithm(new SegmentedLeastRecentlyUsedEvictionAlgorithm());
+            cacheImpl.setCapacity(10);
+
+            for (int i = 0; i < 5; i++) {
+                cache.put("hot" + i, i);
+                assertEquals(cache.get("hot" + i).intValue(), i);
+            }
+            // A scan of one-time entries must not flush the frequently used entries
+            for (int i = 0; i < 1000; i++) {
+                cache.put("cold" + i, i);
+                assertTrue(cacheImpl.getAll().size() <= 10);
+            }
+            for (int i = 0; i < 5; i++) {
+                assertEquals(cache.get("hot" + i).intValue(), i);
+            }
+            assertNull(cache.get("cold0"));
+            assertEquals(cache.get("cold999").intValue(), 999);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testDefaultSLRUCacheEviction() {
+        CacheManager cacheManager =
+                Caching.getCacheManagerFactory().getCacheManager("testDefaultSLRUCacheEviction-manager");
+        String cacheName = "testDefaultSLRUCacheEviction";
+        Cache<String, Integer> cache = cacheManager.getCache(cacheName);
+        if (cache instanceof CacheImpl) {
+            CacheImpl cacheImpl = (CacheImpl) cache;
+            cacheImpl.setEvictionAlgorithm(new SegmentedLeastRecentlyUsedEvictionAlgorithm());
+            for (int i = 0; i < 20000; i++) {
+                cache.put("key" + i, i);
+            }
+            assertEquals(cacheImpl.getAll().size(), CachingConstants.DEFAULT_CACHE_CAPACITY);
+            assertNull(cache.get("key0"));
+            assertEquals(cache.get("key19999").intValue(), 19999);
+
+            cache.remove("key19999");
+            cacheImpl.setCapacity(100);
+            assertEquals(cacheImpl.getAll().size(), 100);
+            cacheImpl.runCacheExpiry();
+            assertEquals(cacheImpl.getAll().size(), 100);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+*  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+
+import javax.cache.CacheException;
+import javax.cache.Caching;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests for the per tenant queueing of cache loader tasks
+ */
+public class CacheExecutionServiceTestCase {
+
+    public CacheExecutionServiceTestCase() {
+        System.setProperty("carbon.home", new File(".").getAbsolutePath());
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+          description = "A tenant flooding loads does not hold up the loads of another tenant",
+          timeOut = 30000)
+    public void testFloodingTenantDoesNotDelayOtherTenants() throws Exception {
+        CacheExecutionService executionService = new CacheExecutionService();
+        CacheImpl floodingCache = createCache(101, "flooding.com");
+        CacheImpl otherCache = createCache(102, "other.com");
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<FutureTask<Object>> floodingLoads = new ArrayList<FutureTask<Object>>();
+        for (int i = 0; i < 500; i++) {
+            FutureTask<Object> load = createBlockedLoad(release, null);
+            floodingLoads.add(load);
+            executionService.submitLoad(floodingCache, load);
+        }
+
+        FutureTask<Object> otherLoad = new FutureTask<Object>(new Runnable() {
+            public void run() {
+            }
+        }, null);
+        executionService.submitLoad(otherCache, otherLoad);
+        otherLoad.get(5, TimeUnit.SECONDS);
+
+        // only one load of the flooding tenant holds a loader thread, and the rest wait for it
+        assertEquals(executionService.getPendingLoadCount(101), 499);
+        assertEquals(executionService.getPendingLoadCount(102), 0);
+
+        release.countDown();
+        for (FutureTask<Object> load : floodingLoads) {
+            load.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(executionService.getPendingLoadCount(101), 0);
+        assertEquals(executionService.getPendingLoadCount(), 0);
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+          description = "Loads above the pending limit of a tenant are rejected",
+          timeOut = 30000)
+    public void testPendingLoadLimit() throws Exception {
+        CacheExecutionService executionService = new CacheExecutionService();
+        CacheImpl cache = createCache(103, "limited.com");
+        CacheImpl otherCache = createCache(104, "unlimited.com");
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        FutureTask<Object> runningLoad = createBlockedLoad(release, started);
+        executionService.submitLoad(cache, runningLoad);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < CacheExecutionService.MAX_PENDING_LOADS_PER_TENANT; i++) {
+            executionService.submitLoad(cache, createBlockedLoad(release, null));
+        }
+        assertEquals(executionService.getPendingLoadCount(103),
+                     CacheExecutionService.MAX_PENDING_LOADS_PER_TENANT);
+        try {
+            executionService.submitLoad(cache, createBlockedLoad(release, null));
+            fail("The load above the pending limit should have been rejected");
+        } catch (CacheException expected) {
+        }
+        assertEquals(executionService.getPendingLoadCount(103),
+                     CacheExecutionService.MAX_PENDING_LOADS_PER_TENANT);
+
+        // the limit is per tenant
+        FutureTask<Object> otherLoad = createBlockedLoad(release, null);
+        executionService.submitLoad(otherCache, otherLoad);
+
+        release.countDown();
+        otherLoad.get(10, TimeUnit.SECONDS);
+        runningLoad.get(10, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executionService.getPendingLoadCount(103) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "The pending loads were not run");
+            Thread.sleep(10);
+        }
+        FutureTask<Object> nextLoad = createBlockedLoad(release, null);
+        executionService.submitLoad(cache, nextLoad);
+        nextLoad.get(5, TimeUnit.SECONDS);
+    }
+
+    private CacheImpl createCache(int tenantId, String tenantDomain) {
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext cc = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            cc.setTenantDomain(tenantDomain);
+            cc.setTenantId(tenantId);
+            return (CacheImpl) Caching.getCacheManagerFactory().getCacheManager("executionTest").
+                    getCache("executionTestCache");
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    private static FutureTask<Object> createBlockedLoad(final CountDownLatch release,
+                                                        final CountDownLatch started) {
+        return new FutureTask<Object>(new Runnable() {
+            public void run() {
+                if (started != null) {
+                    started.countDown();
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, null);
+    }
+}
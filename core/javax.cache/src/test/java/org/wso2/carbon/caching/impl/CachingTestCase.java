@@ -22,6 +22,7 @@ import org.wso2.carbon.caching.impl.eviction.EvictionUtil;
 import org.wso2.carbon.caching.impl.eviction.LeastRecentlyUsedEvictionAlgorithm;
 import org.wso2.carbon.caching.impl.eviction.MostRecentlyUsedEvictionAlgorithm;
 import org.wso2.carbon.caching.impl.eviction.RandomEvictionAlgorithm;
+import org.wso2.carbon.caching.impl.offheap.OffHeapStore;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 
 import javax.cache.Cache;
@@ -38,6 +39,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * TODO: class description
@@ -259,4 +261,70 @@ public class CachingTestCase {
         ((CacheImpl) cache).runCacheExpiry();
         assertNull(cache.get(key));
     }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+          description = "")
+    public void testCacheAccessExpiry() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager("testCacheExpiry-manager");
+        String cacheName = "testCacheAccessExpiry";
+        Cache<String, Integer> cache = cacheManager.<String, Integer>createCacheBuilder(cacheName).
+                setExpiry(CacheConfiguration.ExpiryType.ACCESSED, new CacheConfiguration.Duration(TimeUnit.SECONDS, 2)).
+                setExpiry(CacheConfiguration.ExpiryType.MODIFIED, new CacheConfiguration.Duration(TimeUnit.MINUTES, 1)).
+                setStoreByValue(false).build();
+        cache.put("accessed", 1);
+        cache.put("idle", 2);
+        for (int i = 0; i < 3; i++) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ignored) {
+            }
+            assertEquals(cache.get("accessed").intValue(), 1);
+            ((CacheImpl) cache).runCacheExpiry();
+        }
+        assertNotNull(cache.get("accessed"));
+        assertNull(cache.get("idle"));
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+          description = "")
+    public void testOffHeapEntries() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager("testOffHeap-manager");
+        Cache<String, Object> cache = cacheManager.getCache("testOffHeapEntries");
+        CacheImpl<String, Object> cacheImpl = (CacheImpl<String, Object>) cache;
+        cacheImpl.setOffHeapEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, new SerializableTestObject("name" + i, "address" + i, (long) i));
+        }
+        Object notSerializable = new Object();
+        cache.put("notSerializable", notSerializable);
+        cache.get("key9");
+        // All the entries but key9 have been idle for long enough
+        for (CacheEntry<String, Object> entry : cacheImpl.getAll()) {
+            if (!entry.getKey().equals("key9")) {
+                entry.setLastAccessed(0L);
+            }
+        }
+        cacheImpl.moveIdleEntriesOffHeap();
+
+        CacheStatisticsImpl statistics = (CacheStatisticsImpl) cache.getStatistics();
+        assertEquals(statistics.getOffHeapEntries(), 9);
+        assertTrue(statistics.getOffHeapBytes() >= 9 * OffHeapStore.BLOCK_SIZE);
+        assertEquals(cache.get("notSerializable"), notSerializable);
+
+        SerializableTestObject value = (SerializableTestObject) cache.get("key3");
+        assertEquals(value.getName(), "name3");
+        assertEquals(value.getId().longValue(), 3);
+        assertEquals(statistics.getOffHeapPromotions(), 1);
+        assertEquals(statistics.getOffHeapEntries(), 8);
+
+        cache.remove("key4");
+        cache.put("key5", "replaced");
+        assertEquals(cache.get("key5"), "replaced");
+        assertEquals(statistics.getOffHeapEntries(), 6);
+
+        cacheImpl.setOffHeapEnabled(false);
+        assertEquals(statistics.getOffHeapEntries(), 0);
+        assertEquals(statistics.getOffHeapBytes(), 0);
+        assertEquals(((SerializableTestObject) cache.get("key0")).getAddress(), "address0");
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.caching.impl;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for caches backed by a distributed map
+ */
+public class DistributedCachingTestCase {
+
+    public DistributedCachingTestCase() {
+        System.setProperty("carbon.home", new File(".").getAbsolutePath());
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain("foo.com");
+        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(1);
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testNearCacheInvalidation() {
+        String cacheManagerName = "testNearCacheInvalidation-manager";
+        String cacheName = "testNearCacheInvalidation";
+        TestDistributedMapProvider mapProvider = new TestDistributedMapProvider();
+        setDistributedMapProvider(mapProvider);
+        try {
+            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(cacheManagerName);
+            Cache<String, String> cache = cacheManager.getCache(cacheName);
+            String mapName = Util.getDistributedMapNameOfCache(cacheName, "foo.com", cacheManagerName);
+            TestDistributedMapProvider.RecordingMap distributedMap = mapProvider.getRecordingMap(mapName);
+
+            cache.put("key", "value1");
+            assertEquals(cache.get("key"), "value1");
+            assertEquals(distributedMap.gets.get(), 0);
+
+            // Another member updates the entry
+            distributedMap.put("key", new CacheEntry<String, String>("key", "value2"));
+            mapProvider.getListener(mapName).entryUpdated("key");
+            assertEquals(distributedMap.gets.get(), 0, "The listener must not fetch the new value");
+
+            assertEquals(cache.get("key"), "value2");
+            assertEquals(cache.get("key"), "value2");
+            assertEquals(distributedMap.gets.get(), 1);
+
+            // Another member removes the entry
+            distributedMap.remove("key");
+            mapProvider.getListener(mapName).entryRemoved("key");
+            assertNull(cache.get("key"));
+        } finally {
+            setDistributedMapProvider(null);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testBulkOperations() {
+        String cacheManagerName = "testBulkOperations-manager";
+        String cacheName = "testBulkOperations";
+        TestDistributedMapProvider mapProvider = new TestDistributedMapProvider();
+        setDistributedMapProvider(mapProvider);
+        try {
+            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(cacheManagerName);
+            Cache<String, Integer> cache = cacheManager.getCache(cacheName);
+            String mapName = Util.getDistributedMapNameOfCache(cacheName, "foo.com", cacheManagerName);
+            TestDistributedMapProvider.RecordingMap distributedMap = mapProvider.getRecordingMap(mapName);
+
+            Map<String, Integer> values = new HashMap<String, Integer>();
+            for (int i = 0; i < 100; i++) {
+                values.put("key" + i, i);
+            }
+            cache.putAll(values);
+            assertEquals(distributedMap.bulkOperations.get(), 1);
+            assertEquals(distributedMap.puts.get(), 0);
+            assertEquals(distributedMap.size(), 100);
+
+            // Entries which are only available in the distributed cache, e.g. added by another member
+            for (int i = 100; i < 150; i++) {
+                distributedMap.put("key" + i, new CacheEntry<String, Integer>("key" + i, i));
+            }
+            Set<String> keys = new HashSet<String>();
+            for (int i = 90; i < 160; i++) {
+                keys.add("key" + i);
+            }
+            Map<String, Integer> result = cache.getAll(keys);
+            assertEquals(result.size(), 60);
+            assertEquals(result.get("key120").intValue(), 120);
+            assertFalse(result.containsKey("key155"));
+            assertEquals(distributedMap.bulkOperations.get(), 2);
+            assertEquals(distributedMap.gets.get(), 0);
+
+            // The fetched entries are now available locally
+            assertEquals(cache.get("key149").intValue(), 149);
+            assertEquals(distributedMap.gets.get(), 0);
+
+            cache.removeAll(keys);
+            assertEquals(distributedMap.bulkOperations.get(), 3);
+            assertEquals(distributedMap.size(), 90);
+            assertNull(cache.get("key95"));
+            assertEquals(cache.get("key89").intValue(), 89);
+        } finally {
+            setDistributedMapProvider(null);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testLocalInvalidation() {
+        String cacheManagerName = "testLocalInvalidation-manager";
+        String cacheName = "testLocalInvalidation";
+        TestDistributedMapProvider mapProvider = new TestDistributedMapProvider();
+        setDistributedMapProvider(mapProvider);
+        try {
+            CacheManagerFactoryImpl cacheManagerFactory =
+                    (CacheManagerFactoryImpl) Caching.getCacheManagerFactory();
+            assertNull(cacheManagerFactory.getExistingCache(cacheManagerName, cacheName));
+
+            Cache<String, String> cache = cacheManagerFactory.getCacheManager(cacheManagerName).getCache(cacheName);
+            assertSame(cacheManagerFactory.getExistingCache(cacheManagerName, cacheName), cache);
+            assertNull(cacheManagerFactory.getExistingCache(cacheManagerName, "unknown"));
+            String mapName = Util.getDistributedMapNameOfCache(cacheName, "foo.com", cacheManagerName);
+            TestDistributedMapProvider.RecordingMap distributedMap = mapProvider.getRecordingMap(mapName);
+
+            cache.put("key1", "value1");
+            cache.put("key2", "value1");
+            // Another member updates an entry, and invalidates it over the invalidation topic
+            distributedMap.put("key1", new CacheEntry<String, String>("key1", "value2"));
+            ((CacheImpl<String, String>) cache).invalidateLocalEntries(Collections.singleton("key1"));
+            assertEquals(distributedMap.size(), 2, "The distributed cache must not be changed");
+            assertEquals(distributedMap.gets.get(), 0);
+            assertEquals(cache.get("key1"), "value2");
+            assertEquals(cache.get("key2"), "value1");
+            assertEquals(distributedMap.gets.get(), 1);
+
+            ((CacheImpl<String, String>) cache).invalidateAllLocalEntries();
+            assertEquals(distributedMap.size(), 2, "The distributed cache must not be changed");
+            assertEquals(cache.get("key2"), "value1");
+            assertEquals(distributedMap.gets.get(), 2);
+        } finally {
+            setDistributedMapProvider(null);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testConditionalReplace() {
+        String cacheManagerName = "testConditionalReplace-manager";
+        String cacheName = "testConditionalReplace";
+        TestDistributedMapProvider mapProvider = new TestDistributedMapProvider();
+        setDistributedMapProvider(mapProvider);
+        try {
+            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(cacheManagerName);
+            Cache<String, String> cache = cacheManager.getCache(cacheName);
+            String mapName = Util.getDistributedMapNameOfCache(cacheName, "foo.com", cacheManagerName);
+            TestDistributedMapProvider.RecordingMap distributedMap = mapProvider.getRecordingMap(mapName);
+
+            cache.put("key", "value1");
+            assertTrue(cache.replace("key", "value1", "value2"));
+            assertEquals(((CacheEntry) distributedMap.get("key")).getValue(), "value2");
+            assertEquals(cache.get("key"), "value2");
+
+            // Another member replaces the entry, and the local copy has not caught up with it yet
+            distributedMap.put("key", new CacheEntry<String, String>("key", "value3"));
+            assertFalse(cache.replace("key", "value2", "value4"),
+                        "The replace must be compared against the distributed entry");
+            assertEquals(((CacheEntry) distributedMap.get("key")).getValue(), "value3");
+            assertEquals(cache.get("key"), "value3", "The stale local copy must be dropped");
+
+            assertTrue(cache.replace("key", "value3", "value4"));
+            assertFalse(cache.replace("unknown", "value1", "value2"));
+            assertNull(distributedMap.get("unknown"));
+        } finally {
+            setDistributedMapProvider(null);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testTimestampEvents() {
+        String cacheManagerName = "testTimestampEvents-manager";
+        String cacheName = "testTimestampEvents";
+        TestDistributedMapProvider mapProvider = new TestDistributedMapProvider();
+        setDistributedMapProvider(mapProvider);
+        try {
+            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(cacheManagerName);
+            Cache<String, String> cache = cacheManager.getCache(cacheName);
+            String timestampMapName = Util.getDistributedMapNameOfCache(
+                    CachingConstants.TIMESTAMP_CACHE_PREFIX + cacheName, "foo.com", cacheManagerName);
+            TestDistributedMapProvider.RecordingMap timestampMap = mapProvider.getRecordingMap(timestampMapName);
+            MapEntryListener listener = mapProvider.getListener(timestampMapName);
+            assertTrue(listener instanceof MapEntryValueListener);
+
+            cache.put("key", "value1");
+            // Another member accesses the entry, and the provider delivers the timestamp along with the event
+            timestampMap.put("key", System.currentTimeMillis());
+            ((MapEntryValueListener) listener).entryUpdated("key", System.currentTimeMillis());
+            assertEquals(timestampMap.gets.get(), 0, "The timestamp must be taken from the event");
+
+            // A provider which does not deliver the values
+            listener.entryUpdated("key");
+            assertEquals(timestampMap.gets.get(), 1);
+            assertEquals(cache.get("key"), "value1");
+        } finally {
+            setDistributedMapProvider(null);
+        }
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testKeySizeEstimate() {
+        assertEquals(Util.estimateSize(42L), 8);
+        assertEquals(Util.estimateSize("key"), 3);
+        assertEquals(Util.estimateSize("k\u00e9y"), 4);
+        assertEquals(Util.estimateSize("\u4e2d"), 3);
+        assertEquals(Util.estimateSize("\ud83d\ude00"), 4);
+    }
+
+    /**
+     * The distributed map provider is set by the super tenant, which switches the existing caches of all tenants
+     */
+    private void setDistributedMapProvider(DistributedMapProvider mapProvider) {
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext cc = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            cc.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+            cc.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+            DataHolder.getInstance().setDistributedMapProvider(mapProvider);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+}
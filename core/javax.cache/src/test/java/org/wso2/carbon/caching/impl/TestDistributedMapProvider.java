@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.caching.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In memory DistributedMapProvider which records the calls made to its maps. Changes made by other members of the
+ * cluster are simulated by changing a map directly and notifying its listener.
+ */
+class TestDistributedMapProvider implements DistributedMapProvider {
+
+    private final Map<String, RecordingMap> maps = new ConcurrentHashMap<String, RecordingMap>();
+    private final Map<String, MapEntryListener> listeners = new ConcurrentHashMap<String, MapEntryListener>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getMap(String mapName, MapEntryListener entryListener) {
+        RecordingMap map = maps.get(mapName);
+        if (map == null) {
+            map = new RecordingMap();
+            maps.put(mapName, map);
+        }
+        if (entryListener != null) {
+            listeners.put(mapName, entryListener);
+        }
+        return (Map) map;
+    }
+
+    @Override
+    public void removeMap(String mapName) {
+        maps.remove(mapName);
+        listeners.remove(mapName);
+    }
+
+    RecordingMap getRecordingMap(String mapName) {
+        return maps.get(mapName);
+    }
+
+    MapEntryListener getListener(String mapName) {
+        return listeners.get(mapName);
+    }
+
+    static class RecordingMap extends ConcurrentHashMap<Object, Object>
+            implements BulkDistributedMap<Object, Object>, AtomicDistributedMap<Object, Object> {
+        private static final long serialVersionUID = 1L;
+        final AtomicInteger gets = new AtomicInteger();
+        final AtomicInteger puts = new AtomicInteger();
+        final AtomicInteger bulkOperations = new AtomicInteger();
+
+        @Override
+        public Object get(Object key) {
+            gets.incrementAndGet();
+            return super.get(key);
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            puts.incrementAndGet();
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<?, ?> m) {
+            bulkOperations.incrementAndGet();
+            super.putAll(m);
+        }
+
+        @Override
+        public Map<Object, Object> getAll(Set<Object> keys) {
+            bulkOperations.incrementAndGet();
+            Map<Object, Object> values = new HashMap<Object, Object>();
+            for (Object key : keys) {
+                Object value = super.get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void removeAll(Set<Object> keys) {
+            bulkOperations.incrementAndGet();
+            for (Object key : keys) {
+                super.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.caching.impl.expiry;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the expiry timing wheel
+ */
+public class TimingWheelTestCase {
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<String>(1000, 0);
+        wheel.schedule("a", 5000);
+        wheel.schedule("b", 90 * 1000);
+        wheel.schedule("c", 3 * 60 * 60 * 1000);
+        assertEquals(wheel.size(), 3);
+
+        assertTrue(wheel.advance(4999).isEmpty());
+        List<String> due = wheel.advance(5000);
+        assertEquals(due.size(), 1);
+        assertEquals(due.get(0), "a");
+
+        assertTrue(wheel.advance(89 * 1000).isEmpty());
+        due = wheel.advance(91 * 1000);
+        assertEquals(due.size(), 1);
+        assertEquals(due.get(0), "b");
+
+        assertTrue(wheel.advance(3 * 60 * 60 * 1000 - 1).isEmpty());
+        due = wheel.advance(3 * 60 * 60 * 1000);
+        assertEquals(due.size(), 1);
+        assertEquals(due.get(0), "c");
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testRescheduleAndCancel() {
+        TimingWheel<String> wheel = new TimingWheel<String>(1000, 0);
+        wheel.schedule("a", 2000);
+        wheel.schedule("b", 2000);
+        wheel.schedule("a", 10 * 60 * 1000);
+        wheel.cancel("b");
+
+        assertTrue(wheel.advance(5000).isEmpty());
+        assertEquals(wheel.size(), 1);
+        List<String> due = wheel.advance(10 * 60 * 1000);
+        assertEquals(due.size(), 1);
+        assertEquals(due.get(0), "a");
+
+        // Deadlines in the past are due on the next tick
+        wheel.schedule("c", 0);
+        assertEquals(wheel.advance(10 * 60 * 1000 + 1000).size(), 1);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.caching.impl.offheap;
+
+import org.testng.annotations.Test;
+
+import java.io.NotSerializableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the off-heap store of idle cache values
+ */
+public class OffHeapStoreTestCase {
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testStoreAndRelease() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE, 1000);
+        StringBuilder largeValue = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            largeValue.append(i);
+        }
+        OffHeapValue small = store.store("small");
+        OffHeapValue large = store.store(largeValue.toString());
+        assertEquals(small.getAllocatedBytes(), OffHeapStore.BLOCK_SIZE);
+        assertTrue(large.getAllocatedBytes() > OffHeapStore.BLOCK_SIZE);
+        assertEquals(store.getUsedBytes(), small.getAllocatedBytes() + large.getAllocatedBytes());
+
+        assertEquals(small.read(), "small");
+        assertEquals(large.read(), largeValue.toString());
+
+        assertTrue(large.release());
+        assertFalse(large.release());
+        assertNull(large.read());
+        assertEquals(store.getUsedBytes(), small.getAllocatedBytes());
+        assertEquals(small.read(), "small");
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testCapacity() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE, 1000);
+        List<OffHeapValue> values = new ArrayList<OffHeapValue>();
+        OffHeapValue value;
+        while ((value = store.store(Integer.valueOf(values.size()))) != null) {
+            values.add(value);
+        }
+        assertEquals(values.size(), OffHeapStore.SLAB_SIZE / OffHeapStore.BLOCK_SIZE);
+        assertEquals(store.getUsedBytes(), store.getCapacity());
+
+        // Released blocks are reused
+        values.get(10).release();
+        value = store.store(Integer.valueOf(-1));
+        assertNotNull(value);
+        assertEquals(value.read(), Integer.valueOf(-1));
+        assertEquals(values.get(11).read(), Integer.valueOf(11));
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "",
+            expectedExceptions = NotSerializableException.class)
+    public void testNotSerializable() throws Exception {
+        new OffHeapStore(OffHeapStore.SLAB_SIZE, 1000).store(new Object());
+    }
+
+    @Test(groups = {"org.wso2.carbon.clustering.hazelcast.jsr107"},
+            description = "")
+    public void testOffHeapCaches() {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE, 1000, "REG_CACHE", "$__local__$.perm");
+        assertTrue(store.isOffHeapCache("REG_CACHE_BACKED_ID"));
+        assertTrue(store.isOffHeapCache("$__local__$.permission"));
+        assertFalse(store.isOffHeapCache("sampleCache"));
+    }
+}
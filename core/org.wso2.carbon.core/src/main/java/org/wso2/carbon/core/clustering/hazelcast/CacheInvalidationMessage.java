@@ -0,0 +1,100 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.core.clustering.hazelcast;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of cache invalidations published by a member, holding the keys invalidated in each cache
+ * since the previous batch. A cache whose keys are not listed has been invalidated as a whole.
+ */
+public class CacheInvalidationMessage implements Serializable {
+
+    private static final long serialVersionUID = -3541826312587413246L;
+
+    private String senderId;
+    private List<CacheInvalidation> invalidations = new ArrayList<CacheInvalidation>();
+
+    public CacheInvalidationMessage(String senderId) {
+        this.senderId = senderId;
+    }
+
+    /**
+     * @return the UUID of the member which published the batch
+     */
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public List<CacheInvalidation> getInvalidations() {
+        return invalidations;
+    }
+
+    public void addInvalidation(CacheInvalidation invalidation) {
+        invalidations.add(invalidation);
+    }
+
+    /**
+     * The keys invalidated in one cache of a tenant.
+     */
+    public static class CacheInvalidation implements Serializable {
+
+        private static final long serialVersionUID = 6216907413529148127L;
+
+        private int tenantId;
+        private String cacheManagerName;
+        private String cacheName;
+        private ArrayList<Serializable> cacheKeys;
+
+        /**
+         * @param tenantId         the tenant the cache belongs to
+         * @param cacheManagerName the name of the cache manager
+         * @param cacheName        the name of the cache
+         * @param cacheKeys        the invalidated keys, or null if the whole cache is invalidated
+         */
+        public CacheInvalidation(int tenantId, String cacheManagerName, String cacheName,
+                                 ArrayList<Serializable> cacheKeys) {
+            this.tenantId = tenantId;
+            this.cacheManagerName = cacheManagerName;
+            this.cacheName = cacheName;
+            this.cacheKeys = cacheKeys;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        public String getCacheManagerName() {
+            return cacheManagerName;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public List<Serializable> getCacheKeys() {
+            return cacheKeys;
+        }
+
+        public boolean isClearAll() {
+            return cacheKeys == null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.core.clustering.hazelcast;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Records the cluster messages sent or received by this member, keyed by the message UUID, for
+ * ignoring duplicates and replaying messages to members which join later. Messages are kept in the
+ * order they were recorded, so that expired messages are always at the head of the ledger and are
+ * dropped without scanning the rest. Both recording and looking up a message take constant time.
+ * <p/>
+ * A message is kept until it expires, or until the ledger is full, in which case the oldest
+ * message is dropped. The bound keeps the memory used by the ledger fixed, at the cost of
+ * forgetting messages early when more than maxMessages messages arrive within messageLifetime: a
+ * duplicate of a message dropped early is no longer detected, and a member which joins later is
+ * not sent it. The bound should therefore be sized from the expected message rate and the
+ * lifetime. A warning is logged, at most once per lifetime, when a message is dropped before it
+ * expires.
+ *
+ * @param <M> the type of the messages kept for replay
+ */
+public class ClusterMessageLedger<M> {
+
+    private static final Log log = LogFactory.getLog(ClusterMessageLedger.class);
+
+    private final long messageLifetime;
+    private final int maxMessages;
+
+    // key - msg UUID, in the order the messages were recorded
+    private final LinkedHashMap<String, LedgerEntry<M>> entries =
+            new LinkedHashMap<String, LedgerEntry<M>>();
+
+    private long messageCount = 0;
+    private long rateMessageCount = 0;
+    private long rateStartTime = System.currentTimeMillis();
+    private double messageRate = 0;
+    private long evictedMessageCount = 0;
+    private long lastEvictionWarningTime = 0;
+
+    /**
+     * @param messageLifetime the time in milliseconds a message is kept
+     * @param maxMessages     the maximum number of messages kept
+     */
+    public ClusterMessageLedger(long messageLifetime, int maxMessages) {
+        this.messageLifetime = messageLifetime;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Records a message, unless a message with the same UUID has already been recorded.
+     *
+     * @param uuid    the UUID of the message
+     * @param message the message to keep for replay, or null if it is not replayed
+     * @return true if the message was recorded, and false if it is a duplicate
+     */
+    public synchronized boolean add(String uuid, M message) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (entries.containsKey(uuid)) {
+            return false;
+        }
+        entries.put(uuid, new LedgerEntry<M>(message, now));
+        if (entries.size() > maxMessages) {
+            Iterator<LedgerEntry<M>> iterator = entries.values().iterator();
+            // the eldest message has not expired, since expired messages were dropped above
+            iterator.next();
+            iterator.remove();
+            evictedMessageCount++;
+            if (lastEvictionWarningTime == 0 || now - lastEvictionWarningTime >= messageLifetime) {
+                lastEvictionWarningTime = now;
+                log.warn("More than " + maxMessages + " cluster messages were recorded within " +
+                         messageLifetime + " ms. The oldest messages are dropped before they " +
+                         "expire, and their duplicates will not be detected. " +
+                         evictedMessageCount + " messages have been dropped early so far.");
+            }
+        }
+        messageCount++;
+        return true;
+    }
+
+    public synchronized boolean contains(String uuid) {
+        return entries.containsKey(uuid);
+    }
+
+    /**
+     * Returns the messages kept for replay, oldest first.
+     *
+     * @return a copy of the messages kept
+     */
+    public synchronized List<M> getMessages() {
+        expire(System.currentTimeMillis());
+        List<M> messages = new ArrayList<M>(entries.size());
+        for (LedgerEntry<M> entry : entries.values()) {
+            if (entry.message != null) {
+                messages.add(entry.message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Drops the expired messages, and updates the message rate.
+     */
+    public synchronized void expire() {
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (now > rateStartTime) {
+            messageRate = (messageCount - rateMessageCount) * 1000.0 / (now - rateStartTime);
+            rateMessageCount = messageCount;
+            rateStartTime = now;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of messages recorded since the ledger was created
+     */
+    public synchronized long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return the number of messages dropped before they expired, since the ledger was full
+     */
+    public synchronized long getEvictedMessageCount() {
+        return evictedMessageCount;
+    }
+
+    /**
+     * @return the messages recorded per second, between the last two calls to {@link #expire()}
+     */
+    public synchronized double getMessageRate() {
+        return messageRate;
+    }
+
+    private void expire(long now) {
+        Iterator<LedgerEntry<M>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().recordedTime < messageLifetime) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static class LedgerEntry<M> {
+        private final M message;
+        private final long recordedTime;
+
+        private LedgerEntry(M message, long recordedTime) {
+            this.message = message;
+            this.recordedTime = recordedTime;
+        }
+    }
+}
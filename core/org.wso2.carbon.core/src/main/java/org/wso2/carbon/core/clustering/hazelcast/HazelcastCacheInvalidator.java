@@ -0,0 +1,231 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.core.clustering.hazelcast;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.caching.impl.CacheImpl;
+import org.wso2.carbon.caching.impl.CacheInvalidator;
+import org.wso2.carbon.caching.impl.CacheManagerFactoryImpl;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import javax.cache.Cache;
+import javax.cache.CacheManagerFactory;
+import javax.cache.Caching;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidates cache entries across the cluster over a Hazelcast topic. Invalidated keys are
+ * collected per cache for a few milliseconds and published together in one message, and a cache
+ * with too many invalidated keys is invalidated as a whole. Members receiving a message only drop
+ * their local copies of the entries, which are loaded again when they are read next, so local
+ * caches are kept consistent without distributing their values.
+ */
+public class HazelcastCacheInvalidator implements CacheInvalidator,
+                                                  MessageListener<CacheInvalidationMessage> {
+    private static final Log log = LogFactory.getLog(HazelcastCacheInvalidator.class);
+
+    // The time in milliseconds invalidations are collected before they are published.
+    private static final long FLUSH_DELAY = 5;
+    // The number of keys above which a cache is invalidated as a whole.
+    private static final int MAX_KEYS_PER_CACHE = 1000;
+
+    private final ITopic<CacheInvalidationMessage> invalidationTopic;
+    private final String localMemberId;
+    private final ScheduledExecutorService flushScheduler;
+
+    // key - the cache, value - the keys invalidated, or null if the whole cache is invalidated
+    private Map<CacheId, Set<Serializable>> pendingInvalidations =
+            new LinkedHashMap<CacheId, Set<Serializable>>();
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public HazelcastCacheInvalidator(HazelcastInstance hazelcastInstance, String localMemberId) {
+        this.localMemberId = localMemberId;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CacheInvalidationPublisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.invalidationTopic =
+                hazelcastInstance.getTopic(HazelcastConstants.CACHE_INVALIDATION_TOPIC);
+        invalidationTopic.addMessageListener(this);
+    }
+
+    @Override
+    public void invalidateCache(int tenantId, String cacheManagerName, String cacheName,
+                                Serializable cacheKey) {
+        CacheId cacheId = new CacheId(tenantId, cacheManagerName, cacheName);
+        synchronized (this) {
+            Set<Serializable> cacheKeys;
+            if (pendingInvalidations.containsKey(cacheId)) {
+                cacheKeys = pendingInvalidations.get(cacheId);
+                if (cacheKeys == null) {
+                    return; // the whole cache is invalidated already
+                }
+            } else {
+                cacheKeys = new LinkedHashSet<Serializable>();
+                pendingInvalidations.put(cacheId, cacheKeys);
+            }
+            cacheKeys.add(cacheKey);
+            if (cacheKeys.size() > MAX_KEYS_PER_CACHE) {
+                pendingInvalidations.put(cacheId, null);
+            }
+            if (!flushScheduled) {
+                try {
+                    flushScheduler.schedule(flushTask, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    log.debug("Cache invalidator has been shut down", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message<CacheInvalidationMessage> message) {
+        CacheInvalidationMessage invalidationMessage = message.getMessageObject();
+        if (localMemberId.equals(invalidationMessage.getSenderId())) {
+            return; // the local caches have been invalidated by the sender
+        }
+        CacheManagerFactory cacheManagerFactory = Caching.getCacheManagerFactory();
+        if (!(cacheManagerFactory instanceof CacheManagerFactoryImpl)) {
+            return;
+        }
+        for (CacheInvalidationMessage.CacheInvalidation invalidation :
+                invalidationMessage.getInvalidations()) {
+            try {
+                PrivilegedCarbonContext.startTenantFlow();
+                PrivilegedCarbonContext carbonContext =
+                        PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                if (invalidation.getTenantId() == MultitenantConstants.SUPER_TENANT_ID) {
+                    carbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+                    carbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+                } else {
+                    carbonContext.setTenantId(invalidation.getTenantId(), true);
+                }
+                Cache<Object, Object> cache = ((CacheManagerFactoryImpl) cacheManagerFactory)
+                        .getExistingCache(invalidation.getCacheManagerName(),
+                                          invalidation.getCacheName());
+                if (cache instanceof CacheImpl) {
+                    if (invalidation.isClearAll()) {
+                        ((CacheImpl) cache).invalidateAllLocalEntries();
+                    } else {
+                        ((CacheImpl) cache).invalidateLocalEntries(invalidation.getCacheKeys());
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Cannot invalidate cache " + invalidation.getCacheName() +
+                          " of tenant " + invalidation.getTenantId(), e);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
+
+    /**
+     * Publishes the pending invalidations, and stops collecting invalidations.
+     */
+    public void shutdown() {
+        flushScheduler.shutdown();
+        flush();
+    }
+
+    private void flush() {
+        Map<CacheId, Set<Serializable>> invalidations;
+        synchronized (this) {
+            invalidations = pendingInvalidations;
+            pendingInvalidations = new LinkedHashMap<CacheId, Set<Serializable>>();
+            flushScheduled = false;
+        }
+        if (invalidations.isEmpty()) {
+            return;
+        }
+        CacheInvalidationMessage message = new CacheInvalidationMessage(localMemberId);
+        for (Map.Entry<CacheId, Set<Serializable>> entry : invalidations.entrySet()) {
+            CacheId cacheId = entry.getKey();
+            Set<Serializable> cacheKeys = entry.getValue();
+            message.addInvalidation(new CacheInvalidationMessage.CacheInvalidation(
+                    cacheId.tenantId, cacheId.cacheManagerName, cacheId.cacheName,
+                    cacheKeys == null ? null : new ArrayList<Serializable>(cacheKeys)));
+        }
+        try {
+            invalidationTopic.publish(message);
+        } catch (Exception e) {
+            log.error("Cannot publish the invalidations of " + invalidations.size() + " caches", e);
+        }
+    }
+
+    private static class CacheId {
+        private final int tenantId;
+        private final String cacheManagerName;
+        private final String cacheName;
+
+        private CacheId(int tenantId, String cacheManagerName, String cacheName) {
+            this.tenantId = tenantId;
+            this.cacheManagerName = cacheManagerName;
+            this.cacheName = cacheName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheId)) {
+                return false;
+            }
+            CacheId cacheId = (CacheId) o;
+            return tenantId == cacheId.tenantId &&
+                   cacheManagerName.equals(cacheId.cacheManagerName) &&
+                   cacheName.equals(cacheId.cacheName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tenantId;
+            result = 31 * result + cacheManagerName.hashCode();
+            result = 31 * result + cacheName.hashCode();
+            return result;
+        }
+    }
+}
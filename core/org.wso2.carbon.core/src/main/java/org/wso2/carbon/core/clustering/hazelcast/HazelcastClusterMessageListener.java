@@ -25,21 +25,18 @@ import org.apache.axis2.context.ConfigurationContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.List;
-import java.util.Map;
-
 /**
  * TODO: class description
  */
 public class HazelcastClusterMessageListener implements MessageListener<ClusteringMessage> {
     private static final Log log = LogFactory.getLog(HazelcastClusterMessageListener.class);
     private ConfigurationContext configurationContext;
-    private final Map<String, Long> recdMsgsBuffer;
-    private final List<ClusteringMessage> sentMsgsBuffer;
+    private final ClusterMessageLedger<Void> recdMsgsBuffer;
+    private final ClusterMessageLedger<ClusteringMessage> sentMsgsBuffer;
 
     public HazelcastClusterMessageListener(ConfigurationContext configurationContext,
-                                           final Map<String, Long> recdMsgsBuffer,
-                                           final List<ClusteringMessage> sentMsgsBuffer) {
+                                           final ClusterMessageLedger<Void> recdMsgsBuffer,
+                                           final ClusterMessageLedger<ClusteringMessage> sentMsgsBuffer) {
         this.configurationContext = configurationContext;
         this.recdMsgsBuffer = recdMsgsBuffer;
         this.sentMsgsBuffer = sentMsgsBuffer;
@@ -49,10 +46,10 @@ public class HazelcastClusterMessageListener implements MessageListener<Clusteri
     public void onMessage(Message<ClusteringMessage> clusteringMessage) {
         try {
             ClusteringMessage msg = clusteringMessage.getMessageObject();
-            if (!sentMsgsBuffer.contains(msg)) { // Ignore own messages
+            // Ignore own messages, and duplicates of the messages already received
+            if (!sentMsgsBuffer.contains(msg.getUuid()) && recdMsgsBuffer.add(msg.getUuid(), null)) {
                 log.info("Received ClusteringMessage: " + msg);
                 msg.execute(configurationContext);
-                recdMsgsBuffer.put(msg.getUuid(), System.currentTimeMillis());
             }
         } catch (ClusteringFault e) {
             log.error("Cannot process ClusteringMessage", e);
@@ -38,6 +38,7 @@ import org.apache.axis2.util.Utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.BundleContext;
+import org.wso2.carbon.caching.impl.CacheInvalidator;
 import org.wso2.carbon.caching.impl.DistributedMapProvider;
 import org.wso2.carbon.core.ServerStatus;
 import org.wso2.carbon.core.clustering.api.CarbonCluster;
@@ -71,10 +72,17 @@ public class HazelcastClusteringAgent extends ParameterAdapter implements Cluste
     private ConfigurationContext configurationContext;
     private ITopic<ClusteringMessage> clusteringMessageTopic;
     private ITopic<GroupManagementCommand> groupManagementTopic;
-    private List<ClusteringMessage> sentMsgsBuffer = new CopyOnWriteArrayList<ClusteringMessage>();
+    private HazelcastCacheInvalidator cacheInvalidator;
+    private static final int MAX_MESSAGE_LIFETIME = 5 * 60 * 1000;
+    private static final int MAX_BUFFERED_MESSAGES = 10000;
 
-    // key - msg UUID, value - timestamp(msg received time)
-    private Map<String, Long> recdMsgsBuffer = new ConcurrentHashMap<String, Long>();
+    // messages sent by this member, kept for replay to members which join later
+    private ClusterMessageLedger<ClusteringMessage> sentMsgsBuffer =
+            new ClusterMessageLedger<ClusteringMessage>(MAX_MESSAGE_LIFETIME, MAX_BUFFERED_MESSAGES);
+
+    // UUIDs of the messages received by this member
+    private ClusterMessageLedger<Void> recdMsgsBuffer =
+            new ClusterMessageLedger<Void>(MAX_MESSAGE_LIFETIME, MAX_BUFFERED_MESSAGES);
 
     /**
      * The mode in which this member operates such as "loadBalance" or "application"
@@ -200,10 +208,9 @@ public class HazelcastClusteringAgent extends ParameterAdapter implements Cluste
             public void onMessage(Message<ClusterMessage> clusterMessage) {
                 ClusterMessage msg = clusterMessage.getMessageObject();
                 // check UUID to eliminate duplicates
-                if (!recdMsgsBuffer.containsKey(msg.getUuid())) {
+                if (recdMsgsBuffer.add(msg.getUuid(), null)) {
                     log.info("Received replayed message: " + msg.getUuid());
                     msg.execute();
-                    recdMsgsBuffer.put(msg.getUuid(), System.currentTimeMillis());
                 }
             }
         });
@@ -218,12 +225,15 @@ public class HazelcastClusteringAgent extends ParameterAdapter implements Cluste
         bundleContext.registerService(DistributedMapProvider.class,
                                       new HazelcastDistributedMapProvider(primaryHazelcastInstance),
                                       null);
+        cacheInvalidator = new HazelcastCacheInvalidator(primaryHazelcastInstance,
+                                                         localMember.getUuid());
+        bundleContext.registerService(CacheInvalidator.class, cacheInvalidator, null);
         bundleContext.registerService(HazelcastInstance.class, primaryHazelcastInstance, null);
         bundleContext.registerService(CarbonCluster.class,
                                       hazelcastCarbonCluster, null);
         ScheduledExecutorService msgCleanupScheduler = Executors.newScheduledThreadPool(1);
         msgCleanupScheduler.scheduleWithFixedDelay(new ClusterMessageCleanupTask(),
-                                                   2, 2, TimeUnit.MINUTES);
+                                                   1, 1, TimeUnit.MINUTES);
 
         // Start thread which will try to obtain Hazelcast lock. If lock is acquired by this member, set isCoordinator = true
         Thread coordinatorElectorThread = new Thread(){
@@ -387,6 +397,9 @@ public class HazelcastClusteringAgent extends ParameterAdapter implements Cluste
     }
 
     public void shutdown() throws ClusteringFault {
+        if (cacheInvalidator != null) {
+            cacheInvalidator.shutdown();
+        }
         try {
             Hazelcast.shutdownAll();
         } catch (Exception ignored) {
@@ -498,47 +511,71 @@ public class HazelcastClusteringAgent extends ParameterAdapter implements Cluste
 
     public List<ClusteringCommand> sendMessage(ClusteringMessage clusteringMessage,
                                                boolean isSync) throws ClusteringFault {
-        if (!sentMsgsBuffer.contains(clusteringMessage)) {
-            sentMsgsBuffer.add(clusteringMessage); // Buffer the message for replay
-        }
+        sentMsgsBuffer.add(clusteringMessage.getUuid(), clusteringMessage); // Buffer the message for replay
         if (clusteringMessageTopic != null) {
             clusteringMessageTopic.publish(clusteringMessage);
         }
         return new ArrayList<ClusteringCommand>();  // TODO: How to get the response? Send to another topic, and use a correlation ID to correlate
     }
 
+    /**
+     * @return the number of messages sent by this member
+     */
+    public long getSentMessageCount() {
+        return sentMsgsBuffer.getMessageCount();
+    }
+
+    /**
+     * @return the messages sent per second by this member, over the last cleanup interval
+     */
+    public double getSentMessageRate() {
+        return sentMsgsBuffer.getMessageRate();
+    }
+
+    /**
+     * @return the number of sent messages buffered for replay
+     */
+    public int getSentMessageBufferSize() {
+        return sentMsgsBuffer.size();
+    }
+
+    /**
+     * @return the number of messages received by this member
+     */
+    public long getReceivedMessageCount() {
+        return recdMsgsBuffer.getMessageCount();
+    }
+
+    /**
+     * @return the messages received per second by this member, over the last cleanup interval
+     */
+    public double getReceivedMessageRate() {
+        return recdMsgsBuffer.getMessageRate();
+    }
+
+    /**
+     * @return the number of received message UUIDs buffered for ignoring duplicates
+     */
+    public int getReceivedMessageBufferSize() {
+        return recdMsgsBuffer.size();
+    }
+
     private class ClusterMessageCleanupTask implements Runnable {
-        private static final int MAX_MESSAGES_TO_PROCESS = 5000;
-        private static final int MAX_MESSAGE_LIFETIME = 5 * 60 * 1000;
 
         private ClusterMessageCleanupTask() {
         }
 
         @Override
         public void run() {
-            // Cleanup sent messages buffer
-            int messagesProcessed = 0;
-            for (ClusteringMessage clusteringMessage : sentMsgsBuffer) {
-                if (System.currentTimeMillis() - clusteringMessage.getTimestamp() >= MAX_MESSAGE_LIFETIME) {
-                    sentMsgsBuffer.remove(clusteringMessage);
-                }
-
-                messagesProcessed++;
-                if (messagesProcessed >= MAX_MESSAGES_TO_PROCESS) {
-                    break;
-                }
-            }
-
-            // cleanup received messages token buffer
-            messagesProcessed = 0;
-            for (Map.Entry<String, Long> recdMsgEntry : recdMsgsBuffer.entrySet()) {
-                if (System.currentTimeMillis() - recdMsgEntry.getValue() >= MAX_MESSAGE_LIFETIME) {
-                    recdMsgsBuffer.remove(recdMsgEntry.getKey());
-                }
-                messagesProcessed++;
-                if (messagesProcessed >= MAX_MESSAGES_TO_PROCESS) {
-                    break;
-                }
+            sentMsgsBuffer.expire();
+            recdMsgsBuffer.expire();
+            if (log.isDebugEnabled()) {
+                log.debug("Cluster messages sent: " + sentMsgsBuffer.getMessageCount() + " (" +
+                          sentMsgsBuffer.getMessageRate() + "/s, buffered: " +
+                          sentMsgsBuffer.size() + "), received: " +
+                          recdMsgsBuffer.getMessageCount() + " (" +
+                          recdMsgsBuffer.getMessageRate() + "/s, buffered: " +
+                          recdMsgsBuffer.size() + ")");
             }
         }
     }
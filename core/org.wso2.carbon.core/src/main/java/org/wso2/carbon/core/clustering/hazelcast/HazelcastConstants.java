@@ -29,6 +29,7 @@ public final class HazelcastConstants {
     public static final String CLUSTERING_MESSAGE_TOPIC = "$clustering.message.topic";
     public static final String GROUP_MGT_CMD_TOPIC = ".group.mgt.cmd.topic";
     public static final String CONTROL_COMMAND_TOPIC = "$control.$command.$topic";
+    public static final String CACHE_INVALIDATION_TOPIC = "$cache.$invalidation.$topic";
     public static final String GROUP_PASSWORD = "groupPassword";
 
     public static final String REPLAY_MESSAGE_QUEUE = "$ReplayMessageQueue:";
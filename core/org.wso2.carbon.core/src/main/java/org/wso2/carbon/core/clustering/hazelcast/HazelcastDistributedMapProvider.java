@@ -23,10 +23,15 @@ import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.caching.impl.AtomicDistributedMap;
+import org.wso2.carbon.caching.impl.BulkDistributedMap;
 import org.wso2.carbon.caching.impl.DistributedMapProvider;
 import org.wso2.carbon.caching.impl.MapEntryListener;
+import org.wso2.carbon.caching.impl.MapEntryValueListener;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class HazelcastDistributedMapProvider implements DistributedMapProvider {
 
@@ -59,18 +64,25 @@ public class HazelcastDistributedMapProvider implements DistributedMapProvider {
         hazelcastInstance.getMap(mapName).flush();
     }
 
-    private class DistMap<K, V> implements Map<K, V> {
+    private class DistMap<K, V> implements BulkDistributedMap<K, V>, AtomicDistributedMap<K, V> {
         private IMap<K, V> map;
         private String listenerId;
 
         public DistMap(String mapName, final MapEntryListener entryListener) {
             this.map = hazelcastInstance.getMap(mapName);
             if (entryListener != null) {
+                // the values are only sent along with the events to the listeners which use them
+                final MapEntryValueListener valueListener = entryListener instanceof MapEntryValueListener ?
+                        (MapEntryValueListener) entryListener : null;
                 listenerId = map.addEntryListener(new EntryListener<K, V>() {
                     @Override
                     public void entryAdded(EntryEvent<K, V> kvEntryEvent) {
                         if (!kvEntryEvent.getMember().equals(hazelcastInstance.getCluster().getLocalMember())) {
-                            entryListener.entryAdded(kvEntryEvent.getKey());
+                            if (valueListener != null) {
+                                valueListener.entryAdded(kvEntryEvent.getKey(), kvEntryEvent.getValue());
+                            } else {
+                                entryListener.entryAdded(kvEntryEvent.getKey());
+                            }
                         }
                     }
 
@@ -84,7 +96,11 @@ public class HazelcastDistributedMapProvider implements DistributedMapProvider {
                     @Override
                     public void entryUpdated(EntryEvent<K, V> kvEntryEvent) {
                         if (!kvEntryEvent.getMember().equals(hazelcastInstance.getCluster().getLocalMember())) {
-                            entryListener.entryUpdated(kvEntryEvent.getKey());
+                            if (valueListener != null) {
+                                valueListener.entryUpdated(kvEntryEvent.getKey(), kvEntryEvent.getValue());
+                            } else {
+                                entryListener.entryUpdated(kvEntryEvent.getKey());
+                            }
                         }
                     }
 
@@ -94,7 +110,7 @@ public class HazelcastDistributedMapProvider implements DistributedMapProvider {
                             entryListener.entryRemoved(kvEntryEvent.getKey());
                         }
                     }
-                }, false);
+                }, valueListener != null);
             }
         }
 
@@ -155,6 +171,57 @@ public class HazelcastDistributedMapProvider implements DistributedMapProvider {
             }
         }
 
+        @Override
+        public Map<K, V> getAll(Set<K> keys) {
+            if (hazelcastInstance.getLifecycleService().isRunning()) {
+                return map.getAll(keys);
+            }
+            return new HashMap<K, V>();
+        }
+
+        @Override
+        public void removeAll(Set<K> keys) {
+            if (!hazelcastInstance.getLifecycleService().isRunning()) {
+                return;
+            }
+            // Issue all the removals before waiting for any of them, instead of one round trip per key
+            List<Future<V>> removals = new ArrayList<Future<V>>(keys.size());
+            for (K key : keys) {
+                removals.add(map.removeAsync(key));
+            }
+            for (Future<V> removal : removals) {
+                try {
+                    removal.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log.warn("Could not remove entry from distributed map " + map.getName(), e);
+                }
+            }
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            if (!hazelcastInstance.getLifecycleService().isRunning()) {
+                return false;
+            }
+            // The values are compared with equals rather than in their serialized form, which also holds the
+            // access times, so the entry is locked while it is compared and updated. Writes of other members to
+            // a locked entry wait until it is unlocked.
+            map.lock(key);
+            try {
+                V value = map.get(key);
+                if (value == null || !value.equals(oldValue)) {
+                    return false;
+                }
+                map.set(key, newValue);
+                return true;
+            } finally {
+                map.unlock(key);
+            }
+        }
+
         @Override
         public void clear() {
             if (hazelcastInstance.getLifecycleService().isRunning()) {
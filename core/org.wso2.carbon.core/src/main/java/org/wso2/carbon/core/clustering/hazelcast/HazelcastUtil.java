@@ -23,7 +23,6 @@ import org.wso2.carbon.core.clustering.api.CarbonCluster;
 import org.wso2.carbon.core.clustering.api.ClusterMember;
 
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * TODO: class description
@@ -36,10 +35,10 @@ public class HazelcastUtil {
     /**
      * Replay messages to a newly joining member
      */
-    public static void sendMessagesToMember(List<ClusteringMessage> messageBuffer,
+    public static void sendMessagesToMember(ClusterMessageLedger<ClusteringMessage> messageBuffer,
                                             Member member,
                                             CarbonCluster carbonCluster){
-        for (ClusteringMessage clusteringMessage : messageBuffer) {
+        for (ClusteringMessage clusteringMessage : messageBuffer.getMessages()) {
             ArrayList<ClusterMember> members = new ArrayList<ClusterMember>();
             members.add(HazelcastUtil.toClusterMember(member));
             carbonCluster.sendMessage(new WrapperClusterMessage(clusteringMessage), members);
@@ -30,12 +30,12 @@ import org.apache.axis2.clustering.ClusteringMessage;
 import org.apache.axis2.description.Parameter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.core.clustering.hazelcast.ClusterMessageLedger;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastCarbonClusterImpl;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastMembershipScheme;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastUtil;
 import org.wso2.carbon.core.clustering.hazelcast.wka.WKAConstants;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,14 +47,14 @@ public class AWSBasedMembershipScheme implements HazelcastMembershipScheme {
     private final String primaryDomain;
     private final NetworkConfig nwConfig;
     private HazelcastInstance primaryHazelcastInstance;
-    private final List<ClusteringMessage> messageBuffer;
+    private final ClusterMessageLedger<ClusteringMessage> messageBuffer;
     private HazelcastCarbonClusterImpl carbonCluster;
 
     public AWSBasedMembershipScheme(Map<String, Parameter> parameters,
                                     String primaryDomain,
                                     Config config,
                                     HazelcastInstance primaryHazelcastInstance,
-                                    List<ClusteringMessage> messageBuffer) {
+                                    ClusterMessageLedger<ClusteringMessage> messageBuffer) {
         this.parameters = parameters;
         this.primaryDomain = primaryDomain;
         this.primaryHazelcastInstance = primaryHazelcastInstance;
@@ -29,6 +29,7 @@ import org.apache.axis2.description.Parameter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.core.clustering.api.ClusterMember;
+import org.wso2.carbon.core.clustering.hazelcast.ClusterMessageLedger;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastCarbonClusterImpl;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastMembershipScheme;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastUtil;
@@ -36,7 +37,6 @@ import org.wso2.carbon.core.clustering.hazelcast.WrapperClusterMessage;
 import org.wso2.carbon.core.clustering.hazelcast.util.MemberUtils;
 
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,14 +47,14 @@ public class MulticastBasedMembershipScheme implements HazelcastMembershipScheme
     private final Map<String, Parameter> parameters;
     private String primaryDomain;
     private MulticastConfig config;
-    private final List<ClusteringMessage> messageBuffer;
+    private final ClusterMessageLedger<ClusteringMessage> messageBuffer;
     private HazelcastCarbonClusterImpl carbonCluster;
     private HazelcastInstance primaryHazelcastInstance;
 
     public MulticastBasedMembershipScheme(Map<String, Parameter> parameters,
                                           String primaryDomain,
                                           MulticastConfig config,
-                                          List<ClusteringMessage> messageBuffer) {
+                                          ClusterMessageLedger<ClusteringMessage> messageBuffer) {
         this.parameters = parameters;
         this.primaryDomain = primaryDomain;
         this.config = config;
@@ -33,6 +33,7 @@ import org.apache.axis2.clustering.Member;
 import org.apache.axis2.description.Parameter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.core.clustering.hazelcast.ClusterMessageLedger;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastCarbonClusterImpl;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastMembershipScheme;
 import org.wso2.carbon.core.clustering.hazelcast.HazelcastUtil;
@@ -51,7 +52,7 @@ public class WKABasedMembershipScheme implements HazelcastMembershipScheme {
     private Map<String, Parameter> parameters;
     private String primaryDomain;
     private List<Member> wkaMembers = new ArrayList<Member>();
-    private final List<ClusteringMessage> messageBuffer;
+    private final ClusterMessageLedger<ClusteringMessage> messageBuffer;
     private NetworkConfig nwConfig;
 
     private IMap<String, Member> allMembers;
@@ -77,7 +78,7 @@ public class WKABasedMembershipScheme implements HazelcastMembershipScheme {
                                     String primaryDomain,
                                     List<Member> wkaMembers,
                                     Config config,
-                                    List<ClusteringMessage> messageBuffer) {
+                                    ClusterMessageLedger<ClusteringMessage> messageBuffer) {
         this.parameters = parameters;
         this.primaryDomain = primaryDomain;
         this.wkaMembers = wkaMembers;
@@ -56,6 +56,7 @@ import org.wso2.carbon.core.CarbonThreadCleanup;
 import org.wso2.carbon.core.RegistryResources;
 import org.wso2.carbon.core.ServerInitializer;
 import org.wso2.carbon.core.ServerManagement;
+import org.wso2.carbon.core.ServerStartupObserver;
 import org.wso2.carbon.core.ServerStatus;
 import org.wso2.carbon.core.deployment.OSGiAxis2ServiceDeployer;
 import org.wso2.carbon.core.deployment.RegistryBasedRepositoryUpdater;
@@ -441,6 +442,8 @@ public final class CarbonServerManager implements Controllable {
 
             multitenantServerManager = new MultitenantServerManager();
             multitenantServerManager.start(serverConfigContext);
+            bundleContext.registerService(ServerStartupObserver.class.getName(),
+                    multitenantServerManager, null);
 
             //TODO As a tempory solution this part is added here. But when ui bundle are seperated from the core bundles
             //TODO this should be fixed.
@@ -17,19 +17,30 @@ package org.wso2.carbon.core.multitenancy;
 
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.core.ServerStartupObserver;
 import org.wso2.carbon.core.multitenancy.utils.TenantAxisUtils;
+import org.wso2.carbon.utils.CarbonUtils;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Handles server startup & iniatialization when a multitenant deployment is available
+ * Handles server startup & iniatialization when a multitenant deployment is available.
+ * <p/>
+ * If tenant warm-up is enabled using the {@value #TENANT_WARM_UP} system property, the tenants
+ * which were loaded before the server was last stopped are loaded in the background once the
+ * server has started. The list of these tenants is saved along with each tenant cleanup, and when
+ * the server is stopped.
  */
-public class MultitenantServerManager {
+public class MultitenantServerManager implements ServerStartupObserver {
 
     private static final Log log = LogFactory.getLog(MultitenantServerManager.class);
     private static final ScheduledExecutorService tenantCleanupExec = Executors.newScheduledThreadPool(1);
@@ -37,6 +48,15 @@ public class MultitenantServerManager {
     private static final int DEFAULT_TENANT_IDLE_MINS = 30;
     private static long tenantIdleTimeMillis;
 
+    /**
+     * The system property which enables loading the recently accessed tenants on startup
+     */
+    public static final String TENANT_WARM_UP = "tenant.warm.up";
+    private static final String TENANT_ACCESS_HISTORY_FILE = "tenant-access-history";
+    private static boolean tenantWarmUpEnabled;
+
+    private ConfigurationContext configCtx;
+
     static {
         Runtime.getRuntime().addShutdownHook(new Thread() {
             public void run() {
@@ -47,6 +67,7 @@ public class MultitenantServerManager {
                 Long.parseLong(System.getProperty(MultitenantConstants.TENANT_IDLE_TIME,
                                                   String.valueOf(DEFAULT_TENANT_IDLE_MINS)))*
                 60 * 1000;
+        tenantWarmUpEnabled = Boolean.parseBoolean(System.getProperty(TENANT_WARM_UP));
     }
 
     /**
@@ -56,16 +77,41 @@ public class MultitenantServerManager {
      * @throws AxisFault If an error occurs while doing tenant specific deployments
      */
     public void start(ConfigurationContext configCtx) throws Exception {
+        this.configCtx = configCtx;
         // schedule the tenant cleanup task
-        TenantCleanupTask tenantCleanupTask = new TenantCleanupTask();
+        TenantCleanupTask tenantCleanupTask = new TenantCleanupTask(configCtx);
         tenantCleanupExec.scheduleAtFixedRate(tenantCleanupTask,
                 TENANT_CLEANUP_PERIOD_SECS,
                 TENANT_CLEANUP_PERIOD_SECS, TimeUnit.SECONDS);
     }
 
+    public void completingServerStartup() {
+        // Nothing to do
+    }
+
+    public void completedServerStartup() {
+        if (!tenantWarmUpEnabled || configCtx == null) {
+            return;
+        }
+        File historyFile = getTenantAccessHistoryFile();
+        if (!historyFile.exists()) {
+            return;
+        }
+        try {
+            List<String> tenantDomains = FileUtils.readLines(historyFile, "UTF-8");
+            log.info("Warming up " + tenantDomains.size() + " recently accessed tenants");
+            TenantAxisUtils.warmUpTenants(tenantDomains, configCtx);
+        } catch (IOException e) {
+            log.error("Cannot read the recently accessed tenants from " + historyFile, e);
+        }
+    }
+
     private static class TenantCleanupTask implements Runnable {
 
-        private TenantCleanupTask() {
+        private final ConfigurationContext configCtx;
+
+        private TenantCleanupTask(ConfigurationContext configCtx) {
+            this.configCtx = configCtx;
         }
 
         public void run() {
@@ -74,11 +120,38 @@ public class MultitenantServerManager {
             } catch (Throwable e) {
                 log.error("Error occurred while executing tenant cleanup", e);
             }
+            saveTenantAccessHistory(configCtx);
         }
     }
 
     public void cleanup() {
         tenantCleanupExec.shutdownNow();
+        TenantAxisUtils.stopTenantWarmUp();
+        if (configCtx != null) {
+            saveTenantAccessHistory(configCtx);
+        }
+    }
+
+    private static void saveTenantAccessHistory(ConfigurationContext configCtx) {
+        if (!tenantWarmUpEnabled) {
+            return;
+        }
+        List<String> tenantDomains = TenantAxisUtils.getRecentlyAccessedTenants(configCtx);
+        if (tenantDomains.isEmpty()) {
+            // keep the tenants accessed earlier, e.g. if the tenants were unloaded already
+            return;
+        }
+        File historyFile = getTenantAccessHistoryFile();
+        try {
+            FileUtils.writeLines(historyFile, "UTF-8", tenantDomains);
+        } catch (IOException e) {
+            log.error("Cannot save the recently accessed tenants to " + historyFile, e);
+        }
+    }
+
+    private static File getTenantAccessHistoryFile() {
+        return new File(CarbonUtils.getCarbonHome() + File.separator + "repository" +
+                        File.separator + "data" + File.separator + TENANT_ACCESS_HISTORY_FILE);
     }
 
     /*private static final ExecutorService exec = Executors.newCachedThreadPool();
@@ -66,9 +66,18 @@ import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -82,9 +91,27 @@ public final class TenantAxisUtils {
     private static final String TENANT_CONFIGURATION_CONTEXTS = "tenant.config.contexts";
     private static final String TENANT_CONFIGURATION_CONTEXTS_CREATED = "tenant.config.contexts.created";
     private static CarbonCoreDataHolder dataHolder = CarbonCoreDataHolder.getInstance();
-    private static Map<String, ReentrantReadWriteLock> tenantReadWriteLocks =
+    private static ConcurrentMap<String, ReentrantReadWriteLock> tenantReadWriteLocks =
             new ConcurrentHashMap<String, ReentrantReadWriteLock>();
 
+    // The maximum number of tenants warmed up at the same time.
+    private static final int MAX_TENANT_WARM_UP_THREADS = 4;
+
+    private static final TenantLoader<ConfigurationContext> tenantLoader =
+            new TenantLoader<ConfigurationContext>();
+    private static final ExecutorService tenantWarmUpExecutor =
+            Executors.newFixedThreadPool(MAX_TENANT_WARM_UP_THREADS, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                                               "TenantWarmUp-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     private TenantAxisUtils() {
     }
 
@@ -117,14 +144,7 @@ public final class TenantAxisUtils {
     public static ConfigurationContext
     getTenantConfigurationContext(String tenantDomain, ConfigurationContext mainConfigCtx) {
         ConfigurationContext tenantConfigCtx;
-        if (tenantReadWriteLocks.get(tenantDomain) == null) {
-            synchronized (tenantDomain.intern()) {
-                if (tenantReadWriteLocks.get(tenantDomain) == null) {
-                    tenantReadWriteLocks.put(tenantDomain, new ReentrantReadWriteLock());
-                }
-            }
-        }
-        Lock tenantReadLock = tenantReadWriteLocks.get(tenantDomain).readLock();
+        Lock tenantReadLock = getTenantReadWriteLock(tenantDomain).readLock();
         try {
             tenantReadLock.lock();
             Map<String, ConfigurationContext> tenantConfigContexts =
@@ -132,7 +152,7 @@ public final class TenantAxisUtils {
             tenantConfigCtx = tenantConfigContexts.get(tenantDomain);
             if (tenantConfigCtx == null) {
                 try {
-                    tenantConfigCtx = createTenantConfigurationContext(mainConfigCtx, tenantDomain);
+                    tenantConfigCtx = loadTenantConfigurationContext(mainConfigCtx, tenantDomain);
                 } catch (Exception e) {
                     throw new RuntimeException("Cannot create tenant ConfigurationContext for tenant " +
                                                tenantDomain, e);
@@ -161,6 +181,76 @@ public final class TenantAxisUtils {
         getTenantConfigurationContext(tenantDomain, mainConfigCtx);
     }
 
+    /**
+     * Load the given tenants in the background, so that the first requests to them do not wait
+     * for the tenants to be loaded. Tenants are loaded in the given order, a few at a time, and
+     * tenants which are loaded already are skipped. A request to a tenant which is being loaded
+     * waits for that load instead of starting another one.
+     *
+     * @param tenantDomains The domains of the tenants to load, e.g. in the order the tenants were
+     *                      last accessed as returned by {@link #getRecentlyAccessedTenants}
+     * @param mainConfigCtx Super-tenant Axis2 ConfigurationContext
+     */
+    public static void warmUpTenants(List<String> tenantDomains,
+                                     final ConfigurationContext mainConfigCtx) {
+        for (final String tenantDomain : tenantDomains) {
+            if (tenantWarmUpExecutor.isShutdown()) {
+                return;
+            }
+            if (getTenantConfigurationContexts(mainConfigCtx).containsKey(tenantDomain)) {
+                continue;
+            }
+            tenantWarmUpExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Lock tenantReadLock = getTenantReadWriteLock(tenantDomain).readLock();
+                    tenantReadLock.lock();
+                    try {
+                        PrivilegedCarbonContext.startTenantFlow();
+                        if (!getTenantConfigurationContexts(mainConfigCtx).containsKey(tenantDomain)) {
+                            loadTenantConfigurationContext(mainConfigCtx, tenantDomain);
+                        }
+                    } catch (Exception e) {
+                        log.error("Cannot warm up tenant " + tenantDomain, e);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                        tenantReadLock.unlock();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop warming up tenants. Tenants which are being loaded are interrupted, and the tenants
+     * which are waiting to be warmed up are not loaded.
+     */
+    public static void stopTenantWarmUp() {
+        tenantWarmUpExecutor.shutdownNow();
+    }
+
+    /**
+     * Get the domains of the loaded tenants, the most recently accessed first. The list can be
+     * kept to warm up the same tenants using {@link #warmUpTenants} after a restart.
+     *
+     * @param mainConfigCtx Super-tenant Axis2 ConfigurationContext
+     * @return The domains of the loaded tenants
+     */
+    public static List<String> getRecentlyAccessedTenants(ConfigurationContext mainConfigCtx) {
+        final Map<String, Long> lastAccessedTimes = new HashMap<String, Long>();
+        for (String tenantDomain : getTenantConfigurationContexts(mainConfigCtx).keySet()) {
+            lastAccessedTimes.put(tenantDomain, getLastAccessed(tenantDomain, mainConfigCtx));
+        }
+        List<String> tenantDomains = new ArrayList<String>(lastAccessedTimes.keySet());
+        Collections.sort(tenantDomains, new Comparator<String>() {
+            @Override
+            public int compare(String domain1, String domain2) {
+                return lastAccessedTimes.get(domain2).compareTo(lastAccessedTimes.get(domain1));
+            }
+        });
+        return tenantDomains;
+    }
+
     /**
      * @param url               will have pattern <some-string>/t/<tenant>/<service>?<some-params>
      * @param mainConfigContext The main ConfigurationContext from the server
@@ -257,6 +347,41 @@ public final class TenantAxisUtils {
         }
     }
 
+    private static ReentrantReadWriteLock getTenantReadWriteLock(String tenantDomain) {
+        ReentrantReadWriteLock tenantReadWriteLock = tenantReadWriteLocks.get(tenantDomain);
+        if (tenantReadWriteLock == null) {
+            tenantReadWriteLock = new ReentrantReadWriteLock();
+            ReentrantReadWriteLock existingLock =
+                    tenantReadWriteLocks.putIfAbsent(tenantDomain, tenantReadWriteLock);
+            if (existingLock != null) {
+                tenantReadWriteLock = existingLock;
+            }
+        }
+        return tenantReadWriteLock;
+    }
+
+    /**
+     * Load a tenant, or wait for the tenant to be loaded if it is being loaded by another thread.
+     * The tenant is loaded by the first thread requesting it, and all other threads share the
+     * result of that load. The loading thread itself loads the tenant directly if it requests the
+     * tenant again.
+     *
+     * @param mainConfigCtx Super-tenant Axis2 ConfigurationContext
+     * @param tenantDomain  Tenant domain (e.g. foo.com)
+     * @return The Tenant ConfigurationContext
+     * @throws Exception If an error occurs while creating tenant ConfigurationContext
+     */
+    private static ConfigurationContext
+    loadTenantConfigurationContext(final ConfigurationContext mainConfigCtx,
+                                   final String tenantDomain) throws Exception {
+        return tenantLoader.load(tenantDomain, new Callable<ConfigurationContext>() {
+            @Override
+            public ConfigurationContext call() throws Exception {
+                return createTenantConfigurationContext(mainConfigCtx, tenantDomain);
+            }
+        });
+    }
+
     /**
      * Create Tenant Axis2 ConfigurationContexts & add them to the main Axis2 ConfigurationContext
      *
@@ -268,101 +393,99 @@ public final class TenantAxisUtils {
     private static ConfigurationContext
     createTenantConfigurationContext(ConfigurationContext mainConfigCtx,
                                      String tenantDomain) throws Exception {
-        synchronized (tenantDomain.intern()) { // lock based on tenant domain
-            Map<String, ConfigurationContext> tenantConfigContexts = getTenantConfigurationContexts(mainConfigCtx);
-            ConfigurationContext tenantConfigCtx = tenantConfigContexts.get(tenantDomain);
-            if (tenantConfigCtx != null) {
-                return tenantConfigCtx;
-            }
-            long tenantLoadingStartTime = System.currentTimeMillis();
-            int tenantId = getTenantId(tenantDomain);
-            if (tenantId == MultitenantConstants.SUPER_TENANT_ID ||
-                tenantId == MultitenantConstants.INVALID_TENANT_ID) {
-                throw new Exception("Tenant " + tenantDomain + " does not exist");
-            }
-            PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
-            carbonContext.setTenantId(tenantId);
-            carbonContext.setTenantDomain(tenantDomain);
-
-            tenantConfigCtx = tenantConfigContexts.get(tenantDomain);
-            if (tenantConfigCtx != null) {
-                return tenantConfigCtx;
-            }
-
-            AxisConfiguration mainAxisConfig = mainConfigCtx.getAxisConfiguration();
-
-            dataHolder.getTenantRegistryLoader().loadTenantRegistry(tenantId);
+        Map<String, ConfigurationContext> tenantConfigContexts = getTenantConfigurationContexts(mainConfigCtx);
+        ConfigurationContext tenantConfigCtx = tenantConfigContexts.get(tenantDomain);
+        if (tenantConfigCtx != null) {
+            return tenantConfigCtx;
+        }
+        TenantLoadingTimer timer = new TenantLoadingTimer();
+        int tenantId = getTenantId(tenantDomain);
+        if (tenantId == MultitenantConstants.SUPER_TENANT_ID ||
+            tenantId == MultitenantConstants.INVALID_TENANT_ID) {
+            throw new Exception("Tenant " + tenantDomain + " does not exist");
+        }
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantId(tenantId);
+        carbonContext.setTenantDomain(tenantDomain);
 
-            try {
-                UserRegistry tenantConfigRegistry =
-                        dataHolder.getRegistryService().getConfigSystemRegistry(tenantId);
-                UserRegistry tenantLocalUserRegistry =
-                        dataHolder.getRegistryService().getLocalRepository(tenantId);
-                TenantAxisConfigurator tenantAxisConfigurator =
-                        new TenantAxisConfigurator(mainAxisConfig, tenantDomain, tenantId,
-                                                   tenantConfigRegistry, tenantLocalUserRegistry);
-                doPreConfigContextCreation(tenantId);
-                tenantConfigCtx =
-                        ConfigurationContextFactory.createConfigurationContext(tenantAxisConfigurator);
-                tenantConfigContexts.put(tenantDomain, tenantConfigCtx);
+        AxisConfiguration mainAxisConfig = mainConfigCtx.getAxisConfiguration();
 
-                AxisConfiguration tenantAxisConfig = tenantConfigCtx.getAxisConfiguration();
+        dataHolder.getTenantRegistryLoader().loadTenantRegistry(tenantId);
 
-                tenantConfigCtx.setServicePath(CarbonUtils.getAxis2ServicesDir(tenantAxisConfig));
-                tenantConfigCtx.setContextRoot("local:/");
-
-                TenantTransportSender transportSender = new TenantTransportSender(mainConfigCtx);
-                //adding new transport outs
-                // adding the two tenant specific transport senders
-                TransportOutDescription httpOutDescription = new TransportOutDescription(Constants.TRANSPORT_HTTP);
-                httpOutDescription.setSender(transportSender);
-                tenantAxisConfig.addTransportOut(httpOutDescription);
-
-                // adding the two tenant specific transport senders
-                TransportOutDescription httpsOutDescription = new TransportOutDescription(Constants.TRANSPORT_HTTPS);
-                httpsOutDescription.setSender(transportSender);
-                tenantAxisConfig.addTransportOut(httpsOutDescription);
-
-                // Set the work directory
-                tenantConfigCtx.setProperty(ServerConstants.WORK_DIR,
-                                            mainConfigCtx.getProperty(ServerConstants.WORK_DIR));
-                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
-                new TransportPersistenceManager(tenantAxisConfig).
-                        updateEnabledTransports(tenantAxisConfig.getTransportsIn().values(),
-                                                tenantAxisConfig.getTransportsOut().values());
-
-                // Notify all observers
-                BundleContext bundleContext = dataHolder.getBundleContext();
-                if (bundleContext != null) {
-                    ServiceTracker tracker =
-                            new ServiceTracker(bundleContext,
-                                               Axis2ConfigurationContextObserver.class.getName(), null);
-                    tracker.open();
-                    Object[] services = tracker.getServices();
-                    if (services != null) {
-                        for (Object service : services) {
-                            ((Axis2ConfigurationContextObserver) service).createdConfigurationContext(tenantConfigCtx);
-                        }
+        try {
+            UserRegistry tenantConfigRegistry =
+                    dataHolder.getRegistryService().getConfigSystemRegistry(tenantId);
+            UserRegistry tenantLocalUserRegistry =
+                    dataHolder.getRegistryService().getLocalRepository(tenantId);
+            timer.phaseCompleted("registry");
+
+            TenantAxisConfigurator tenantAxisConfigurator =
+                    new TenantAxisConfigurator(mainAxisConfig, tenantDomain, tenantId,
+                                               tenantConfigRegistry, tenantLocalUserRegistry);
+            doPreConfigContextCreation(tenantId);
+            tenantConfigCtx =
+                    ConfigurationContextFactory.createConfigurationContext(tenantAxisConfigurator);
+            tenantConfigContexts.put(tenantDomain, tenantConfigCtx);
+
+            AxisConfiguration tenantAxisConfig = tenantConfigCtx.getAxisConfiguration();
+
+            tenantConfigCtx.setServicePath(CarbonUtils.getAxis2ServicesDir(tenantAxisConfig));
+            tenantConfigCtx.setContextRoot("local:/");
+
+            TenantTransportSender transportSender = new TenantTransportSender(mainConfigCtx);
+            //adding new transport outs
+            // adding the two tenant specific transport senders
+            TransportOutDescription httpOutDescription = new TransportOutDescription(Constants.TRANSPORT_HTTP);
+            httpOutDescription.setSender(transportSender);
+            tenantAxisConfig.addTransportOut(httpOutDescription);
+
+            // adding the two tenant specific transport senders
+            TransportOutDescription httpsOutDescription = new TransportOutDescription(Constants.TRANSPORT_HTTPS);
+            httpsOutDescription.setSender(transportSender);
+            tenantAxisConfig.addTransportOut(httpsOutDescription);
+
+            // Set the work directory
+            tenantConfigCtx.setProperty(ServerConstants.WORK_DIR,
+                                        mainConfigCtx.getProperty(ServerConstants.WORK_DIR));
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+            new TransportPersistenceManager(tenantAxisConfig).
+                    updateEnabledTransports(tenantAxisConfig.getTransportsIn().values(),
+                                            tenantAxisConfig.getTransportsOut().values());
+            timer.phaseCompleted("configuration");
+
+            // Notify all observers
+            BundleContext bundleContext = dataHolder.getBundleContext();
+            if (bundleContext != null) {
+                ServiceTracker tracker =
+                        new ServiceTracker(bundleContext,
+                                           Axis2ConfigurationContextObserver.class.getName(), null);
+                tracker.open();
+                Object[] services = tracker.getServices();
+                if (services != null) {
+                    for (Object service : services) {
+                        ((Axis2ConfigurationContextObserver) service).createdConfigurationContext(tenantConfigCtx);
                     }
-                    tracker.close();
                 }
-                tenantConfigCtx.setProperty(MultitenantConstants.LAST_ACCESSED,
-                                                        System.currentTimeMillis());
-
-                // Register Capp deployer for this tenant
-                Utils.addCAppDeployer(tenantAxisConfig);
-
-                //deploy the services since all the deployers are initialized by now.
-                tenantAxisConfigurator.deployServices();
-
-                log.info("Loaded tenant " + tenantDomain + " in " +
-                         (System.currentTimeMillis() - tenantLoadingStartTime) + " ms");
-                return tenantConfigCtx;
-            } catch (Exception e) {
-                String msg = "Error occurred while running deployment for tenant ";
-                log.error(msg + tenantDomain, e);
-                throw new Exception(msg, e);
+                tracker.close();
             }
+            tenantConfigCtx.setProperty(MultitenantConstants.LAST_ACCESSED,
+                                                    System.currentTimeMillis());
+            timer.phaseCompleted("observers");
+
+            // Register Capp deployer for this tenant
+            Utils.addCAppDeployer(tenantAxisConfig);
+
+            //deploy the services since all the deployers are initialized by now.
+            tenantAxisConfigurator.deployServices();
+            timer.phaseCompleted("deployment");
+
+            log.info("Loaded tenant " + tenantDomain + " in " + timer.getTotalTime() + " ms (" +
+                     timer.getPhaseTimes() + ")");
+            return tenantConfigCtx;
+        } catch (Exception e) {
+            String msg = "Error occurred while running deployment for tenant ";
+            log.error(msg + tenantDomain, e);
+            throw new Exception(msg, e);
         }
     }
 
@@ -420,33 +543,31 @@ public final class TenantAxisUtils {
                 getTenantConfigurationContexts(mainServerConfigContext);
         for (Map.Entry<String, ConfigurationContext> entry : tenantConfigContexts.entrySet()) {
             String tenantDomain = entry.getKey();
-            synchronized (tenantDomain.intern()) {
-                ConfigurationContext tenantCfgCtx = entry.getValue();
-                Long lastAccessed =
-                        (Long) tenantCfgCtx.getProperty(MultitenantConstants.LAST_ACCESSED);
-                if (System.currentTimeMillis() - lastAccessed >= tenantIdleTimeMillis) {
-                    // Get the write lock.
-                    Lock tenantWriteLock = tenantReadWriteLocks.get(tenantDomain).writeLock();
-                    tenantWriteLock.lock();
-                    try {
-                        lastAccessed = (Long) tenantCfgCtx.getProperty(MultitenantConstants.LAST_ACCESSED);
-                        if (System.currentTimeMillis() - lastAccessed >= tenantIdleTimeMillis) {
-                            try {
-                                PrivilegedCarbonContext.startTenantFlow();
-                                // Creating CarbonContext object for these threads.
-                                PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
-                                carbonContext.setTenantDomain(tenantDomain, true);
-
-                                // Terminating idle tenant configuration contexts.
-                                terminateTenantConfigContext(tenantCfgCtx);
-                                tenantConfigContexts.remove(tenantDomain);
-                            } finally {
-                                PrivilegedCarbonContext.endTenantFlow();
-                            }
+            ConfigurationContext tenantCfgCtx = entry.getValue();
+            Long lastAccessed =
+                    (Long) tenantCfgCtx.getProperty(MultitenantConstants.LAST_ACCESSED);
+            if (System.currentTimeMillis() - lastAccessed >= tenantIdleTimeMillis) {
+                // Get the write lock.
+                Lock tenantWriteLock = getTenantReadWriteLock(tenantDomain).writeLock();
+                tenantWriteLock.lock();
+                try {
+                    lastAccessed = (Long) tenantCfgCtx.getProperty(MultitenantConstants.LAST_ACCESSED);
+                    if (System.currentTimeMillis() - lastAccessed >= tenantIdleTimeMillis) {
+                        try {
+                            PrivilegedCarbonContext.startTenantFlow();
+                            // Creating CarbonContext object for these threads.
+                            PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                            carbonContext.setTenantDomain(tenantDomain, true);
+
+                            // Terminating idle tenant configuration contexts.
+                            terminateTenantConfigContext(tenantCfgCtx);
+                            tenantConfigContexts.remove(tenantDomain);
+                        } finally {
+                            PrivilegedCarbonContext.endTenantFlow();
                         }
-                    } finally {
-                        tenantWriteLock.unlock();
                     }
+                } finally {
+                    tenantWriteLock.unlock();
                 }
             }
         }
@@ -552,4 +673,30 @@ public final class TenantAxisUtils {
             tracker.close();
         }
     }
+
+    /**
+     * Records the time taken by each phase of loading a tenant.
+     */
+    private static class TenantLoadingTimer {
+        private final long startTime = System.currentTimeMillis();
+        private final StringBuilder phaseTimes = new StringBuilder();
+        private long phaseStartTime = startTime;
+
+        private void phaseCompleted(String phase) {
+            long now = System.currentTimeMillis();
+            if (phaseTimes.length() > 0) {
+                phaseTimes.append(", ");
+            }
+            phaseTimes.append(phase).append(": ").append(now - phaseStartTime).append(" ms");
+            phaseStartTime = now;
+        }
+
+        private long getTotalTime() {
+            return System.currentTimeMillis() - startTime;
+        }
+
+        private String getPhaseTimes() {
+            return phaseTimes.toString();
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.core.multitenancy.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads tenants such that concurrent requests for the same tenant share a single load. The first
+ * thread requesting a tenant loads it, and the others wait for the result of that load. A failed
+ * load is not remembered, so the next request for the tenant loads it again.
+ * <p/>
+ * A tenant which is requested again by the thread loading it, for example by a deployer which
+ * looks up the tenant being deployed, is loaded directly instead of waiting on itself.
+ *
+ * @param <V> the type of the loaded tenants
+ */
+class TenantLoader<V> {
+
+    // key - tenant domain, value - the load of the tenant which is in progress
+    private final ConcurrentMap<String, Load<V>> inFlightLoads =
+            new ConcurrentHashMap<String, Load<V>>();
+
+    /**
+     * Load a tenant, or wait for the load of the tenant which is already in progress.
+     *
+     * @param tenantDomain Tenant domain (e.g. foo.com)
+     * @param loader       Loads the tenant if there is no load in progress for it
+     * @return The loaded tenant
+     * @throws Exception If the tenant could not be loaded
+     */
+    V load(String tenantDomain, Callable<V> loader) throws Exception {
+        Load<V> load = new Load<V>(loader);
+        Load<V> inFlightLoad = inFlightLoads.putIfAbsent(tenantDomain, load);
+        if (inFlightLoad == null) {
+            try {
+                load.run();
+            } finally {
+                // the loaded tenant is available from the tenant ConfigurationContexts, and a
+                // failed load is attempted again by the next request
+                inFlightLoads.remove(tenantDomain, load);
+            }
+            return load.getValue(tenantDomain);
+        } else if (inFlightLoad.owner == Thread.currentThread()) {
+            return loader.call();
+        }
+        return inFlightLoad.getValue(tenantDomain);
+    }
+
+    /**
+     * @return the number of tenants being loaded
+     */
+    int getInFlightLoadCount() {
+        return inFlightLoads.size();
+    }
+
+    private static class Load<V> extends FutureTask<V> {
+
+        private final Thread owner = Thread.currentThread();
+
+        private Load(Callable<V> loader) {
+            super(loader);
+        }
+
+        private V getValue(String tenantDomain) throws Exception {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Exception("Interrupted while waiting for tenant " + tenantDomain +
+                                    " to be loaded", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new Exception("Cannot load tenant " + tenantDomain, cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.core.clustering.hazelcast;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class ClusterMessageLedgerTest extends TestCase {
+
+    public void testDuplicatesAreNotRecorded() {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(60000, 10);
+        assertTrue(ledger.add("a", "first"));
+        assertFalse(ledger.add("a", "second"));
+        assertTrue(ledger.contains("a"));
+        assertEquals(1, ledger.size());
+        assertEquals(1, ledger.getMessageCount());
+        assertEquals(Arrays.asList("first"), ledger.getMessages());
+    }
+
+    public void testMessagesExpire() throws Exception {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(50, 10);
+        ledger.add("a", "first");
+        ledger.add("b", "second");
+        Thread.sleep(100);
+        ledger.add("c", "third");
+
+        assertFalse(ledger.contains("a"));
+        assertFalse(ledger.contains("b"));
+        assertTrue(ledger.contains("c"));
+        assertEquals(Arrays.asList("third"), ledger.getMessages());
+
+        Thread.sleep(100);
+        ledger.expire();
+        assertEquals(0, ledger.size());
+        assertEquals(3, ledger.getMessageCount());
+
+        // an expired message is no longer a duplicate
+        assertTrue(ledger.add("a", "again"));
+    }
+
+    public void testOldestMessageDroppedWhenFull() {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(60000, 3);
+        ledger.add("a", "first");
+        ledger.add("b", "second");
+        ledger.add("c", "third");
+        ledger.add("d", "fourth");
+
+        assertEquals(3, ledger.size());
+        assertFalse(ledger.contains("a"));
+        assertEquals(Arrays.asList("second", "third", "fourth"), ledger.getMessages());
+        assertEquals(4, ledger.getMessageCount());
+        assertEquals(1, ledger.getEvictedMessageCount());
+    }
+
+    public void testExpiredMessagesAreNotCountedAsEvicted() throws Exception {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(50, 2);
+        ledger.add("a", "first");
+        ledger.add("b", "second");
+        Thread.sleep(100);
+        ledger.add("c", "third");
+        ledger.add("d", "fourth");
+
+        assertEquals(2, ledger.size());
+        assertEquals(0, ledger.getEvictedMessageCount());
+
+        ledger.add("e", "fifth");
+        assertEquals(Arrays.asList("fourth", "fifth"), ledger.getMessages());
+        assertEquals(1, ledger.getEvictedMessageCount());
+    }
+
+    public void testMessagesWithoutPayloadAreNotReplayed() {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(60000, 10);
+        ledger.add("a", null);
+        ledger.add("b", "second");
+        assertTrue(ledger.contains("a"));
+        assertEquals(Arrays.asList("second"), ledger.getMessages());
+    }
+
+    public void testMessageRate() throws Exception {
+        ClusterMessageLedger<String> ledger = new ClusterMessageLedger<String>(60000, 100);
+        assertEquals(0.0, ledger.getMessageRate());
+
+        ledger.expire();
+        for (int i = 0; i < 10; i++) {
+            ledger.add("msg" + i, null);
+        }
+        long start = System.currentTimeMillis();
+        Thread.sleep(100);
+        ledger.expire();
+        long elapsed = System.currentTimeMillis() - start;
+        double rate = ledger.getMessageRate();
+        assertTrue("Unexpected rate " + rate, rate > 0 && rate <= 10 * 1000.0 / 100);
+        assertTrue("Unexpected rate " + rate, rate >= 10 * 1000.0 / (elapsed + 50));
+
+        // no messages were recorded since the last update
+        Thread.sleep(10);
+        ledger.expire();
+        assertEquals(0.0, ledger.getMessageRate());
+    }
+}
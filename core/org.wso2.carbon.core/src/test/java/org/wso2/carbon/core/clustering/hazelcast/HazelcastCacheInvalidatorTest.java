@@ -0,0 +1,231 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.core.clustering.hazelcast;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import junit.framework.TestCase;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import javax.cache.Cache;
+import javax.cache.Caching;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HazelcastCacheInvalidatorTest extends TestCase {
+
+    private static final int TENANT_ID = MultitenantConstants.SUPER_TENANT_ID;
+    private static final String CACHE_MANAGER = "testCacheManager";
+
+    private StubTopic topic;
+    private HazelcastCacheInvalidator invalidator;
+
+    @Override
+    protected void setUp() throws Exception {
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+        carbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+
+        topic = new StubTopic();
+        invalidator = new HazelcastCacheInvalidator(topic.getHazelcastInstance(), "local");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        invalidator.shutdown();
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    public void testListensToInvalidationTopic() {
+        assertEquals(HazelcastConstants.CACHE_INVALIDATION_TOPIC, topic.name);
+        assertSame(invalidator, topic.listener);
+    }
+
+    public void testKeysOfBatchAreCoalesced() throws Exception {
+        // holding the invalidator keeps the scheduled flush from splitting the batch
+        synchronized (invalidator) {
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "a");
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "b");
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache2", "c");
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "a");
+        }
+
+        CacheInvalidationMessage message = topic.awaitMessage();
+        assertEquals("local", message.getSenderId());
+        List<CacheInvalidationMessage.CacheInvalidation> invalidations = message.getInvalidations();
+        assertEquals(2, invalidations.size());
+        assertInvalidation(invalidations.get(0), "cache1", "a", "b");
+        assertInvalidation(invalidations.get(1), "cache2", "c");
+
+        // the next invalidation is published in a new batch
+        invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "d");
+        assertInvalidation(topic.awaitMessage().getInvalidations().get(0), "cache1", "d");
+        assertEquals(2, topic.published.size());
+    }
+
+    public void testCacheClearedAboveMaxKeys() throws Exception {
+        synchronized (invalidator) {
+            for (int i = 0; i <= 1000; i++) {
+                invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "key" + i);
+            }
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "another");
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache2", "key");
+        }
+
+        List<CacheInvalidationMessage.CacheInvalidation> invalidations =
+                topic.awaitMessage().getInvalidations();
+        assertEquals(2, invalidations.size());
+        assertEquals("cache1", invalidations.get(0).getCacheName());
+        assertTrue(invalidations.get(0).isClearAll());
+        assertNull(invalidations.get(0).getCacheKeys());
+        assertInvalidation(invalidations.get(1), "cache2", "key");
+    }
+
+    public void testShutdownFlushesPendingInvalidations() throws Exception {
+        synchronized (invalidator) {
+            invalidator.invalidateCache(TENANT_ID, CACHE_MANAGER, "cache1", "a");
+            // the pending invalidations are published before the scheduled flush can run
+            invalidator.shutdown();
+            assertEquals(1, topic.published.size());
+        }
+        assertInvalidation(topic.awaitMessage().getInvalidations().get(0), "cache1", "a");
+
+        // the scheduled flush finds nothing left to publish
+        Thread.sleep(50);
+        assertEquals(1, topic.published.size());
+    }
+
+    public void testRemoteInvalidationDropsLocalEntries() {
+        Cache<String, String> cache =
+                Caching.getCacheManager(CACHE_MANAGER).getCache("testRemoteInvalidation");
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+
+        CacheInvalidationMessage message = new CacheInvalidationMessage("remote");
+        message.addInvalidation(new CacheInvalidationMessage.CacheInvalidation(TENANT_ID,
+                CACHE_MANAGER, "testRemoteInvalidation",
+                new ArrayList<Serializable>(Arrays.asList("a", "b"))));
+        invalidator.onMessage(topic.createMessage(message));
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+
+        message = new CacheInvalidationMessage("remote");
+        message.addInvalidation(new CacheInvalidationMessage.CacheInvalidation(TENANT_ID,
+                CACHE_MANAGER, "testRemoteInvalidation", null));
+        invalidator.onMessage(topic.createMessage(message));
+        assertNull(cache.get("c"));
+    }
+
+    public void testOwnInvalidationsAreIgnored() {
+        Cache<String, String> cache =
+                Caching.getCacheManager(CACHE_MANAGER).getCache("testOwnInvalidations");
+        cache.put("a", "1");
+
+        CacheInvalidationMessage message = new CacheInvalidationMessage("local");
+        message.addInvalidation(new CacheInvalidationMessage.CacheInvalidation(TENANT_ID,
+                CACHE_MANAGER, "testOwnInvalidations", null));
+        invalidator.onMessage(topic.createMessage(message));
+
+        assertEquals("1", cache.get("a"));
+    }
+
+    public void testInvalidationOfUnknownCache() {
+        CacheInvalidationMessage message = new CacheInvalidationMessage("remote");
+        message.addInvalidation(new CacheInvalidationMessage.CacheInvalidation(TENANT_ID,
+                CACHE_MANAGER, "testUnknownCache", null));
+        invalidator.onMessage(topic.createMessage(message));
+        assertEquals(MultitenantConstants.SUPER_TENANT_ID,
+                     PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
+    }
+
+    private static void assertInvalidation(CacheInvalidationMessage.CacheInvalidation invalidation,
+                                           String cacheName, Serializable... cacheKeys) {
+        assertEquals(TENANT_ID, invalidation.getTenantId());
+        assertEquals(CACHE_MANAGER, invalidation.getCacheManagerName());
+        assertEquals(cacheName, invalidation.getCacheName());
+        assertEquals(Arrays.asList(cacheKeys), invalidation.getCacheKeys());
+    }
+
+    /**
+     * Records the messages published to the invalidation topic, over proxied Hazelcast
+     * interfaces.
+     */
+    private static class StubTopic implements InvocationHandler {
+
+        private final List<CacheInvalidationMessage> published =
+                new ArrayList<CacheInvalidationMessage>();
+        private int awaited;
+        private String name;
+        private MessageListener<CacheInvalidationMessage> listener;
+
+        private HazelcastInstance getHazelcastInstance() {
+            return (HazelcastInstance) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{HazelcastInstance.class}, this);
+        }
+
+        private Message<CacheInvalidationMessage> createMessage(CacheInvalidationMessage message) {
+            return new Message<CacheInvalidationMessage>(name, message, System.currentTimeMillis(),
+                                                         null);
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String methodName = method.getName();
+            if ("getTopic".equals(methodName)) {
+                name = (String) args[0];
+                return Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class[]{ITopic.class}, this);
+            } else if ("addMessageListener".equals(methodName)) {
+                listener = (MessageListener<CacheInvalidationMessage>) args[0];
+                return "listener";
+            } else if ("publish".equals(methodName)) {
+                synchronized (this) {
+                    published.add((CacheInvalidationMessage) args[0]);
+                    notifyAll();
+                }
+                return null;
+            }
+            throw new UnsupportedOperationException(methodName);
+        }
+
+        /**
+         * Waits for the next message to be published.
+         */
+        private synchronized CacheInvalidationMessage awaitMessage() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (published.size() <= awaited) {
+                long remaining = deadline - System.currentTimeMillis();
+                assertTrue("No invalidations were published", remaining > 0);
+                wait(remaining);
+            }
+            return published.get(awaited++);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.core.multitenancy.utils;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TenantLoaderTest extends TestCase {
+
+    private final TenantLoader<String> tenantLoader = new TenantLoader<String>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        Future<String> first = executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return tenantLoader.load("foo.com", new Callable<String>() {
+                    public String call() throws Exception {
+                        loadCount.incrementAndGet();
+                        loadStarted.countDown();
+                        loadReleased.await();
+                        return "foo.com context";
+                    }
+                });
+            }
+        });
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        Future<String> second = submitAndAwaitWaiting(new Callable<String>() {
+            public String call() throws Exception {
+                return tenantLoader.load("foo.com", new Callable<String>() {
+                    public String call() throws Exception {
+                        loadCount.incrementAndGet();
+                        return "another foo.com context";
+                    }
+                });
+            }
+        });
+        // another tenant is loaded while foo.com is still being loaded
+        assertEquals("bar.com context", tenantLoader.load("bar.com", new Callable<String>() {
+            public String call() throws Exception {
+                return "bar.com context";
+            }
+        }));
+        assertFalse(second.isDone());
+
+        loadReleased.countDown();
+        assertEquals("foo.com context", first.get(5, TimeUnit.SECONDS));
+        assertEquals("foo.com context", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loadCount.get());
+        assertEquals(0, tenantLoader.getInFlightLoadCount());
+    }
+
+    public void testFailedLoadIsRetried() throws Exception {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        Future<String> first = executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return tenantLoader.load("foo.com", new Callable<String>() {
+                    public String call() throws Exception {
+                        loadStarted.countDown();
+                        loadReleased.await();
+                        throw new IllegalStateException("foo.com is not available");
+                    }
+                });
+            }
+        });
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        Future<String> second = submitAndAwaitWaiting(new Callable<String>() {
+            public String call() throws Exception {
+                return tenantLoader.load("foo.com", new Callable<String>() {
+                    public String call() throws Exception {
+                        return "another foo.com context";
+                    }
+                });
+            }
+        });
+
+        loadReleased.countDown();
+        assertLoadFailed(first);
+        // the request which waited for the failed load shares its failure
+        assertLoadFailed(second);
+        assertEquals(0, tenantLoader.getInFlightLoadCount());
+
+        assertEquals("foo.com context", tenantLoader.load("foo.com", new Callable<String>() {
+            public String call() throws Exception {
+                return "foo.com context";
+            }
+        }));
+    }
+
+    public void testReentrantRequestIsLoadedDirectly() throws Exception {
+        Future<String> load = executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return tenantLoader.load("foo.com", new Callable<String>() {
+                    public String call() throws Exception {
+                        // e.g. a deployer of the tenant looks up the tenant being loaded
+                        return tenantLoader.load("foo.com", new Callable<String>() {
+                            public String call() throws Exception {
+                                return "foo.com context";
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        assertEquals("foo.com context", load.get(5, TimeUnit.SECONDS));
+        assertEquals(0, tenantLoader.getInFlightLoadCount());
+    }
+
+    /**
+     * Runs a request in a thread of its own, and waits until it blocks on the load in progress.
+     */
+    private static Future<String> submitAndAwaitWaiting(Callable<String> request)
+            throws InterruptedException {
+        FutureTask<String> future = new FutureTask<String>(request);
+        Thread thread = new Thread(future);
+        thread.setDaemon(true);
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue("The request did not wait for the load in progress",
+                       System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private static void assertLoadFailed(Future<String> load) throws Exception {
+        try {
+            load.get(5, TimeUnit.SECONDS);
+            fail("The load of foo.com should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -1794,6 +1794,14 @@ public class RemoteRegistry implements Registry {
     	throw new UnsupportedOperationException("Operation not permitted");
     }
 
+    public void dumpArchive(String path, OutputStream output) throws RegistryException {
+        throw new UnsupportedOperationException("Operation not permitted");
+    }
+
+    public void restoreArchive(String path, InputStream input) throws RegistryException {
+        throw new UnsupportedOperationException("Operation not permitted");
+    }
+
     private String getFilteredTenantCountedContentURL(String srcIri) throws RegistryException {
 
         //Check whether the srcIri is a local remote registry related one, else evaluate tenant specific uri
@@ -20,6 +20,8 @@ import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.dataaccess.TransactionManager;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Date;
@@ -586,4 +588,27 @@ import java.util.Map;
       * @throws RegistryException throws if the operation fail
       */
       void dumpLite(String path, Writer writer) throws RegistryException;
+
+    /**
+     * Writes a binary archive of the given path, along with its descendants. Archives carry the
+     * same information as dumps, but keep the content of resources as is, and they are read and
+     * written in chunks of resources.
+     *
+     * @param path   path to archive
+     * @param output stream to write the archive to
+     *
+     * @throws RegistryException throws if the operation fail
+     */
+    void dumpArchive(String path, OutputStream output) throws RegistryException;
+
+    /**
+     * Restores a binary archive written by {@link #dumpArchive(String, OutputStream)} to the
+     * given path, replacing the resource at the path along with its descendants.
+     *
+     * @param path  path to restore the archive to
+     * @param input stream to read the archive from
+     *
+     * @throws RegistryException throws if the operation fail
+     */
+    void restoreArchive(String path, InputStream input) throws RegistryException;
 }
@@ -177,6 +177,15 @@ public class ResourceImpl implements Resource {
      */
     protected int dbBasedContentID = -1;
 
+    /**
+     * Whether the content is left in the database, to be streamed from there when it is read, as it
+     * is larger than the content streaming threshold of the registry. The content is identified by
+     * the dbBasedContentID, and belongs to the tenant given by contentTenantId.
+     */
+    private boolean contentStreamed;
+
+    private int contentTenantId;
+
     /**
      * Content of the resource. Object and the type stored in this field depends on the resource
      * type. If the resource is a file with no special media type handling, this contains an array
@@ -346,6 +355,8 @@ public class ResourceImpl implements Resource {
         this.pathID = resource.pathID;
         this.name = resource.name;
         this.dbBasedContentID = resource.dbBasedContentID;
+        this.contentStreamed = resource.contentStreamed;
+        this.contentTenantId = resource.contentTenantId;
         this.properties.putAll(resource.properties);
 
         this.content = resource.content;
@@ -868,12 +879,63 @@ public class ResourceImpl implements Resource {
      * @throws RegistryException if the operation failed.
      */
     protected void pullContentFromOriginal() throws RegistryException {
-        if (content == null && original != null) {
+        if (content == null && !contentStreamed && original != null) {
             // if the content is not yet available, try to obtain it from the original resource.
             content = original.getContent();
         }
     }
 
+    /**
+     * Method to check whether the content is streamed from the database when it is read, instead
+     * of being held by this resource.
+     *
+     * @return true if the content is streamed, false otherwise.
+     */
+    public boolean isContentStreamed() {
+        return contentStreamed;
+    }
+
+    /**
+     * Mark the content of this resource as streamed from the database. The content is read from
+     * the database entry given by the db based content id, when it is first read through
+     * {@link #getContentStream()} or {@link #getContent()}. As a streamed content may have been
+     * removed from the database by the time it is read, this is only meant to be used for content
+     * of the current version of a resource.
+     *
+     * @param tenantId the id of the tenant to which the content belongs.
+     */
+    public void setContentStreamed(int tenantId) {
+        this.content = null;
+        this.contentStreamed = true;
+        this.contentTenantId = tenantId;
+    }
+
+    // Loads a streamed content to memory, for the callers which expect the content itself.
+    private void loadStreamedContent() throws RegistryException {
+        if (content == null && contentStreamed) {
+            content = RegistryUtils.getByteArray(openStreamedContent());
+            contentStreamed = false;
+        }
+    }
+
+    private InputStream openStreamedContent() throws RegistryException {
+        DataAccessManager streamDataAccessManager = dataAccessManager;
+        if (streamDataAccessManager == null && RegistryContext.getBaseInstance() != null) {
+            streamDataAccessManager = RegistryContext.getBaseInstance().getDataAccessManager();
+        }
+        if (streamDataAccessManager == null) {
+            throw new RegistryException("Unable to read the streamed content of the resource " +
+                    path + ". No data access manager is available.");
+        }
+        InputStream contentStream = streamDataAccessManager.getDAOManager().getResourceDAO()
+                .openContentStream(dbBasedContentID, contentTenantId, streamDataAccessManager);
+        if (contentStream == null) {
+            throw new RegistryException("Unable to read the streamed content of the resource " +
+                    path + ".");
+        }
+        return contentStream;
+    }
+
     /**
      * Method to get the content stream.
      *
@@ -883,6 +945,9 @@ public class ResourceImpl implements Resource {
     public InputStream getContentStream() throws RegistryException {
 
         pullContentFromOriginal();
+        if (content == null && contentStreamed) {
+            return openStreamedContent();
+        }
         if (content == null) {
             throw new RegistryException("Resource content is empty.");
         }
@@ -931,6 +996,7 @@ public class ResourceImpl implements Resource {
     public void setContentStreamWithNoUpdate(InputStream contentStream) throws RegistryException {
 
         content = RegistryUtils.getByteArray(contentStream);
+        contentStreamed = false;
     }
 
     /**
@@ -943,6 +1009,7 @@ public class ResourceImpl implements Resource {
      */
     public Object getContent() throws RegistryException {
         pullContentFromOriginal();
+        loadStreamedContent();
         return content;
     }
 
@@ -970,10 +1037,13 @@ public class ResourceImpl implements Resource {
     public void setContentWithNoUpdate(Object content) throws RegistryException {
 
         this.content = content;
+        this.contentStreamed = false;
     }
 
     /**
-     * Prepare the resource content to be put.
+     * Prepare the resource content to be put. If content streaming has been enabled for the
+     * registry, content set as an input stream is left as it is, to be written to the database as
+     * it is read from the stream.
      *
      * @throws RegistryException throws if the operation fail.
      */
@@ -981,11 +1051,16 @@ public class ResourceImpl implements Resource {
 
         if (content instanceof String) {
             content = RegistryUtils.encodeString((String) content);
-        } else if (content instanceof InputStream) {
+        } else if (content instanceof InputStream && !isContentStreamingEnabled()) {
             content = RegistryUtils.getByteArray((InputStream) content);
         }
     }
 
+    private static boolean isContentStreamingEnabled() {
+        RegistryContext registryContext = RegistryContext.getBaseInstance();
+        return registryContext != null && registryContext.getContentStreamingThreshold() >= 0;
+    }
+
     /**
      * Format the path to the standard way.
      *
@@ -1274,6 +1349,8 @@ public class ResourceImpl implements Resource {
         pullContentFromOriginal();
         if (this.content != null) {
             resource.setContent(this.content);
+        } else if (contentStreamed) {
+            resource.setContentStreamed(contentTenantId);
         }
         resource.setDataAccessManager(this.dataAccessManager);
         resource.setUserName(this.userName);
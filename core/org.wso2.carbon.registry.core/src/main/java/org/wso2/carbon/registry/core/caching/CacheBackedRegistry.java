@@ -33,11 +33,14 @@ import org.wso2.carbon.registry.core.utils.AuthorizationUtils;
 import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * CacheBackedRegistry has wrapped from original Registry interface to support caching
@@ -64,6 +67,43 @@ public class CacheBackedRegistry implements Registry {
 
     private static final Log log = LogFactory.getLog(CacheBackedRegistry.class);
 
+    // Loads of resources missing from the cache, shared by concurrent requests for the same key.
+    // Resources are mutable, hence a load is only shared if the loaded resource was cached.
+    private static final SingleFlightLoader<RegistryCacheKey, GhostResource<Resource>>
+            ghostResourceLoader =
+            new SingleFlightLoader<RegistryCacheKey, GhostResource<Resource>>() {
+                @Override
+                protected boolean isShared(RegistryCacheKey registryCacheKey,
+                                           GhostResource<Resource> ghostResource) {
+                    return getCache().get(registryCacheKey) == ghostResource;
+                }
+            };
+
+    // Loads of resources which are only cached as ghost resources.
+    private static final SingleFlightLoader<RegistryCacheKey, Resource> resourceLoader =
+            new SingleFlightLoader<RegistryCacheKey, Resource>() {
+                @Override
+                protected boolean isShared(RegistryCacheKey registryCacheKey, Resource resource) {
+                    return isCacheable(resource);
+                }
+            };
+
+    /**
+     * Records the path of a cached resource in the path index used by the {@link CachingHandler}
+     * to invalidate sub trees. This is called on cache hits too, since an entry could have been
+     * added to the cache by another node.
+     *
+     * @param cache    the resource cache
+     * @param cacheKey the key of the cached resource
+     */
+    private static void indexCacheKey(Cache<RegistryCacheKey, GhostResource> cache,
+                                      RegistryCacheKey cacheKey) {
+        RegistryCachePathIndex pathIndex = RegistryCachePathIndex.getPathIndex();
+        if (pathIndex.addPath(cacheKey)) {
+            pathIndex.rebuild(cacheKey.getTenantId(), cache.keys());
+        }
+    }
+
 
     public CacheBackedRegistry(Registry registry) {
         this.registry = registry;
@@ -151,7 +191,7 @@ public class CacheBackedRegistry implements Registry {
     }
 
     @SuppressWarnings("unchecked")
-    public Resource get(String path) throws RegistryException {
+    public Resource get(final String path) throws RegistryException {
         if (registry.getRegistryContext().isNoCachePath(path) || isCommunityFeatureRequest(path)) {
             return registry.get(path);
         }
@@ -164,84 +204,116 @@ public class CacheBackedRegistry implements Registry {
             throw new AuthorizationFailedException(msg);
         }
 
-        GhostResource<Resource> ghostResource = getGhostResourceFromCache(path);
+        RegistryCacheKey registryCacheKey = getRegistryCacheKey(registry, path);
+        GhostResource<Resource> ghostResource = getGhostResourceFromCache(path, registryCacheKey);
 
         resource = ghostResource.getResource();
         if (resource == null) {
-        	synchronized (path.intern()) {
-	            resource = registry.get(path);
-	            if (resource.getProperty(RegistryConstants.REGISTRY_LINK) == null ||
-	                    resource.getProperty(RegistryConstants.REGISTRY_MOUNT) != null) {
-	                ghostResource.setResource(resource);
-	            }
-        	}
+            resource = loadResource(ghostResource, registryCacheKey, new Callable<Resource>() {
+                public Resource call() throws RegistryException {
+                    return registry.get(path);
+                }
+            });
         }
 
         return resource;
     }
-    
-    private GhostResource<Resource> getGhostResourceFromCache(String path) throws RegistryException {
-        Resource resource;
-        RegistryCacheKey registryCacheKey = getRegistryCacheKey(registry, path);
 
-        GhostResource<Resource> ghostResource;
-        Object ghostResourceObject;
-        Cache<RegistryCacheKey, GhostResource> cache = getCache();
-        if ((ghostResourceObject = cache.get(registryCacheKey)) == null) {
-            synchronized (path.intern()){
-                //Checking again as the some other previous thread might have updated the cache
-                if ((ghostResourceObject = cache.get(registryCacheKey)) == null) {
-                    resource = registry.get(path);
+    /**
+     * Reads the ghost resource of a path from the cache, without any locking on a cache hit. On a
+     * cache miss, concurrent requests for the same key share a single read from the registry.
+     */
+    private GhostResource<Resource> getGhostResourceFromCache(final String path,
+                                                              final RegistryCacheKey registryCacheKey)
+            throws RegistryException {
+        final Cache<RegistryCacheKey, GhostResource> cache = getCache();
+        GhostResource<Resource> ghostResource = getGhostResource(cache, registryCacheKey);
+        if (ghostResource != null) {
+            return ghostResource;
+        }
+        return ghostResourceLoader.load(registryCacheKey, new Callable<GhostResource<Resource>>() {
+            public GhostResource<Resource> call() throws RegistryException {
+                //Checking again as some other previous load might have updated the cache
+                GhostResource<Resource> ghostResource = getGhostResource(cache, registryCacheKey);
+                if (ghostResource == null) {
+                    Resource resource = registry.get(path);
                     ghostResource = new GhostResource<Resource>(resource);
-                    if (resource.getProperty(RegistryConstants.REGISTRY_LINK) == null ||
-                            resource.getProperty(RegistryConstants.REGISTRY_MOUNT) != null) {
+                    if (isCacheable(resource)) {
                         cache.put(registryCacheKey, ghostResource);
+                        indexCacheKey(cache, registryCacheKey);
                     }
-                }else {
-                    ghostResource = (GhostResource<Resource>) ghostResourceObject;
                 }
+                return ghostResource;
             }
-        } else {
-            ghostResource = (GhostResource<Resource>) ghostResourceObject;
-        }
-       return ghostResource;
+        });
     }
 
-
-    private GhostResource<Resource> getGhostCollectionFromCache(String path, int start, int pageSize)
+    private GhostResource<Resource> getGhostCollectionFromCache(final String path, final int start,
+                                                                final int pageSize,
+                                                                final RegistryCacheKey registryCacheKey)
             throws RegistryException {
-        Collection collection;
-
-        GhostResource<Resource> ghostResource;
-
-        RegistryCacheKey registryCacheKey = getRegistryCacheKey(registry, path +
-                ";start=" + start + ";pageSize=" + pageSize);
-        
-        Cache<RegistryCacheKey, GhostResource> cache = getCache();
-        if (!cache.containsKey(registryCacheKey)) {
-            synchronized (path.intern()) {
-                //check again to cache to validate whether any other thread have updated with that time.
-                if (!cache.containsKey(registryCacheKey)) {
-                    collection = registry.get(path, start, pageSize);
+        final Cache<RegistryCacheKey, GhostResource> cache = getCache();
+        GhostResource<Resource> ghostResource = getGhostResource(cache, registryCacheKey);
+        if (ghostResource != null) {
+            return ghostResource;
+        }
+        return ghostResourceLoader.load(registryCacheKey, new Callable<GhostResource<Resource>>() {
+            public GhostResource<Resource> call() throws RegistryException {
+                //check again to cache to validate whether any other load have updated it meanwhile.
+                GhostResource<Resource> ghostResource = getGhostResource(cache, registryCacheKey);
+                if (ghostResource == null) {
+                    Collection collection = registry.get(path, start, pageSize);
                     ghostResource = new GhostResource<Resource>(collection);
                     if (collection.getProperty(RegistryConstants.REGISTRY_LINK) == null) {
                         cache.put(registryCacheKey, ghostResource);
+                        indexCacheKey(cache, registryCacheKey);
                     }
-                } else {
-                    ghostResource =
-                            (GhostResource<Resource>) cache.get(registryCacheKey);
                 }
+                return ghostResource;
             }
-        } else {
-            ghostResource =
-                    (GhostResource<Resource>) cache.get(registryCacheKey);
-        }
+        });
+    }
 
+    @SuppressWarnings("unchecked")
+    private static GhostResource<Resource> getGhostResource(
+            Cache<RegistryCacheKey, GhostResource> cache, RegistryCacheKey registryCacheKey) {
+        GhostResource<Resource> ghostResource =
+                (GhostResource<Resource>) cache.get(registryCacheKey);
+        if (ghostResource != null) {
+            indexCacheKey(cache, registryCacheKey);
+        }
         return ghostResource;
     }
 
+    // Fills a ghost resource which was cached without its resource, such as after checking whether
+    // the resource exists. The read is shared among concurrent requests for the same key.
+    private static Resource loadResource(final GhostResource<Resource> ghostResource,
+                                         RegistryCacheKey registryCacheKey,
+                                         final Callable<Resource> reader)
+            throws RegistryException {
+        return resourceLoader.load(registryCacheKey, new Callable<Resource>() {
+            public Resource call() throws Exception {
+                Resource resource = ghostResource.getResource();
+                if (resource == null) {
+                    resource = reader.call();
+                    if (isCacheable(resource)) {
+                        ghostResource.setResource(resource);
+                    }
+                }
+                return resource;
+            }
+        });
+    }
+
+    // Links are not cached, unless they are mount points.
+    private static boolean isCacheable(Resource resource) {
+        return resource.getProperty(RegistryConstants.REGISTRY_LINK) == null ||
+                resource.getProperty(RegistryConstants.REGISTRY_MOUNT) != null;
+    }
+
     @SuppressWarnings("unchecked")
-    public Collection get(String path, int start, int pageSize) throws RegistryException {
+    public Collection get(final String path, final int start, final int pageSize)
+            throws RegistryException {
         if (registry.getRegistryContext().isNoCachePath(path) || isCommunityFeatureRequest(path)) {
             return registry.get(path, start, pageSize);
         }
@@ -252,15 +324,18 @@ public class CacheBackedRegistry implements Registry {
             throw new AuthorizationFailedException(msg);
         }
 
-        GhostResource<Resource> ghostResource = getGhostCollectionFromCache(path, start, pageSize);
+        RegistryCacheKey registryCacheKey = getRegistryCacheKey(registry, path +
+                ";start=" + start + ";pageSize=" + pageSize);
+        GhostResource<Resource> ghostResource =
+                getGhostCollectionFromCache(path, start, pageSize, registryCacheKey);
         Collection collection = (Collection) ghostResource.getResource();
         if (collection == null) {
-        	synchronized (path.intern()) {
-	            collection = registry.get(path, start, pageSize);
-	            if (collection.getProperty(RegistryConstants.REGISTRY_LINK) == null) {
-	                ghostResource.setResource(collection);
-	            }
-            }
+            collection = (Collection) loadResource(ghostResource, registryCacheKey,
+                    new Callable<Resource>() {
+                        public Resource call() throws RegistryException {
+                            return registry.get(path, start, pageSize);
+                        }
+                    });
         }
         return collection;
     }
@@ -289,9 +364,11 @@ public class CacheBackedRegistry implements Registry {
         Cache<RegistryCacheKey, GhostResource> cache = getCache();
         RegistryCacheKey registryCacheKey = getRegistryCacheKey(registry, path);
         if (cache.containsKey(registryCacheKey)) {
+            indexCacheKey(cache, registryCacheKey);
             return true;
         } else if (registry.resourceExists(path)) {
             cache.put(registryCacheKey, new GhostResource<Resource>(null));
+            indexCacheKey(cache, registryCacheKey);
             return true;
         }
         return false;
@@ -531,4 +608,12 @@ public class CacheBackedRegistry implements Registry {
     public void dumpLite(String path, Writer writer) throws RegistryException {
         registry.dumpLite(path, writer);
     }
+
+    public void dumpArchive(String path, OutputStream output) throws RegistryException {
+        registry.dumpArchive(path, output);
+    }
+
+    public void restoreArchive(String path, InputStream input) throws RegistryException {
+        registry.restoreArchive(path, input);
+    }
 }
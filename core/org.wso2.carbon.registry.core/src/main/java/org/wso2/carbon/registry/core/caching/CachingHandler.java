@@ -39,9 +39,7 @@ import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * CachingHandler using to handle the cached results of registry operation. We are removing the the
@@ -187,50 +185,24 @@ public class CachingHandler extends Handler {
 
         removeFromCache(connectionId, tenantId, cleanupPath, doGlobalCacheInvalidation);
         String parentPath = RegistryUtils.getParentPath(cleanupPath);
-        Cache<RegistryCacheKey, GhostResource> cache = getCache();
-        Iterator<RegistryCacheKey> keys = cache.keys();
-        while (keys.hasNext()) {
-            RegistryCacheKey key = keys.next();
-            String path = key.getPath();
-            if (recursive) {
-                if (path.startsWith(cleanupPath)) {
-                    removeFromCache(connectionId, tenantId, path, doGlobalCacheInvalidation);
-                }
+        if (recursive) {
+            // only the cached entries of the sub tree are looked up, instead of scanning the cache.
+            for (String path : RegistryCachePathIndex.getPathIndex().removeSubTree(tenantId,
+                    cleanupPath)) {
+                removeFromCache(connectionId, tenantId, path, doGlobalCacheInvalidation);
             }
         }
-//        for (Cache.Entry<RegistryCacheKey, GhostResource> entry : cache) {
-//        	RegistryCacheKey key=entry.getKey();
-//        	String path = key.getPath();
-//        	if (recursive) {
-//                if (path.startsWith(cleanupPath)) {
-//                    removeFromCache(connectionId, tenantId, path);
-//                }
-//            }
-//        }
         clearAncestry(connectionId, tenantId, parentPath, doGlobalCacheInvalidation);
     }
 
     private void clearAncestry(String connectionId, int tenantId, String parentPath, boolean doGlobalCacheInvalidation) {
         boolean cleared = removeFromCache(connectionId, tenantId, parentPath, doGlobalCacheInvalidation);
-        String pagedParentPathPrefix = "^" + Pattern.quote((parentPath == null) ? "" : parentPath)
-                + "(" + RegistryConstants.PATH_SEPARATOR + ")?(;start=.*)?$";
-        Pattern pattern = Pattern.compile(pagedParentPathPrefix);
-        Cache<RegistryCacheKey, GhostResource> cache = getCache();
-        Iterator<RegistryCacheKey> keys = cache.keys();
-        while (keys.hasNext()) {
-            RegistryCacheKey key = keys.next();
-            String path = key.getPath();
-            if (pattern.matcher(path).matches()) {
-                cleared = cleared || removeFromCache(connectionId, tenantId, path, doGlobalCacheInvalidation);
-            }
+        // the parent collection and all its cached pages.
+        for (String path : RegistryCachePathIndex.getPathIndex().removeCollection(tenantId,
+                parentPath)) {
+            cleared = removeFromCache(connectionId, tenantId, path, doGlobalCacheInvalidation) ||
+                    cleared;
         }
-//        for (Cache.Entry<RegistryCacheKey, GhostResource> entry : cache) {
-//        	RegistryCacheKey key=entry.getKey();
-//        	String path = key.getPath();
-//        	if (pattern.matcher(path).matches()) {
-//                 cleared = cleared || removeFromCache(connectionId, tenantId, path);
-//            }
-//		}
         if (!cleared && parentPath != null && !parentPath.equals(RegistryConstants.ROOT_PATH)) {
             clearAncestry(connectionId, tenantId, RegistryUtils.getParentPath(parentPath), doGlobalCacheInvalidation);
         }
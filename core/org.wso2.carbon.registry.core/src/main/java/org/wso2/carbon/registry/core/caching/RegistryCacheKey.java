@@ -53,6 +53,15 @@ public class RegistryCacheKey implements Serializable {
         return path;
     }
 
+    /**
+     * Method to obtain tenant identifier on cache key.
+     *
+     * @return tenant identifier on cache key.
+     */
+    public int getTenantId() {
+        return tenantId;
+    }
+
     /**
      * {@inheritDoc}
      */
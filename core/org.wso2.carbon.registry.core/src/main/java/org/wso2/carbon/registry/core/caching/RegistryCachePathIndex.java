@@ -0,0 +1,289 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.registry.core.caching;
+
+import org.wso2.carbon.registry.core.RegistryConstants;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index of the paths held in the registry resource cache. The paths of each tenant are kept in
+ * a tree of path segments, which allows the {@link CachingHandler} to find the cached entries of a
+ * sub tree, or the paged entries of a collection, without scanning the whole cache.
+ * <p/>
+ * The index may still hold the paths of entries which have been evicted or expired from the cache
+ * since. These paths are dropped once they are invalidated, and the index of a tenant is rebuilt
+ * from the keys of the cache when it has grown well beyond the number of cached entries.
+ */
+public class RegistryCachePathIndex {
+
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    private static final String PAGINATION_SUFFIX = ";start=";
+
+    private static final RegistryCachePathIndex pathIndex = new RegistryCachePathIndex();
+
+    private final ConcurrentMap<Integer, TenantPathIndex> tenantPathIndexes =
+            new ConcurrentHashMap<Integer, TenantPathIndex>();
+
+    /**
+     * Method to obtain the path index of the registry resource cache.
+     *
+     * @return the path index instance.
+     */
+    public static RegistryCachePathIndex getPathIndex() {
+        return pathIndex;
+    }
+
+    /**
+     * Adds the path of a cache key to the index. This is cheap for paths which are already
+     * indexed, and is hence expected to be called on each cache hit as well as on each cache put.
+     *
+     * @param cacheKey the key of the cached entry.
+     *
+     * @return true if the index of the tenant of the given key has grown large enough to be
+     *         rebuilt using {@link #rebuild(int, Iterator)}.
+     */
+    public boolean addPath(RegistryCacheKey cacheKey) {
+        String path = cacheKey.getPath();
+        if (path == null) {
+            return false;
+        }
+        TenantPathIndex tenantPathIndex = getTenantPathIndex(cacheKey.getTenantId());
+        if (tenantPathIndex.indexedPaths.containsKey(path)) {
+            return false;
+        }
+        tenantPathIndex.lock.readLock().lock();
+        try {
+            tenantPathIndex.add(path);
+        } finally {
+            tenantPathIndex.lock.readLock().unlock();
+        }
+        return tenantPathIndex.indexedPaths.size() > tenantPathIndex.rebuildThreshold;
+    }
+
+    /**
+     * Removes the given path and all the paths below it from the index.
+     *
+     * @param tenantId the tenant identifier.
+     * @param path     the root of the sub tree.
+     *
+     * @return the indexed paths which were removed.
+     */
+    public Set<String> removeSubTree(int tenantId, String path) {
+        Set<String> removedPaths = new HashSet<String>();
+        TenantPathIndex tenantPathIndex = tenantPathIndexes.get(tenantId);
+        if (tenantPathIndex == null || path == null) {
+            return removedPaths;
+        }
+        tenantPathIndex.lock.readLock().lock();
+        try {
+            PathNode node = tenantPathIndex.getNode(path);
+            if (node != null) {
+                tenantPathIndex.removeSubTree(node, removedPaths);
+            }
+        } finally {
+            tenantPathIndex.lock.readLock().unlock();
+        }
+        return removedPaths;
+    }
+
+    /**
+     * Removes the paths under which the given collection, and the pages of it, are cached from the
+     * index. These are the paths matching <code>path(/)?(;start=.*)?</code>.
+     *
+     * @param tenantId the tenant identifier.
+     * @param path     the path of the collection.
+     *
+     * @return the indexed paths which were removed.
+     */
+    public Set<String> removeCollection(int tenantId, String path) {
+        Set<String> removedPaths = new HashSet<String>();
+        TenantPathIndex tenantPathIndex = tenantPathIndexes.get(tenantId);
+        if (tenantPathIndex == null || path == null) {
+            return removedPaths;
+        }
+        String collectionPath = path + RegistryConstants.PATH_SEPARATOR;
+        tenantPathIndex.lock.readLock().lock();
+        try {
+            PathNode node = tenantPathIndex.getNode(path);
+            if (node != null) {
+                synchronized (node) {
+                    for (String indexedPath : node.paths.keySet()) {
+                        if (indexedPath.equals(path) || indexedPath.equals(collectionPath) ||
+                                indexedPath.startsWith(path + PAGINATION_SUFFIX) ||
+                                indexedPath.startsWith(collectionPath + PAGINATION_SUFFIX)) {
+                            tenantPathIndex.remove(node, indexedPath);
+                            removedPaths.add(indexedPath);
+                        }
+                    }
+                }
+            }
+        } finally {
+            tenantPathIndex.lock.readLock().unlock();
+        }
+        return removedPaths;
+    }
+
+    /**
+     * Replaces the index of a tenant with one built from the given cache keys.
+     *
+     * @param tenantId  the tenant identifier.
+     * @param cacheKeys the keys held in the cache.
+     */
+    public void rebuild(int tenantId, Iterator<RegistryCacheKey> cacheKeys) {
+        TenantPathIndex tenantPathIndex = getTenantPathIndex(tenantId);
+        tenantPathIndex.lock.writeLock().lock();
+        try {
+            tenantPathIndex.clear();
+            while (cacheKeys.hasNext()) {
+                RegistryCacheKey cacheKey = cacheKeys.next();
+                if (cacheKey.getTenantId() == tenantId && cacheKey.getPath() != null) {
+                    tenantPathIndex.add(cacheKey.getPath());
+                }
+            }
+            tenantPathIndex.rebuildThreshold =
+                    Math.max(MIN_REBUILD_THRESHOLD, 2 * tenantPathIndex.indexedPaths.size());
+        } finally {
+            tenantPathIndex.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to obtain the number of paths indexed for a tenant.
+     *
+     * @param tenantId the tenant identifier.
+     *
+     * @return the number of indexed paths.
+     */
+    public int size(int tenantId) {
+        TenantPathIndex tenantPathIndex = tenantPathIndexes.get(tenantId);
+        return (tenantPathIndex == null) ? 0 : tenantPathIndex.indexedPaths.size();
+    }
+
+    private TenantPathIndex getTenantPathIndex(int tenantId) {
+        TenantPathIndex tenantPathIndex = tenantPathIndexes.get(tenantId);
+        if (tenantPathIndex == null) {
+            TenantPathIndex newTenantPathIndex = new TenantPathIndex();
+            tenantPathIndex = tenantPathIndexes.putIfAbsent(tenantId, newTenantPathIndex);
+            if (tenantPathIndex == null) {
+                tenantPathIndex = newTenantPathIndex;
+            }
+        }
+        return tenantPathIndex;
+    }
+
+    // The segments of the resource path, ignoring any parameters such as the pagination or the
+    // version, which are appended after a ';'.
+    private static String[] getSegments(String path) {
+        int parametersIndex = path.indexOf(';');
+        String resourcePath = (parametersIndex < 0) ? path : path.substring(0, parametersIndex);
+        return resourcePath.split(RegistryConstants.PATH_SEPARATOR);
+    }
+
+    private static class TenantPathIndex {
+
+        // Taken for reading when adding and removing paths, and for writing when rebuilding.
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // The node holding each indexed path.
+        private final ConcurrentMap<String, PathNode> indexedPaths =
+                new ConcurrentHashMap<String, PathNode>();
+
+        private volatile PathNode root = new PathNode();
+
+        private volatile int rebuildThreshold = MIN_REBUILD_THRESHOLD;
+
+        private void add(String path) {
+            PathNode node = root;
+            for (String segment : getSegments(path)) {
+                if (segment.length() == 0) {
+                    continue;
+                }
+                PathNode child = node.children.get(segment);
+                if (child == null) {
+                    PathNode newChild = new PathNode();
+                    child = node.children.putIfAbsent(segment, newChild);
+                    if (child == null) {
+                        child = newChild;
+                    }
+                }
+                node = child;
+            }
+            synchronized (node) {
+                node.paths.put(path, Boolean.TRUE);
+                indexedPaths.put(path, node);
+            }
+        }
+
+        private PathNode getNode(String path) {
+            PathNode node = root;
+            for (String segment : getSegments(path)) {
+                if (segment.length() == 0) {
+                    continue;
+                }
+                node = node.children.get(segment);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node;
+        }
+
+        // Nodes are never detached from the tree, so that a path which is being added
+        // concurrently is not lost. Empty nodes are dropped when the index is rebuilt.
+        private void removeSubTree(PathNode node, Set<String> removedPaths) {
+            synchronized (node) {
+                for (String indexedPath : node.paths.keySet()) {
+                    remove(node, indexedPath);
+                    removedPaths.add(indexedPath);
+                }
+            }
+            for (PathNode child : node.children.values()) {
+                removeSubTree(child, removedPaths);
+            }
+        }
+
+        private void remove(PathNode node, String path) {
+            node.paths.remove(path);
+            indexedPaths.remove(path, node);
+        }
+
+        private void clear() {
+            root = new PathNode();
+            indexedPaths.clear();
+        }
+    }
+
+    private static class PathNode {
+
+        private final ConcurrentMap<String, PathNode> children =
+                new ConcurrentHashMap<String, PathNode>();
+
+        // The indexed paths which resolve to this node, i.e. the resource path itself along with
+        // the paths of its pages and versions.
+        private final ConcurrentMap<String, Boolean> paths =
+                new ConcurrentHashMap<String, Boolean>();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+*  Copyright (c) 2005-2011, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.registry.core.caching;
+
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads values on cache misses such that concurrent misses for the same key share a single load.
+ * The first thread to miss runs the load, and the others wait for its result instead of loading
+ * the same value again. Misses for different keys never contend with each other.
+ * <p/>
+ * A load which is requested again for the same key by the thread running it, for example by a
+ * handler which reads the resource being loaded, is run directly instead of waiting on itself.
+ * <p/>
+ * Waiting threads are handed the value loaded by the first thread only if it can be shared, as
+ * decided by {@link #isShared(Object, Object)}. Otherwise, each of them loads its own value.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlightLoader<K, V> {
+
+    private final ConcurrentMap<K, Load<V>> inFlightLoads = new ConcurrentHashMap<K, Load<V>>();
+
+    /**
+     * Loads the value of the given key, or waits for the load which is already in progress for it.
+     *
+     * @param key    the key to load.
+     * @param loader the loader used if there is no load in progress for the key.
+     *
+     * @return the loaded value.
+     * @throws RegistryException if the load failed.
+     */
+    public V load(K key, Callable<V> loader) throws RegistryException {
+        Load<V> load = new Load<V>(loader);
+        Load<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+        if (inFlightLoad == null) {
+            try {
+                load.run();
+            } finally {
+                inFlightLoads.remove(key, load);
+            }
+            return load.getValue();
+        } else if (inFlightLoad.owner == Thread.currentThread()) {
+            return call(loader);
+        }
+        V value = inFlightLoad.getValue();
+        return isShared(key, value) ? value : call(loader);
+    }
+
+    /**
+     * Method to check whether a loaded value can be handed to the threads which waited for its load.
+     * Values which can be modified by their readers, and are not cached, should not be shared.
+     *
+     * @param key   the key which was loaded.
+     * @param value the loaded value.
+     *
+     * @return true if the value can be shared, and false if each waiting thread should load its own.
+     */
+    protected boolean isShared(K key, V value) {
+        return true;
+    }
+
+    /**
+     * Method to obtain the number of loads in progress.
+     *
+     * @return the number of keys being loaded.
+     */
+    public int getInFlightLoadCount() {
+        return inFlightLoads.size();
+    }
+
+    private static <V> V call(Callable<V> loader) throws RegistryException {
+        try {
+            return loader.call();
+        } catch (RegistryException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RegistryException("Failed to load the resource.", e);
+        }
+    }
+
+    private static class Load<V> extends FutureTask<V> {
+
+        private final Thread owner = Thread.currentThread();
+
+        private Load(Callable<V> loader) {
+            super(loader);
+        }
+
+        private V getValue() throws RegistryException {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RegistryException("Interrupted while waiting for the resource to load.",
+                        e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RegistryException) {
+                    throw (RegistryException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RegistryException("Failed to load the resource.", cause);
+            }
+        }
+    }
+}
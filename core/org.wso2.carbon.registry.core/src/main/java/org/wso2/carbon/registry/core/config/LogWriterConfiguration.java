@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.config;
+
+/**
+ * This class contains configuration used by the log writer, which writes the activity logs of
+ * the registry to the database.
+ */
+public class LogWriterConfiguration {
+
+    /**
+     * Overflow policy under which adding a log to a full queue waits for the queue to be
+     * written, for up to the flush interval.
+     */
+    public static final String OVERFLOW_POLICY_BLOCK = "block";
+
+    /**
+     * Overflow policy under which logs added to a full queue are dropped.
+     */
+    public static final String OVERFLOW_POLICY_DROP_NEWEST = "dropNewest";
+
+    /**
+     * Overflow policy under which the oldest logs of a full queue are dropped to make room for
+     * new ones.
+     */
+    public static final String OVERFLOW_POLICY_DROP_OLDEST = "dropOldest";
+
+    private int queueSize = 10000;
+    private int batchSize = 100;
+    private long flushInterval = 10 * 1000;
+    private String overflowPolicy = OVERFLOW_POLICY_BLOCK;
+    private String journalPath = null;
+
+    /**
+     * Method to obtain the maximum number of logs waiting to be written.
+     *
+     * @return the size of the log queue.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Method to set the maximum number of logs waiting to be written.
+     *
+     * @param queueSize the size of the log queue.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Method to obtain the number of logs written to the database in one batch. The queue is
+     * also written as soon as this many logs are waiting.
+     *
+     * @return the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Method to set the number of logs written to the database in one batch.
+     *
+     * @param batchSize the batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Method to obtain the maximum time in milliseconds a log waits before being written.
+     *
+     * @return the flush interval.
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Method to set the maximum time in milliseconds a log waits before being written.
+     *
+     * @param flushInterval the flush interval.
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Method to obtain what happens to logs added when the queue is full.
+     *
+     * @return one of the overflow policies of this class.
+     */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Method to set what happens to logs added when the queue is full.
+     *
+     * @param overflowPolicy one of the overflow policies of this class.
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Method to obtain the path of the file to which logs are appended before being queued, so
+     * that logs which were not written survive a restart.
+     *
+     * @return the path of the journal, or null if logs are not journaled.
+     */
+    public String getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Method to set the path of the file to which logs are appended before being queued.
+     *
+     * @param journalPath the path of the journal, or null to not journal logs.
+     */
+    public void setJournalPath(String journalPath) {
+        this.journalPath = journalPath;
+    }
+}
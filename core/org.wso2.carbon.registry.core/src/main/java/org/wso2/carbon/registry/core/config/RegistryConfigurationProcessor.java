@@ -124,6 +124,26 @@ public class RegistryConfigurationProcessor {
                     registryContext.setCacheEnabled("true".equals(enableCachingEle.getText()));
                 }
 
+                OMElement contentStreamingThresholdEle =
+                        configElement.getFirstChildWithName(new QName("contentStreamingThreshold"));
+                if (contentStreamingThresholdEle != null) {
+                    try {
+                        registryContext.setContentStreamingThreshold(
+                                Long.parseLong(contentStreamingThresholdEle.getText().trim()));
+                    } catch (NumberFormatException e) {
+                        log.warn("Invalid content streaming threshold " +
+                                contentStreamingThresholdEle.getText() +
+                                ". Resource content will not be streamed.");
+                    }
+                }
+
+                OMElement logWriterEle =
+                        configElement.getFirstChildWithName(new QName("logWriter"));
+                if (logWriterEle != null) {
+                    registryContext.setLogWriterConfiguration(
+                            getLogWriterConfiguration(logWriterEle));
+                }
+
                 SecretResolver secretResolver = SecretResolverFactory.create(configElement, false);
                 Iterator dbConfigs = configElement.getChildrenWithName(new QName("dbConfig"));
                 // Read Database configurations
@@ -1033,4 +1053,52 @@ public class RegistryConfigurationProcessor {
             return this;
         }
     }
+
+    // Reads the configuration of the log writer. Invalid values are ignored, leaving the defaults.
+    private static LogWriterConfiguration getLogWriterConfiguration(OMElement logWriterEle) {
+        LogWriterConfiguration logWriterConfiguration = new LogWriterConfiguration();
+        Iterator logWriterConfigs = logWriterEle.getChildElements();
+        while (logWriterConfigs.hasNext()) {
+            OMElement logWriterConfig = (OMElement) logWriterConfigs.next();
+            String name = logWriterConfig.getLocalName();
+            String value = logWriterConfig.getText().trim();
+            try {
+                if (name.equals("queueSize")) {
+                    logWriterConfiguration.setQueueSize(Integer.parseInt(value));
+                } else if (name.equals("batchSize")) {
+                    logWriterConfiguration.setBatchSize(Integer.parseInt(value));
+                } else if (name.equals("flushInterval")) {
+                    logWriterConfiguration.setFlushInterval(Long.parseLong(value));
+                } else if (name.equals("overflowPolicy")) {
+                    if (value.equals(LogWriterConfiguration.OVERFLOW_POLICY_BLOCK) ||
+                            value.equals(LogWriterConfiguration.OVERFLOW_POLICY_DROP_NEWEST) ||
+                            value.equals(LogWriterConfiguration.OVERFLOW_POLICY_DROP_OLDEST)) {
+                        logWriterConfiguration.setOverflowPolicy(value);
+                    } else {
+                        log.warn("Invalid log writer overflow policy " + value + ".");
+                    }
+                } else if (name.equals("journal")) {
+                    String journalPath = value.length() > 0 ? value : null;
+                    // If the path contains ${carbon.home}, replace it with the corresponding
+                    // value.
+                    if (journalPath != null &&
+                            journalPath.contains(CarbonConstants.CARBON_HOME_PARAMETER)) {
+                        String carbonHome = CarbonUtils.getCarbonHome();
+                        if (carbonHome == null) {
+                            log.warn("carbon home invalid. The log journal " + value +
+                                    " will not be used.");
+                            journalPath = null;
+                        } else {
+                            journalPath = journalPath.replace(
+                                    CarbonConstants.CARBON_HOME_PARAMETER, carbonHome);
+                        }
+                    }
+                    logWriterConfiguration.setJournalPath(journalPath);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid log writer " + name + " " + value + ".");
+            }
+        }
+        return logWriterConfiguration;
+    }
 }
@@ -106,7 +106,9 @@ public class RegistryContext {
             RegistryConstants.GOVERNANCE_SERVICE_PATH;
     //OSGi bundle context
     private LogWriter logWriter = null;
+    private LogWriterConfiguration logWriterConfiguration = new LogWriterConfiguration();
     private boolean enableCache = false;
+    private long contentStreamingThreshold = -1;
 
     private List<String> systemResourcePaths = new ArrayList<String>();
     private List<Pattern> noCachePaths = new ArrayList<Pattern>();
@@ -416,6 +418,26 @@ public class RegistryContext {
         this.enableCache = enableCache;
     }
 
+    /**
+     * Return the size in bytes above which resource content is streamed from the database as it
+     * is read, instead of being loaded in memory when the resource is retrieved.
+     *
+     * @return the content streaming threshold, or a negative value if streaming is disabled.
+     */
+    public long getContentStreamingThreshold() {
+        return contentStreamingThreshold;
+    }
+
+    /**
+     * Set the size in bytes above which resource content is streamed from the database.
+     *
+     * @param contentStreamingThreshold the content streaming threshold, or a negative value to
+     *                                  disable streaming.
+     */
+    public void setContentStreamingThreshold(long contentStreamingThreshold) {
+        this.contentStreamingThreshold = contentStreamingThreshold;
+    }
+
     /**
      * Create a new registry context object with a custom realm service
      *
@@ -500,6 +522,7 @@ public class RegistryContext {
             this.queryProcessors = baseContext.queryProcessors;
             this.servicePath = baseContext.servicePath;
             this.logWriter = baseContext.logWriter;
+            this.logWriterConfiguration = baseContext.logWriterConfiguration;
             this.systemResourcePaths = baseContext.systemResourcePaths;
             this.noCachePaths = baseContext.noCachePaths;
         }
@@ -1040,7 +1063,8 @@ public class RegistryContext {
      */
     public LogWriter getLogWriter() {
         if (logWriter == null) {
-            logWriter = new LogWriter(new LogQueue(), dataAccessManager);
+            logWriter = new LogWriter(new LogQueue(logWriterConfiguration.getQueueSize()),
+                    dataAccessManager, logWriterConfiguration);
             logWriter.start();
         }
         return logWriter;
@@ -1054,6 +1078,23 @@ public class RegistryContext {
         this.logWriter = logWriter;
     }
 
+    /**
+     * Method to obtain the configuration of the log writer.
+     * @return the configuration of the log writer.
+     */
+    public LogWriterConfiguration getLogWriterConfiguration() {
+        return logWriterConfiguration;
+    }
+
+    /**
+     * Method to set the configuration of the log writer. This has no effect once the log writer
+     * has been created.
+     * @param logWriterConfiguration the configuration of the log writer.
+     */
+    public void setLogWriterConfiguration(LogWriterConfiguration logWriterConfiguration) {
+        this.logWriterConfiguration = logWriterConfiguration;
+    }
+
     /**
      * Method to determine whether a system resource (or collection) path has been registered.
      *
@@ -25,6 +25,7 @@ import org.wso2.carbon.registry.core.jdbc.dataobjects.ResourceDO;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The data access object for resources.
@@ -235,6 +236,17 @@ public interface ResourceDAO {
                                          ResourceImpl resourceImpl)
             throws RegistryException;
 
+    /**
+     * Create the path ids of a collection path and all its ancestors which do not have one yet, at
+     * once. This avoids a separate round trip to the database for each ancestor when a chain of
+     * missing collections is added.
+     *
+     * @param path the path of the collection.
+     *
+     * @throws RegistryException throws if operation failed.
+     */
+    void createPathIDs(String path) throws RegistryException;
+
     /**
      * Create a resource ID for a path given the parent resource id and whether it is a collection
      * or not.
@@ -269,6 +281,24 @@ public interface ResourceDAO {
      */
     InputStream getContentStream(int contentID) throws RegistryException;
 
+    /**
+     * Open a stream over the content of a given content id, which reads the content from the
+     * database as it is consumed, without loading it to memory. The database is first accessed
+     * when the stream is read. If a transaction has been started on the reading thread at that
+     * point, the content is read within it, and the stream has to be consumed before the
+     * transaction ends. Otherwise, a database connection is held by the stream until it has been
+     * read to the end or closed.
+     *
+     * @param contentID         the content id.
+     * @param tenantId          the id of the tenant to which the content belongs.
+     * @param dataAccessManager the data access manager to be used to read the content.
+     *
+     * @return the content input stream.
+     * @throws RegistryException throws if the operation failed.
+     */
+    InputStream openContentStream(int contentID, int tenantId,
+                                  DataAccessManager dataAccessManager) throws RegistryException;
+
     /**
      * Save the updates of a given resource.
      *
@@ -489,7 +519,9 @@ public interface ResourceDAO {
     void addContent(ResourceImpl resourceImpl) throws RegistryException;
 
     /**
-     * Add the content to the content table and return the auto generated id of content table.
+     * Add the content to the content table and return the auto generated id of content table. The
+     * length of the content need not be known in advance, in which case it is written to the
+     * database as it is read from the stream.
      *
      * @param contentStream the input stream.
      *
@@ -539,6 +571,17 @@ public interface ResourceDAO {
      */
     String getPathFromId(int pathId) throws RegistryException;
 
+    /**
+     * Get the paths of a set of path ids.
+     *
+     * @param pathIds the path ids.
+     *
+     * @return the paths corresponding to the path ids, keyed by the path id. Path ids which do not
+     *         exist are left out.
+     * @throws RegistryException throws if operation failed.
+     */
+    Map<Integer, String> getPathsFromIds(List<Integer> pathIds) throws RegistryException;
+
     /**
      * Get the path provided the resource version.
      *
@@ -27,6 +27,8 @@ import org.wso2.carbon.registry.core.*;
 import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Date;
@@ -343,4 +345,12 @@ public class GhostRegistry implements Registry{
     	getRegistry().dumpLite(path, writer);            
     }
 
+    public void dumpArchive(String path, OutputStream output) throws RegistryException {
+        getRegistry().dumpArchive(path, output);
+    }
+
+    public void restoreArchive(String path, InputStream input) throws RegistryException {
+        getRegistry().restoreArchive(path, input);
+    }
+
 }
\ No newline at end of file
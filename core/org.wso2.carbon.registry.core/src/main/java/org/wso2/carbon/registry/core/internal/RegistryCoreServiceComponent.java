@@ -35,7 +35,6 @@ import org.wso2.carbon.registry.core.Resource;
 import org.wso2.carbon.registry.core.caching.CachingHandler;
 import org.wso2.carbon.registry.core.config.Mount;
 import org.wso2.carbon.registry.core.config.RegistryContext;
-import org.wso2.carbon.registry.core.dao.LogsDAO;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.jdbc.EmbeddedRegistryService;
 import org.wso2.carbon.registry.core.jdbc.handlers.Handler;
@@ -158,25 +157,11 @@ public class RegistryCoreServiceComponent {
                     new WaitBeforeShutdownObserver() {
                         public void startingShutdown() {
                             LogWriter logWriter = registryContext.getLogWriter();
-                            LogQueue logQueue = logWriter.getLogQueue();
-                            // if the log queue has work, interrupt the thread, and cause the log writer to flush the
-                            // queue into the database.
+                            // flush the queue into the database, along with the logs recovered from the
+                            // journal or kept after a failed write, which are not in the queue.
                             logWriter.setCanWriteLogs(false);
-                            if (logQueue.size() > 0) {
-                                log.info("Writing logs ");
-                                int queueLength = logQueue.size();
-                                LogRecord[] logRecords = new LogRecord[queueLength];
-                                for (int a = 0; a < queueLength; a++) {
-                                    LogRecord logRecord = (LogRecord) logQueue.poll();
-                                    logRecords[a] = logRecord;
-                                }
-                                LogsDAO logsDAO = registryContext.getDataAccessManager().getDAOManager().getLogsDAO();
-                                try {
-                                    logsDAO.saveLogBatch(logRecords);
-                                } catch (RegistryException e) {
-                                    log.error("Unable to save log records", e);
-                                }
-                            }
+                            log.info("Writing logs ");
+                            logWriter.flush();
                         }
 
                         public boolean isTaskComplete() {
@@ -34,6 +34,7 @@ import org.wso2.carbon.registry.core.ResourceImpl;
 import org.wso2.carbon.registry.core.ResourcePath;
 import org.wso2.carbon.registry.core.Tag;
 import org.wso2.carbon.registry.core.TaggedResourcePath;
+import org.wso2.carbon.registry.core.config.Mount;
 import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.config.StaticConfiguration;
 import org.wso2.carbon.registry.core.dao.AssociationDAO;
@@ -63,6 +64,8 @@ import org.wso2.carbon.user.core.UserRealm;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.service.RealmService;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.*;
@@ -82,6 +85,9 @@ public class EmbeddedRegistry implements Registry {
     // The instance of the logger to be used to log database query statistics.
     private static final Log dbQueryLog = DBQueryStatisticsLog.getLog();
 
+    // The number of sub trees read in parallel when writing archives.
+    private static final int DEFAULT_ARCHIVE_DUMP_THREADS = 4;
+
     private static List<String> statEnabledOperations = new LinkedList<String>();
 
     private DataAccessManager dataAccessManager = null;
@@ -3003,6 +3009,149 @@ public class EmbeddedRegistry implements Registry {
         }
     }
 
+    /**
+     * Writes a registry archive of the resource at the given path and its descendants, which can
+     * be restored using {@link #restoreArchive(String, InputStream)}. Unlike XML dumps, archives
+     * keep the content of resources as is, and the sub trees of the collection at the path are
+     * read in parallel. Archives are taken from the database of this registry, hence paths that
+     * are mounted from other registries can not be archived, and mount points and symbolic links
+     * within the path are archived without their targets. The handlers of the dump operation are
+     * invoked without a dumping writer.
+     *
+     * @param path   the path to obtain the archive from.
+     * @param output the stream to write the archive to. The stream is not closed.
+     *
+     * @throws RegistryException if the operation failed.
+     */
+    public void dumpArchive(String path, OutputStream output) throws RegistryException {
+        dumpArchive(path, output, DEFAULT_ARCHIVE_DUMP_THREADS);
+    }
+
+    /**
+     * Writes a registry archive of the resource at the given path and its descendants, reading at
+     * most the given number of sub trees in parallel.
+     *
+     * @param path    the path to obtain the archive from.
+     * @param output  the stream to write the archive to. The stream is not closed.
+     * @param threads the maximum number of sub trees read in parallel.
+     *
+     * @throws RegistryException if the operation failed.
+     * @see #dumpArchive(String, OutputStream)
+     */
+    public void dumpArchive(String path, OutputStream output, int threads)
+            throws RegistryException {
+        checkArchivePath(path, false);
+        boolean transactionSucceeded = false;
+        RequestContext context = new RequestContext(this, repository, versionRepository);
+        try {
+            // start the transaction
+            beginTransaction();
+
+            context.setResourcePath(new ResourcePath(path));
+            registryContext.getHandlerManager().dump(context);
+            if (!context.isSimulation()) {
+                if (!context.isProcessingComplete()) {
+                    repository.dumpArchive(path, output, threads);
+                }
+
+                registryContext.getHandlerManager(
+                        HandlerLifecycleManager.COMMIT_HANDLER_PHASE).dump(context);
+                // transaction succeeded
+                transactionSucceeded = true;
+            }
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                try {
+                    registryContext.getHandlerManager(
+                            HandlerLifecycleManager.ROLLBACK_HANDLER_PHASE).dump(context);
+                } finally {
+                    rollbackTransaction();
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores a registry archive written by {@link #dumpArchive(String, OutputStream)} to the
+     * given path, replacing the resource at the path along with its descendants. Archives can not
+     * be restored to paths that are mounted from other registries, or to paths that have mount
+     * points within them. The handlers of the restore operation are invoked without a dumping
+     * reader.
+     *
+     * @param path  the path to restore the archive to.
+     * @param input the stream to read the archive from. The stream is not closed.
+     *
+     * @throws RegistryException if the operation failed.
+     */
+    public void restoreArchive(String path, InputStream input) throws RegistryException {
+        checkArchivePath(path, true);
+        boolean transactionSucceeded = false;
+        RequestContext context = new RequestContext(this, repository, versionRepository);
+        try {
+            // start the transaction
+            beginTransaction();
+
+            context.setResourcePath(new ResourcePath(path));
+            registryContext.getHandlerManager().restore(context);
+            if (!context.isSimulation()) {
+                if (!context.isProcessingComplete()) {
+                    try {
+                        CurrentSession.setAttribute(Repository.IS_LOGGING_ACTIVITY,
+                                context.isLoggingActivity());
+                        repository.restoreArchive(path, input);
+                    } finally {
+                        CurrentSession.removeAttribute(Repository.IS_LOGGING_ACTIVITY);
+                    }
+                    if (context.isLoggingActivity()) {
+                        registryContext.getLogWriter().addLog(
+                                path, CurrentSession.getUser(), LogEntry.RESTORE, null);
+                    }
+                }
+
+                registryContext.getHandlerManager(
+                        HandlerLifecycleManager.COMMIT_HANDLER_PHASE).restore(context);
+                // transaction succeeded
+                transactionSucceeded = true;
+            }
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                try {
+                    registryContext.getHandlerManager(
+                            HandlerLifecycleManager.ROLLBACK_HANDLER_PHASE).restore(context);
+                } finally {
+                    rollbackTransaction();
+                }
+            }
+        }
+    }
+
+    // Archives are read from and written to the database of this registry, hence they can't
+    // extend into mounted paths. Restoring replaces the resources at the path, hence mount points
+    // within the path are not allowed either.
+    private void checkArchivePath(String path, boolean restoring) throws RegistryException {
+        String pathPrefix = path.endsWith(RegistryConstants.PATH_SEPARATOR) ? path :
+                path + RegistryConstants.PATH_SEPARATOR;
+        for (Mount mount : registryContext.getMounts()) {
+            String mountPath = mount.getPath();
+            if (mountPath == null) {
+                continue;
+            }
+            if (path.equals(mountPath) ||
+                    path.startsWith(mountPath + RegistryConstants.PATH_SEPARATOR) ||
+                    (restoring && mountPath.startsWith(pathPrefix))) {
+                String msg = "Unable to " + (restoring ? "restore an archive to " :
+                        "archive ") + path + ", as the mounted path " + mountPath +
+                        " is not a part of the local registry.";
+                log.error(msg);
+                throw new RegistryException(msg);
+            }
+        }
+    }
+
     public String getEventingServiceURL(String path) throws RegistryException {
         if (path == null || eventingServiceURLs.size() == 0) {
             return defaultEventingServiceURL;
@@ -26,19 +26,25 @@ import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.config.StaticConfiguration;
 import org.wso2.carbon.registry.core.dao.*;
 import org.wso2.carbon.registry.core.dataaccess.DataAccessManager;
+import org.wso2.carbon.registry.core.dataaccess.TransactionManager;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.exceptions.ResourceNotFoundException;
 import org.wso2.carbon.registry.core.jdbc.dataobjects.CommentDO;
 import org.wso2.carbon.registry.core.jdbc.dataobjects.RatingDO;
 import org.wso2.carbon.registry.core.jdbc.dataobjects.ResourceDO;
 import org.wso2.carbon.registry.core.jdbc.dataobjects.TaggingDO;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveReader;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveRecord;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveWriter;
 import org.wso2.carbon.registry.core.jdbc.utils.DumpReader;
 import org.wso2.carbon.registry.core.jdbc.utils.DumpWriter;
 import org.wso2.carbon.registry.core.secure.AuthorizationFailedException;
 import org.wso2.carbon.registry.core.session.CurrentSession;
+import org.wso2.carbon.registry.core.session.UserRegistry;
 import org.wso2.carbon.registry.core.utils.AuthorizationUtils;
 import org.wso2.carbon.registry.core.utils.MediaTypesUtils;
 import org.wso2.carbon.registry.core.utils.RegistryUtils;
+import org.wso2.carbon.user.core.UserRealm;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.*;
@@ -47,6 +53,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 /**
@@ -68,6 +81,15 @@ public class Repository {
     private static final String ILLEGAL_CHARACTERS_FOR_PATH = ".*[~!@#;%^*+={}\\|\\\\<>\",\'].*";
     private Pattern illegalCharactersPattern;
 
+    // The number of resources copied between the progress reports of a collection copy.
+    private static final int COPY_PROGRESS_INTERVAL = 1000;
+
+    // The maximum number of records of a chunk of an archive.
+    private static final int ARCHIVE_CHUNK_SIZE = 500;
+
+    // The number of seconds to wait for the sub trees being archived, once archiving has ended.
+    private static final int ARCHIVE_TERMINATION_TIMEOUT = 60;
+
     /**
      * Package-private constant for session key used to inform the repository whether an activity
      * must be logged or not. This constant is intended to be used only by the Repository and the
@@ -958,12 +980,9 @@ public class Repository {
             throw new RegistryException(msg);
         }
         ResourceImpl sourceResource = (ResourceImpl) get(sourcePath);
-        if (sourceResource instanceof CollectionImpl) {
-            resourceDAO.fillChildren((CollectionImpl) sourceResource, 0, -1);
-        }
 
         if (resourceDAO.resourceExists(targetPath)) {
-            // We need to delete the old one if it is already exists..  
+            // We need to delete the old one if it is already exists..
             delete(targetPath);
         }
 
@@ -975,20 +994,8 @@ public class Repository {
         put(targetPath, targetResource);
 
         if (sourceResource instanceof CollectionImpl) {
-            // copy all the children recursively
-            CollectionImpl collection = (CollectionImpl) sourceResource;
-
-            for (String childSourcePath : collection.getChildren()) {
-                String childResourceName = RegistryUtils.getResourceName(childSourcePath);
-                String childTargetPath =
-                        targetPath + RegistryConstants.PATH_SEPARATOR + childResourceName;
-
-
-                ResourcePath childSourceResourcePath = new ResourcePath(childSourcePath);
-                ResourcePath childTargetResourcePath = new ResourcePath(childTargetPath);
-
-                recursionRepository.copy(childSourceResourcePath, childTargetResourcePath);
-            }
+            // copy all the descendants, as the target collection has just been added.
+            copyDescendants(sourceResource, targetResource);
         }
 
         commentsDAO.copyComments(sourceResource, targetResource);
@@ -998,6 +1005,148 @@ public class Repository {
         return targetPath;
     }
 
+    // Copies the descendants of a source collection to a target collection, which has just been
+    // added and hence is empty. The subtree is walked one collection at a time, reading the
+    // metadata and properties of each descendant without its content, and the content is copied
+    // only for non-collections. The outcome is the same as copying each descendant separately,
+    // i.e. each copy gets a new UUID, along with the comments, tags, ratings and associations of
+    // its source. Descendants which can't be subjected to recursive operations are copied through
+    // the registry, so that the handlers can take care of them.
+    private void copyDescendants(ResourceImpl sourceCollection, ResourceImpl targetCollection)
+            throws RegistryException {
+        String targetRootPath = targetCollection.getPath();
+        RegistryContext registryContext = null;
+        if (CurrentSession.getUserRegistry() != null) {
+            registryContext = CurrentSession.getUserRegistry().getRegistryContext();
+        }
+        if (registryContext == null) {
+            registryContext = RegistryContext.getBaseInstance();
+        }
+        boolean isLoggingActivity =
+                !Boolean.FALSE.equals(CurrentSession.getAttribute(IS_LOGGING_ACTIVITY));
+
+        int copiedCount = 0;
+        LinkedList<ResourceImpl[]> collections = new LinkedList<ResourceImpl[]>();
+        collections.add(new ResourceImpl[]{sourceCollection, targetCollection});
+        while (!collections.isEmpty()) {
+            ResourceImpl[] collectionPair = collections.removeFirst();
+            ResourceIDImpl targetParentID = collectionPair[1].getResourceIDImpl();
+            String targetParentPath = targetParentID.getPath();
+            boolean isParentAuthorized = false;
+
+            for (ResourceIDImpl sourceID :
+                    resourceDAO.getChildPathIds(collectionPair[0].getResourceIDImpl())) {
+                String sourcePath = sourceID.getPath();
+                if (sourcePath.equals(targetRootPath)) {
+                    // the target is a descendant of the source, and it should not be copied into
+                    // itself.
+                    continue;
+                }
+                String targetPath = targetParentPath +
+                        (targetParentPath.endsWith(RegistryConstants.PATH_SEPARATOR) ? "" :
+                                RegistryConstants.PATH_SEPARATOR) +
+                        RegistryUtils.getResourceName(sourcePath);
+
+                ResourceImpl source = resourceDAO.getResourceMetaData(sourceID);
+                if (source == null) {
+                    continue;
+                }
+                if (!AuthorizationUtils.authorize(sourcePath, ActionConstants.GET)) {
+                    String msg = getUserNotAuthorizedMsg() +
+                            "read the resource " + sourcePath + ".";
+                    log.warn(msg);
+                    throw new AuthorizationFailedException(msg);
+                }
+                resourceDAO.fillResourcePropertiesWithNoUpdate(source);
+                if (Boolean.toString(true).equals(
+                        source.getProperty(RegistryConstants.REGISTRY_NON_RECURSIVE))) {
+                    recursionRepository.copy(new ResourcePath(sourcePath),
+                            new ResourcePath(targetPath));
+                    continue;
+                }
+
+                if (!isParentAuthorized) {
+                    if (!AuthorizationUtils.authorize(targetParentPath, ActionConstants.PUT)) {
+                        String msg = "Failed to add new resource " + targetPath + ". User " +
+                                CurrentSession.getUser() + " is not authorized to update " +
+                                "the parent collection " + targetParentPath + ".";
+                        log.warn(msg);
+                        throw new AuthorizationFailedException(msg);
+                    }
+                    isParentAuthorized = true;
+                }
+                if (!AuthorizationUtils.authorize(targetPath, ActionConstants.PUT)) {
+                    String msg = "Failed to add new resource " + targetPath + ". User " +
+                            CurrentSession.getUser() + " is not authorized to update " +
+                            "the resource path " + targetPath + ".";
+                    log.warn(msg);
+                    throw new AuthorizationFailedException(msg);
+                }
+                if (isLoggingActivity) {
+                    registryContext.getLogWriter().addLog(
+                            targetPath, CurrentSession.getUser(), LogEntry.ADD, null);
+                }
+
+                ResourceImpl target = copyDescendant(source, targetPath, targetParentID);
+                commentsDAO.copyComments(source, target);
+                tagsDAO.copyTags(source, target);
+                ratingsDAO.copyRatings(source, target);
+                associationDAO.copyAssociations(sourcePath, targetPath);
+
+                if (target instanceof CollectionImpl) {
+                    collections.add(new ResourceImpl[]{source, target});
+                }
+                copiedCount++;
+                if (copiedCount % COPY_PROGRESS_INTERVAL == 0) {
+                    log.info("Copied " + copiedCount + " resources from " +
+                            sourceCollection.getPath() + " to " + targetRootPath + ".");
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Copied " + copiedCount + " resources from " + sourceCollection.getPath() +
+                    " to " + targetRootPath + ".");
+        }
+    }
+
+    // Adds a copy of the given descendant of a collection being copied, at the target path.
+    private ResourceImpl copyDescendant(ResourceImpl source, String targetPath,
+                                        ResourceIDImpl targetParentID) throws RegistryException {
+        ResourceImpl target;
+        if (source instanceof CollectionImpl) {
+            target = new CollectionImpl();
+        } else {
+            target = new ResourceImpl();
+        }
+        target.setMediaType(source.getMediaType());
+        target.setDescription(source.getDescription());
+        target.setProperties(source.getProperties());
+        if (!(target instanceof CollectionImpl)) {
+            if (target.getMediaType() == null || target.getMediaType().length() == 0) {
+                String temp =
+                        MediaTypesUtils.getMediaType(RegistryUtils.getResourceName(targetPath));
+                if (temp != null) {
+                    target.setMediaType(temp);
+                }
+            }
+        }
+        setUUIDForResource(target);
+
+        resourceDAO.createAndApplyResourceID(targetPath, targetParentID, target);
+        resourceDAO.addResourceWithoutContentId(target, false);
+        if (!(target instanceof CollectionImpl) && source.getDbBasedContentID() > 0) {
+            InputStream content = resourceDAO.getContentStream(source.getDbBasedContentID());
+            if (content != null) {
+                target.setDbBasedContentID(resourceDAO.addContentBytes(content));
+                if (target.getDbBasedContentID() > 0) {
+                    resourceDAO.updateContentId(target);
+                }
+            }
+        }
+        resourceDAO.addProperties(target);
+        return target;
+    }
+
     // Method to add a resource
     private void add(String path, ResourceImpl resource) throws RegistryException {
         // first add all non-existing parent collections. note that whether the user has
@@ -1138,6 +1287,13 @@ public class Repository {
      * @throws RegistryException If any ancestor of the given path is a resource.
      */
     private void addEmptyCollection(String path) throws RegistryException {
+        addEmptyCollection(path, path);
+    }
+
+    // Adds the non-existent collections of the given path, where the collectionPath is the
+    // deepest collection of the chain being added.
+    private void addEmptyCollection(String path, String collectionPath)
+            throws RegistryException {
         // first need to check whether there is a resource (non-collection)
         // where it is asking to create a collection
         ResourceIDImpl assumedResourceID = resourceDAO.getResourceID(path, false);
@@ -1150,10 +1306,12 @@ public class Repository {
 
         String parentPath = RegistryUtils.getParentPath(path);
         ResourceIDImpl parentResourceID = null;
+        boolean isTopMostCollection = true;
         if (parentPath != null) {
             parentResourceID = resourceDAO.getResourceID(parentPath, true);
             if (parentResourceID == null || !resourceDAO.resourceExists(parentResourceID)) {
-                addEmptyCollection(parentPath);
+                isTopMostCollection = false;
+                addEmptyCollection(parentPath, collectionPath);
                 if (parentResourceID == null) {
                     // since this is a collection there is no much performance hit here
                     parentResourceID = resourceDAO.getResourceID(parentPath, true);
@@ -1179,6 +1337,22 @@ public class Repository {
             throw new RegistryException(msg);
         }
 
+        if (isTopMostCollection && !path.equals(collectionPath)) {
+            // none of the collections in the chain are resources at this point, hence the path
+            // ids of the whole chain can be created at once, instead of one at a time below. The
+            // path ids are committed right away, so the deeper collections are authorized first.
+            for (String chainPath = collectionPath; !chainPath.equals(path);
+                 chainPath = RegistryUtils.getParentPath(chainPath)) {
+                if (!AuthorizationUtils.authorize(chainPath, ActionConstants.PUT)) {
+                    String msg = "Failed to add new resource. User " +
+                            CurrentSession.getUser() + " does not have authorization to " +
+                            "add the collection at" + chainPath + ".";
+                    log.error(msg);
+                    throw new RegistryException(msg);
+                }
+            }
+            resourceDAO.createPathIDs(collectionPath);
+        }
 
         CollectionImpl collection = new CollectionImpl();
         RegistryContext registryContext = null;
@@ -1226,6 +1400,42 @@ public class Repository {
             // remove the / suffix
             path = path.substring(0, path.length() - 1);
         }
+        prepareRestore(path, rootResourceExists);
+        DumpReader dumpReader = new DumpReader(reader){
+            @Override
+            public void close() throws IOException {
+                // close the inner stream on finally block
+            }
+        };
+        XMLStreamReader xmlReader;
+        try {
+            xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(dumpReader);
+        } catch (Exception e) {
+            String msg = "Error in creating the xml reader.";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        }
+        try {
+            restoreRecursively(path, xmlReader, dumpReader, currentVersion, rootResourceExists);
+        } catch (XMLStreamException e) {
+            String msg = "Failed to serialize the dumped element at " + path + ".";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } finally{
+            if(reader!=null){
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    //ignored
+                }
+            }
+        }
+    }
+
+    // Checks whether the user can restore to the given path, and adds the parent collection of
+    // the path if it doesn't exist.
+    private void prepareRestore(String path, boolean rootResourceExists)
+            throws RegistryException {
         if (path.equals(RegistryConstants.ROOT_PATH)) {
             if (!AuthorizationUtils.authorize(path, ActionConstants.PUT)) {
                 String msg = getUserNotAuthorizedMsg() +
@@ -1256,35 +1466,6 @@ public class Repository {
                 }
             }
         }
-        DumpReader dumpReader = new DumpReader(reader){
-            @Override
-            public void close() throws IOException {
-                // close the inner stream on finally block
-            }
-        };
-        XMLStreamReader xmlReader;
-        try {
-            xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(dumpReader);
-        } catch (Exception e) {
-            String msg = "Error in creating the xml reader.";
-            log.error(msg, e);
-            throw new RegistryException(msg, e);
-        }
-        try {
-            restoreRecursively(path, xmlReader, dumpReader, currentVersion, rootResourceExists);
-        } catch (XMLStreamException e) {
-            String msg = "Failed to serialize the dumped element at " + path + ".";
-            log.error(msg, e);
-            throw new RegistryException(msg, e);
-        } finally{
-            if(reader!=null){
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    //ignored
-                }
-            }
-        }
     }
 
     /**
@@ -1323,6 +1504,508 @@ public class Repository {
         }
     }
 
+    /**
+     * Method to write a registry archive of a resource and its descendants. The descendants of a
+     * collection are read one sub tree per child of the collection, with the given number of sub
+     * trees read in parallel, each in a transaction of its own. The records of each sub tree are
+     * kept in a temporary file until they are written to the archive, in the order of the
+     * children. Resources which can't be subjected to recursive operations, such as mount points
+     * and symbolic links, are archived without their descendants.
+     *
+     * @param _path   the path to obtain the archive from.
+     * @param output  the stream to write the archive to. The stream is not closed.
+     * @param threads the maximum number of sub trees read in parallel.
+     *
+     * @throws RegistryException if the operation failed.
+     */
+    public void dumpArchive(String _path, OutputStream output, int threads)
+            throws RegistryException {
+        String path = _path;
+        if (!path.equals("/") && path.endsWith("/")) {
+            // remove the / suffix
+            path = path.substring(0, path.length() - 1);
+        }
+        ResourceImpl resource = resourceDAO.getResourceMetaData(path);
+        if (resource == null) {
+            throw new ResourceNotFoundException(path);
+        }
+
+        File directory = createArchiveDirectory();
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        ExecutorService executor = null;
+        try {
+            ArchiveWriter archiveWriter = new ArchiveWriter(output);
+            archiveWriter.writeHeader();
+            writeArchiveChunks(dumpArchiveChunks(path, path, false, directory, aborted),
+                    archiveWriter);
+
+            if (resource instanceof CollectionImpl) {
+                List<ResourceIDImpl> childIDs =
+                        resourceDAO.getChildPathIds(resource.getResourceIDImpl());
+                if (threads > 1 && childIDs.size() > 1) {
+                    executor = Executors.newFixedThreadPool(Math.min(threads, childIDs.size()));
+                    List<Future<ArchiveChunks>> subTrees = new ArrayList<Future<ArchiveChunks>>();
+                    for (ResourceIDImpl childID : childIDs) {
+                        subTrees.add(executor.submit(createArchiveDumpTask(path,
+                                childID.getPath(), directory, aborted)));
+                    }
+                    for (int i = 0; i < subTrees.size(); i++) {
+                        writeArchiveChunks(getArchiveChunks(subTrees.get(i),
+                                childIDs.get(i).getPath()), archiveWriter);
+                    }
+                } else {
+                    for (ResourceIDImpl childID : childIDs) {
+                        writeArchiveChunks(dumpArchiveChunks(path, childID.getPath(), true,
+                                directory, aborted), archiveWriter);
+                    }
+                }
+            }
+            archiveWriter.writeEnd();
+        } catch (IOException e) {
+            String msg = "Failed to write the archive of " + path + ".";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } finally {
+            aborted.set(true);
+            if (executor != null) {
+                executor.shutdownNow();
+                try {
+                    // the sub trees being read stop at their next resource.
+                    executor.awaitTermination(ARCHIVE_TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        log.warn("Failed to delete the temporary archive file " + file + ".");
+                    }
+                }
+            }
+            if (!directory.delete()) {
+                log.warn("Failed to delete the temporary archive directory " + directory + ".");
+            }
+        }
+    }
+
+    /**
+     * Method to restore a registry archive to the given path. The resource at the path is replaced
+     * along with its descendants, as in restoring an XML dump. The resources are restored in the
+     * order of the archive, in which each collection comes before its descendants, hence the
+     * existence of the parent of each resource needs not be checked, and the content of each
+     * resource is streamed from the archive to the database.
+     *
+     * @param _path the path to restore the archive to.
+     * @param input the stream to read the archive from. The stream is not closed.
+     *
+     * @throws RegistryException if the operation failed.
+     */
+    public void restoreArchive(String _path, InputStream input) throws RegistryException {
+        String path = _path;
+        if (!path.equals("/") && path.endsWith("/")) {
+            // remove the / suffix
+            path = path.substring(0, path.length() - 1);
+        }
+        boolean rootResourceExists = resourceExists(path);
+        prepareRestore(path, rootResourceExists);
+
+        ArchiveReader archiveReader = new ArchiveReader(input);
+        int restoredCount = 0;
+        try {
+            archiveReader.readHeader();
+            int recordCount;
+            while ((recordCount = archiveReader.nextChunk()) != -1) {
+                for (int i = 0; i < recordCount; i++) {
+                    ArchiveRecord record = archiveReader.readRecord();
+                    String relativePath = record.getRelativePath();
+                    if ((restoredCount == 0) != (relativePath.length() == 0)) {
+                        String msg = "Invalid archive to restore at " + path + ".";
+                        log.error(msg);
+                        throw new RegistryException(msg);
+                    }
+                    String resourcePath;
+                    if (restoredCount == 0) {
+                        if (path.equals(RegistryConstants.ROOT_PATH) &&
+                                !(record.getResource() instanceof CollectionImpl)) {
+                            // you can not put non collection to the root path
+                            String msg = "Illegal to restore a non-collection in place of root " +
+                                    "collection.";
+                            log.error(msg);
+                            throw new RegistryException(msg);
+                        }
+                        if (rootResourceExists) {
+                            delete(path);
+                        }
+                        resourcePath = path;
+                    } else if (path.equals(RegistryConstants.ROOT_PATH)) {
+                        resourcePath = path + relativePath;
+                    } else {
+                        resourcePath = path + RegistryConstants.PATH_SEPARATOR + relativePath;
+                    }
+                    restoreArchiveRecord(resourcePath, record, archiveReader.getContent(),
+                            restoredCount == 0);
+                    restoredCount++;
+                    if (restoredCount % COPY_PROGRESS_INTERVAL == 0) {
+                        log.info("Restored " + restoredCount + " resources to " + path + ".");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            String msg = "Failed to read the archive to restore at " + path + ".";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        }
+        if (restoredCount == 0) {
+            String msg = "The archive to restore at " + path + " has no resources.";
+            log.error(msg);
+            throw new RegistryException(msg);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Restored " + restoredCount + " resources to " + path + ".");
+        }
+    }
+
+    // Creates the directory which keeps the records of the sub trees being archived.
+    private File createArchiveDirectory() throws RegistryException {
+        try {
+            File directory = File.createTempFile("registry-archive", "");
+            if (directory.delete() && directory.mkdir()) {
+                return directory;
+            }
+            throw new IOException("Failed to create the directory " + directory + ".");
+        } catch (IOException e) {
+            String msg = "Failed to create a temporary directory for the archive.";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        }
+    }
+
+    // Creates a task which archives a sub tree in a thread of its own, with the session of the
+    // current thread, and in a transaction of its own.
+    private Callable<ArchiveChunks> createArchiveDumpTask(final String rootPath, final String path,
+                                                          final File directory,
+                                                          final AtomicBoolean aborted) {
+        final String user = CurrentSession.getUser();
+        final UserRealm userRealm = CurrentSession.getUserRealm();
+        final int tenantId = CurrentSession.getTenantId();
+        final int callerTenantId = CurrentSession.getCallerTenantId();
+        final String chroot = CurrentSession.getChroot();
+        final UserRegistry userRegistry = CurrentSession.getUserRegistry();
+        return new Callable<ArchiveChunks>() {
+            public ArchiveChunks call() throws Exception {
+                CurrentSession.setUser(user);
+                CurrentSession.setUserRealm(userRealm);
+                CurrentSession.setTenantId(tenantId);
+                CurrentSession.setCallerTenantId(callerTenantId);
+                CurrentSession.setChroot(chroot);
+                CurrentSession.setUserRegistry(userRegistry);
+                TransactionManager transactionManager = dataAccessManager.getTransactionManager();
+                boolean transactionSucceeded = false;
+                try {
+                    transactionManager.beginTransaction();
+                    ArchiveChunks chunks =
+                            dumpArchiveChunks(rootPath, path, true, directory, aborted);
+                    transactionSucceeded = true;
+                    return chunks;
+                } finally {
+                    try {
+                        if (transactionSucceeded) {
+                            transactionManager.commitTransaction();
+                        } else {
+                            transactionManager.rollbackTransaction();
+                        }
+                    } finally {
+                        CurrentSession.removeUser();
+                        CurrentSession.removeUserRealm();
+                        CurrentSession.removeTenantId();
+                        CurrentSession.removeCallerTenantId();
+                        CurrentSession.removeChroot();
+                        CurrentSession.removeUserRegistry();
+                    }
+                }
+            }
+        };
+    }
+
+    // Waits for a sub tree to be archived.
+    private ArchiveChunks getArchiveChunks(Future<ArchiveChunks> subTree, String path)
+            throws RegistryException {
+        try {
+            return subTree.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String msg = "Interrupted while archiving " + path + ".";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RegistryException) {
+                throw (RegistryException) e.getCause();
+            }
+            String msg = "Failed to archive " + path + ".";
+            log.error(msg, e.getCause());
+            throw new RegistryException(msg, e.getCause());
+        }
+    }
+
+    // Writes the records of the resource at the given path, along with its descendants if
+    // requested, to a temporary file in the given directory. The resources are written one
+    // collection at a time, so that each collection comes before its descendants, and the records
+    // are split into chunks of ARCHIVE_CHUNK_SIZE records.
+    private ArchiveChunks dumpArchiveChunks(String rootPath, String path, boolean recursive,
+                                            File directory, AtomicBoolean aborted)
+            throws RegistryException {
+        OutputStream output = null;
+        try {
+            ArchiveChunks chunks =
+                    new ArchiveChunks(File.createTempFile("chunks", ".bin", directory));
+            output = new BufferedOutputStream(new FileOutputStream(chunks.file));
+            ArchiveWriter archiveWriter = new ArchiveWriter(output);
+
+            LinkedList<ResourceIDImpl> pendingIDs = new LinkedList<ResourceIDImpl>();
+            String currentPath = path;
+            ResourceImpl resource = resourceDAO.getResourceMetaData(path);
+            int recordCount = 0;
+            while (resource != null) {
+                if (aborted.get()) {
+                    String msg = "Archiving " + rootPath + " has been aborted.";
+                    log.error(msg);
+                    throw new RegistryException(msg);
+                }
+                boolean isNonRecursive = writeArchiveRecord(rootPath, currentPath, resource,
+                        archiveWriter);
+                if (recursive && !isNonRecursive && resource instanceof CollectionImpl) {
+                    pendingIDs.addAll(resourceDAO.getChildPathIds(resource.getResourceIDImpl()));
+                }
+                recordCount++;
+                if (recordCount == ARCHIVE_CHUNK_SIZE) {
+                    archiveWriter.flush();
+                    chunks.addChunk(recordCount);
+                    recordCount = 0;
+                }
+
+                // resources deleted in the meantime are skipped.
+                resource = null;
+                while (resource == null && !pendingIDs.isEmpty()) {
+                    ResourceIDImpl resourceID = pendingIDs.removeFirst();
+                    currentPath = resourceID.getPath();
+                    resource = resourceDAO.getResourceMetaData(resourceID);
+                }
+            }
+            archiveWriter.flush();
+            if (recordCount > 0) {
+                chunks.addChunk(recordCount);
+            }
+            return chunks;
+        } catch (IOException e) {
+            String msg = "Failed to write the archive of " + path + ".";
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    // Writes the record of a resource to an archive, and returns whether the resource can't be
+    // subjected to recursive operations.
+    private boolean writeArchiveRecord(String rootPath, String path, ResourceImpl resource,
+                                       ArchiveWriter archiveWriter)
+            throws RegistryException, IOException {
+        if (!AuthorizationUtils.authorize(path, ActionConstants.GET)) {
+            String msg = getUserNotAuthorizedMsg() +
+                    "check out the path " + path + ".";
+            log.warn(msg);
+            throw new AuthorizationFailedException(msg);
+        }
+        resourceDAO.fillResourcePropertiesWithNoUpdate(resource);
+
+        ArchiveRecord record = new ArchiveRecord();
+        if (path.equals(rootPath)) {
+            record.setRelativePath("");
+        } else if (rootPath.equals(RegistryConstants.ROOT_PATH)) {
+            record.setRelativePath(path.substring(1));
+        } else {
+            record.setRelativePath(path.substring(rootPath.length() + 1));
+        }
+        record.setResource(resource);
+
+        Comment[] comments = commentsDAO.getComments(resource);
+        if (comments != null) {
+            CommentDO[] commentDOs = new CommentDO[comments.length];
+            for (int i = 0; i < comments.length; i++) {
+                commentDOs[i] = new CommentDO();
+                commentDOs[i].setCommentedUser(comments[i].getAuthorUserName());
+                commentDOs[i].setCommentText(comments[i].getText());
+            }
+            record.setComments(commentDOs);
+        }
+        TaggingDO[] taggings = tagsDAO.getTagging(resource);
+        if (taggings != null) {
+            record.setTaggings(taggings);
+        }
+        RatingDO[] ratings = ratingsDAO.getResourceRatingDO(resource);
+        if (ratings != null) {
+            record.setRatings(ratings);
+        }
+        Association[] associations = associationDAO.getAllAssociations(path);
+        if (associations != null) {
+            Association[] relativeAssociations = new Association[associations.length];
+            for (int i = 0; i < associations.length; i++) {
+                String destination = associations[i].getDestinationPath();
+                if (destination.startsWith(RegistryConstants.ROOT_PATH)) {
+                    destination = RegistryUtils.getRelativeAssociationPath(destination, path);
+                } else {
+                    destination = DumpConstants.EXTERNAL_ASSOCIATION_DESTINATION_PREFIX +
+                            destination;
+                }
+                relativeAssociations[i] = new Association(
+                        RegistryUtils.getRelativeAssociationPath(
+                                associations[i].getSourcePath(), path),
+                        destination, associations[i].getAssociationType());
+            }
+            record.setAssociations(relativeAssociations);
+        }
+
+        InputStream content = null;
+        if (!(resource instanceof CollectionImpl) && resource.getDbBasedContentID() > 0) {
+            // the content is streamed from the database, and released once it has been written.
+            content = resourceDAO.openContentStream(resource.getDbBasedContentID(),
+                    CurrentSession.getTenantId(), dataAccessManager);
+        }
+        try {
+            archiveWriter.writeRecord(record, content);
+        } finally {
+            if (content != null) {
+                content.close();
+            }
+        }
+        return Boolean.toString(true).equals(
+                resource.getProperty(RegistryConstants.REGISTRY_NON_RECURSIVE));
+    }
+
+    // Copies the chunks of records of a sub tree to an archive, and deletes the temporary file
+    // of the records.
+    private void writeArchiveChunks(ArchiveChunks chunks, ArchiveWriter archiveWriter)
+            throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(chunks.file));
+        try {
+            long offset = 0;
+            for (long[] chunk : chunks.chunks) {
+                archiveWriter.writeChunk((int) chunk[0], input, chunk[1] - offset);
+                offset = chunk[1];
+            }
+        } finally {
+            input.close();
+        }
+        if (!chunks.file.delete()) {
+            log.warn("Failed to delete the temporary archive file " + chunks.file + ".");
+        }
+    }
+
+    // Restores the record of a resource of an archive, at the given path.
+    private void restoreArchiveRecord(String path, ArchiveRecord record, InputStream content,
+                                      boolean isRoot) throws RegistryException {
+        if (!AuthorizationUtils.authorize(path, ActionConstants.PUT)) {
+            String msg = "Failed to check-in resource " + path + ". User " +
+                    CurrentSession.getUser() + " is not authorized to update " +
+                    "the current collection path " + path + ".";
+            log.warn(msg);
+            throw new AuthorizationFailedException(msg);
+        }
+        ResourceImpl resourceImpl = record.getResource();
+
+        // completing the empty fields
+        if (resourceImpl.getAuthorUserName() == null) {
+            resourceImpl.setAuthorUserName(CurrentSession.getUser());
+        }
+        if (resourceImpl.getCreatedTime() == null) {
+            resourceImpl.setCreatedTime(new Date(System.currentTimeMillis()));
+        }
+        if (resourceImpl.getLastUpdaterUserName() == null) {
+            resourceImpl.setLastUpdaterUserName(CurrentSession.getUser());
+        }
+        if (resourceImpl.getLastModified() == null) {
+            resourceImpl.setLastModified(new Date(System.currentTimeMillis()));
+        }
+        if (resourceImpl.getUUID() == null) {
+            setUUIDForResource(resourceImpl);
+        }
+        restoreLinks(path, resourceImpl);
+
+        ResourceIDImpl parentResourceID = null;
+        if (!path.equals(RegistryConstants.ROOT_PATH)) {
+            String parentPath = RegistryUtils.getParentPath(path);
+            parentResourceID = resourceDAO.getResourceID(parentPath, true);
+            boolean parentExists =
+                    parentResourceID != null && resourceDAO.resourceExists(parentResourceID);
+            if (isRoot && !parentExists) {
+                addEmptyCollection(parentPath);
+                if (parentResourceID == null) {
+                    parentResourceID = resourceDAO.getResourceID(parentPath, true);
+                }
+            } else if (!parentExists) {
+                // the parents of the other resources are restored before them, unless the
+                // archive is malformed.
+                String msg = "Invalid archive. The parent collection of " + path +
+                        " has not been restored before it.";
+                log.error(msg);
+                throw new RegistryException(msg);
+            }
+        }
+        resourceDAO.createAndApplyResourceID(path, parentResourceID, resourceImpl);
+
+        // adding resource followed by content (for nonCollection)
+        if (!(resourceImpl instanceof CollectionImpl)) {
+            int contentId = 0;
+            if (content != null) {
+                contentId = resourceDAO.addContentBytes(content);
+            }
+            resourceImpl.setDbBasedContentID(contentId);
+        }
+        ResourceDO resourceDO = resourceImpl.getResourceDO();
+        resourceDAO.addResourceDO(resourceDO);
+        resourceImpl.setVersionNumber(resourceDO.getVersion());
+        resourceDAO.addProperties(resourceImpl);
+
+        commentsDAO.addComments(resourceImpl, record.getComments());
+        tagsDAO.addTaggings(resourceImpl, record.getTaggings());
+        ratingsDAO.addRatings(resourceImpl, record.getRatings());
+        for (Association association : record.getAssociations()) {
+            String destination = association.getDestinationPath();
+            if (destination.startsWith(DumpConstants.EXTERNAL_ASSOCIATION_DESTINATION_PREFIX)) {
+                destination = destination.substring(
+                        DumpConstants.EXTERNAL_ASSOCIATION_DESTINATION_PREFIX.length());
+            } else {
+                destination = RegistryUtils.getAbsoluteAssociationPath(destination, path);
+            }
+            associationDAO.addAssociation(
+                    RegistryUtils.getAbsoluteAssociationPath(association.getSourcePath(), path),
+                    destination, association.getAssociationType());
+        }
+    }
+
+    // The records of a sub tree being archived, kept in a temporary file, along with the number of
+    // records and the end offset of each chunk of the records.
+    private static class ArchiveChunks {
+
+        private File file;
+        private List<long[]> chunks = new ArrayList<long[]>();
+
+        private ArchiveChunks(File file) {
+            this.file = file;
+        }
+
+        private void addChunk(int recordCount) {
+            chunks.add(new long[]{recordCount, file.length()});
+        }
+    }
+
     // Method to do a recursive restore.
     @SuppressWarnings("deprecation")
     private void restoreRecursively(String path,
@@ -1800,32 +2483,7 @@ public class Repository {
         }
 
         // create sym links
-        String linkRestoration = resourceImpl.getProperty(
-                RegistryConstants.REGISTRY_LINK_RESTORATION);
-        if (linkRestoration != null) {
-            String[] parts = linkRestoration.split(RegistryConstants.URL_SEPARATOR);
-            if (parts.length == 4) {
-                if (parts[2] != null && parts[2].length() == 0) {
-                    parts[2] = null;
-                }
-                if (parts[0] != null && parts[1] != null && parts[3] != null) {
-                    RegistryUtils.registerHandlerForRemoteLinks(RegistryContext.getBaseInstance(),
-                            parts[0], parts[1], parts[2], parts[3]);
-                }
-            } else if (parts.length == 3) {
-                // here parts[0] the current path, path[1] is the target path.
-                if (parts[0] != null && parts[1] != null) {
-                    // first we are calculating the relative path of path[1] to path[0]
-                    String relativeTargetPath = RegistryUtils.getRelativeAssociationPath(parts[1],
-                            parts[0]);
-                    // then we derive the absolute path with reference to the current path.
-                    String absoluteTargetPath = RegistryUtils.getAbsoluteAssociationPath(
-                            relativeTargetPath, path);
-                    RegistryUtils.registerHandlerForSymbolicLinks(RegistryContext.getBaseInstance(),
-                            path, absoluteTargetPath, parts[2]);
-                }
-            }
-        }
+        restoreLinks(path, resourceImpl);
 
         synchronized (this){
             ResourceIDImpl resourceID = null;
@@ -2036,6 +2694,37 @@ public class Repository {
         }
     }
 
+    // Registers the handlers of the symbolic links and remote links that have been archived with
+    // the given resource.
+    private void restoreLinks(String path, ResourceImpl resourceImpl) throws RegistryException {
+        String linkRestoration = resourceImpl.getProperty(
+                RegistryConstants.REGISTRY_LINK_RESTORATION);
+        if (linkRestoration != null) {
+            String[] parts = linkRestoration.split(RegistryConstants.URL_SEPARATOR);
+            if (parts.length == 4) {
+                if (parts[2] != null && parts[2].length() == 0) {
+                    parts[2] = null;
+                }
+                if (parts[0] != null && parts[1] != null && parts[3] != null) {
+                    RegistryUtils.registerHandlerForRemoteLinks(RegistryContext.getBaseInstance(),
+                            parts[0], parts[1], parts[2], parts[3]);
+                }
+            } else if (parts.length == 3) {
+                // here parts[0] the current path, path[1] is the target path.
+                if (parts[0] != null && parts[1] != null) {
+                    // first we are calculating the relative path of path[1] to path[0]
+                    String relativeTargetPath = RegistryUtils.getRelativeAssociationPath(parts[1],
+                            parts[0]);
+                    // then we derive the absolute path with reference to the current path.
+                    String absoluteTargetPath = RegistryUtils.getAbsoluteAssociationPath(
+                            relativeTargetPath, path);
+                    RegistryUtils.registerHandlerForSymbolicLinks(RegistryContext.getBaseInstance(),
+                            path, absoluteTargetPath, parts[2]);
+                }
+            }
+        }
+    }
+
     // Method to do a recursive dump
     private void dumpRecursively(String path,
                                  XMLStreamWriter xmlWriter,
@@ -56,6 +56,8 @@ import java.util.Date;
 public class JDBCLogsDAO implements LogsDAO {
 
     private static final Log log = LogFactory.getLog(JDBCLogsDAO.class);
+    // the number of log records sent to the database in one JDBC batch.
+    private static final int LOG_BATCH_SIZE = 100;
     private String enableApiPagination = PaginationConstants.ENABLE_API_PAGINATE;
     private Map<String, DataBaseConfiguration> dbConfigs = new HashMap<String, DataBaseConfiguration>();
     private Map<String, String> pathMap = new HashMap<String, String>();
@@ -147,6 +149,8 @@ public class JDBCLogsDAO implements LogsDAO {
                     + "VALUES (?, ?, ?, ?, ?, ?)";
 
             s = conn.prepareStatement(sql);
+            int batchCount = 0;
+            int addedCount = 0;
             for (LogRecord logRecord : logRecords) {
                 s.clearParameters();
                 s.setString(1, logRecord.getResourcePath());
@@ -156,10 +160,16 @@ public class JDBCLogsDAO implements LogsDAO {
                 s.setString(5, logRecord.getActionData());
                 s.setInt(6, logRecord.getTenantId());
                 s.addBatch();
+                if (++batchCount == LOG_BATCH_SIZE) {
+                    addedCount += s.executeBatch().length;
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                addedCount += s.executeBatch().length;
             }
-            int[] status = s.executeBatch();
             if (log.isDebugEnabled()) {
-                log.debug("Successfully added " + status.length + " log records.");
+                log.debug("Successfully added " + addedCount + " log records.");
             }
             conn.commit();
 
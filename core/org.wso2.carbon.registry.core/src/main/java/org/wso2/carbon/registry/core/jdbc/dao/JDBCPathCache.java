@@ -39,6 +39,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * An extension of the {@link PathCache} to store paths of registry resources on a JDBC-based
@@ -47,7 +55,19 @@ import java.sql.SQLException;
 public class JDBCPathCache extends PathCache {
 
     private static final Log log = LogFactory.getLog(JDBCPathCache.class);
-    private static final Object ADD_ENTRY_LOCK = new Object();
+
+    private static final String ADD_ENTRY_SQL =
+            "INSERT INTO REG_PATH(REG_PATH_VALUE, REG_PATH_PARENT_ID, REG_TENANT_ID) " +
+                    "VALUES (?, ?, ?)";
+
+    // There is no unique constraint on the path values, hence concurrent writers may add the
+    // same path more than once. The entry with the smallest id is the one which is used.
+    private static final String GET_ENTRY_IDS_SQL =
+            "SELECT REG_PATH_ID FROM REG_PATH WHERE REG_PATH_VALUE=? AND REG_TENANT_ID=? " +
+                    "ORDER BY REG_PATH_ID";
+
+    // The maximum number of paths looked up in a single query.
+    private static final int MAX_PATHS_PER_QUERY = 100;
 
     public static JDBCPathCache getPathCache() {
         return new JDBCPathCache();
@@ -64,9 +84,197 @@ public class JDBCPathCache extends PathCache {
      * @throws SQLException      if an error occurs while adding the entry.
      */
     public int addEntry(String path, int parentPathId) throws SQLException, RegistryException {
-        ResultSet results = null;
+        Connection conn = getEntryConnection();
+        if (conn == null) {
+            log.error("Unable to acquire connection to database.");
+            return -1;
+        }
+        boolean success = false;
+        int pathId = -1;
+        RegistryCacheKey key = null;
+        PreparedStatement ps = null;
+        SQLException failure = null;
+        try {
+            key = buildCacheKey(conn, path);
+            boolean returnsGeneratedKeys = canReturnGeneratedKeys(conn);
+            ps = prepareAddEntryStatement(conn, returnsGeneratedKeys);
+            pathId = addEntry(conn, ps, returnsGeneratedKeys, path, parentPathId);
+            success = pathId > 0;
+        } catch (SQLException e) {
+            failure = e;
+        } finally {
+            success = closeEntryConnection(conn, ps, success, path);
+        }
+        if (failure != null) {
+            // the entry may have been added by another writer, in which case it is used instead.
+            return getAddedPathID(path, failure);
+        }
+        if (success) {
+            getCache().put(key, new RegistryCacheEntry(pathId));
+            return pathId;
+        }
+        return -1;
+    }
+
+    /**
+     * Method to add the entries of a path and all of its ancestors which are not in the database
+     * yet. The ids of the whole chain of ancestors are looked up at once, and the missing entries
+     * are added using a single prepared statement on a single connection, instead of a separate
+     * lookup and connection for each path. Entries which have been added by another writer in the
+     * meantime are used instead of being added again, hence each entry is committed once it has
+     * been checked against them. The ids of all these paths are then cached.
+     *
+     * @param conn the database connection to use for the lookups.
+     * @param path the path to add.
+     *
+     * @return the path's id, or -1 if the root path does not exist.
+     * @throws RegistryException if the data access manager was invalid.
+     * @throws SQLException      if an error occurs while adding the entries.
+     */
+    public int addEntries(Connection conn, String path) throws SQLException, RegistryException {
+        List<String> paths = new ArrayList<String>();
+        for (String currentPath = path; currentPath != null;
+             currentPath = RegistryUtils.getParentPath(currentPath)) {
+            paths.add(currentPath);
+        }
+        Collections.reverse(paths);
+        Map<String, Integer> pathIds = getPathIDs(conn, paths);
+        int missingPathIndex = 0;
+        while (missingPathIndex < paths.size() && pathIds.containsKey(paths.get(missingPathIndex))) {
+            missingPathIndex++;
+        }
+        if (missingPathIndex == paths.size()) {
+            return pathIds.get(path);
+        } else if (missingPathIndex == 0) {
+            // the root path is added along with the root collection.
+            return -1;
+        }
+        List<String> missingPaths = paths.subList(missingPathIndex, paths.size());
+        int parentPathId = pathIds.get(paths.get(missingPathIndex - 1));
+
+        Connection entryConn = getEntryConnection();
+        if (entryConn == null) {
+            log.error("Unable to acquire connection to database.");
+            return -1;
+        }
+        boolean success = false;
+        Map<String, Integer> addedPathIds = new LinkedHashMap<String, Integer>();
         PreparedStatement ps = null;
-        PreparedStatement ps1 = null;
+        SQLException failure = null;
+        try {
+            boolean returnsGeneratedKeys = canReturnGeneratedKeys(entryConn);
+            ps = prepareAddEntryStatement(entryConn, returnsGeneratedKeys);
+            for (String missingPath : missingPaths) {
+                parentPathId = addEntry(entryConn, ps, returnsGeneratedKeys, missingPath,
+                        parentPathId);
+                if (parentPathId <= 0) {
+                    return -1;
+                }
+                addedPathIds.put(missingPath, parentPathId);
+            }
+            success = true;
+        } catch (SQLException e) {
+            failure = e;
+        } finally {
+            success = closeEntryConnection(entryConn, ps, success, path);
+        }
+        if (failure != null) {
+            // the entries may have been added by another writer, in which case they are used
+            // instead. The entries added before the failure have already been committed.
+            return getAddedPathID(path, failure);
+        }
+        if (!success) {
+            return -1;
+        }
+        Cache<RegistryCacheKey, RegistryCacheEntry> cache = getCache();
+        for (Map.Entry<String, Integer> addedPathId : addedPathIds.entrySet()) {
+            cache.put(buildCacheKey(conn, addedPathId.getKey()),
+                    new RegistryCacheEntry(addedPathId.getValue()));
+        }
+        return parentPathId;
+    }
+
+    /**
+     * Method to get the path ids of a set of paths. The paths which are not cached are looked up
+     * using a single query, and the ids found are cached.
+     *
+     * @param conn  the database connection to use.
+     * @param paths the paths.
+     *
+     * @return the path ids of the given paths which exist.
+     * @throws SQLException if an error occurs while obtaining the path ids.
+     */
+    public Map<String, Integer> getPathIDs(Connection conn, List<String> paths)
+            throws SQLException {
+        if (conn == null || conn.getMetaData() == null) {
+            throw new SQLException("Connection is null");
+        }
+        Cache<RegistryCacheKey, RegistryCacheEntry> cache = getCache();
+        Map<String, Integer> pathIds = new HashMap<String, Integer>();
+        List<String> uncachedPaths = new ArrayList<String>();
+        for (String path : paths) {
+            RegistryCacheEntry result = cache.get(buildCacheKey(conn, path));
+            if (result != null) {
+                pathIds.put(path, result.getPathId());
+            } else {
+                uncachedPaths.add(path);
+            }
+        }
+        for (int i = 0; i < uncachedPaths.size(); i += MAX_PATHS_PER_QUERY) {
+            List<String> queriedPaths = uncachedPaths.subList(i,
+                    Math.min(i + MAX_PATHS_PER_QUERY, uncachedPaths.size()));
+            StringBuilder sql = new StringBuilder("SELECT REG_PATH_ID, REG_PATH_VALUE FROM " +
+                    "REG_PATH WHERE REG_TENANT_ID=? AND REG_PATH_VALUE IN (");
+            for (int j = 0; j < queriedPaths.size(); j++) {
+                sql.append(j == 0 ? "?" : ", ?");
+            }
+            sql.append(") ORDER BY REG_PATH_ID");
+
+            PreparedStatement ps = null;
+            ResultSet results = null;
+            try {
+                ps = conn.prepareStatement(sql.toString());
+                ps.setInt(1, CurrentSession.getTenantId());
+                for (int j = 0; j < queriedPaths.size(); j++) {
+                    ps.setString(j + 2, queriedPaths.get(j));
+                }
+                results = ps.executeQuery();
+                while (results.next()) {
+                    int pathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
+                    String path = results.getString(DatabaseConstants.PATH_VALUE_FIELD);
+                    if (pathId > 0 && !pathIds.containsKey(path)) {
+                        pathIds.put(path, pathId);
+                        cache.put(buildCacheKey(conn, path), new RegistryCacheEntry(pathId));
+                    }
+                }
+            } catch (SQLException e) {
+                String msg = "Failed to retrieve the path ids of " + queriedPaths + ". " +
+                        e.getMessage();
+                log.error(msg, e);
+                throw e;
+            } finally {
+                try {
+                    try {
+                        if (results != null) {
+                            results.close();
+                        }
+                    } finally {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                    }
+                } catch (SQLException e) {
+                    String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR +
+                            e.getMessage();
+                    log.error(msg, e);
+                }
+            }
+        }
+        return pathIds;
+    }
+
+    // Path entries are added using a separate connection, and are committed right away.
+    private Connection getEntryConnection() throws SQLException, RegistryException {
         DataAccessManager dataAccessManager;
         if (CurrentSession.getUserRegistry() != null
                 && CurrentSession.getUserRegistry().getRegistryContext() != null) {
@@ -88,131 +296,162 @@ public class JDBCPathCache extends PathCache {
                 conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
             }
             conn.setAutoCommit(false);
-        } else {
-            log.error("Unable to acquire connection to database.");
-            return -1;
         }
-        boolean success = false;
-        int pathId = 0;
+        return conn;
+    }
 
-        try {
-            String sql =
-                    "INSERT INTO REG_PATH(REG_PATH_VALUE, REG_PATH_PARENT_ID, REG_TENANT_ID) " +
-                            "VALUES (?, ?, ?)";
-            String sql1 = "SELECT MAX(REG_PATH_ID) FROM REG_PATH";
+    private static boolean canReturnGeneratedKeys(Connection conn) throws SQLException {
+        return DBUtils.canReturnGeneratedKeys(conn.getMetaData().getDatabaseProductName());
+    }
+
+    private static PreparedStatement prepareAddEntryStatement(Connection conn,
+                                                              boolean returnsGeneratedKeys)
+            throws SQLException {
+        if (returnsGeneratedKeys) {
             String dbProductName = conn.getMetaData().getDatabaseProductName();
-            boolean returnsGeneratedKeys = DBUtils.canReturnGeneratedKeys(dbProductName);
-            if (returnsGeneratedKeys) {
-                ps = conn.prepareStatement(sql, new String[]{
-                        DBUtils.getConvertedAutoGeneratedColumnName(dbProductName, "REG_PATH_ID")});
-            } else {
-                ps = conn.prepareStatement(sql);
+            return conn.prepareStatement(ADD_ENTRY_SQL, new String[]{
+                    DBUtils.getConvertedAutoGeneratedColumnName(dbProductName, "REG_PATH_ID")});
+        }
+        return conn.prepareStatement(ADD_ENTRY_SQL);
+    }
+
+    // Adds and commits a single entry, unless it has been added by another writer already. The
+    // entries are committed one at a time, so that the children of a path always refer to the
+    // id the path resolves to when they are added.
+    private static int addEntry(Connection conn, PreparedStatement ps,
+                                boolean returnsGeneratedKeys, String path, int parentPathId)
+            throws SQLException {
+        List<Integer> entryIds = getEntryIds(conn, path);
+        if (!entryIds.isEmpty()) {
+            return entryIds.get(0);
+        }
+        ps.setString(1, path);
+        ps.setInt(2, parentPathId);
+        ps.setInt(3, CurrentSession.getTenantId());
+        ps.executeUpdate();
+        int pathId = -1;
+        if (returnsGeneratedKeys) {
+            ResultSet results = ps.getGeneratedKeys();
+            try {
+                if (results.next()) {
+                    pathId = results.getInt(1);
+                }
+            } finally {
+                results.close();
             }
+        }
+        entryIds = getEntryIds(conn, path);
+        if (!returnsGeneratedKeys && entryIds.size() == 1) {
+            // apart from the entry added by this transaction, only committed entries are visible.
+            pathId = entryIds.get(0);
+        }
+        if (pathId <= 0 || entryIds.get(0) != pathId) {
+            // another writer has added the same path in the meantime, hence its entry is used.
+            conn.rollback();
+            entryIds = getEntryIds(conn, path);
+            return entryIds.isEmpty() ? -1 : entryIds.get(0);
+        }
+        conn.commit();
+
+        // another writer may have committed the same path after it was looked up above. The entry
+        // of this writer is visible already and may have been read, hence it is kept as a
+        // duplicate, and the smallest id is cached and used from now on.
+        entryIds = getEntryIds(conn, path);
+        if (entryIds.get(0) != pathId && log.isDebugEnabled()) {
+            log.debug("The path " + path + " has been added concurrently as " + entryIds +
+                    ". Using the path id " + entryIds.get(0) + ".");
+        }
+        return entryIds.get(0);
+    }
+
+    // Returns the ids of the entries of a path, the one to be used first.
+    private static List<Integer> getEntryIds(Connection conn, String path) throws SQLException {
+        List<Integer> entryIds = new ArrayList<Integer>();
+        PreparedStatement ps = conn.prepareStatement(GET_ENTRY_IDS_SQL);
+        try {
             ps.setString(1, path);
-            ps.setInt(2, parentPathId);
-            ps.setInt(3, CurrentSession.getTenantId());
-            if (returnsGeneratedKeys) {
-                ps.executeUpdate();
-                results = ps.getGeneratedKeys();
-            } else {
-                synchronized (ADD_ENTRY_LOCK) {
-                    ps.executeUpdate();
-                    ps1 = conn.prepareStatement(sql1);
-                    results = ps1.executeQuery();
+            ps.setInt(2, CurrentSession.getTenantId());
+            ResultSet results = ps.executeQuery();
+            try {
+                while (results.next()) {
+                    entryIds.add(results.getInt(1));
                 }
+            } finally {
+                results.close();
             }
-            if (results.next()) {
-                pathId = results.getInt(1);
-                if (pathId > 0) {
-                    success = true;
-                    return pathId;
+        } finally {
+            ps.close();
+        }
+        return entryIds;
+    }
+
+    // Looks up the id of a path which could not be added, since it may have been added by another
+    // writer in the meantime. The failure is thrown if the path does not exist.
+    private int getAddedPathID(String path, SQLException failure)
+            throws SQLException, RegistryException {
+        int pathId = -1;
+        Connection conn = getEntryConnection();
+        if (conn != null) {
+            try {
+                List<Integer> entryIds = getEntryIds(conn, path);
+                if (!entryIds.isEmpty()) {
+                    pathId = entryIds.get(0);
+                    getCache().put(buildCacheKey(conn, path), new RegistryCacheEntry(pathId));
                 }
+            } catch (SQLException e) {
+                log.error("Failed to look up the path id of " + path + ". " + e.getMessage(), e);
+            } finally {
+                closeEntryConnection(conn, null, false, path);
+            }
+        }
+        if (pathId <= 0) {
+            String msg = "Failed to insert resource to " + path + ". " + failure.getMessage();
+            log.error(msg, failure);
+            throw failure;
+        }
+        return pathId;
+    }
+
+    // Commits or rolls back the entries added, and returns whether they were committed.
+    private static boolean closeEntryConnection(Connection conn, PreparedStatement ps,
+                                                boolean commit, String path) {
+        try {
+            if (commit) {
+                conn.commit();
+                return true;
+            } else {
+                conn.rollback();
             }
         } catch (SQLException e) {
-            // we have to be expecting an exception with the duplicate value for the path value
-            // which can be further checked from here..
-            String msg = "Failed to insert resource to " + path + ". " + e.getMessage();
+            String msg = "Failed to " + (commit ? "commit" : "rollback") +
+                    " transaction. Inserting " + path + ". " + e.getMessage();
             log.error(msg, e);
-            throw e;
         } finally {
-            if (success) {
+            try {
                 try {
-                    conn.commit();
-                    RegistryCacheEntry e = new RegistryCacheEntry(pathId);
-                    String connectionId = null;
-                    if (conn.getMetaData() != null) {
-                        connectionId = RegistryUtils.getConnectionId(conn);
+                    if (ps != null) {
+                        ps.close();
                     }
-                    RegistryCacheKey key =
-                            RegistryUtils.buildRegistryCacheKey(connectionId,
-                                    CurrentSession.getTenantId(), path);
-                    getCache().put(key, e);
-
-                } catch (SQLException e) {
-                    String msg = "Failed to commit transaction. Inserting " + path + ". " +
-                            e.getMessage();
-                    log.error(msg, e);
                 } finally {
-                    try {
-                        try {
-                            if (results != null) {
-                                results.close();
-                            }
-                        } finally {
-                            try {
-                                if (ps1 != null) {
-                                    ps1.close();
-                                }
-                            } finally {
-                                try {
-                                    if (ps != null) {
-                                        ps.close();
-                                    }
-                                } finally {
-                                    conn.close();
-                                }
-                            }
-                        }
-                    } catch (SQLException e) {
-                        String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR +
-                                e.getMessage();
-                        log.error(msg, e);
-                    }
-                }
-            } else {
-                try {
-                    conn.rollback();
-
-                } catch (SQLException e) {
-                    String msg = "Failed to rollback transaction. Inserting " + path + ". " +
-                            e.getMessage();
-                    log.error(msg, e);
-                } finally {
-                    try {
-                        try {
-                            if (results != null) {
-                                results.close();
-                            }
-                        } finally {
-                            try {
-                                if (ps != null) {
-                                    ps.close();
-                                }
-                            } finally {
-                                if (conn != null) {
-                                    conn.close();
-                                }
-                            }
-                        }
-                    } catch (SQLException e) {
-                        String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR +
-                                e.getMessage();
-                        log.error(msg, e);
-                    }
+                    conn.close();
                 }
+            } catch (SQLException e) {
+                String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR +
+                        e.getMessage();
+                log.error(msg, e);
             }
         }
-        return -1;
+        return false;
+    }
+
+    private static RegistryCacheKey buildCacheKey(Connection conn, String path)
+            throws SQLException {
+        String connectionId = null;
+        if (conn.getMetaData() != null) {
+            connectionId = RegistryUtils.getConnectionId(conn);
+        }
+        return RegistryUtils.buildRegistryCacheKey(connectionId, CurrentSession.getTenantId(),
+                path);
     }
 
     /**
@@ -276,6 +515,95 @@ public class JDBCPathCache extends PathCache {
         }
     }
 
+    /**
+     * Method to get the paths of a set of path ids. The paths which are not cached are looked up
+     * using a single query for each batch of ids, and the paths found are cached.
+     *
+     * @param conn the database connection to use.
+     * @param ids  the path ids.
+     *
+     * @return the paths of the given path ids which exist.
+     * @throws SQLException if an error occurs while obtaining the paths.
+     */
+    public Map<Integer, String> getPaths(Connection conn, Collection<Integer> ids)
+            throws SQLException {
+        if (conn == null || conn.getMetaData() == null) {
+            throw new SQLException("Connection is null");
+        }
+        String connectionId = RegistryUtils.getConnectionId(conn);
+        int tenantId = CurrentSession.getTenantId();
+        Cache<RegistryCacheKey, RegistryCacheEntry> cache = getCache();
+        Map<Integer, String> paths = new HashMap<Integer, String>();
+        Map<RegistryCacheKey, Integer> keyIds = new LinkedHashMap<RegistryCacheKey, Integer>();
+        for (Integer id : new LinkedHashSet<Integer>(ids)) {
+            keyIds.put(RegistryUtils.buildRegistryCacheKey(connectionId, tenantId,
+                    Integer.toString(id)), id);
+        }
+        Map<RegistryCacheKey, RegistryCacheEntry> cachedEntries = cache.getAll(keyIds.keySet());
+        List<Integer> uncachedIds = new ArrayList<Integer>();
+        for (Map.Entry<RegistryCacheKey, Integer> keyId : keyIds.entrySet()) {
+            RegistryCacheEntry result = cachedEntries.get(keyId.getKey());
+            if (result != null) {
+                paths.put(keyId.getValue(), result.getPath());
+            } else {
+                uncachedIds.add(keyId.getValue());
+            }
+        }
+        for (int i = 0; i < uncachedIds.size(); i += MAX_PATHS_PER_QUERY) {
+            List<Integer> queriedIds = uncachedIds.subList(i,
+                    Math.min(i + MAX_PATHS_PER_QUERY, uncachedIds.size()));
+            StringBuilder sql = new StringBuilder("SELECT REG_PATH_ID, REG_PATH_VALUE FROM " +
+                    "REG_PATH WHERE REG_TENANT_ID=? AND REG_PATH_ID IN (");
+            for (int j = 0; j < queriedIds.size(); j++) {
+                sql.append(j == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+
+            PreparedStatement ps = null;
+            ResultSet results = null;
+            try {
+                ps = conn.prepareStatement(sql.toString());
+                ps.setInt(1, tenantId);
+                for (int j = 0; j < queriedIds.size(); j++) {
+                    ps.setInt(j + 2, queriedIds.get(j));
+                }
+                results = ps.executeQuery();
+                Map<RegistryCacheKey, RegistryCacheEntry> loadedEntries =
+                        new HashMap<RegistryCacheKey, RegistryCacheEntry>();
+                while (results.next()) {
+                    int pathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
+                    String path = results.getString(DatabaseConstants.PATH_VALUE_FIELD);
+                    paths.put(pathId, path);
+                    loadedEntries.put(RegistryUtils.buildRegistryCacheKey(connectionId, tenantId,
+                            Integer.toString(pathId)), new RegistryCacheEntry(path));
+                }
+                cache.putAll(loadedEntries);
+            } catch (SQLException e) {
+                String msg = "Failed to retrieve the paths of the path ids " + queriedIds + ". " +
+                        e.getMessage();
+                log.error(msg, e);
+                throw e;
+            } finally {
+                try {
+                    try {
+                        if (results != null) {
+                            results.close();
+                        }
+                    } finally {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                    }
+                } catch (SQLException e) {
+                    String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR +
+                            e.getMessage();
+                    log.error(msg, e);
+                }
+            }
+        }
+        return paths;
+    }
+
     /**
      * Method to get the path id of a given path.
      *
@@ -320,7 +648,7 @@ public class JDBCPathCache extends PathCache {
             try {
                 String sql =
                         "SELECT REG_PATH_ID FROM REG_PATH WHERE REG_PATH_VALUE=? " +
-                                "AND REG_TENANT_ID=?";
+                                "AND REG_TENANT_ID=? ORDER BY REG_PATH_ID";
                 ps = conn.prepareStatement(sql);
                 ps.setString(1, path);
                 ps.setInt(2, CurrentSession.getTenantId());
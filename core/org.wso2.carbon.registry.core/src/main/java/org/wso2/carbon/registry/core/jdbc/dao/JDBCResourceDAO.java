@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.registry.core.*;
 import org.wso2.carbon.registry.core.Collection;
+import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.config.StaticConfiguration;
 import org.wso2.carbon.registry.core.dao.ResourceDAO;
 import org.wso2.carbon.registry.core.dataaccess.DataAccessManager;
@@ -38,8 +39,12 @@ import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.utils.DBUtils;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
@@ -55,6 +60,16 @@ public class JDBCResourceDAO implements ResourceDAO {
     private static final Object ADD_CONTENT_LOCK = new Object();
     private static final Object ADD_PROPERTY_LOCK = new Object();
 
+    // The maximum number of resource property rows sent to the database in a single batch
+    private static final int PROPERTY_BATCH_SIZE = 100;
+
+    private static final String CONTENT_SQL = "SELECT REG_CONTENT_DATA FROM REG_CONTENT WHERE " +
+            "REG_CONTENT_ID = ? AND REG_TENANT_ID=?";
+
+    // Content of up to this size is read to memory before it is written to the database, so that
+    // the length of the content is known to the driver.
+    private static final int CONTENT_BUFFER_SIZE = 64 * 1024;
+
     private static final String SELECT_NAME_VALUE_PROP_P = "SELECT REG_NAME, REG_VALUE FROM REG_PROPERTY P, ";
 
     public ResourceIDImpl getResourceID(String path) throws RegistryException {
@@ -473,6 +488,19 @@ public class JDBCResourceDAO implements ResourceDAO {
         resourceImpl.setPathID(resourceID.getPathID());
     }
 
+    public void createPathIDs(String path) throws RegistryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn =
+                JDBCDatabaseTransaction.getConnection();
+        try {
+            JDBCPathCache.getPathCache().addEntries(conn, path);
+        } catch (SQLException e) {
+            String msg = "Failed to create the path ids for the collection " + path + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        }
+    }
+
     public ResourceIDImpl createResourceID(String path, ResourceIDImpl parentID,
                                            boolean isCollection)
             throws RegistryException {
@@ -1224,26 +1252,107 @@ public class JDBCResourceDAO implements ResourceDAO {
     }
 
     public void fillResourceContent(ResourceImpl resourceImpl) throws RegistryException {
-        int contentId = resourceImpl.getDbBasedContentID();
-        InputStream contentStream = getContentStream(contentId);
-        if (contentStream == null) {
-            resourceImpl.setContent(null);
-        } else {
-            resourceImpl.setContentStream(contentStream);
-        }
+        fillResourceContent(resourceImpl, true);
     }
 
     public void fillResourceContentWithNoUpdate(ResourceImpl resourceImpl)
             throws RegistryException {
-        int contentId = resourceImpl.getDbBasedContentID();
-        InputStream contentStream = getContentStream(contentId);
-        if (contentStream == null) {
-            resourceImpl.setContentWithNoUpdate(null);
+        fillResourceContent(resourceImpl, false);
+    }
+
+    // Reads the content of the resource to memory, unless it is larger than the content streaming
+    // threshold, in which case the resource is left to stream its content from the database.
+    private void fillResourceContent(ResourceImpl resourceImpl, boolean update)
+            throws RegistryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn =
+                JDBCDatabaseTransaction.getConnection();
+        PreparedStatement ps = null;
+        ResultSet result = null;
+        byte[] content = null;
+        boolean streamed = false;
+        try {
+            ps = conn.prepareStatement(CONTENT_SQL);
+            ps.setLong(1, resourceImpl.getDbBasedContentID());
+            ps.setInt(2, CurrentSession.getTenantId());
+            result = ps.executeQuery();
+            if (result.next()) {
+                InputStream rawInputStream =
+                        result.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
+                if (rawInputStream != null) {
+                    content = readContent(rawInputStream, getContentStreamingThreshold());
+                    streamed = (content == null);
+                }
+            }
+        } catch (IOException e) {
+            String msg = "Failed to read the content of the resource " + resourceImpl.getPath() +
+                    ". " + e.getMessage();
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } catch (SQLException ex) {
+            String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+            log.error(msg, ex);
+            throw new RegistryException(msg, ex);
+        } finally {
+            try {
+                try {
+                    if (result != null) {
+                        result.close();
+                    }
+                } finally {
+                    if (ps != null) {
+                        ps.close();
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+
+        if (streamed) {
+            resourceImpl.setContentStreamed(CurrentSession.getTenantId());
+            if (update) {
+                resourceImpl.setContentModified(true);
+            }
+        } else if (update) {
+            resourceImpl.setContent(content);
         } else {
-            resourceImpl.setContentStreamWithNoUpdate(contentStream);
+            resourceImpl.setContentWithNoUpdate(content);
         }
     }
 
+    // Reads a content to memory, or returns null without reading any further once the content
+    // turns out to be larger than the given limit. A negative limit reads content of any size.
+    private static byte[] readContent(InputStream contentStream, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] contentChunk = new byte[RegistryConstants.DEFAULT_BUFFER_SIZE];
+        int byteCount;
+        while ((byteCount = contentStream.read(contentChunk)) != -1) {
+            out.write(contentChunk, 0, byteCount);
+            if (limit >= 0 && out.size() > limit) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long getContentStreamingThreshold() {
+        RegistryContext registryContext = RegistryContext.getBaseInstance();
+        return registryContext == null ? -1 : registryContext.getContentStreamingThreshold();
+    }
+
+    public InputStream openContentStream(int contentID, int tenantId,
+                                         DataAccessManager dataAccessManager)
+            throws RegistryException {
+        if (!(dataAccessManager instanceof JDBCDataAccessManager)) {
+            String msg = "Failed to open the content stream. Invalid data access manager.";
+            log.error(msg);
+            throw new RegistryException(msg);
+        }
+        return new DatabaseContentStream(contentID, tenantId,
+                (JDBCDataAccessManager) dataAccessManager);
+    }
+
     public void updateCollectionLastUpdatedTime(ResourceIDImpl resourceID)
             throws RegistryException {
 
@@ -1575,122 +1684,160 @@ public class JDBCResourceDAO implements ResourceDAO {
 
     public void addProperties(ResourceImpl resource) throws RegistryException {
 
+        Properties props = resource.getProperties();
+        if (props == null) {
+            return;
+        }
+        List<String> names = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+        for (Object nameObj : props.keySet()) {
+            String name = (String) nameObj;
+            List propValues = (List) props.get(name);
+            if (propValues != null) {
+                for (Object valueObj : propValues) {
+                    names.add(name);
+                    values.add((String) valueObj);
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+
         JDBCDatabaseTransaction.ManagedRegistryConnection conn =
                 JDBCDatabaseTransaction.getConnection();
 
-        String sql1, sql2, sql3;
+        String sql1, sql2;
         boolean isVersioningProperties = StaticConfiguration.isVersioningProperties();
 
         sql1 = "INSERT INTO REG_PROPERTY (REG_NAME, REG_VALUE, REG_TENANT_ID) VALUES (?, ?, ?)";
-        sql2 = "SELECT MAX(REG_ID) FROM REG_PROPERTY";
         if (isVersioningProperties) {
-            sql3 = "INSERT INTO REG_RESOURCE_PROPERTY (REG_PROPERTY_ID, REG_VERSION, " +
+            sql2 = "INSERT INTO REG_RESOURCE_PROPERTY (REG_PROPERTY_ID, REG_VERSION, " +
                     "REG_TENANT_ID) VALUES (?, ?, ?)";
         } else {
-            sql3 = "INSERT INTO REG_RESOURCE_PROPERTY (REG_PROPERTY_ID, REG_PATH_ID, " +
+            sql2 = "INSERT INTO REG_RESOURCE_PROPERTY (REG_PROPERTY_ID, REG_PATH_ID, " +
                     "REG_RESOURCE_NAME, REG_TENANT_ID) VALUES (?, ?, ?, ?)";
         }
 
         ResourceIDImpl resourceID = resource.getResourceIDImpl();
-        Properties props = resource.getProperties();
+        int tenantId = CurrentSession.getTenantId();
+        PreparedStatement ps1 = null;
+        PreparedStatement ps2 = null;
+        try {
+            // the same statements are used for all the property values of the resource
+            String dbProductName = conn.getMetaData().getDatabaseProductName();
+            int[] propertyIds;
+            if (DBUtils.canReturnGeneratedKeys(dbProductName)) {
+                ps1 = conn.prepareStatement(sql1, new String[]{
+                        DBUtils.getConvertedAutoGeneratedColumnName(dbProductName,
+                                DatabaseConstants.ID_FIELD)});
+                propertyIds = insertProperties(conn, ps1, names, values, tenantId, true);
+            } else {
+                ps1 = conn.prepareStatement(sql1);
+                synchronized (ADD_PROPERTY_LOCK) {
+                    propertyIds = insertProperties(conn, ps1, names, values, tenantId, false);
+                }
+            }
 
-        if (props != null) {
-            for (Object nameObj : props.keySet()) {
-                String name = (String) nameObj;
-                List propValues = (List) props.get(name);
-                if (propValues != null) {
-                    for (Object valueObj : propValues) {
-                        PreparedStatement ps1 = null;
-                        PreparedStatement ps2 = null;
-                        PreparedStatement ps3 = null;
-                        ResultSet resultSet1 = null;
-                        try {
-                            String value = (String) valueObj;
-                            String dbProductName = conn.getMetaData().getDatabaseProductName();
-                            boolean returnsGeneratedKeys =
-                                    DBUtils.canReturnGeneratedKeys(dbProductName);
-                            if (returnsGeneratedKeys) {
-                                ps1 = conn.prepareStatement(sql1, new String[]{
-                                        DBUtils.getConvertedAutoGeneratedColumnName(dbProductName,
-                                                DatabaseConstants.ID_FIELD)});
-                            } else {
-                                ps1 = conn.prepareStatement(sql1);
-                            }
-                            ps3 = conn.prepareStatement(sql3);
-
-                            // prepare to execute query1 for the property
-                            ps1.setString(1, name);
-                            ps1.setString(2, value);
-                            ps1.setInt(3, CurrentSession.getTenantId());
-                            if (returnsGeneratedKeys) {
-                                ps1.executeUpdate();
-                                resultSet1 = ps1.getGeneratedKeys();
-                            } else {
-                                synchronized (ADD_PROPERTY_LOCK) {
-                                    ps1.executeUpdate();
-                                    ps2 = conn.prepareStatement(sql2);
-                                    resultSet1 = ps2.executeQuery();
-                                }
-                            }
-                            if (resultSet1.next()) {
-                                // setting the property id
-                                int propertyId = resultSet1.getInt(1);
-                                ps3.setInt(1, propertyId);
-                                if (isVersioningProperties) {
-                                    ps3.setLong(2, resource.getVersionNumber());
-                                    ps3.setInt(3, CurrentSession.getTenantId());
-                                } else {
-                                    ps3.setLong(2, resourceID.getPathID());
-                                    if (resourceID.getName() == null) {
-                                        ps3.setNull(3, Types.VARCHAR);
-                                    } else {
-                                        ps3.setString(3, resourceID.getName());
-                                    }
-                                    ps3.setInt(4, CurrentSession.getTenantId());
-                                }
-                                ps3.executeUpdate();
-                            }
+            ps2 = conn.prepareStatement(sql2);
+            for (int i = 0; i < propertyIds.length; i++) {
+                ps2.setInt(1, propertyIds[i]);
+                if (isVersioningProperties) {
+                    ps2.setLong(2, resource.getVersionNumber());
+                    ps2.setInt(3, tenantId);
+                } else {
+                    ps2.setLong(2, resourceID.getPathID());
+                    if (resourceID.getName() == null) {
+                        ps2.setNull(3, Types.VARCHAR);
+                    } else {
+                        ps2.setString(3, resourceID.getName());
+                    }
+                    ps2.setInt(4, tenantId);
+                }
+                ps2.addBatch();
+                if ((i + 1) % PROPERTY_BATCH_SIZE == 0 || i == propertyIds.length - 1) {
+                    try {
+                        ps2.executeBatch();
+                    } catch (SQLException e) {
+                        ps2.clearBatch();
+                        // the exception will be handled in the next catch block
+                        throw e;
+                    }
+                }
+            }
 
-                        } catch (SQLException e) {
+        } catch (SQLException e) {
 
-                            String msg = "Failed to add properties to the resource " +
-                                    resource.getPath() + ". " + e.getMessage();
-                            log.error(msg, e);
-                            throw new RegistryException(msg, e);
-                        } finally {
-                            // closing prepared statements before moving on to next iteration
-                            try {
-                                try {
-                                    try {
-                                        if (resultSet1 != null) {
-                                            resultSet1.close();
-                                        }
-                                    } finally {
-                                        if (ps1 != null) {
-                                            ps1.close();
-                                        }
-                                    }
-                                } finally {
-                                    try {
-                                        if (ps2 != null) {
-                                            ps2.close();
-                                        }
-                                    } finally {
-                                        if (ps3 != null) {
-                                            ps3.close();
-                                        }
-                                    }
-                                }
-                            } catch (SQLException ex) {
-                                String msg =
-                                        RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
-                                log.error(msg, ex);
-                            }
-                        }
+            String msg = "Failed to add properties to the resource " +
+                    resource.getPath() + ". " + e.getMessage();
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (ps1 != null) {
+                        ps1.close();
+                    }
+                } finally {
+                    if (ps2 != null) {
+                        ps2.close();
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+    }
+
+    /**
+     * Inserts the given property values into REG_PROPERTY, one row at a time, using the same
+     * prepared statement for all of them.
+     *
+     * @param conn                 the connection.
+     * @param ps                   the prepared insert statement.
+     * @param names                the property names.
+     * @param values               the property values, in the same order as the names.
+     * @param tenantId             the tenant id.
+     * @param returnsGeneratedKeys whether the ids are read from the generated keys of the
+     *                             statement. Otherwise, the largest id is read after each insert,
+     *                             which requires the caller to hold the ADD_PROPERTY_LOCK.
+     *
+     * @return the ids of the inserted rows.
+     * @throws SQLException if the insert failed.
+     */
+    private static int[] insertProperties(Connection conn, PreparedStatement ps, List<String> names,
+                                          List<String> values, int tenantId,
+                                          boolean returnsGeneratedKeys) throws SQLException {
+        int[] propertyIds = new int[names.size()];
+        PreparedStatement maxIdStatement = null;
+        try {
+            if (!returnsGeneratedKeys) {
+                maxIdStatement = conn.prepareStatement("SELECT MAX(REG_ID) FROM REG_PROPERTY");
+            }
+            for (int i = 0; i < propertyIds.length; i++) {
+                ps.setString(1, names.get(i));
+                ps.setString(2, values.get(i));
+                ps.setInt(3, tenantId);
+                ps.executeUpdate();
+                ResultSet result = returnsGeneratedKeys ?
+                        ps.getGeneratedKeys() : maxIdStatement.executeQuery();
+                try {
+                    if (!result.next()) {
+                        throw new SQLException("Failed to obtain the id of the property " +
+                                names.get(i) + ".");
                     }
+                    propertyIds[i] = result.getInt(1);
+                } finally {
+                    result.close();
                 }
             }
+        } finally {
+            if (maxIdStatement != null) {
+                maxIdStatement.close();
+            }
         }
+        return propertyIds;
     }
 
     /**
@@ -1835,7 +1982,11 @@ public class JDBCResourceDAO implements ResourceDAO {
 
     public void addContent(ResourceImpl resourceImpl) throws RegistryException {
 
-        if (!(resourceImpl.getContent() instanceof byte[])) {
+        // a streamed content is copied from its current entry without loading it to memory, and a
+        // content set as an input stream is written as it is read from the stream.
+        boolean streamed = resourceImpl.isContentStreamed();
+        boolean inputStream = !streamed && resourceImpl.getContent() instanceof InputStream;
+        if (!streamed && !inputStream && !(resourceImpl.getContent() instanceof byte[])) {
             if (log.isDebugEnabled()) {
                 String msg = "Content of the resource " + resourceImpl.getPath() + " is null or " +
                         "not a byte array. Content will not be persisted to the database.";
@@ -1846,8 +1997,22 @@ public class JDBCResourceDAO implements ResourceDAO {
         }
 
         InputStream contentStream = resourceImpl.getContentStream();
-        int contentID = addContentBytes(contentStream);
+        int contentID;
+        try {
+            contentID = addContentBytes(contentStream);
+        } finally {
+            try {
+                contentStream.close();
+            } catch (IOException e) {
+                log.error("Failed to close the content stream of the resource " +
+                        resourceImpl.getPath() + ".", e);
+            }
+        }
         resourceImpl.setDbBasedContentID(contentID);
+        if (inputStream) {
+            // the stream has been consumed, hence the content is read back from the database.
+            resourceImpl.setContentStreamed(CurrentSession.getTenantId());
+        }
     }
 
     public int addContentBytes(InputStream contentStream) throws RegistryException {
@@ -1860,7 +2025,6 @@ public class JDBCResourceDAO implements ResourceDAO {
             String sql = "INSERT INTO REG_CONTENT (REG_CONTENT_DATA, REG_TENANT_ID) VALUES (?, ?)";
             String sql1 = "SELECT MAX(REG_CONTENT_ID) FROM REG_CONTENT";
 
-            int size = contentStream.available();
             PreparedStatement ps, ps1 = null;
             String dbProductName = conn.getMetaData().getDatabaseProductName();
             boolean returnsGeneratedKeys = DBUtils.canReturnGeneratedKeys(dbProductName);
@@ -1872,15 +2036,15 @@ public class JDBCResourceDAO implements ResourceDAO {
                 ps = conn.prepareStatement(sql);
             }
             try {
-                ps.setBinaryStream(1, contentStream, size);
+                StreamedContent streamedContent = setContentParameter(ps, 1, contentStream);
                 ps.setInt(2, CurrentSession.getTenantId());
                 ResultSet result;
                 if (returnsGeneratedKeys) {
-                    ps.executeUpdate();
+                    executeContentUpdate(ps, 1, streamedContent);
                     result = ps.getGeneratedKeys();
                 } else {
                     synchronized (ADD_CONTENT_LOCK) {
-                        ps.executeUpdate();
+                        executeContentUpdate(ps, 1, streamedContent);
                         if (dbProductName.equals("OpenEdge RDBMS")) {
                             String sql2 = "UPDATE REG_CONTENT SET REG_CONTENT_ID = " +
                                     "PUB.REG_CONTENT_SEQUENCE.NEXTVAL WHERE REG_CONTENT_ID = 0";
@@ -1930,6 +2094,91 @@ public class JDBCResourceDAO implements ResourceDAO {
         return contentID;
     }
 
+    // Sets a content stream as a statement parameter. The length of the stream is not known in
+    // general, so content larger than the buffer size is written to the database as it is read
+    // from the stream, unless the driver does not support doing so. Returns the content passed to
+    // the driver as a stream, or null if the content was buffered.
+    private static StreamedContent setContentParameter(PreparedStatement ps, int index,
+                                                       InputStream contentStream)
+            throws SQLException, IOException {
+        if (contentStream instanceof ByteArrayInputStream) {
+            ps.setBinaryStream(index, contentStream, contentStream.available());
+            return null;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] contentChunk = new byte[RegistryConstants.DEFAULT_BUFFER_SIZE];
+        int byteCount = 0;
+        while (buffer.size() < CONTENT_BUFFER_SIZE &&
+                (byteCount = contentStream.read(contentChunk)) != -1) {
+            buffer.write(contentChunk, 0, byteCount);
+        }
+        if (byteCount == -1) {
+            ps.setBinaryStream(index, new ByteArrayInputStream(buffer.toByteArray()),
+                    buffer.size());
+            return null;
+        }
+        StreamedContent content = new StreamedContent(buffer.toByteArray(), contentStream);
+        try {
+            ps.setBinaryStream(index, content.getStream());
+            return content;
+        } catch (SQLFeatureNotSupportedException e) {
+            setBufferedContentParameter(ps, index, content.getStream());
+        } catch (AbstractMethodError e) {
+            // the driver predates JDBC 4
+            setBufferedContentParameter(ps, index, content.getStream());
+        }
+        return null;
+    }
+
+    // Executes a statement with a content parameter. Some drivers accept a stream without a length
+    // but fail to write it when the statement is executed, in which case the statement is executed
+    // again with the content buffered, provided that the driver has not read the stream yet.
+    private static void executeContentUpdate(PreparedStatement ps, int index,
+                                             StreamedContent streamedContent)
+            throws SQLException, IOException {
+        try {
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (streamedContent == null || streamedContent.isRead()) {
+                throw e;
+            }
+            executeBufferedContentUpdate(ps, index, streamedContent, e);
+        } catch (AbstractMethodError e) {
+            if (streamedContent == null || streamedContent.isRead()) {
+                throw e;
+            }
+            executeBufferedContentUpdate(ps, index, streamedContent, e);
+        }
+    }
+
+    private static void executeBufferedContentUpdate(PreparedStatement ps, int index,
+                                                     StreamedContent streamedContent,
+                                                     Throwable failure)
+            throws SQLException, IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Failed to write the content as a stream, writing it buffered instead. " +
+                    failure.getMessage());
+        }
+        setBufferedContentParameter(ps, index, streamedContent.getStream());
+        try {
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            // the first failure is reported, since it may have caused this one.
+            log.debug("Failed to write the buffered content. " + e.getMessage(), e);
+            if (failure instanceof SQLException) {
+                throw (SQLException) failure;
+            }
+            throw e;
+        }
+    }
+
+    private static void setBufferedContentParameter(PreparedStatement ps, int index,
+                                                    InputStream contentStream)
+            throws SQLException, IOException {
+        byte[] content = readContent(contentStream, -1);
+        ps.setBinaryStream(index, new ByteArrayInputStream(content), content.length);
+    }
+
     public ResourceDO getResourceDO(long version) throws RegistryException {
 
         JDBCDatabaseTransaction.ManagedRegistryConnection conn =
@@ -2169,6 +2418,18 @@ public class JDBCResourceDAO implements ResourceDAO {
         }
     }
 
+    public Map<Integer, String> getPathsFromIds(List<Integer> pathIds) throws RegistryException {
+        try {
+            return JDBCPathCache.getPathCache()
+                    .getPaths(JDBCDatabaseTransaction.getConnection(), pathIds);
+        } catch (SQLException e) {
+            String msg = "Failed to get the paths for the path ids " + pathIds + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
+        }
+    }
+
     public String getPath(long version) throws RegistryException {
         ResourceDO resourceDO = getResourceDO(version);
         if (resourceDO == null) {
@@ -2358,4 +2619,176 @@ public class JDBCResourceDAO implements ResourceDAO {
             }
         }
     }
+
+    // A content stream passed to the driver, which can be read again from its start as long as the
+    // driver has only read the part of it which was buffered.
+    private static class StreamedContent {
+
+        private final byte[] bufferedContent;
+        private final InputStream remainingContent;
+        private boolean remainingContentRead;
+
+        private StreamedContent(byte[] bufferedContent, InputStream remainingContent) {
+            this.bufferedContent = bufferedContent;
+            this.remainingContent = remainingContent;
+        }
+
+        private InputStream getStream() {
+            return new SequenceInputStream(new ByteArrayInputStream(bufferedContent),
+                    new FilterInputStream(remainingContent) {
+                        public int read() throws IOException {
+                            remainingContentRead = true;
+                            return super.read();
+                        }
+
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            remainingContentRead = true;
+                            return super.read(b, off, len);
+                        }
+
+                        public long skip(long n) throws IOException {
+                            remainingContentRead = true;
+                            return super.skip(n);
+                        }
+                    });
+        }
+
+        private boolean isRead() {
+            return remainingContentRead;
+        }
+    }
+
+    /**
+     * A stream over a content in the database, which reads the content from the database as the
+     * stream is consumed. A stream read within a transaction is closed when the transaction ends.
+     */
+    private static class DatabaseContentStream extends InputStream {
+
+        private final int contentID;
+        private final int tenantId;
+        private final JDBCDataAccessManager dataAccessManager;
+
+        // the connection taken by this stream, if the content is not read within a transaction.
+        private Connection connection;
+        // the transaction connection, which closes this stream when the transaction ends.
+        private JDBCDatabaseTransaction.ManagedRegistryConnection transactionConnection;
+        private PreparedStatement ps;
+        private ResultSet result;
+        private InputStream contentStream;
+        private boolean opened;
+        private boolean closed;
+
+        private DatabaseContentStream(int contentID, int tenantId,
+                                      JDBCDataAccessManager dataAccessManager) {
+            this.contentID = contentID;
+            this.tenantId = tenantId;
+            this.dataAccessManager = dataAccessManager;
+        }
+
+        public int read() throws IOException {
+            InputStream in = open();
+            int b = (in == null) ? -1 : in.read();
+            if (b == -1) {
+                release();
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            InputStream in = open();
+            int byteCount = (in == null) ? -1 : in.read(b, off, len);
+            if (byteCount == -1) {
+                release();
+            }
+            return byteCount;
+        }
+
+        public int available() throws IOException {
+            return (contentStream == null) ? 0 : contentStream.available();
+        }
+
+        public void close() throws IOException {
+            closed = true;
+            release();
+        }
+
+        private InputStream open() throws IOException {
+            if (closed) {
+                throw new IOException("The stream of the content " + contentID +
+                        " has been closed.");
+            }
+            if (opened) {
+                return contentStream;
+            }
+            opened = true;
+            try {
+                Connection conn;
+                if (dataAccessManager.getDatabaseTransaction().isStarted()) {
+                    transactionConnection = JDBCDatabaseTransaction.getConnection();
+                    transactionConnection.addOpenStream(this);
+                    conn = transactionConnection;
+                } else {
+                    connection = dataAccessManager.getDataSource().getConnection();
+                    if (connection.getTransactionIsolation() !=
+                            Connection.TRANSACTION_READ_COMMITTED) {
+                        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                    }
+                    connection.setAutoCommit(false);
+                    conn = connection;
+                }
+                ps = conn.prepareStatement(CONTENT_SQL);
+                ps.setLong(1, contentID);
+                ps.setInt(2, tenantId);
+                result = ps.executeQuery();
+                if (result.next()) {
+                    contentStream = result.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
+                }
+            } catch (SQLException e) {
+                release();
+                String msg = "Failed to read the content " + contentID + " from the database. " +
+                        e.getMessage();
+                log.error(msg, e);
+                IOException ioException = new IOException(msg);
+                ioException.initCause(e);
+                throw ioException;
+            }
+            return contentStream;
+        }
+
+        private void release() {
+            contentStream = null;
+            if (transactionConnection != null) {
+                transactionConnection.removeOpenStream(this);
+                transactionConnection = null;
+            }
+            try {
+                try {
+                    if (result != null) {
+                        result.close();
+                    }
+                } finally {
+                    try {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                    } finally {
+                        if (connection != null) {
+                            try {
+                                connection.commit();
+                            } finally {
+                                connection.close();
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = RegistryConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            } finally {
+                result = null;
+                ps = null;
+                connection = null;
+            }
+        }
+    }
 }
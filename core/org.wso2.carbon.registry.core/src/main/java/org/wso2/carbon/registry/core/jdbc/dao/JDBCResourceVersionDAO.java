@@ -584,6 +584,13 @@ public class JDBCResourceVersionDAO implements ResourceVersionDAO {
         int end = start + pageLen;
         boolean isValidPath = false;
         int versionIndex = parentVersionIndex + 1;
+        if (parentVersionIndex == 0 && start > 0) {
+            // the immediate children of the root of a snapshot are the versions following it, so
+            // the versions before the requested range need not be looked up.
+            versionIndex += start;
+            current = start;
+            isValidPath = true;
+        }
         while (true) {
             PreparedStatement ps = null;
             PreparedStatement ps2 = null;
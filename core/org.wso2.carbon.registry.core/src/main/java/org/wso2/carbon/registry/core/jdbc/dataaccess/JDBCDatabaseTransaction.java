@@ -28,6 +28,8 @@ import org.wso2.carbon.registry.core.statistics.query.StatisticsRecord;
 import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.registry.core.utils.UUIDGenerator;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
@@ -977,6 +979,17 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
 
         private String uuid = UUIDGenerator.generateUUID();
 
+        // The maximum number of statements kept open for reuse on a connection.
+        private static final int MAX_REUSABLE_STATEMENTS = 20;
+
+        // The statements kept open for reuse while this connection is open, by their SQL, and the
+        // ones among them which have been handed out and not yet released.
+        private Map<String, PreparedStatement> reusableStatements = null;
+        private Set<PreparedStatement> reusableStatementsInUse = null;
+
+        // The streams which read from this connection, and are closed along with the transaction.
+        private Set<Closeable> openStreams = null;
+
         static {
             if (statsLog.isDebugEnabled()) {
                 initializeStatisticsLogging();
@@ -1178,6 +1191,7 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public void commit() throws SQLException {
+            closeOpenStreams();
             if (statsLog.isDebugEnabled()) {
                 Runnable runnable = new Runnable() {
                     public void run() {
@@ -1234,6 +1248,7 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public void rollback() throws SQLException {
+            closeOpenStreams();
             if (statsLog.isDebugEnabled()) {
                 Runnable runnable = new Runnable() {
                     public void run() {
@@ -1290,6 +1305,8 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public void close() throws SQLException {
+            closeOpenStreams();
+            closeReusableStatements();
             if (statsLog.isDebugEnabled()) {
                 Runnable runnable = new Runnable() {
                     public void run() {
@@ -1354,6 +1371,110 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
             }
         }
 
+        /**
+         * Prepares a statement which is kept open for reuse while this connection is open, so
+         * that executing the same SQL again on this connection does not prepare it again. The
+         * statement must be handed back through {@link #releaseReusableStatement} instead of being
+         * closed. If the statement of the SQL is already in use, or too many statements are kept
+         * open, a statement which is closed on release is prepared instead.
+         *
+         * @param sql the SQL of the statement.
+         *
+         * @return the prepared statement.
+         * @throws SQLException if preparing the statement failed.
+         */
+        public PreparedStatement prepareReusableStatement(String sql) throws SQLException {
+            if (reusableStatements == null) {
+                reusableStatements = new HashMap<String, PreparedStatement>();
+                reusableStatementsInUse = new HashSet<PreparedStatement>();
+            }
+            PreparedStatement ps = reusableStatements.get(sql);
+            if (ps == null) {
+                if (reusableStatements.size() >= MAX_REUSABLE_STATEMENTS) {
+                    return prepareStatement(sql);
+                }
+                ps = prepareStatement(sql);
+                reusableStatements.put(sql, ps);
+            } else if (reusableStatementsInUse.contains(ps)) {
+                return prepareStatement(sql);
+            }
+            reusableStatementsInUse.add(ps);
+            return ps;
+        }
+
+        /**
+         * Hands back a statement obtained from {@link #prepareReusableStatement}. Statements kept
+         * for reuse have their parameters cleared, and other statements are closed.
+         *
+         * @param ps the statement.
+         *
+         * @throws SQLException if clearing the parameters or closing the statement failed.
+         */
+        public void releaseReusableStatement(PreparedStatement ps) throws SQLException {
+            if (reusableStatementsInUse != null && reusableStatementsInUse.remove(ps)) {
+                ps.clearParameters();
+            } else {
+                ps.close();
+            }
+        }
+
+        private void closeReusableStatements() {
+            if (reusableStatements == null) {
+                return;
+            }
+            for (PreparedStatement ps : reusableStatements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    log.error("Failed to close the statement. " + e.getMessage(), e);
+                }
+            }
+            reusableStatements = null;
+            reusableStatementsInUse = null;
+        }
+
+        /**
+         * Registers a stream which reads from this connection, such as the stream of a resource
+         * content, so that it is closed when the transaction is committed or rolled back, unless
+         * it has been read to its end or closed by then.
+         *
+         * @param stream the stream.
+         */
+        public void addOpenStream(Closeable stream) {
+            if (openStreams == null) {
+                openStreams = new LinkedHashSet<Closeable>();
+            }
+            openStreams.add(stream);
+        }
+
+        /**
+         * Removes a stream registered through {@link #addOpenStream}, once it no longer reads from
+         * this connection.
+         *
+         * @param stream the stream.
+         */
+        public void removeOpenStream(Closeable stream) {
+            if (openStreams != null) {
+                openStreams.remove(stream);
+            }
+        }
+
+        private void closeOpenStreams() {
+            if (openStreams == null) {
+                return;
+            }
+            // closing a stream removes it from the set of open streams.
+            List<Closeable> streams = new ArrayList<Closeable>(openStreams);
+            openStreams = null;
+            for (Closeable stream : streams) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    log.error("Failed to close the stream. " + e.getMessage(), e);
+                }
+            }
+        }
+
         public boolean isClosed() throws SQLException {
             // If there is only one connection, we don't add it to the closed connection map.
             if (tManagedConnectionMap.get().size() == 1) {
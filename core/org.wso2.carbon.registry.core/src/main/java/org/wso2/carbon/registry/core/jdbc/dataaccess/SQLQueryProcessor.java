@@ -90,7 +90,7 @@ public class SQLQueryProcessor implements QueryProcessor {
 
         Collection resultCollection = null;
 
-        Connection conn;
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = null;
         String sqlString;
         ResultSet results = null;
         PreparedStatement s = null;
@@ -125,12 +125,13 @@ public class SQLQueryProcessor implements QueryProcessor {
             conn = JDBCDatabaseTransaction.getConnection();
 
             // adding the tenant ids for the query
-            TenantAwareSQLTransformer transformer = new TenantAwareSQLTransformer(sqlString);
+            TenantAwareSQLTransformer transformer =
+                    TenantAwareSQLTransformer.getTransformer(sqlString);
             String transformedQuery = transformer.getTransformedQuery();
             int transformedParameterCount = transformer.getAdditionalParameterCount();
 //            int trailingParameterCount = transformer.getTrailingParameterCount();
 
-            s = conn.prepareStatement(transformedQuery);
+            s = conn.prepareReusableStatement(transformedQuery);
             /*s = conn.prepareStatement(transformedQuery, ResultSet.TYPE_FORWARD_ONLY,
                     ResultSet.CONCUR_READ_ONLY);*/
 
@@ -250,7 +251,7 @@ public class SQLQueryProcessor implements QueryProcessor {
 
             if (s != null) {
                 try {
-                    s.close();
+                    conn.releaseReusableStatement(s);
                 } catch (SQLException e) {
                     log.error("Failed to close the statement. " + e.getMessage());
                 }
@@ -289,15 +290,30 @@ public class SQLQueryProcessor implements QueryProcessor {
 
         // Result is a normal resource, which is stored in the Resources table or a collection
         // of normal resources.
-	
-	//We can't use a HashSet here, because it doesn't keep the order that may lead to failures of queries having ORDER BY
-        Set<String>  pathSet = new LinkedHashSet<String>();        
+        // The rows are read first, so that the paths of all path ids are resolved together
+        // instead of one lookup for each row.
+        List<Integer> pathIds = new ArrayList<Integer>();
+        List<String> resourceNames = new ArrayList<String>();
         while (results.next()) {
-            int pathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
-            String resourceName = results.getString(DatabaseConstants.NAME_FIELD);
-            String path = resourceDAO.getPath(pathId, resourceName, false);
-            if(path!=null){
-                pathSet.add(path);
+            pathIds.add(results.getInt(DatabaseConstants.PATH_ID_FIELD));
+            resourceNames.add(results.getString(DatabaseConstants.NAME_FIELD));
+        }
+        Map<Integer, String> parentPaths = resourceDAO.getPathsFromIds(pathIds);
+
+	//We can't use a HashSet here, because it doesn't keep the order that may lead to failures of queries having ORDER BY
+        Set<String>  pathSet = new LinkedHashSet<String>();
+        for (int i = 0; i < pathIds.size(); i++) {
+            String parentPath = parentPaths.get(pathIds.get(i));
+            if (parentPath == null) {
+                continue;
+            }
+            String resourceName = resourceNames.get(i);
+            if (resourceName == null) {
+                pathSet.add(parentPath);
+            } else if (parentPath.equals(RegistryConstants.ROOT_PATH)) {
+                pathSet.add(parentPath + resourceName);
+            } else {
+                pathSet.add(parentPath + RegistryConstants.PATH_SEPARATOR + resourceName);
             }
         }
         String[] paths = pathSet.toArray(new String[pathSet.size()]);
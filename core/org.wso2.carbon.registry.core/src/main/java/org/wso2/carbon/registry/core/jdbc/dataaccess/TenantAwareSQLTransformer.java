@@ -18,16 +18,42 @@ package org.wso2.carbon.registry.core.jdbc.dataaccess;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.statistics.StatisticsLog;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * class to transform the sql to be tenant-aware. Once the query is passed to the constructor this
  * will be keeping the transformed query.
+ * <p/>
+ * The transformation only depends on the query text, so transformers of the queries executed most
+ * recently are cached and shared through {@link #getTransformer(String)}.
  */
 public class TenantAwareSQLTransformer {
 
     private static final Log log = LogFactory.getLog(TenantAwareSQLTransformer.class);
+    private static final Log statsLog = StatisticsLog.getLog();
+
+    // The maximum number of transformed queries cached.
+    private static final int MAX_CACHED_QUERIES = 1000;
+    // The number of cache lookups between two logs of the cache statistics.
+    private static final int STATISTICS_LOG_INTERVAL = 1000;
+
+    private static final Map<String, TenantAwareSQLTransformer> transformerCache =
+            Collections.synchronizedMap(
+                    new LinkedHashMap<String, TenantAwareSQLTransformer>(16, 0.75f, true) {
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, TenantAwareSQLTransformer> eldest) {
+                            return size() > MAX_CACHED_QUERIES;
+                        }
+                    });
+    private static final AtomicLong cacheHitCount = new AtomicLong();
+    private static final AtomicLong cacheMissCount = new AtomicLong();
+
     private String transformedQuery = null;
     private int parameterCount = 0;
     private int trailingParameterCount = 0;
@@ -167,6 +193,54 @@ public class TenantAwareSQLTransformer {
         }
     }
 
+    /**
+     * Get the transformer of a given query, from the cache if the query has been transformed
+     * before. Queries which fail the validity check are not cached.
+     *
+     * @param sqlQuery the query to transform to tenant aware sql
+     *
+     * @return the transformer of the query.
+     * @throws RegistryException throws if the transformation failed.
+     */
+    public static TenantAwareSQLTransformer getTransformer(String sqlQuery)
+            throws RegistryException {
+        TenantAwareSQLTransformer transformer = transformerCache.get(sqlQuery);
+        if (transformer != null) {
+            cacheHitCount.incrementAndGet();
+        } else {
+            cacheMissCount.incrementAndGet();
+            transformer = new TenantAwareSQLTransformer(sqlQuery);
+            transformerCache.put(sqlQuery, transformer);
+        }
+        if (statsLog.isDebugEnabled()) {
+            long hits = cacheHitCount.get();
+            long lookups = hits + cacheMissCount.get();
+            if (lookups % STATISTICS_LOG_INTERVAL == 0) {
+                statsLog.debug("Tenant aware SQL cache hits: " + hits + " of " + lookups +
+                        " lookups, cached queries: " + transformerCache.size());
+            }
+        }
+        return transformer;
+    }
+
+    /**
+     * Get the number of queries whose transformer was found in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public static long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Get the number of queries which had to be transformed as they were not in the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public static long getCacheMissCount() {
+        return cacheMissCount.get();
+    }
+
     /**
      * Parse sqlQuery for possible malicious injections
      * @param sqlQuery
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.jdbc.handlers;
+
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.ResourcePath;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.Filter;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.MediaTypeMatcher;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.URLMatcher;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A snapshot of the filters and handlers registered for a single operation of the {@link
+ * HandlerManager}, taken in registration order. The index is rebuilt whenever handlers are added or
+ * removed, so that a request does not need to walk the handler map and copy each handler set.
+ * <p/>
+ * The decisions of {@link URLMatcher} filters only depend on the complete path of the request, and
+ * those of {@link MediaTypeMatcher} filters on PUT and IMPORT only depend on the media type of the
+ * resource. These decisions are remembered per path and per media type respectively, so that the
+ * patterns of such filters are matched once for each distinct path or media type, instead of once
+ * per request. All other filters are evaluated on each request, as they may depend on or change the
+ * state of the request context. Filters are expected not to be reconfigured once registered.
+ */
+abstract class HandlerDispatchIndex {
+
+    // The number of paths and media types of which decisions are remembered, before the
+    // remembered decisions are discarded.
+    private static final int MAX_CACHED_DECISIONS = 1024;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCHED = 1;
+    private static final byte NOT_MATCHED = 2;
+
+    private final Filter[] filters;
+    private final Handler[][] handlers;
+    private final boolean[] pathFilters;
+    private final boolean[] mediaTypeFilters;
+
+    private final ConcurrentMap<String, byte[]> pathDecisions =
+            new ConcurrentHashMap<String, byte[]>();
+    private final ConcurrentMap<String, byte[]> mediaTypeDecisions =
+            new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * Creates an index over the given handler map.
+     *
+     * @param handlerMap      the map of filters and handlers of the operation.
+     * @param mediaTypeBased  whether decisions of media type matchers only depend on the media type
+     *                        of the resource of the request, for this operation.
+     */
+    HandlerDispatchIndex(Map<Filter, Set<Handler>> handlerMap, boolean mediaTypeBased) {
+        int size = handlerMap.size();
+        filters = new Filter[size];
+        handlers = new Handler[size][];
+        pathFilters = new boolean[size];
+        mediaTypeFilters = new boolean[size];
+        int i = 0;
+        for (Map.Entry<Filter, Set<Handler>> entry : handlerMap.entrySet()) {
+            Filter filter = entry.getKey();
+            Set<Handler> handlerSet = entry.getValue();
+            filters[i] = filter;
+            handlers[i] = handlerSet.toArray(new Handler[handlerSet.size()]);
+            // Subclasses may override the matching logic, hence the exact class is checked.
+            if (filter != null) {
+                pathFilters[i] = filter.getClass() == URLMatcher.class;
+                mediaTypeFilters[i] = mediaTypeBased &&
+                        filter.getClass() == MediaTypeMatcher.class;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Evaluates the given filter for the operation of this index.
+     *
+     * @param filter         the filter.
+     * @param requestContext Details of the request.
+     *
+     * @return whether the handlers of the filter should be invoked.
+     * @throws RegistryException if the filter failed.
+     */
+    protected abstract boolean evaluate(Filter filter, RequestContext requestContext)
+            throws RegistryException;
+
+    /**
+     * @return the number of filters of the operation.
+     */
+    int size() {
+        return filters.length;
+    }
+
+    /**
+     * @param index the position of the filter.
+     *
+     * @return the handlers registered with the filter at the given position, in registration
+     *         order.
+     */
+    Handler[] getHandlers(int index) {
+        return handlers[index];
+    }
+
+    /**
+     * Determines whether the handlers of the filter at the given position should be invoked for
+     * the given request.
+     *
+     * @param index          the position of the filter.
+     * @param requestContext Details of the request.
+     *
+     * @return whether the handlers of the filter should be invoked.
+     * @throws RegistryException if the filter failed.
+     */
+    boolean handle(int index, RequestContext requestContext) throws RegistryException {
+        Filter filter = filters[index];
+        if (filter == null) {
+            return false;
+        }
+        if (pathFilters[index]) {
+            ResourcePath resourcePath = requestContext.getResourcePath();
+            if (resourcePath != null && resourcePath.getCompletePath() != null) {
+                return decide(pathDecisions, resourcePath.getCompletePath(), index,
+                        requestContext);
+            }
+        } else if (mediaTypeFilters[index]) {
+            Resource resource = requestContext.getResource();
+            if (resource != null && resource.getMediaType() != null) {
+                return decide(mediaTypeDecisions, resource.getMediaType(), index,
+                        requestContext);
+            }
+        }
+        return evaluate(filter, requestContext);
+    }
+
+    private boolean decide(ConcurrentMap<String, byte[]> cache, String key, int index,
+                           RequestContext requestContext) throws RegistryException {
+        byte[] decisions = cache.get(key);
+        if (decisions == null) {
+            if (cache.size() >= MAX_CACHED_DECISIONS) {
+                cache.clear();
+            }
+            decisions = new byte[filters.length];
+            byte[] existing = cache.putIfAbsent(key, decisions);
+            if (existing != null) {
+                decisions = existing;
+            }
+        }
+        // Concurrent requests may evaluate the same filter, but they arrive at the same decision.
+        byte decision = decisions[index];
+        if (decision == UNKNOWN) {
+            decision = evaluate(filters[index], requestContext) ? MATCHED : NOT_MATCHED;
+            decisions[index] = decision;
+        }
+        return decision == MATCHED;
+    }
+}
@@ -141,8 +141,28 @@ public class HandlerManager {
     private Map<Filter, Set<Handler>> dumpMap = new LinkedHashMap<Filter, Set<Handler>>();
     private Map<Filter, Set<Handler>> restoreMap = new LinkedHashMap<Filter, Set<Handler>>();
 
+    ////////////////////////////////////////////////////////
+    // Dispatch indexes of the most frequently invoked
+    // operations, rebuilt whenever handlers are added or
+    // removed.
+    ////////////////////////////////////////////////////////
+
+    private volatile HandlerDispatchIndex getDispatchIndex;
+    private volatile HandlerDispatchIndex putDispatchIndex;
+    private volatile HandlerDispatchIndex importDispatchIndex;
+    private volatile HandlerDispatchIndex deleteDispatchIndex;
+    private volatile HandlerDispatchIndex putChildDispatchIndex;
+    private volatile HandlerDispatchIndex resourceExistsDispatchIndex;
+
     private boolean evaluateAllHandlers = false;
 
+    /**
+     * Creates a handler manager without any registered handlers.
+     */
+    public HandlerManager() {
+        rebuildDispatchIndexes();
+    }
+
 
     /**
      * Registers handlers with the handler manager. Each handler should be registered with a Filter.
@@ -499,6 +519,7 @@ public class HandlerManager {
             }
             methodInfo = sb.toString();
         }
+        rebuildDispatchIndexes();
         if (log.isDebugEnabled()) {
             log.debug("Registered the handler " + filter.getClass().getName() +
                     " --> " + handler.getClass().getName() + " for" + methodInfo + " methods.");
@@ -671,6 +692,7 @@ public class HandlerManager {
         appendHandlerMap(getRegistryContextHandlerMap, getRegistryContextHandlerMapTempRef);
         appendHandlerMap(dumpMap, dumpMapTempRef);
         appendHandlerMap(restoreMap, restoreMapTempRef);
+        rebuildDispatchIndexes();
     }
 
     /**
@@ -699,6 +721,46 @@ public class HandlerManager {
         addHandlerWithPriority(methods, filter, handler);
     }
 
+    // rebuilds the dispatch indexes from the current handler maps.
+    private void rebuildDispatchIndexes() {
+        getDispatchIndex = new HandlerDispatchIndex(getHandlerMap, false) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handleGet(requestContext);
+            }
+        };
+        putDispatchIndex = new HandlerDispatchIndex(putHandlerMap, true) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handlePut(requestContext);
+            }
+        };
+        importDispatchIndex = new HandlerDispatchIndex(importHandlerMap, true) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handleImportResource(requestContext);
+            }
+        };
+        deleteDispatchIndex = new HandlerDispatchIndex(deleteHandlerMap, false) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handleDelete(requestContext);
+            }
+        };
+        putChildDispatchIndex = new HandlerDispatchIndex(putChildHandlerMap, false) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handlePutChild(requestContext);
+            }
+        };
+        resourceExistsDispatchIndex = new HandlerDispatchIndex(resourceExistsHandlerMap, false) {
+            protected boolean evaluate(Filter filter, RequestContext requestContext)
+                    throws RegistryException {
+                return filter.handleResourceExists(requestContext);
+            }
+        };
+    }
+
     // append the entries in the handler map2 to handler map1 => map1 += map2;
     private void appendHandlerMap(Map<Filter, Set<Handler>> map1, Map<Filter, Set<Handler>> map2) {
 
@@ -935,6 +997,7 @@ public class HandlerManager {
             }
         }
 
+        rebuildDispatchIndexes();
         if (log.isDebugEnabled()) {
             log.debug("Removed the handler " + handler.getClass().getName() + " for all methods.");
         }
@@ -1223,6 +1286,7 @@ public class HandlerManager {
             }
             methodInfo = sb.toString();
         }
+        rebuildDispatchIndexes();
         if (log.isDebugEnabled()) {
             log.debug("Removed the handler " + filter.getClass().getName() +
                     " --> " + handler.getClass().getName() + " for" + methodInfo + " methods.");
@@ -2434,11 +2498,10 @@ public class HandlerManager {
 
         Resource resource = null;
 
-        Set<Filter> filters = getHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handleGet(requestContext)) {
-                Set<Handler> handlerSet = getHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = getDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         resource = handler.get(requestContext);
@@ -2493,11 +2556,10 @@ public class HandlerManager {
      */
     public String put(RequestContext requestContext) throws RegistryException {
 
-        Set<Filter> filters = putHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handlePut(requestContext)) {
-                Set<Handler> handlerSet = putHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = putDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         handler.put(requestContext);
@@ -2556,11 +2618,10 @@ public class HandlerManager {
      */
     public String importResource(RequestContext requestContext) throws RegistryException {
 
-        Set<Filter> filters = importHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handleImportResource(requestContext)) {
-                Set<Handler> handlerSet = importHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = importDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         handler.importResource(requestContext);
@@ -2617,11 +2678,10 @@ public class HandlerManager {
      */
     public void delete(RequestContext requestContext) throws RegistryException {
 
-        Set<Filter> filters = deleteHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handleDelete(requestContext)) {
-                Set<Handler> handlerSet = deleteHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = deleteDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         handler.delete(requestContext);
@@ -2672,11 +2732,10 @@ public class HandlerManager {
      */
     public void putChild(RequestContext requestContext) throws RegistryException {
 
-        Set<Filter> filters = putChildHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handlePutChild(requestContext)) {
-                Set<Handler> handlerSet = putChildHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = putChildDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         handler.putChild(requestContext);
@@ -3120,11 +3179,10 @@ public class HandlerManager {
      */
     public boolean resourceExists(RequestContext requestContext) throws RegistryException {
         boolean resourceExist = false;
-        Set<Filter> filters = resourceExistsHandlerMap.keySet();
-        for (Filter filter : filters) {
-            if (filter != null && filter.handleResourceExists(requestContext)) {
-                Set<Handler> handlerSet = resourceExistsHandlerMap.get(filter);
-                Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
+        HandlerDispatchIndex dispatchIndex = resourceExistsDispatchIndex;
+        for (int i = 0; i < dispatchIndex.size(); i++) {
+            if (dispatchIndex.handle(i, requestContext)) {
+                Handler[] handlers = dispatchIndex.getHandlers(i);
                 for (Handler handler : handlers) {
                     try {
                         resourceExist = handler.resourceExists(requestContext);
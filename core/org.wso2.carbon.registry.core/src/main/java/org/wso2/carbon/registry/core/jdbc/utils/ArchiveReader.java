@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.registry.core.jdbc.utils;
+
+import org.wso2.carbon.registry.core.Association;
+import org.wso2.carbon.registry.core.CollectionImpl;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.CommentDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.RatingDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.TaggingDO;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+
+/**
+ * Reads registry archives written by the {@link ArchiveWriter}. The records of each chunk are read
+ * one at a time, and the content of the current record is streamed from the archive.
+ */
+public class ArchiveReader {
+
+    private DataInputStream input;
+    private int remainingRecords;
+    private ContentInputStream content;
+
+    /**
+     * Construct an archive reader.
+     *
+     * @param input the stream to read from.
+     */
+    public ArchiveReader(InputStream input) {
+        this.input = new DataInputStream(input);
+    }
+
+    /**
+     * Read and validate the header of the archive.
+     *
+     * @throws IOException if an I/O error occurs, or if the stream is not an archive of a
+     *                     supported version.
+     */
+    public void readHeader() throws IOException {
+        if (input.readInt() != ArchiveWriter.MAGIC) {
+            throw new IOException("The stream is not a registry archive.");
+        }
+        int version = input.readInt();
+        if (version != ArchiveWriter.VERSION) {
+            throw new IOException("Unsupported registry archive version: " + version + ".");
+        }
+    }
+
+    /**
+     * Move on to the next chunk of the archive. All records of the current chunk should have been
+     * read.
+     *
+     * @return the number of records of the next chunk, or -1 if the end of the archive has been
+     *         reached.
+     * @throws IOException if an I/O error occurs, or if the archive is malformed.
+     */
+    public int nextChunk() throws IOException {
+        if (remainingRecords > 0) {
+            throw new IOException("The current chunk has " + remainingRecords +
+                    " unread records.");
+        }
+        skipContent();
+        byte type = input.readByte();
+        if (type == ArchiveWriter.END) {
+            return -1;
+        } else if (type != ArchiveWriter.CHUNK) {
+            throw new IOException("Invalid chunk type: " + type + ".");
+        }
+        remainingRecords = readCount();
+        // the number of bytes of the chunk is only needed by readers skipping chunks.
+        input.readLong();
+        return remainingRecords;
+    }
+
+    /**
+     * Read the next record of the current chunk. The content of the previous record is skipped,
+     * if it has not been read.
+     *
+     * @return the record.
+     * @throws IOException if an I/O error occurs, or if the current chunk has no more records.
+     */
+    public ArchiveRecord readRecord() throws IOException {
+        if (remainingRecords == 0) {
+            throw new IOException("The current chunk has no more records.");
+        }
+        skipContent();
+        remainingRecords--;
+
+        ArchiveRecord record = new ArchiveRecord();
+        record.setRelativePath(readString());
+        ResourceImpl resource = input.readBoolean() ? new CollectionImpl() : new ResourceImpl();
+        resource.setMediaType(readString());
+        resource.setAuthorUserName(readString());
+        resource.setCreatedTime(readDate());
+        resource.setLastUpdaterUserName(readString());
+        resource.setLastModified(readDate());
+        resource.setUUID(readString());
+        resource.setDescription(readString());
+
+        int propertyCount = readCount();
+        for (int i = 0; i < propertyCount; i++) {
+            String name = readString();
+            int valueCount = readCount();
+            for (int j = 0; j < valueCount; j++) {
+                resource.addPropertyWithNoUpdate(name, readString());
+            }
+        }
+        record.setResource(resource);
+
+        CommentDO[] comments = new CommentDO[readCount()];
+        for (int i = 0; i < comments.length; i++) {
+            comments[i] = new CommentDO();
+            comments[i].setCommentedUser(readString());
+            comments[i].setCommentText(readString());
+        }
+        record.setComments(comments);
+
+        TaggingDO[] taggings = new TaggingDO[readCount()];
+        for (int i = 0; i < taggings.length; i++) {
+            taggings[i] = new TaggingDO();
+            taggings[i].setTaggedUserName(readString());
+            taggings[i].setTaggedTime(readDate());
+            taggings[i].setTagName(readString());
+        }
+        record.setTaggings(taggings);
+
+        RatingDO[] ratings = new RatingDO[readCount()];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = new RatingDO();
+            ratings[i].setRatedUserName(readString());
+            ratings[i].setRatedTime(readDate());
+            ratings[i].setRating(input.readInt());
+        }
+        record.setRatings(ratings);
+
+        Association[] associations = new Association[readCount()];
+        for (int i = 0; i < associations.length; i++) {
+            associations[i] = new Association(readString(), readString(), readString());
+        }
+        record.setAssociations(associations);
+
+        int length = input.readInt();
+        if (length < ArchiveWriter.NO_CONTENT) {
+            throw new IOException("Invalid archive: content block length " + length + ".");
+        }
+        content = length == ArchiveWriter.NO_CONTENT ? null : new ContentInputStream(length);
+        return record;
+    }
+
+    /**
+     * Get the content of the record last read. The stream is only valid until the next record or
+     * chunk is read, and it should not be closed.
+     *
+     * @return the content, or null if the resource has no content.
+     */
+    public InputStream getContent() {
+        return content;
+    }
+
+    private void skipContent() throws IOException {
+        if (content != null) {
+            content.skipRemaining();
+            content = null;
+        }
+    }
+
+    private int readCount() throws IOException {
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid archive: count " + count + ".");
+        }
+        return count;
+    }
+
+    private String readString() throws IOException {
+        int length = input.readInt();
+        if (length == -1) {
+            return null;
+        } else if (length < -1) {
+            throw new IOException("Invalid archive: string length " + length + ".");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private Date readDate() throws IOException {
+        long time = input.readLong();
+        return time == -1 ? null : new Date(time);
+    }
+
+    // Reads the blocks of the content of a record, up to the terminating empty block.
+    private class ContentInputStream extends InputStream {
+
+        private int remainingInBlock;
+        private boolean finished;
+
+        private ContentInputStream(int firstBlockLength) {
+            remainingInBlock = firstBlockLength;
+            finished = firstBlockLength == 0;
+        }
+
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (!finished && remainingInBlock == 0) {
+                remainingInBlock = input.readInt();
+                if (remainingInBlock < 0) {
+                    throw new IOException("Invalid archive: content block length " +
+                            remainingInBlock + ".");
+                }
+                finished = remainingInBlock == 0;
+            }
+            if (finished) {
+                return -1;
+            }
+            int read = input.read(buffer, offset, Math.min(length, remainingInBlock));
+            if (read == -1) {
+                throw new IOException("The archive ended within the content of a resource.");
+            }
+            remainingInBlock -= read;
+            return read;
+        }
+
+        public void close() {
+            // the archive is closed by its owner.
+        }
+
+        private void skipRemaining() throws IOException {
+            byte[] buffer = new byte[4096];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // skipping the unread content.
+            }
+        }
+    }
+}
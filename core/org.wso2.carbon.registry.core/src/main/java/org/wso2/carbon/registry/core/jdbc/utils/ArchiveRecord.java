@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.registry.core.jdbc.utils;
+
+import org.wso2.carbon.registry.core.Association;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.CommentDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.RatingDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.TaggingDO;
+
+/**
+ * A resource of a registry archive, along with its comments, taggings, ratings and associations.
+ * The content of the resource is not held by the record, but streamed by the {@link ArchiveWriter}
+ * and the {@link ArchiveReader}.
+ */
+public class ArchiveRecord {
+
+    private String relativePath;
+    private ResourceImpl resource;
+    private CommentDO[] comments = new CommentDO[0];
+    private TaggingDO[] taggings = new TaggingDO[0];
+    private RatingDO[] ratings = new RatingDO[0];
+    private Association[] associations = new Association[0];
+
+    /**
+     * Get the path of the resource, relative to the path the archive was taken from. This is an
+     * empty string for the resource at that path.
+     *
+     * @return the relative path.
+     */
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    /**
+     * Set the path of the resource, relative to the path the archive was taken from.
+     *
+     * @param relativePath the relative path.
+     */
+    public void setRelativePath(String relativePath) {
+        this.relativePath = relativePath;
+    }
+
+    /**
+     * Get the resource, with its meta data and properties.
+     *
+     * @return the resource, which is a collection for collections.
+     */
+    public ResourceImpl getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource, with its meta data and properties.
+     *
+     * @param resource the resource.
+     */
+    public void setResource(ResourceImpl resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Get the comments of the resource.
+     *
+     * @return the comments.
+     */
+    public CommentDO[] getComments() {
+        return comments;
+    }
+
+    /**
+     * Set the comments of the resource.
+     *
+     * @param comments the comments.
+     */
+    public void setComments(CommentDO[] comments) {
+        this.comments = comments;
+    }
+
+    /**
+     * Get the taggings of the resource.
+     *
+     * @return the taggings.
+     */
+    public TaggingDO[] getTaggings() {
+        return taggings;
+    }
+
+    /**
+     * Set the taggings of the resource.
+     *
+     * @param taggings the taggings.
+     */
+    public void setTaggings(TaggingDO[] taggings) {
+        this.taggings = taggings;
+    }
+
+    /**
+     * Get the ratings of the resource.
+     *
+     * @return the ratings.
+     */
+    public RatingDO[] getRatings() {
+        return ratings;
+    }
+
+    /**
+     * Set the ratings of the resource.
+     *
+     * @param ratings the ratings.
+     */
+    public void setRatings(RatingDO[] ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Get the associations of the resource. The source and destination paths are relative to the
+     * path of the resource, and external destinations are prefixed as in XML dumps.
+     *
+     * @return the associations.
+     */
+    public Association[] getAssociations() {
+        return associations;
+    }
+
+    /**
+     * Set the associations of the resource.
+     *
+     * @param associations the associations.
+     */
+    public void setAssociations(Association[] associations) {
+        this.associations = associations;
+    }
+}
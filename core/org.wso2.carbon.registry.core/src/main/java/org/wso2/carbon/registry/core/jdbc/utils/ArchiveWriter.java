@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.registry.core.jdbc.utils;
+
+import org.wso2.carbon.registry.core.Association;
+import org.wso2.carbon.registry.core.CollectionImpl;
+import org.wso2.carbon.registry.core.RegistryConstants;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.CommentDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.RatingDO;
+import org.wso2.carbon.registry.core.jdbc.dataobjects.TaggingDO;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Writes registry archives, which are the binary counterpart of XML dumps. An archive is made of
+ * a header followed by chunks of resource records, in which the content of resources is kept as
+ * is. Chunks are written by copying records that have been written separately, which allows the
+ * records of different sub trees to be written in parallel.
+ * <pre>
+ * archive     := magic(int) version(int) chunk* END(byte)
+ * chunk       := CHUNK(byte) recordCount(int) byteCount(long) record*
+ * record      := relativePath(string) isCollection(boolean) mediaType(string) creator(string)
+ *                createdTime(long) lastUpdater(string) lastModified(long) uuid(string)
+ *                description(string) properties comments taggings ratings associations content
+ * properties  := count(int) (name(string) valueCount(int) value(string)*)*
+ * comments    := count(int) (user(string) text(string))*
+ * taggings    := count(int) (user(string) time(long) tagName(string))*
+ * ratings     := count(int) (user(string) time(long) rating(int))*
+ * associations:= count(int) (source(string) destination(string) type(string))*
+ * content     := -1(int) | (length(int) bytes)* 0(int)
+ * string      := -1(int) | length(int) utf8Bytes
+ * </pre>
+ * Times are written as -1 when they are not known.
+ */
+public class ArchiveWriter {
+
+    /**
+     * The first four bytes of an archive.
+     */
+    public static final int MAGIC = 0x52454741;
+
+    /**
+     * The version of the archive format written.
+     */
+    public static final int VERSION = 1;
+
+    static final byte END = 0;
+    static final byte CHUNK = 1;
+
+    static final int NO_CONTENT = -1;
+
+    private DataOutputStream output;
+
+    /**
+     * Construct an archive writer.
+     *
+     * @param output the stream to write to.
+     */
+    public ArchiveWriter(OutputStream output) {
+        this.output = new DataOutputStream(output);
+    }
+
+    /**
+     * Write the header of the archive.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeHeader() throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Write a record of a resource.
+     *
+     * @param record  the record.
+     * @param content the content of the resource, which is read up to its end, or null if the
+     *                resource has no content.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeRecord(ArchiveRecord record, InputStream content) throws IOException {
+        ResourceImpl resource = record.getResource();
+        writeString(record.getRelativePath());
+        output.writeBoolean(resource instanceof CollectionImpl);
+        writeString(resource.getMediaType());
+        writeString(resource.getAuthorUserName());
+        writeDate(resource.getCreatedTime());
+        writeString(resource.getLastUpdaterUserName());
+        writeDate(resource.getLastModified());
+        writeString(resource.getUUID());
+        writeString(resource.getDescription());
+
+        Properties properties = resource.getProperties();
+        output.writeInt(properties == null ? 0 : properties.size());
+        if (properties != null) {
+            for (Object key : properties.keySet()) {
+                String name = (String) key;
+                List<String> values = resource.getPropertyValues(name);
+                writeString(name);
+                output.writeInt(values == null ? 0 : values.size());
+                if (values != null) {
+                    for (String value : values) {
+                        writeString(value);
+                    }
+                }
+            }
+        }
+
+        output.writeInt(record.getComments().length);
+        for (CommentDO comment : record.getComments()) {
+            writeString(comment.getCommentedUser());
+            writeString(comment.getCommentText());
+        }
+        output.writeInt(record.getTaggings().length);
+        for (TaggingDO tagging : record.getTaggings()) {
+            writeString(tagging.getTaggedUserName());
+            writeDate(tagging.getTaggedTime());
+            writeString(tagging.getTagName());
+        }
+        output.writeInt(record.getRatings().length);
+        for (RatingDO rating : record.getRatings()) {
+            writeString(rating.getRatedUserName());
+            writeDate(rating.getRatedTime());
+            output.writeInt(rating.getRating());
+        }
+        output.writeInt(record.getAssociations().length);
+        for (Association association : record.getAssociations()) {
+            writeString(association.getSourcePath());
+            writeString(association.getDestinationPath());
+            writeString(association.getAssociationType());
+        }
+
+        if (content == null) {
+            output.writeInt(NO_CONTENT);
+            return;
+        }
+        byte[] buffer = new byte[RegistryConstants.DEFAULT_BUFFER_SIZE];
+        int byteCount;
+        while ((byteCount = content.read(buffer)) != -1) {
+            if (byteCount > 0) {
+                output.writeInt(byteCount);
+                output.write(buffer, 0, byteCount);
+            }
+        }
+        output.writeInt(0);
+    }
+
+    /**
+     * Write a chunk of records, which have been written by another archive writer.
+     *
+     * @param recordCount the number of records of the chunk.
+     * @param records     the stream to read the records from.
+     * @param byteCount   the number of bytes of the records.
+     *
+     * @throws IOException if an I/O error occurs, or if the stream ends before the given number
+     *                     of bytes is read.
+     */
+    public void writeChunk(int recordCount, InputStream records, long byteCount)
+            throws IOException {
+        output.writeByte(CHUNK);
+        output.writeInt(recordCount);
+        output.writeLong(byteCount);
+        byte[] buffer = new byte[RegistryConstants.DEFAULT_BUFFER_SIZE];
+        long remaining = byteCount;
+        while (remaining > 0) {
+            int read = records.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException("The chunk ended after " + (byteCount - remaining) +
+                        " of " + byteCount + " bytes.");
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Write the end of the archive, and flush the stream. The stream is not closed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeEnd() throws IOException {
+        output.writeByte(END);
+        output.flush();
+    }
+
+    /**
+     * Flush the stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private void writeDate(Date date) throws IOException {
+        output.writeLong(date == null ? -1 : date.getTime());
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.wso2.carbon.registry.core.jdbc.utils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -26,18 +27,37 @@ import java.util.List;
  * byte stream will then be stored on the database, and will be much more optimal than storing them
  * one by one.
  * <p/>
+ * The versions are written in blocks of {@link #BLOCK_SIZE}. Each version of a block other than the
+ * first is written as the difference from the previous version, using a variable number of bytes.
+ * The list starts with a header holding the number of versions, followed by an index holding the
+ * first version and the offset of each block, so that a block can be read without reading the
+ * blocks before it. Lists written by earlier releases hold each version as 8 bytes, and the first
+ * byte of the header distinguishes the two formats, as it can not be the first byte of a positive
+ * version.
+ * <p/>
  * The version retriever can read through such a stream of bytes and obtain the list of versions.
  *
  * @see VersionRetriever
  */
 public class VersionInputStream extends InputStream {
 
-    private int available = 0;
+    /**
+     * The first byte of a version list written in blocks.
+     */
+    static final int BLOCK_FORMAT_MARKER = 0xff;
+
+    /**
+     * The revision of the block format, following the marker.
+     */
+    static final int BLOCK_FORMAT_REVISION = 1;
+
+    /**
+     * The number of versions in a block.
+     */
+    static final int BLOCK_SIZE = 128;
+
+    private byte[] versionBytes;
     private int read = 0;
-    private List<Long> versionList;
-    private static final int SIZE_OF_BYTE = Byte.SIZE;
-    private static final int SIZE_OF_LONG = Long.SIZE;
-    private static final int SIZE_OF_MULTIPLIER = SIZE_OF_LONG / SIZE_OF_BYTE;
 
     /**
      * Creates a version input stream from the given list of versions.
@@ -45,9 +65,42 @@ public class VersionInputStream extends InputStream {
      * @param versionList list of versions.
      */
     public VersionInputStream(List<Long> versionList) {
-        this.versionList = versionList;
-        available = versionList.size() * SIZE_OF_MULTIPLIER;
-        read = 0;
+        int versionCount = versionList.size();
+        int blockCount = (versionCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream(versionCount * 2);
+        ByteArrayOutputStream index = new ByteArrayOutputStream(blockCount * 8);
+        long previousVersion = 0;
+        for (int i = 0; i < versionCount; i++) {
+            long version = versionList.get(i);
+            if (i % BLOCK_SIZE == 0) {
+                writeVarLong(index, blocks.size());
+                writeVarLong(index, version);
+            } else {
+                long delta = version - previousVersion;
+                // zig-zag encoding, so that small negative differences take few bytes as well
+                writeVarLong(blocks, (delta << 1) ^ (delta >> 63));
+            }
+            previousVersion = version;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(index.size() + blocks.size() + 8);
+        out.write(BLOCK_FORMAT_MARKER);
+        out.write(BLOCK_FORMAT_REVISION);
+        writeVarLong(out, versionCount);
+        writeVarLong(out, BLOCK_SIZE);
+        out.write(index.toByteArray(), 0, index.size());
+        out.write(blocks.toByteArray(), 0, blocks.size());
+        versionBytes = out.toByteArray();
+    }
+
+    // Writes a non negative value 7 bits at a time, lowest first, setting the high bit of each
+    // byte but the last.
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
     }
 
     /**
@@ -57,26 +110,39 @@ public class VersionInputStream extends InputStream {
      * @throws IOException if an error occurs.
      */
     public int read() throws IOException {
-        int nextIndex = read / SIZE_OF_MULTIPLIER;
-        int shiftOffset = SIZE_OF_MULTIPLIER - 1 - read % SIZE_OF_MULTIPLIER;
-
-        if (nextIndex >= versionList.size()) {
+        if (read >= versionBytes.length) {
             return -1;
         }
-        long nextVersion = versionList.get(nextIndex);
-        int valueToRead = (int) ((nextVersion >> (shiftOffset * SIZE_OF_BYTE)) & 0xff);
-        read++;
-        available--;
-        return valueToRead;
+        return versionBytes[read++] & 0xff;
+    }
+
+    /**
+     * Reads the stream into the given buffer.
+     *
+     * @param b   the buffer.
+     * @param off the offset of the buffer to read into.
+     * @param len the maximum number of bytes to read.
+     *
+     * @return the number of bytes read, or -1 if the stream is over.
+     * @throws IOException if an error occurs.
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (read >= versionBytes.length) {
+            return len == 0 ? 0 : -1;
+        }
+        int byteCount = Math.min(len, versionBytes.length - read);
+        System.arraycopy(versionBytes, read, b, off, byteCount);
+        read += byteCount;
+        return byteCount;
     }
 
     /**
      * Method to check whether anymore bytes are left to read.
      *
-     * @return the number of versions to be read.
+     * @return the number of bytes to be read.
      * @throws IOException if an error occurs.
      */
     public int available() throws IOException {
-        return available;
+        return versionBytes.length - read;
     }
 }
@@ -19,11 +19,10 @@ package org.wso2.carbon.registry.core.jdbc.utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.utils.RegistryUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Once persisted the versions of a resource will be written as a byte stream and it is often not so
@@ -32,17 +31,26 @@ import java.util.List;
  * <p/>
  * This class works hand in hand with the version input stream, where the version input stream
  * persists data to the database, and the version retriever fetches persisted versions from the
- * database.
+ * database. Both the block format written by the version input stream and the format of earlier
+ * releases, which holds each version as 8 bytes, are read. In either case a version is read without
+ * reading the versions before it, decoding at most one block of versions.
  *
  * @see VersionInputStream
  */
 public class VersionRetriever {
 
     private InputStream inputStream;
-    private List<Long> versionList;
-    private int maxRetrievedVersion;
-    private static final int SIZE_OF_BYTE = Byte.SIZE;
-    private static final int SIZE_OF_LONG = Long.SIZE;
+    private byte[] versionBytes;
+    private boolean blockFormat;
+    private int versionCount;
+    private int blockSize;
+    private int blocksOffset;
+    private long[] blockFirstVersions;
+    private int[] blockOffsets;
+    private long[] block;
+    private int blockIndex = -1;
+    private int position;
+    private static final int SIZE_OF_LONG = Long.SIZE / Byte.SIZE;
 
     private static Log log = LogFactory.getLog(VersionRetriever.class);
 
@@ -53,8 +61,6 @@ public class VersionRetriever {
      */
     public VersionRetriever(InputStream inputStream) {
         this.inputStream = inputStream;
-        versionList = new ArrayList<Long>();
-        maxRetrievedVersion = -1;
     }
 
     /**
@@ -62,44 +68,115 @@ public class VersionRetriever {
      *
      * @param versionIndex the version index.
      *
-     * @return the version at the given index.
+     * @return the version at the given index, or -1 if there is no version at the given index.
      * @throws RegistryException if the operation failed.
      */
     public long getVersion(int versionIndex) throws RegistryException {
-        while (versionIndex > maxRetrievedVersion) {
-            long nextVersion = getNextVersion();
-            if (nextVersion == 0) {
-                // the stream is over
-                return -1;
+        load();
+        if (versionIndex < 0 || versionIndex >= versionCount) {
+            return -1;
+        }
+        if (!blockFormat) {
+            long versionValue = 0;
+            int offset = versionIndex * SIZE_OF_LONG;
+            for (int i = 0; i < SIZE_OF_LONG; i++) {
+                versionValue = (versionValue << Byte.SIZE) | (versionBytes[offset + i] & 0xff);
             }
-            versionList.add(nextVersion);
-            maxRetrievedVersion++;
+            return versionValue;
+        }
+        int requiredBlock = versionIndex / blockSize;
+        if (requiredBlock != blockIndex) {
+            readBlock(requiredBlock);
         }
-        return versionList.get(versionIndex);
+        return block[versionIndex % blockSize];
     }
 
-    // Utility method to obtain next version.
-    private long getNextVersion() throws RegistryException {
-        // Logic reads the input stream 8 times and build the
-        // 64 bit long value
-        int shiftLimit = SIZE_OF_LONG / SIZE_OF_BYTE;
-        long versionValue = 0;
+    /**
+     * Method to get the number of versions in the list.
+     *
+     * @return the number of versions.
+     * @throws RegistryException if the operation failed.
+     */
+    public int getVersionCount() throws RegistryException {
+        load();
+        return versionCount;
+    }
+
+    // Reads the stream, and the header and the block index of a list in the block format.
+    private void load() throws RegistryException {
+        if (versionBytes != null) {
+            return;
+        }
         try {
-            for (int i = 0; i < shiftLimit; i++) {
-                int nextByte = inputStream.read();
-                if (i != 0) {
-                    // left shift one byte
-                    versionValue <<= SIZE_OF_BYTE;
-                }
-                // do 'or' with the current byte.
-                versionValue |= nextByte;
+            versionBytes = RegistryUtils.getByteArray(inputStream);
+            inputStream = null;
+            blockFormat = versionBytes.length > 0 &&
+                    (versionBytes[0] & 0xff) == VersionInputStream.BLOCK_FORMAT_MARKER;
+            if (!blockFormat) {
+                versionCount = versionBytes.length / SIZE_OF_LONG;
+                return;
+            }
+            position = 1;
+            int revision = readByte();
+            if (revision != VersionInputStream.BLOCK_FORMAT_REVISION) {
+                throw new IOException("Unsupported version list revision " + revision + ".");
             }
+            versionCount = (int) readVarLong();
+            blockSize = (int) readVarLong();
+            int blockCount = blockSize == 0 ? 0 : (versionCount + blockSize - 1) / blockSize;
+            blockFirstVersions = new long[blockCount];
+            blockOffsets = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = (int) readVarLong();
+                blockFirstVersions[i] = readVarLong();
+            }
+            blocksOffset = position;
+            block = new long[blockSize];
+        } catch (IOException e) {
+            versionBytes = null;
+            String msg = "Failed to read the stream to get the version value. " + e.getMessage();
+            log.error(msg, e);
+            throw new RegistryException(msg, e);
         }
-        catch (IOException e) {
+    }
+
+    // Decodes the versions of the given block.
+    private void readBlock(int requiredBlock) throws RegistryException {
+        try {
+            position = blocksOffset + blockOffsets[requiredBlock];
+            int length = Math.min(blockSize, versionCount - requiredBlock * blockSize);
+            long version = blockFirstVersions[requiredBlock];
+            block[0] = version;
+            for (int i = 1; i < length; i++) {
+                long zigZagDelta = readVarLong();
+                version += (zigZagDelta >>> 1) ^ -(zigZagDelta & 1);
+                block[i] = version;
+            }
+            blockIndex = requiredBlock;
+        } catch (IOException e) {
+            blockIndex = -1;
             String msg = "Failed to read the stream to get the version value. " + e.getMessage();
             log.error(msg, e);
             throw new RegistryException(msg, e);
         }
-        return versionValue;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int nextByte = readByte();
+            value |= (long) (nextByte & 0x7f) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed version list.");
+    }
+
+    private int readByte() throws IOException {
+        if (position >= versionBytes.length) {
+            throw new IOException("Unexpected end of the version list.");
+        }
+        return versionBytes[position++] & 0xff;
     }
 }
@@ -37,6 +37,8 @@ import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.security.AccessController;
@@ -2381,5 +2383,72 @@ public class UserRegistry implements Registry {
         }
         
     }
+
+    public void dumpArchive(final String path, final OutputStream output)
+            throws RegistryException {
+        try {
+            AccessController.doPrivileged(new PrivilegedExceptionAction<String>() {
+                @Override
+                public String run() throws Exception {
+                    dumpArchiveInternal(path, output);
+                    return null;
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            throw (RegistryException) e.getException();
+        }
+    }
+
+    private void dumpArchiveInternal(String path, OutputStream output) throws RegistryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation dump archive, " +
+                    "path: " + path + ".");
+        }
+        try {
+            // setting session information + chrooted incoming paths
+            setSessionInformation();
+
+            coreRegistry.dumpArchive(chrootWrapper.getInPath(path), output);
+        } finally {
+            clearSessionInformation();
+        }
+    }
+
+    public void restoreArchive(final String path, final InputStream input)
+            throws RegistryException {
+        try {
+            AccessController.doPrivileged(new PrivilegedExceptionAction<String>() {
+                @Override
+                public String run() throws Exception {
+                    restoreArchiveInternal(path, input);
+                    return null;
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            throw (RegistryException) e.getException();
+        }
+    }
+
+    private void restoreArchiveInternal(String path, InputStream input)
+            throws RegistryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation restore archive, " +
+                    "path: " + path + ".");
+        }
+        // If this node is operating in read-only mode, do not restore archive
+        if (RegistryUtils.isRegistryReadOnly(coreRegistry.getRegistryContext())) {
+            log.warn("Cannot continue the operation restore archive, the coreRegistry is " +
+                    "read-only");
+            return;
+        }
+        try {
+            // setting session information + chrooted incoming paths
+            setSessionInformation();
+
+            coreRegistry.restoreArchive(chrootWrapper.getInPath(path), input);
+        } finally {
+            clearSessionInformation();
+        }
+    }
 }
 
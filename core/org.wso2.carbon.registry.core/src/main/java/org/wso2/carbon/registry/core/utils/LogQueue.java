@@ -24,6 +24,22 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class LogQueue extends LinkedBlockingQueue<Object> {
 
+    /**
+     * Creates a queue without a bound on the number of logs held.
+     */
+    public LogQueue() {
+        super();
+    }
+
+    /**
+     * Creates a queue holding up to the given number of logs.
+     *
+     * @param capacity the maximum number of logs held.
+     */
+    public LogQueue(int capacity) {
+        super(capacity);
+    }
+
     /**
      * Clears to queue.
      */
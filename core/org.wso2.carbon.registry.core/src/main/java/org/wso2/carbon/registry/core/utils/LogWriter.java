@@ -19,25 +19,77 @@ package org.wso2.carbon.registry.core.utils;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.registry.core.RegistryConstants;
+import org.wso2.carbon.registry.core.config.LogWriterConfiguration;
 import org.wso2.carbon.registry.core.dao.LogsDAO;
 import org.wso2.carbon.registry.core.dataaccess.DataAccessManager;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.session.CurrentSession;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Writes log records to the database on a separate thread
+ * Writes log records to the database on a separate thread. Logs are held in a bounded queue, and
+ * written in batches as soon as a batch is waiting, or once the flush interval has elapsed. When
+ * the queue is full, logs are handled as the overflow policy of the {@link
+ * LogWriterConfiguration} says.
+ * <p/>
+ * If a journal is configured, each log is appended to it before being queued. The journal is
+ * set aside while the queue is written, and removed once all of it has been. Logs which could not
+ * be written are kept for the next flush, and the journal set aside is kept along with them. Logs
+ * left in a journal by a previous run are written first, so logs which have been queued but not
+ * written survive a restart. Logs may then be written twice, and logs dropped from a full queue
+ * may be recovered.
  */
 public class LogWriter extends Thread {
 
     private static final Log log = LogFactory.getLog(LogWriter.class);
-    private static final int DEFAULT_SLEEP_TIME = 10 * 1000;
+    private static final int DROPPED_LOGS_WARNING_INTERVAL = 1000;
 
     private LogQueue logQueue = null;
     private DataAccessManager dataAccessManager = null;
     private boolean canWriteLogs = true;
 
+    private int batchSize;
+    private long flushInterval;
+    private String overflowPolicy;
+
+    private File journal = null;
+    private File pendingJournal = null;
+    private DataOutputStream journalOutput = null;
+    private List<LogRecord> recoveredLogs = new ArrayList<LogRecord>();
+
+    // wakes up the writer when a batch is waiting.
+    private final Object flushSignal = new Object();
+    // wakes up the threads waiting for room in the queue when it has been drained.
+    private final Object spaceSignal = new Object();
+    // keeps the journal in line with the queue.
+    private final Object journalLock = new Object();
+    // prevents the queue being written by the writer and a shutdown at once.
+    private final Object writeLock = new Object();
+
+    private AtomicLong droppedLogCount = new AtomicLong();
+    private volatile long writtenLogCount = 0;
+    private volatile long failedLogCount = 0;
+    private volatile long flushCount = 0;
+    private volatile long totalFlushTime = 0;
+    private volatile long lastFlushTime = 0;
+
     public boolean isCanWriteLogs() {
         return canWriteLogs;
     }
@@ -52,8 +104,28 @@ public class LogWriter extends Thread {
      *                          database.
      */
     public LogWriter(LogQueue logQueue, DataAccessManager dataAccessManager) {
+        this(logQueue, dataAccessManager, new LogWriterConfiguration());
+    }
+
+    /**
+     * Constructor accepting a queue of logs, and the configuration of the writer. The size of the
+     * queue is that of the given queue.
+     *
+     * @param logQueue          the queue of logs.
+     * @param dataAccessManager the manager class that can be used to obtain access to the back-end
+     *                          database.
+     * @param configuration     the configuration of the log writer.
+     */
+    public LogWriter(LogQueue logQueue, DataAccessManager dataAccessManager,
+                     LogWriterConfiguration configuration) {
         this.logQueue = logQueue;
         this.dataAccessManager = dataAccessManager;
+        this.batchSize = Math.max(1, configuration.getBatchSize());
+        this.flushInterval = Math.max(1, configuration.getFlushInterval());
+        this.overflowPolicy = configuration.getOverflowPolicy();
+        if (configuration.getJournalPath() != null) {
+            openJournal(new File(configuration.getJournalPath()));
+        }
         this.setName("RegistryLogWritter");
     }
 
@@ -76,6 +148,70 @@ public class LogWriter extends Thread {
         return logQueue;
     }
 
+    /**
+     * Obtains the number of logs waiting to be written.
+     *
+     * @return the depth of the queue.
+     */
+    public int getQueueDepth() {
+        return logQueue == null ? 0 : logQueue.size();
+    }
+
+    /**
+     * Obtains the number of logs dropped because the queue was full.
+     *
+     * @return the number of dropped logs.
+     */
+    public long getDroppedLogCount() {
+        return droppedLogCount.get();
+    }
+
+    /**
+     * Obtains the number of logs written to the database.
+     *
+     * @return the number of written logs.
+     */
+    public long getWrittenLogCount() {
+        return writtenLogCount;
+    }
+
+    /**
+     * Obtains the number of logs which could not be written to the database.
+     *
+     * @return the number of failed logs.
+     */
+    public long getFailedLogCount() {
+        return failedLogCount;
+    }
+
+    /**
+     * Obtains the number of times the queue has been written to the database.
+     *
+     * @return the number of flushes.
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Obtains the time taken by the last flush of the queue.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    /**
+     * Obtains the average time taken to flush the queue.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getAverageFlushTime() {
+        long count = flushCount;
+        return count == 0 ? 0 : totalFlushTime / count;
+    }
+
     /**
      * Starts writing logs.
      */
@@ -86,43 +222,97 @@ public class LogWriter extends Thread {
     /**
      * The main business logic.
      */
-    @SuppressWarnings("InfiniteLoopStatement")
     public void run() {
             logWrite();
         }
 
+    /**
+     * Writes the queue whenever a batch is waiting, or the flush interval has elapsed, until the
+     * thread is interrupted. The queue is written once more before returning.
+     */
     public void logWrite() {
-        while (true) {
-            if (logQueue != null && !logQueue.isEmpty() && dataAccessManager != null) {
-
-                int queueLength = logQueue.size();
-                LogRecord[] logRecords = new LogRecord[queueLength];
-                for (int a = 0; a < queueLength; a++) {
-                    LogRecord logRecord = (LogRecord) logQueue.poll();
-                    logRecords[a] = logRecord;
+        boolean stopping = false;
+        while (!stopping) {
+            synchronized (flushSignal) {
+                if (getQueueDepth() < batchSize) {
+                    try {
+                        flushSignal.wait(flushInterval);
+                    } catch (InterruptedException e) {
+                        stopping = true;
+                    }
                 }
-                LogsDAO logsDAO = dataAccessManager.getDAOManager().getLogsDAO();
+            }
+            if (isInterrupted()) {
+                stopping = true;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Writes the logs waiting in the queue to the database, in batches.
+     */
+    public void flush() {
+        if (logQueue == null || dataAccessManager == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            List<LogRecord> logRecords = new ArrayList<LogRecord>(recoveredLogs);
+            recoveredLogs.clear();
+            drainQueue(logRecords);
+            synchronized (spaceSignal) {
+                spaceSignal.notifyAll();
+            }
+            if (logRecords.isEmpty()) {
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            LogsDAO logsDAO = dataAccessManager.getDAOManager().getLogsDAO();
+            for (int i = 0; i < logRecords.size(); i += batchSize) {
+                List<LogRecord> batch =
+                        logRecords.subList(i, Math.min(i + batchSize, logRecords.size()));
                 try {
-                    logsDAO.saveLogBatch(logRecords);
+                    logsDAO.saveLogBatch(batch.toArray(new LogRecord[batch.size()]));
+                    writtenLogCount += batch.size();
                 } catch (RegistryException e) {
+                    failedLogCount += batch.size();
                     log.error("Unable to save log records", e);
+                    retryLater(batch);
                 }
-            } else if (isInterrupted()) {
-                break;
             }
+            lastFlushTime = System.currentTimeMillis() - startTime;
+            totalFlushTime += lastFlushTime;
+            flushCount++;
 
-            try {
-                if (!isInterrupted()) {
-                    sleep(DEFAULT_SLEEP_TIME);
-                }
-            } catch (InterruptedException e) {
-                if (logQueue == null || logQueue.isEmpty()) {
-                    break;
-                }
+            // the journal set aside holds the failed logs, until they have been written.
+            if (recoveredLogs.isEmpty() && pendingJournal != null && pendingJournal.exists() &&
+                    !pendingJournal.delete()) {
+                log.warn("Unable to delete the log journal " + pendingJournal.getPath() +
+                        ". The logs in it may be written again.");
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote " + logRecords.size() + " log records in " + lastFlushTime +
+                        " ms. Queue depth: " + getQueueDepth() + ", dropped logs: " +
+                        getDroppedLogCount() + ", failed logs: " + failedLogCount + ".");
             }
         }
     }
 
+    // Keeps logs which could not be written for the next flush, as many as the queue holds. Logs
+    // beyond that are left to the journal, if there is one.
+    private void retryLater(List<LogRecord> logRecords) {
+        long capacity = (long) logQueue.size() + logQueue.remainingCapacity();
+        int count = (int) Math.min(logRecords.size(), capacity - recoveredLogs.size());
+        if (count > 0) {
+            recoveredLogs.addAll(logRecords.subList(0, count));
+        }
+        if (count < logRecords.size()) {
+            log.warn((logRecords.size() - Math.max(count, 0)) + " log records which could not " +
+                    "be saved will not be retried" +
+                    (journal == null ? "." : " until they are recovered from the journal."));
+        }
+    }
 
     /**
      * Adds log record to queue
@@ -151,7 +341,227 @@ public class LogWriter extends Thread {
             logRecord.setActionData(actionData);
             logRecord.setTenantId(CurrentSession.getTenantId());
 
-            logQueue.add(logRecord);
+            if (!enqueue(logRecord)) {
+                logDropped();
+            }
+            if (logQueue.size() >= batchSize) {
+                synchronized (flushSignal) {
+                    flushSignal.notify();
+                }
+            }
         }
 	}
+
+    // Adds the log to the queue, making room for it as the overflow policy says. Returns whether
+    // the log was added.
+    private boolean enqueue(LogRecord logRecord) {
+        long deadline = System.currentTimeMillis() + flushInterval;
+        while (!offer(logRecord)) {
+            if (LogWriterConfiguration.OVERFLOW_POLICY_DROP_NEWEST.equals(overflowPolicy)) {
+                return false;
+            } else if (LogWriterConfiguration.OVERFLOW_POLICY_DROP_OLDEST.equals(
+                    overflowPolicy)) {
+                if (logQueue.poll() != null) {
+                    logDropped();
+                }
+                continue;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !isAlive()) {
+                return false;
+            }
+            synchronized (flushSignal) {
+                flushSignal.notify();
+            }
+            synchronized (spaceSignal) {
+                if (logQueue.remainingCapacity() == 0) {
+                    try {
+                        spaceSignal.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean offer(LogRecord logRecord) {
+        if (journal == null) {
+            return logQueue.offer(logRecord);
+        }
+        synchronized (journalLock) {
+            if (!logQueue.offer(logRecord)) {
+                return false;
+            }
+            appendToJournal(logRecord);
+            return true;
+        }
+    }
+
+    private void logDropped() {
+        long dropped = droppedLogCount.incrementAndGet();
+        if (dropped % DROPPED_LOGS_WARNING_INTERVAL == 1) {
+            log.warn("The log queue is full. " + dropped + " log records have been dropped.");
+        }
+    }
+
+    // Moves the logs of the queue to the given list. When journaling, the journal is set aside
+    // along with the queue, so that it holds the logs being written until they have been.
+    private void drainQueue(List<LogRecord> logRecords) {
+        List<Object> drained = new ArrayList<Object>();
+        if (journal == null) {
+            logQueue.drainTo(drained);
+        } else {
+            synchronized (journalLock) {
+                logQueue.drainTo(drained);
+                closeJournal();
+                try {
+                    setAsideJournal();
+                } catch (IOException e) {
+                    log.error("Unable to set aside the log journal " + journal.getPath(), e);
+                }
+            }
+        }
+        for (Object logRecord : drained) {
+            logRecords.add((LogRecord) logRecord);
+        }
+    }
+
+    private void openJournal(File journal) {
+        this.journal = journal;
+        this.pendingJournal = new File(journal.getPath() + ".pending");
+        try {
+            setAsideJournal();
+            if (pendingJournal.exists()) {
+                recoveredLogs = readJournal(pendingJournal);
+                log.info("Recovered " + recoveredLogs.size() + " log records from the journal " +
+                        journal.getPath() + ".");
+            }
+        } catch (IOException e) {
+            log.error("Unable to recover log records from the journal " + journal.getPath(), e);
+        }
+    }
+
+    // Moves the journal to the pending journal, appending to the pending journal if there is one.
+    private void setAsideJournal() throws IOException {
+        if (!journal.exists() || (!pendingJournal.exists() && journal.renameTo(pendingJournal))) {
+            return;
+        }
+        InputStream input = new FileInputStream(journal);
+        try {
+            OutputStream output = new FileOutputStream(pendingJournal, true);
+            try {
+                byte[] buffer = new byte[RegistryConstants.DEFAULT_BUFFER_SIZE];
+                int byteCount;
+                while ((byteCount = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, byteCount);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+        if (!journal.delete()) {
+            throw new IOException("Unable to delete the log journal " + journal.getPath() + ".");
+        }
+    }
+
+    // Each log is written as its length, followed by its fields, so that a log partially
+    // written when the server stopped can be told apart.
+    private void appendToJournal(LogRecord logRecord) {
+        try {
+            if (journalOutput == null) {
+                File parent = journal.getAbsoluteFile().getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Unable to create the directory " + parent.getPath());
+                }
+                journalOutput = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(journal, true)));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            writeString(output, logRecord.getResourcePath());
+            writeString(output, logRecord.getUserName());
+            output.writeLong(logRecord.getTimestamp().getTime());
+            output.writeInt(logRecord.getAction());
+            writeString(output, logRecord.getActionData());
+            output.writeInt(logRecord.getTenantId());
+            output.flush();
+
+            journalOutput.writeInt(bytes.size());
+            bytes.writeTo(journalOutput);
+            journalOutput.flush();
+        } catch (IOException e) {
+            log.error("Unable to write the log record to the journal " + journal.getPath(), e);
+            closeJournal();
+        }
+    }
+
+    private void closeJournal() {
+        if (journalOutput != null) {
+            try {
+                journalOutput.close();
+            } catch (IOException e) {
+                log.error("Unable to close the log journal " + journal.getPath(), e);
+            }
+            journalOutput = null;
+        }
+    }
+
+    private List<LogRecord> readJournal(File file) throws IOException {
+        List<LogRecord> logRecords = new ArrayList<LogRecord>();
+        long remaining = file.length();
+        DataInputStream input =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (remaining >= 4) {
+                int length = input.readInt();
+                remaining -= 4;
+                if (length < 0 || length > remaining) {
+                    log.warn("Ignoring the incomplete last log record of the journal " +
+                            file.getPath() + ".");
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                remaining -= length;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                LogRecord logRecord = new LogRecord();
+                logRecord.setResourcePath(readString(record));
+                logRecord.setUserName(readString(record));
+                logRecord.setTimestamp(new Date(record.readLong()));
+                logRecord.setAction(record.readInt());
+                logRecord.setActionData(readString(record));
+                logRecord.setTenantId(record.readInt());
+                logRecords.add(logRecord);
+            }
+        } finally {
+            input.close();
+        }
+        return logRecords;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
 }
@@ -154,4 +154,56 @@ public class CopyTest extends BaseTestCase {
         Tag[] tags = registry.getTags("/test/copy/c5/copy1");
         assertEquals("Copied resource should have two tags", 2, tags.length);
     }
+
+    public void testDeepCollectionCopy() throws RegistryException {
+
+        for (int i = 0; i < 3; i++) {
+            Resource r = registry.newResource();
+            r.setProperty("index", Integer.toString(i));
+            r.setContent("content" + i);
+            r.setMediaType("text/plain");
+            registry.put("/test/copy/deep/c" + i + "/r" + i, r);
+        }
+        Collection c2 = (Collection) registry.get("/test/copy/deep/c2");
+        c2.setProperty("collection", "c2");
+        registry.put("/test/copy/deep/c2", c2);
+        registry.put("/test/copy/deep/c2/c3/c4", registry.newCollection());
+        registry.addComment("/test/copy/deep/c1/r1", new Comment("comment1"));
+        registry.applyTag("/test/copy/deep/c1/r1", "tag1");
+        registry.rateResource("/test/copy/deep/c1/r1", 3);
+        registry.addAssociation("/test/copy/deep/c1/r1", "/test/copy/deep/c0/r0", "depends");
+
+        registry.copy("/test/copy/deep", "/test/copy/deepCopy");
+
+        for (int i = 0; i < 3; i++) {
+            Resource source = registry.get("/test/copy/deep/c" + i + "/r" + i);
+            Resource target = registry.get("/test/copy/deepCopy/c" + i + "/r" + i);
+            assertEquals("Copied resource should have the property of the source.",
+                    Integer.toString(i), target.getProperty("index"));
+            assertEquals("Copied resource should have the media type of the source.",
+                    "text/plain", target.getMediaType());
+            assertEquals("Contents are not equal in copied resources", "content" + i,
+                    RegistryUtils.decodeBytes((byte[]) target.getContent()));
+            assertFalse("Copied resource should have a new UUID.",
+                    source.getUUID().equals(target.getUUID()));
+        }
+        assertEquals("Copied collection should have the property of the source.", "c2",
+                registry.get("/test/copy/deepCopy/c2").getProperty("collection"));
+        assertTrue("Nested collections should be copied.",
+                registry.resourceExists("/test/copy/deepCopy/c2/c3/c4"));
+
+        assertEquals("Copied resource should have the comment of the source.", 1,
+                registry.getComments("/test/copy/deepCopy/c1/r1").length);
+        assertEquals("Copied resource should have the tag of the source.", 1,
+                registry.getTags("/test/copy/deepCopy/c1/r1").length);
+        assertEquals("Copied resource should have the rating of the source.", 3,
+                registry.getRating("/test/copy/deepCopy/c1/r1", "admin"));
+        assertEquals("Copied resource should have the association of the source.", 1,
+                registry.getAssociations("/test/copy/deepCopy/c1/r1", "depends").length);
+
+        // the source should be left untouched.
+        assertEquals("Original resource should have its content.", "content1",
+                RegistryUtils.decodeBytes(
+                        (byte[]) registry.get("/test/copy/deep/c1/r1").getContent()));
+    }
 }
@@ -19,11 +19,18 @@ package org.wso2.carbon.registry.core.test.jdbc;
 import org.wso2.carbon.registry.core.*;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.jdbc.EmbeddedRegistryService;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveReader;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveRecord;
+import org.wso2.carbon.registry.core.jdbc.utils.ArchiveWriter;
 import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
 import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.user.api.RealmConfiguration;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -505,4 +512,125 @@ public class DumpTest extends BaseTestCase {
             assertTrue(false);
         }
     }
+
+
+    public void testArchive() throws Exception {
+        Resource r = registry.newResource();
+        r.setProperty("key1", "value1");
+        r.setProperty("key2", "value2");
+        r.setContent("content 1");
+        registry.put("/testArchive/r1", r);
+
+        registry.addComment("/testArchive/r1", new Comment("comment1"));
+        registry.applyTag("/testArchive/r1", "tag1");
+        registry.rateResource("/testArchive/r1", 4);
+
+        // a content larger than the blocks of the archive
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append(i);
+        }
+        Resource r2 = registry.newResource();
+        r2.setContent(content.toString());
+        registry.put("/testArchive/c1/c2/r2", r2);
+
+        Resource c3 = registry.newCollection();
+        c3.setProperty("key3", "value3");
+        registry.put("/testArchive/c3", c3);
+        registry.addAssociation("/testArchive/c3", "/testArchive/r1", "depends");
+        registry.addAssociation("/testArchive/c3", "http://example.com", "external");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        registry.dumpArchive("/testArchive", output);
+        registry.put("/testArchiveDup/extra", registry.newResource());
+        registry.restoreArchive("/testArchiveDup",
+                new ByteArrayInputStream(output.toByteArray()));
+
+        // the existing resources should have been replaced
+        assertFalse(registry.resourceExists("/testArchiveDup/extra"));
+
+        r = registry.get("/testArchiveDup/r1");
+        assertEquals(RegistryUtils.decodeBytes((byte[])r.getContent()), "content 1");
+        assertEquals(r.getProperties().size(), 2);
+        assertEquals(r.getProperty("key1"), "value1");
+        assertEquals(r.getProperty("key2"), "value2");
+
+        Comment[] comments = registry.getComments("/testArchiveDup/r1");
+        assertEquals(comments.length, 1);
+        assertEquals(comments[0].getText(), "comment1");
+        Tag[] tags = registry.getTags("/testArchiveDup/r1");
+        assertEquals(tags.length, 1);
+        assertEquals(tags[0].getTagName(), "tag1");
+        assertEquals(registry.getRating("/testArchiveDup/r1", "admin"), 4);
+
+        r2 = registry.get("/testArchiveDup/c1/c2/r2");
+        assertEquals(RegistryUtils.decodeBytes((byte[])r2.getContent()), content.toString());
+
+        c3 = registry.get("/testArchiveDup/c3");
+        assertTrue(c3 instanceof Collection);
+        assertEquals(c3.getProperty("key3"), "value3");
+        Association[] associations = registry.getAssociations("/testArchiveDup/c3", "depends");
+        assertEquals(associations.length, 1);
+        assertEquals(associations[0].getDestinationPath(), "/testArchiveDup/r1");
+        associations = registry.getAssociations("/testArchiveDup/c3", "external");
+        assertEquals(associations.length, 1);
+        assertEquals(associations[0].getDestinationPath(), "http://example.com");
+
+        Collection collection = (Collection) registry.get("/testArchiveDup");
+        assertEquals(collection.getChildCount(), 3);
+    }
+
+    public void testArchiveWithMissingParent() throws Exception {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ArchiveWriter recordWriter = new ArchiveWriter(records);
+        ArchiveRecord root = new ArchiveRecord();
+        root.setRelativePath("");
+        root.setResource(new CollectionImpl());
+        recordWriter.writeRecord(root, null);
+        // the collection c1 is not in the archive
+        ArchiveRecord orphan = new ArchiveRecord();
+        orphan.setRelativePath("c1/r1");
+        orphan.setResource(new ResourceImpl());
+        recordWriter.writeRecord(orphan, null);
+        recordWriter.flush();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ArchiveWriter archiveWriter = new ArchiveWriter(output);
+        archiveWriter.writeHeader();
+        archiveWriter.writeChunk(2, new ByteArrayInputStream(records.toByteArray()),
+                records.size());
+        archiveWriter.writeEnd();
+
+        try {
+            registry.restoreArchive("/testArchiveOrphan",
+                    new ByteArrayInputStream(output.toByteArray()));
+            fail("An archive with a resource restored before its parent should be rejected.");
+        } catch (RegistryException expected) {
+            // the archive is invalid.
+        }
+        assertFalse(registry.resourceExists("/testArchiveOrphan/c1/r1"));
+    }
+
+    public void testArchiveWithNegativeLength() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ArchiveWriter(output).writeHeader();
+        DataOutputStream data = new DataOutputStream(output);
+        // a chunk of one record, of which the relative path has a negative length
+        data.writeByte(1);
+        data.writeInt(1);
+        data.writeLong(4);
+        data.writeInt(-5);
+        data.flush();
+
+        ArchiveReader archiveReader =
+                new ArchiveReader(new ByteArrayInputStream(output.toByteArray()));
+        archiveReader.readHeader();
+        assertEquals(1, archiveReader.nextChunk());
+        try {
+            archiveReader.readRecord();
+            fail("A negative string length should be rejected.");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Invalid archive"));
+        }
+    }
 }
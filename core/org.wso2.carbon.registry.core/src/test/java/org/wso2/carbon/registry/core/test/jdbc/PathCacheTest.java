@@ -16,12 +16,14 @@
 
 package org.wso2.carbon.registry.core.test.jdbc;
 
+import org.wso2.carbon.registry.core.Collection;
 import org.wso2.carbon.registry.core.Registry;
 import org.wso2.carbon.registry.core.Resource;
 import org.wso2.carbon.registry.core.caching.PathCache;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.jdbc.EmbeddedRegistryService;
 import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.user.api.RealmConfiguration;
 
 public class PathCacheTest extends BaseTestCase {
@@ -82,4 +84,31 @@ public class PathCacheTest extends BaseTestCase {
         double rate7 = PathCache.getPathCache().hitRate();
         assertTrue("Rate7 >= Rate6", rate7 >= rate6);
     }
+
+    public void testDeepPathCreation() throws RegistryException {
+
+        Resource r1 = registry.newResource();
+        r1.setContent("some content");
+        registry.put("/test/paths/deep/c1/c2/c3/c4/r1", r1);
+
+        String path = "/test/paths/deep/c1/c2/c3/c4";
+        while (!path.equals("/test/paths")) {
+            assertTrue(path + " should be a collection",
+                    registry.get(path) instanceof Collection);
+            path = RegistryUtils.getParentPath(path);
+        }
+        assertEquals("some content",
+                new String((byte[]) registry.get("/test/paths/deep/c1/c2/c3/c4/r1").getContent()));
+
+        Collection c2 = (Collection) registry.get("/test/paths/deep/c1/c2");
+        assertEquals(1, c2.getChildCount());
+        assertEquals("/test/paths/deep/c1/c2/c3", c2.getChildren()[0]);
+
+        // a collection can not be added under a resource.
+        try {
+            registry.put("/test/paths/deep/c1/c2/c3/c4/r1/c5/r2", r1);
+            fail("Collections should not be added under a resource.");
+        } catch (RegistryException ignored) {
+        }
+    }
 }
\ No newline at end of file
@@ -182,4 +182,28 @@ public class PropertiesTest extends BaseTestCase {
         assertTrue("Property is not edited.", r1e2.getPropertyValues("p1").contains("v3"));
         assertTrue("Wrong property is removed.", r1e2.getPropertyValues("p1").contains("v2"));
     }
+
+    public void testManyProperties() throws RegistryException {
+
+        Resource r1 = registry.newResource();
+        r1.setContent("r1 content");
+        // more values than are written to the database in a single batch
+        for (int i = 0; i < 150; i++) {
+            r1.setProperty("p" + i, "v" + i);
+        }
+        r1.addProperty("multi", "m1");
+        r1.addProperty("multi", "m2");
+        r1.addProperty("multi", null);
+        registry.put("/props/t4/r1", r1);
+
+        Resource r1e1 = registry.get("/props/t4/r1");
+        assertEquals("Properties are not added.", 151, r1e1.getProperties().size());
+        for (int i = 0; i < 150; i++) {
+            assertEquals("Property p" + i + " is not added.", "v" + i, r1e1.getProperty("p" + i));
+        }
+        List<String> multiValues = r1e1.getPropertyValues("multi");
+        assertEquals("Multi valued property is not added.", 3, multiValues.size());
+        assertTrue("Multi valued property is not added.", multiValues.contains("m2"));
+        assertTrue("Null property value is not added.", multiValues.contains(null));
+    }
 }
@@ -18,12 +18,20 @@ package org.wso2.carbon.registry.core.test.jdbc;
 
 import org.wso2.carbon.registry.core.Registry;
 import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.config.RegistryContext;
 import org.wso2.carbon.registry.core.exceptions.RegistryException;
 import org.wso2.carbon.registry.core.jdbc.EmbeddedRegistryService;
 import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
 import org.wso2.carbon.registry.core.utils.RegistryUtils;
 import org.wso2.carbon.user.api.RealmConfiguration;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
 public class ResourcesTest extends BaseTestCase {
 
     protected static EmbeddedRegistryService embeddedRegistryService = null;
@@ -69,4 +77,77 @@ public class ResourcesTest extends BaseTestCase {
         String r1e2Content = RegistryUtils.decodeBytes((byte[]) r1e2.getContent());
         assertEquals("r1 content should be c1", r1e2Content, "c1");
     }
+
+    public void testStreamedContent() throws RegistryException {
+
+        RegistryContext registryContext = RegistryContext.getBaseInstance();
+        registryContext.setContentStreamingThreshold(1024);
+        try {
+            byte[] largeContent = new byte[200 * 1024];
+            for (int i = 0; i < largeContent.length; i++) {
+                largeContent[i] = (byte) (i % 251);
+            }
+
+            // a stream of which the length is not known in advance
+            String r1Path = "/rTest/streamed/r1";
+            Resource r1 = registry.newResource();
+            r1.setContent(new FilterInputStream(new ByteArrayInputStream(largeContent)) {
+            });
+            registry.put(r1Path, r1);
+
+            Resource r1e1 = registry.get(r1Path);
+            assertTrue("r1 content should be streamed", ((ResourceImpl) r1e1).isContentStreamed());
+            assertTrue("r1 content stream should match the content",
+                    Arrays.equals(largeContent, RegistryUtils.getByteArray(r1e1.getContentStream())));
+
+            r1e1.setProperty("p1", "v1");
+            registry.put(r1Path, r1e1);
+
+            Resource r1e2 = registry.get(r1Path);
+            assertEquals("r1 property should be v1", "v1", r1e2.getProperty("p1"));
+            assertTrue("r1 content should be preserved on update",
+                    Arrays.equals(largeContent, (byte[]) r1e2.getContent()));
+
+            String r2Path = "/rTest/streamed/r2";
+            Resource r2 = registry.newResource();
+            r2.setContent("c2");
+            registry.put(r2Path, r2);
+
+            Resource r2e1 = registry.get(r2Path);
+            assertFalse("r2 content should not be streamed",
+                    ((ResourceImpl) r2e1).isContentStreamed());
+            assertEquals("r2 content should be c2", "c2",
+                    RegistryUtils.decodeBytes((byte[]) r2e1.getContent()));
+        } finally {
+            registryContext.setContentStreamingThreshold(-1);
+        }
+    }
+
+    public void testStreamedContentClosedWithTransaction() throws Exception {
+
+        RegistryContext registryContext = RegistryContext.getBaseInstance();
+        registryContext.setContentStreamingThreshold(1024);
+        try {
+            String r1Path = "/rTest/streamed/r3";
+            Resource r1 = registry.newResource();
+            r1.setContent(new byte[200 * 1024]);
+            registry.put(r1Path, r1);
+
+            InputStream contentStream;
+            registry.beginTransaction();
+            try {
+                contentStream = registry.get(r1Path).getContentStream();
+                assertEquals("r3 content should be readable", 0, contentStream.read());
+            } finally {
+                registry.commitTransaction();
+            }
+            try {
+                contentStream.read();
+                fail("The content stream should be closed along with its transaction.");
+            } catch (IOException ignored) {
+            }
+        } finally {
+            registryContext.setContentStreamingThreshold(-1);
+        }
+    }
 }
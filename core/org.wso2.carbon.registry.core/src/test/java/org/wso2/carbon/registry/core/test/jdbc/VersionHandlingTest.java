@@ -405,4 +405,33 @@ public class VersionHandlingTest extends BaseTestCase {
         assertFalse("Root should not have child vtc2",
                 RegistryUtils.containsAsSubString("/vtc2", rootV1Children));
     }
+
+    public void testPaginatedCollectionVersion() throws RegistryException {
+
+        Collection c1 = registry.newCollection();
+        registry.put("/v9/c1", c1);
+        for (int i = 0; i < 300; i++) {
+            Resource r = registry.newResource();
+            r.setContent("c" + i);
+            registry.put("/v9/c1/r" + i, r);
+        }
+        Collection c2 = registry.newCollection();
+        registry.put("/v9/c1/c2", c2);
+        Resource r2 = registry.newResource();
+        r2.setContent("r2c1");
+        registry.put("/v9/c1/c2/r2", r2);
+
+        registry.createVersion("/v9/c1");
+
+        String[] c1Versions = registry.getVersions("/v9/c1");
+        String[] allChildren = (String[]) registry.get(c1Versions[0]).getContent();
+        assertEquals("All children should be listed", 301, allChildren.length);
+
+        String[] pageChildren = ((Collection) registry.get(c1Versions[0], 150, 10)).getChildren();
+        assertTrue("Page should not be empty", pageChildren.length > 0);
+        for (int i = 0; i < pageChildren.length; i++) {
+            assertEquals("Page should follow the order of the children",
+                    allChildren[150 + i], pageChildren[i]);
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.performance;
+
+import org.wso2.carbon.registry.core.caching.RegistryCacheKey;
+import org.wso2.carbon.registry.core.caching.SingleFlightLoader;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput of loading registry cache misses while holding a lock on the interned
+ * path, against loading them through a {@link SingleFlightLoader}, at 1 to 64 threads. The
+ * workload reads a small set of hot paths which are shared by several tenants, and invalidates a
+ * fraction of the reads to cause misses, each of which costs a simulated database read.
+ * <p/>
+ * This is not run as a part of the build. Run the main method, optionally passing the duration of
+ * each measurement in seconds.
+ */
+public class CacheMissLoadingBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int TENANTS = 4;
+    private static final int HOT_PATHS = 16;
+    private static final double INVALIDATION_RATIO = 0.01;
+    private static final long LOAD_MILLIS = 2;
+
+    private final ConcurrentMap<RegistryCacheKey, String> cache =
+            new ConcurrentHashMap<RegistryCacheKey, String>();
+    private final SingleFlightLoader<RegistryCacheKey, String> loader =
+            new SingleFlightLoader<RegistryCacheKey, String>();
+    private final AtomicLong loads = new AtomicLong();
+    private final boolean singleFlight;
+
+    private CacheMissLoadingBenchmark(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMillis = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1000;
+        System.out.println("threads\tinterned lock ops/s\tloads\tsingle flight ops/s\tloads");
+        for (int threads : THREAD_COUNTS) {
+            CacheMissLoadingBenchmark internedLock = new CacheMissLoadingBenchmark(false);
+            long internedLockOps = internedLock.run(threads, durationMillis);
+            CacheMissLoadingBenchmark singleFlight = new CacheMissLoadingBenchmark(true);
+            long singleFlightOps = singleFlight.run(threads, durationMillis);
+            System.out.println(threads + "\t" + internedLockOps * 1000 / durationMillis + "\t" +
+                    internedLock.loads.get() + "\t" + singleFlightOps * 1000 / durationMillis + "\t" +
+                    singleFlight.loads.get());
+        }
+    }
+
+    private long run(int threadCount, final long durationMillis) throws Exception {
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final Random random = new Random(i);
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        long end = System.currentTimeMillis() + durationMillis;
+                        long count = 0;
+                        while (System.currentTimeMillis() < end) {
+                            String path = "/_system/governance/hot/" + random.nextInt(HOT_PATHS);
+                            RegistryCacheKey key = new RegistryCacheKey(path,
+                                    random.nextInt(TENANTS), "wso2carbon@jdbc:h2:benchmark");
+                            if (random.nextDouble() < INVALIDATION_RATIO) {
+                                cache.remove(key);
+                            }
+                            get(key);
+                            count++;
+                        }
+                        operations.addAndGet(count);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operations.get();
+    }
+
+    private String get(final RegistryCacheKey key) throws Exception {
+        String value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        Callable<String> load = new Callable<String>() {
+            public String call() throws Exception {
+                String value = cache.get(key);
+                if (value == null) {
+                    value = readFromDatabase(key);
+                    cache.put(key, value);
+                }
+                return value;
+            }
+        };
+        if (singleFlight) {
+            return loader.load(key, load);
+        }
+        synchronized (key.getPath().intern()) {
+            return load.call();
+        }
+    }
+
+    private String readFromDatabase(RegistryCacheKey key) throws InterruptedException {
+        loads.incrementAndGet();
+        Thread.sleep(LOAD_MILLIS);
+        return key.getPath();
+    }
+}
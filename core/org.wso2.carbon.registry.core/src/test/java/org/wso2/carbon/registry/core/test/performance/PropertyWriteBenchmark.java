@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.performance;
+
+import org.wso2.carbon.registry.core.Registry;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.config.StaticConfiguration;
+import org.wso2.carbon.registry.core.jdbc.EmbeddedRegistryService;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.user.api.RealmConfiguration;
+
+/**
+ * Measures the rate of resource puts on the embedded H2 registry as the number of properties of
+ * each resource grows, with properties stored against the resource version (the default) and
+ * against the resource path.
+ * <p/>
+ * This is not run as a part of the build. Run the main method with the registry.config system
+ * property set to one of the test registry configurations, e.g. -Dregistry.config=registry0.xml,
+ * optionally passing the number of puts measured for each property count.
+ */
+public class PropertyWriteBenchmark extends BaseTestCase {
+
+    private static final int[] PROPERTY_COUNTS = {0, 1, 5, 10, 25, 50, 100, 200};
+    private static final int WARM_UP_PUTS = 50;
+
+    private Registry registry;
+
+    public static void main(String[] args) throws Exception {
+        int puts = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        System.out.println("properties\tversioned puts/s\tnon versioned puts/s");
+        long[][] results = new long[2][PROPERTY_COUNTS.length];
+        boolean[] versioningProperties = {true, false};
+        for (int i = 0; i < versioningProperties.length; i++) {
+            StaticConfiguration.setVersioningProperties(versioningProperties[i]);
+            PropertyWriteBenchmark benchmark = new PropertyWriteBenchmark();
+            benchmark.setUp();
+            String root = "/benchmark/properties/" + versioningProperties[i];
+            benchmark.run(root + "/warmup", 10, WARM_UP_PUTS);
+            for (int j = 0; j < PROPERTY_COUNTS.length; j++) {
+                results[i][j] = benchmark.run(root + "/" + PROPERTY_COUNTS[j],
+                        PROPERTY_COUNTS[j], puts);
+            }
+        }
+        for (int j = 0; j < PROPERTY_COUNTS.length; j++) {
+            System.out.println(PROPERTY_COUNTS[j] + "\t" + results[0][j] + "\t" + results[1][j]);
+        }
+    }
+
+    public void setUp() {
+        super.setUp();
+        try {
+            EmbeddedRegistryService embeddedRegistryService = ctx.getEmbeddedRegistryService();
+            RealmUnawareRegistryCoreServiceComponent comp =
+                    new RealmUnawareRegistryCoreServiceComponent();
+            comp.setRealmService(ctx.getRealmService());
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+            RealmConfiguration realmConfig = ctx.getRealmService().getBootstrapRealmConfiguration();
+            registry = embeddedRegistryService.getUserRegistry(
+                    realmConfig.getAdminUserName(), realmConfig.getAdminPassword());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize the registry.", e);
+        }
+    }
+
+    // Puts the given number of new resources, and returns the number of puts per second.
+    private long run(String parentPath, int propertyCount, int puts) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < puts; i++) {
+            Resource resource = registry.newResource();
+            resource.setContent("content " + i);
+            for (int j = 0; j < propertyCount; j++) {
+                resource.setProperty("property" + j, "value " + j + " of resource " + i);
+            }
+            registry.put(parentPath + "/r" + i, resource);
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        return puts * 1000000000L / elapsedNanos;
+    }
+}
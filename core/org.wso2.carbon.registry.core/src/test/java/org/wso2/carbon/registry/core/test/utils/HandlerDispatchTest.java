@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.ResourceImpl;
+import org.wso2.carbon.registry.core.ResourcePath;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.Handler;
+import org.wso2.carbon.registry.core.jdbc.handlers.HandlerManager;
+import org.wso2.carbon.registry.core.jdbc.handlers.RequestContext;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.Filter;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.MediaTypeMatcher;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.URLMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HandlerDispatchTest extends BaseTestCase {
+
+    private final List<String> invocations = new ArrayList<String>();
+
+    public void testHandlerOrder() throws Exception {
+        HandlerManager handlerManager = new HandlerManager();
+        handlerManager.addHandler(null, createURLMatcher("/a/.*"), new RecordingHandler("a", false));
+        handlerManager.addHandler(null, createURLMatcher("/a/b/.*"),
+                new RecordingHandler("b", false));
+        handlerManager.addHandler(null, createURLMatcher(".*"), new RecordingHandler("all", false));
+        handlerManager.addHandlerWithPriority(null, createURLMatcher(".*"),
+                new RecordingHandler("first", false));
+
+        handlerManager.get(createRequestContext("/a/b/c"));
+        assertEquals("[first, a, b, all]", invocations.toString());
+
+        invocations.clear();
+        handlerManager.get(createRequestContext("/x"));
+        assertEquals("[first, all]", invocations.toString());
+
+        // the remembered decisions of a path should not leak into other paths
+        invocations.clear();
+        handlerManager.get(createRequestContext("/a/b/c"));
+        handlerManager.get(createRequestContext("/a/c"));
+        assertEquals("[first, a, b, all, first, a, all]", invocations.toString());
+    }
+
+    public void testProcessingComplete() throws Exception {
+        HandlerManager handlerManager = new HandlerManager();
+        Filter filter = createURLMatcher("/a/.*");
+        handlerManager.addHandler(null, filter, new RecordingHandler("a1", false));
+        handlerManager.addHandler(null, filter, new RecordingHandler("a2", true));
+        handlerManager.addHandler(null, filter, new RecordingHandler("a3", false));
+        handlerManager.addHandler(null, createURLMatcher(".*"), new RecordingHandler("all", false));
+
+        handlerManager.get(createRequestContext("/a/b"));
+        assertEquals("[a1, a2]", invocations.toString());
+
+        invocations.clear();
+        handlerManager.setEvaluateAllHandlers(true);
+        handlerManager.get(createRequestContext("/a/b"));
+        assertEquals("[a1, a2, a3, all]", invocations.toString());
+    }
+
+    public void testAddAndRemoveHandlers() throws Exception {
+        HandlerManager handlerManager = new HandlerManager();
+        Filter filter = createURLMatcher("/a/.*");
+        Handler handler = new RecordingHandler("a", false);
+        handlerManager.addHandler(new String[]{Filter.GET}, filter, handler);
+
+        handlerManager.get(createRequestContext("/a/b"));
+        handlerManager.delete(createRequestContext("/a/b"));
+        assertEquals("[a]", invocations.toString());
+
+        invocations.clear();
+        handlerManager.addHandler(null, filter, new RecordingHandler("b", false));
+        handlerManager.get(createRequestContext("/a/b"));
+        assertEquals("[a, b]", invocations.toString());
+
+        invocations.clear();
+        handlerManager.removeHandler(handler);
+        handlerManager.get(createRequestContext("/a/b"));
+        assertEquals("[b]", invocations.toString());
+
+        invocations.clear();
+        handlerManager.removeHandler(new String[]{Filter.GET}, filter, handler);
+        handlerManager.get(createRequestContext("/a/b"));
+        handlerManager.delete(createRequestContext("/a/b"));
+        assertEquals("[b, b]", invocations.toString());
+    }
+
+    public void testMediaTypeDispatch() throws Exception {
+        HandlerManager handlerManager = new HandlerManager();
+        handlerManager.addHandler(null, new MediaTypeMatcher("application/xml"),
+                new RecordingHandler("xml", false));
+        MediaTypeMatcher notText = new MediaTypeMatcher("text/plain");
+        notText.setInvert("true");
+        handlerManager.addHandler(null, notText, new RecordingHandler("not text", false));
+
+        handlerManager.put(createRequestContext("/a", "application/xml"));
+        handlerManager.put(createRequestContext("/b", "text/plain"));
+        handlerManager.put(createRequestContext("/c", "application/xml"));
+        handlerManager.put(createRequestContext("/d", null));
+        assertEquals("[xml, not text, xml, not text]", invocations.toString());
+    }
+
+    private Filter createURLMatcher(String pattern) {
+        URLMatcher urlMatcher = new URLMatcher();
+        urlMatcher.setPattern(pattern);
+        return urlMatcher;
+    }
+
+    private RequestContext createRequestContext(String path) {
+        RequestContext requestContext = new RequestContext(null, null, null);
+        requestContext.setResourcePath(new ResourcePath(path));
+        return requestContext;
+    }
+
+    private RequestContext createRequestContext(String path, String mediaType) {
+        RequestContext requestContext = createRequestContext(path);
+        ResourceImpl resource = new ResourceImpl();
+        resource.setMediaType(mediaType);
+        requestContext.setResource(resource);
+        return requestContext;
+    }
+
+    private class RecordingHandler extends Handler {
+
+        private String name;
+        private boolean completeProcessing;
+
+        private RecordingHandler(String name, boolean completeProcessing) {
+            this.name = name;
+            this.completeProcessing = completeProcessing;
+        }
+
+        public Resource get(RequestContext requestContext) throws RegistryException {
+            record(requestContext);
+            return null;
+        }
+
+        public void put(RequestContext requestContext) throws RegistryException {
+            record(requestContext);
+        }
+
+        public void delete(RequestContext requestContext) throws RegistryException {
+            record(requestContext);
+        }
+
+        private void record(RequestContext requestContext) {
+            invocations.add(name);
+            if (completeProcessing) {
+                requestContext.setProcessingComplete(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.LogEntry;
+import org.wso2.carbon.registry.core.config.LogWriterConfiguration;
+import org.wso2.carbon.registry.core.dao.LogsDAO;
+import org.wso2.carbon.registry.core.dataaccess.DAOManager;
+import org.wso2.carbon.registry.core.dataaccess.DataAccessManager;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.utils.LogQueue;
+import org.wso2.carbon.registry.core.utils.LogRecord;
+import org.wso2.carbon.registry.core.utils.LogWriter;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogWriterTest extends BaseTestCase {
+
+    public void testDropNewest() throws Exception {
+        LogWriter logWriter = createLogWriter(LogWriterConfiguration.OVERFLOW_POLICY_DROP_NEWEST,
+                null);
+        logWriter.addLog("/a", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/b", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/c", "admin", LogEntry.ADD, null);
+
+        assertEquals(2, logWriter.getQueueDepth());
+        assertEquals(1, logWriter.getDroppedLogCount());
+        assertEquals("/a", ((LogRecord) logWriter.getLogQueue().poll()).getResourcePath());
+    }
+
+    public void testDropOldest() throws Exception {
+        LogWriter logWriter = createLogWriter(LogWriterConfiguration.OVERFLOW_POLICY_DROP_OLDEST,
+                null);
+        logWriter.addLog("/a", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/b", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/c", "admin", LogEntry.ADD, null);
+
+        assertEquals(2, logWriter.getQueueDepth());
+        assertEquals(1, logWriter.getDroppedLogCount());
+        assertEquals("/b", ((LogRecord) logWriter.getLogQueue().poll()).getResourcePath());
+    }
+
+    public void testBlockWithoutWriter() throws Exception {
+        // a writer which is not running cannot make room, so logs are dropped instead of waiting.
+        LogWriter logWriter = createLogWriter(LogWriterConfiguration.OVERFLOW_POLICY_BLOCK, null);
+        logWriter.addLog("/a", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/b", "admin", LogEntry.ADD, null);
+        logWriter.addLog("/c", "admin", LogEntry.ADD, null);
+
+        assertEquals(2, logWriter.getQueueDepth());
+        assertEquals(1, logWriter.getDroppedLogCount());
+    }
+
+    public void testJournalRecovery() throws Exception {
+        File journal = File.createTempFile("registry-log", ".journal");
+        assertTrue(journal.delete());
+        try {
+            LogWriter logWriter = createLogWriter(
+                    LogWriterConfiguration.OVERFLOW_POLICY_DROP_NEWEST, journal.getPath());
+            logWriter.addLog("/a", "admin", LogEntry.ADD, "first");
+            logWriter.addLog("/b", "admin", LogEntry.UPDATE, null);
+            assertTrue(journal.exists());
+
+            // a writer created over the same journal writes the logs which were not written.
+            ctx.getEmbeddedRegistryService();
+            LogWriterConfiguration configuration = new LogWriterConfiguration();
+            configuration.setBatchSize(1);
+            configuration.setJournalPath(journal.getPath());
+            LogWriter recoveringWriter = new LogWriter(new LogQueue(2),
+                    ctx.getDataAccessManager(), configuration);
+            recoveringWriter.flush();
+
+            assertEquals(2, recoveringWriter.getWrittenLogCount());
+            assertEquals(0, recoveringWriter.getFailedLogCount());
+            assertEquals(1, recoveringWriter.getFlushCount());
+            assertFalse(journal.exists());
+            assertFalse(new File(journal.getPath() + ".pending").exists());
+        } finally {
+            journal.delete();
+            new File(journal.getPath() + ".pending").delete();
+        }
+    }
+
+    public void testFailedLogsKeptInJournal() throws Exception {
+        File journal = File.createTempFile("registry-log", ".journal");
+        File pendingJournal = new File(journal.getPath() + ".pending");
+        assertTrue(journal.delete());
+        try {
+            final boolean[] failing = {true};
+            final List<LogRecord> saved = new ArrayList<LogRecord>();
+            InvocationHandler handler = new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                        throws Throwable {
+                    if (method.getName().equals("saveLogBatch")) {
+                        if (failing[0]) {
+                            throw new RegistryException("The database is not available.");
+                        }
+                        for (LogRecord logRecord : (LogRecord[]) args[0]) {
+                            saved.add(logRecord);
+                        }
+                        return null;
+                    }
+                    // getDAOManager and getLogsDAO
+                    return proxy;
+                }
+            };
+            DataAccessManager dataAccessManager = (DataAccessManager) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class[]{DataAccessManager.class, DAOManager.class, LogsDAO.class},
+                    handler);
+
+            LogWriterConfiguration configuration = new LogWriterConfiguration();
+            configuration.setQueueSize(4);
+            configuration.setBatchSize(1);
+            configuration.setJournalPath(journal.getPath());
+            LogWriter logWriter = new LogWriter(new LogQueue(configuration.getQueueSize()),
+                    dataAccessManager, configuration);
+            logWriter.addLog("/a", "admin", LogEntry.ADD, null);
+            logWriter.addLog("/b", "admin", LogEntry.ADD, null);
+
+            logWriter.flush();
+            assertEquals(0, logWriter.getWrittenLogCount());
+            assertEquals(2, logWriter.getFailedLogCount());
+            assertTrue(pendingJournal.exists());
+
+            // the failed logs are written by the next flush, along with the logs queued since.
+            failing[0] = false;
+            logWriter.addLog("/c", "admin", LogEntry.ADD, null);
+            logWriter.flush();
+            assertEquals(3, logWriter.getWrittenLogCount());
+            assertEquals(3, saved.size());
+            assertEquals("/a", saved.get(0).getResourcePath());
+            assertFalse(pendingJournal.exists());
+        } finally {
+            journal.delete();
+            pendingJournal.delete();
+        }
+    }
+
+    private LogWriter createLogWriter(String overflowPolicy, String journalPath) {
+        LogWriterConfiguration configuration = new LogWriterConfiguration();
+        configuration.setQueueSize(2);
+        configuration.setFlushInterval(100);
+        configuration.setOverflowPolicy(overflowPolicy);
+        configuration.setJournalPath(journalPath);
+        return new LogWriter(new LogQueue(configuration.getQueueSize()), null, configuration);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.caching.RegistryCacheKey;
+import org.wso2.carbon.registry.core.caching.RegistryCachePathIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RegistryCachePathIndexTest extends BaseTestCase {
+
+    private static final String CONNECTION_URL = "wso2carbon@jdbc:h2:target/databasetest/CARBON_TEST";
+
+    public void testRemoveSubTree() {
+        RegistryCachePathIndex pathIndex = new RegistryCachePathIndex();
+        addPaths(pathIndex, 1, "/a", "/a/b", "/a/b/c", "/a/b;start=0;pageSize=10", "/a/b;version:2",
+                "/a/bc", "/d");
+        addPaths(pathIndex, 2, "/a/b/c");
+
+        assertEquals("Sub tree paths incorrect.",
+                new HashSet<String>(Arrays.asList("/a/b", "/a/b/c", "/a/b;start=0;pageSize=10",
+                        "/a/b;version:2")),
+                pathIndex.removeSubTree(1, "/a/b"));
+        assertEquals("Index size incorrect.", 3, pathIndex.size(1));
+        assertEquals("Index size incorrect.", 1, pathIndex.size(2));
+
+        assertTrue("Removed paths must not be returned again.",
+                pathIndex.removeSubTree(1, "/a/b").isEmpty());
+        assertEquals("Root paths incorrect.", new HashSet<String>(Arrays.asList("/a", "/a/bc", "/d")),
+                pathIndex.removeSubTree(1, "/"));
+    }
+
+    public void testRemoveCollection() {
+        RegistryCachePathIndex pathIndex = new RegistryCachePathIndex();
+        addPaths(pathIndex, 1, "/a", "/a/", "/a;start=0;pageSize=10", "/a/;start=10;pageSize=10",
+                "/a;version:2", "/a/b");
+
+        Set<String> removedPaths = pathIndex.removeCollection(1, "/a");
+        assertEquals("Collection paths incorrect.",
+                new HashSet<String>(Arrays.asList("/a", "/a/", "/a;start=0;pageSize=10",
+                        "/a/;start=10;pageSize=10")), removedPaths);
+        assertEquals("Index size incorrect.", 2, pathIndex.size(1));
+        assertTrue("Unknown collection must not match.",
+                pathIndex.removeCollection(1, "/x").isEmpty());
+    }
+
+    public void testRebuild() {
+        RegistryCachePathIndex pathIndex = new RegistryCachePathIndex();
+        boolean rebuildRequired = false;
+        for (int i = 0; i < 2000 && !rebuildRequired; i++) {
+            rebuildRequired = pathIndex.addPath(new RegistryCacheKey("/r/" + i, 1, CONNECTION_URL));
+        }
+        assertTrue("Index must require a rebuild once it grows.", rebuildRequired);
+
+        List<RegistryCacheKey> cachedKeys = new ArrayList<RegistryCacheKey>();
+        cachedKeys.add(new RegistryCacheKey("/r/1", 1, CONNECTION_URL));
+        cachedKeys.add(new RegistryCacheKey("/r/2", 1, CONNECTION_URL));
+        cachedKeys.add(new RegistryCacheKey("/r/3", 2, CONNECTION_URL));
+        pathIndex.rebuild(1, cachedKeys.iterator());
+        assertEquals("Index size incorrect.", 2, pathIndex.size(1));
+        assertEquals("Sub tree paths incorrect.", new HashSet<String>(Arrays.asList("/r/1", "/r/2")),
+                pathIndex.removeSubTree(1, "/r"));
+    }
+
+    private static void addPaths(RegistryCachePathIndex pathIndex, int tenantId, String... paths) {
+        for (String path : paths) {
+            pathIndex.addPath(new RegistryCacheKey(path, tenantId, CONNECTION_URL));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.caching.SingleFlightLoader;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightLoaderTest extends BaseTestCase {
+
+    public void testConcurrentLoadsAreShared() throws Exception {
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>();
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final Callable<String> slowLoad = new Callable<String>() {
+            public String call() throws Exception {
+                loadCount.incrementAndGet();
+                loadStarted.countDown();
+                releaseLoad.await();
+                return "value";
+            }
+        };
+
+        final String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        results[index] = loader.load("/a/b", slowLoad);
+                    } catch (RegistryException e) {
+                        results[index] = e.getMessage();
+                    }
+                }
+            };
+            threads[i].start();
+            if (i == 0) {
+                loadStarted.await();
+            }
+        }
+        // wait for the other threads to reach the in flight load before releasing it.
+        Thread.sleep(100);
+        releaseLoad.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Concurrent loads must be shared.", 1, loadCount.get());
+        for (String result : results) {
+            assertEquals("Loaded value incorrect.", "value", result);
+        }
+        assertEquals("Completed loads must not be retained.", 0, loader.getInFlightLoadCount());
+    }
+
+    public void testUnsharedLoadsAreRepeated() throws Exception {
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>() {
+            @Override
+            protected boolean isShared(String key, String value) {
+                return false;
+            }
+        };
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final Callable<String> slowLoad = new Callable<String>() {
+            public String call() throws Exception {
+                int load = loadCount.incrementAndGet();
+                loadStarted.countDown();
+                releaseLoad.await();
+                return "value" + load;
+            }
+        };
+
+        final String[] results = new String[4];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        results[index] = loader.load("/a/b", slowLoad);
+                    } catch (RegistryException e) {
+                        results[index] = e.getMessage();
+                    }
+                }
+            };
+            threads[i].start();
+            if (i == 0) {
+                loadStarted.await();
+            }
+        }
+        Thread.sleep(100);
+        releaseLoad.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Each thread must load its own unshared value.", results.length,
+                loadCount.get());
+        for (int i = 0; i < results.length; i++) {
+            for (int j = i + 1; j < results.length; j++) {
+                assertFalse("Unshared values must not be handed to other threads.",
+                        results[i].equals(results[j]));
+            }
+        }
+    }
+
+    public void testFailedLoad() throws Exception {
+        SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>();
+        try {
+            loader.load("/a", new Callable<String>() {
+                public String call() throws Exception {
+                    throw new RegistryException("Resource does not exist at path /a");
+                }
+            });
+            fail("Failed load must throw.");
+        } catch (RegistryException e) {
+            assertEquals("Exception incorrect.", "Resource does not exist at path /a", e.getMessage());
+        }
+        assertEquals("Failed loads must not be retained.", 0, loader.getInFlightLoadCount());
+    }
+
+    public void testReentrantLoad() throws Exception {
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>();
+        String value = loader.load("/a", new Callable<String>() {
+            public String call() throws Exception {
+                return loader.load("/a", new Callable<String>() {
+                    public String call() {
+                        return "inner";
+                    }
+                }) + "-outer";
+            }
+        });
+        assertEquals("Reentrant load must not wait on itself.", "inner-outer", value);
+    }
+}
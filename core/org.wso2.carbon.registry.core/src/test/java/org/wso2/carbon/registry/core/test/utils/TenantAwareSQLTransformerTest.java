@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.dataaccess.TenantAwareSQLTransformer;
+
+public class TenantAwareSQLTransformerTest extends BaseTestCase {
+
+    public void testTransformerIsCached() throws Exception {
+        String sql = "SELECT REG_PATH_ID, REG_NAME FROM REG_RESOURCE WHERE REG_NAME LIKE ?";
+        TenantAwareSQLTransformer transformer = TenantAwareSQLTransformer.getTransformer(sql);
+
+        long hits = TenantAwareSQLTransformer.getCacheHitCount();
+        long misses = TenantAwareSQLTransformer.getCacheMissCount();
+        assertSame(transformer, TenantAwareSQLTransformer.getTransformer(sql));
+        assertEquals(hits + 1, TenantAwareSQLTransformer.getCacheHitCount());
+        assertEquals(misses, TenantAwareSQLTransformer.getCacheMissCount());
+    }
+
+    public void testInvalidQueryIsNotCached() throws Exception {
+        String sql = "SELECT REG_NAME FROM REG_RESOURCE; DROP TABLE REG_RESOURCE";
+        for (int i = 0; i < 2; i++) {
+            long misses = TenantAwareSQLTransformer.getCacheMissCount();
+            try {
+                TenantAwareSQLTransformer.getTransformer(sql);
+                fail("The query should fail the validity check.");
+            } catch (RegistryException expected) {
+                // the query is checked again, as it was not cached.
+            }
+            assertEquals(misses + 1, TenantAwareSQLTransformer.getCacheMissCount());
+        }
+    }
+}
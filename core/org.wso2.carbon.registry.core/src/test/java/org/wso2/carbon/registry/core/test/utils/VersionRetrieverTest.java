@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.utils.VersionInputStream;
+import org.wso2.carbon.registry.core.jdbc.utils.VersionRetriever;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class VersionRetrieverTest extends BaseTestCase {
+
+    public void testBlockFormat() throws RegistryException {
+        List<Long> versions = new ArrayList<Long>();
+        Random random = new Random(7);
+        long version = 1000000;
+        for (int i = 0; i < 1000; i++) {
+            // mostly increasing, with occasional jumps in both directions
+            version += (i % 50 == 0) ? random.nextInt(2000000) - 1000000 : random.nextInt(10) + 1;
+            versions.add(version);
+        }
+        versions.add(Long.MAX_VALUE);
+        versions.add(1L);
+
+        VersionInputStream versionInputStream = new VersionInputStream(versions);
+        assertTrue("Versions should take less than 8 bytes each",
+                versionInputStream.available() < versions.size() * 8);
+        VersionRetriever versionRetriever = new VersionRetriever(versionInputStream);
+        assertEquals(versions.size(), versionRetriever.getVersionCount());
+        // read out of order, across blocks
+        for (int i = versions.size() - 1; i >= 0; i -= 7) {
+            assertEquals(versions.get(i).longValue(), versionRetriever.getVersion(i));
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(versions.get(i).longValue(), versionRetriever.getVersion(i));
+        }
+        assertEquals(-1, versionRetriever.getVersion(versions.size()));
+    }
+
+    public void testEmptyList() throws RegistryException {
+        VersionRetriever versionRetriever =
+                new VersionRetriever(new VersionInputStream(new ArrayList<Long>()));
+        assertEquals(0, versionRetriever.getVersionCount());
+        assertEquals(-1, versionRetriever.getVersion(0));
+    }
+
+    public void testLegacyFormat() throws RegistryException {
+        long[] versions = {3, 300, 70000, 12, 1L << 40};
+        ByteBuffer buffer = ByteBuffer.allocate(versions.length * 8);
+        for (long version : versions) {
+            buffer.putLong(version);
+        }
+        VersionRetriever versionRetriever =
+                new VersionRetriever(new ByteArrayInputStream(buffer.array()));
+        assertEquals(versions.length, versionRetriever.getVersionCount());
+        for (int i = versions.length - 1; i >= 0; i--) {
+            assertEquals(versions[i], versionRetriever.getVersion(i));
+        }
+        assertEquals(-1, versionRetriever.getVersion(versions.length));
+    }
+}
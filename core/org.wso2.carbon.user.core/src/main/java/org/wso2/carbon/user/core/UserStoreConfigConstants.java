@@ -49,6 +49,8 @@ public class UserStoreConfigConstants {
     public static final String userSearchBaseDescription = "DN of the context under which user entries are stored in LDAP";
     public static final String disabled  = "Disabled";
     public static final String disabledDescription = "Whether user store is disabled";
+    public static final String pageSize = "PageSize";
+    public static final String pageSizeDescription = "Number of entries read in one page of an LDAP search. Zero disables paged searches when listing users and roles";
 
 
     //Write Group Privilege Properties
@@ -319,6 +319,59 @@ public class AuthorizationCache {
 
 	}
 
+	/**
+	 * To clear cache when a permission of a resource is changed. Since permissions are inherited
+	 * by the resources below the resource, the entries of those resources are cleared too.
+	 * 
+	 * @param serverId
+	 * @param tenantID
+	 * @param userName the user whose entries are cleared, or null to clear the entries of all users
+	 * @param resourceID the resource, or null to clear the entries of all resources
+	 * @param action the action, or null to clear the entries of all actions
+	 */
+	public void clearCacheByResourceTree(String serverId, int tenantID, String userName,
+			String resourceID, String action) {
+		Cache<AuthorizationKey, AuthorizeCacheEntry> cache = this.getAuthorizationCache();
+		// check for null
+		if (isCacheNull(cache)) {
+			return;
+		}
+
+		String resourcePath = resourceID != null ? trimResourcePath(resourceID) : null;
+		for (Cache.Entry<AuthorizationKey, AuthorizeCacheEntry> entry : cache) {
+			AuthorizationKey authorizationKey = entry.getKey();
+			if ((tenantID == (authorizationKey.getTenantId()))
+					&& (serverId == null || serverId.equals(authorizationKey.getServerId()))
+					&& (userName == null || userName.equalsIgnoreCase(authorizationKey.getUserName()))
+					&& (action == null || action.equals(authorizationKey.getAction()))
+					&& (resourcePath == null || isInResourceTree(resourcePath,
+							authorizationKey.getResourceId()))) {
+				cache.remove(authorizationKey);
+			}
+		}
+	}
+
+	private boolean isInResourceTree(String resourcePath, String resourceID) {
+		if (resourceID == null) {
+			return false;
+		}
+		String path = trimResourcePath(resourceID);
+		return resourcePath.length() == 0 || path.equals(resourcePath)
+				|| path.startsWith(resourcePath + "/");
+	}
+
+	private String trimResourcePath(String resourceID) {
+		int start = 0;
+		int end = resourceID.length();
+		while (start < end && resourceID.charAt(start) == '/') {
+			start++;
+		}
+		while (end > start && resourceID.charAt(end - 1) == '/') {
+			end--;
+		}
+		return resourceID.substring(start, end);
+	}
+
 	/**
 	 * Disable cache completely. Can not enable the cache again.
 	 */
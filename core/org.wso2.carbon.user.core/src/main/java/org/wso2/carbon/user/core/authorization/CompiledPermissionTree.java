@@ -0,0 +1,268 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A read only copy of the permission tree, compiled for evaluating authorizations. Role names are
+ * replaced by small integer ids, and each node holds the allowed and denied roles of every
+ * permission as a bitset of role ids. Finding the roles allowed on a resource is then a walk down
+ * the resource path which does not create strings, and checking a user is a bitset intersection
+ * with the roles of the user.
+ * <p/>
+ * The permission tree compiles a new copy whenever it changes.
+ */
+class CompiledPermissionTree {
+
+    private static final int PERMISSION_COUNT = TreeNode.Permission.values().length;
+
+    private Map<String, Integer> roleIds = new HashMap<String, Integer>();
+    private Map<String, Integer> roleIdsIgnoreCase =
+            new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+    private List<String> roleNames = new ArrayList<String>();
+    private Node root;
+
+    CompiledPermissionTree(TreeNode root) {
+        this.root = compile(root);
+    }
+
+    /**
+     * Finds the roles allowed to perform the given permission on the resource, in the same way as
+     * {@link PermissionTree#getAllowedRolesForResource}.
+     *
+     * @param resourceId the resource
+     * @param permission the permission
+     * @return the ids of the allowed roles
+     */
+    BitSet getAllowedRoles(String resourceId, TreeNode.Permission permission) {
+        int ordinal = permission.ordinal();
+        BitSet allowed = new BitSet(roleNames.size());
+        Node node = root;
+        int start = resourceId.startsWith("/") ? 1 : 0;
+        while (true) {
+            if (node.roleAllowPermissions != null && node.roleAllowPermissions[ordinal] != null) {
+                allowed.or(node.roleAllowPermissions[ordinal]);
+            }
+            if (node.roleDenyPermissions != null && node.roleDenyPermissions[ordinal] != null) {
+                allowed.andNot(node.roleDenyPermissions[ordinal]);
+            }
+            int end = getSegmentEnd(resourceId, start);
+            if (end == start) {
+                return allowed;
+            }
+            node = node.getChild(resourceId, start, end);
+            if (node == null) {
+                return allowed;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Checks the permissions given to the user directly, in the same way as
+     * {@link PermissionTree#getUserPermission}.
+     *
+     * @param userName   the user
+     * @param resourceId the resource
+     * @param permission the permission
+     * @return whether the permission is allowed to the user on the deepest node which decides it
+     */
+    boolean isUserAuthorized(String userName, String resourceId, TreeNode.Permission permission) {
+        boolean allowed = false;
+        Node node = root;
+        int start = resourceId.startsWith("/") ? 1 : 0;
+        while (true) {
+            Boolean nodeAllows = node.isUserAuthorized(userName, permission.ordinal());
+            if (nodeAllows != null) {
+                allowed = nodeAllows;
+            }
+            int end = getSegmentEnd(resourceId, start);
+            if (end == start) {
+                return allowed;
+            }
+            node = node.getChild(resourceId, start, end);
+            if (node == null) {
+                return allowed;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Finds the ids of the given roles. Roles which have no permissions in the tree are left out.
+     *
+     * @param roles      the role names
+     * @param ignoreCase whether role names are matched ignoring case
+     * @return the ids of the roles
+     */
+    BitSet getRoleIds(String[] roles, boolean ignoreCase) {
+        BitSet ids = new BitSet(roleNames.size());
+        if (roles != null) {
+            Map<String, Integer> index = ignoreCase ? roleIdsIgnoreCase : roleIds;
+            for (String role : roles) {
+                Integer id = role != null ? index.get(role) : null;
+                if (id != null) {
+                    ids.set(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    String getRoleName(int roleId) {
+        return roleNames.get(roleId);
+    }
+
+    /**
+     * The end of the path segment starting at the given index, or the index itself if there are
+     * no more segments to walk. An empty segment ends the walk, as it does for
+     * {@link PermissionTreeUtil#toComponenets}.
+     */
+    private static int getSegmentEnd(String path, int start) {
+        if (start >= path.length()) {
+            return start;
+        }
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private Node compile(TreeNode treeNode) {
+        Node node = new Node();
+        node.roleAllowPermissions = compileRolePermissions(treeNode.getRoleAllowPermissions());
+        node.roleDenyPermissions = compileRolePermissions(treeNode.getRoleDenyPermissions());
+        node.userAllowPermissions = copyUserPermissions(treeNode.getUserAllowPermissions());
+        node.userDenyPermissions = copyUserPermissions(treeNode.getUserDenyPermissions());
+
+        Map<String, TreeNode> children = treeNode.getChildren();
+        node.childNames = children.keySet().toArray(new String[children.size()]);
+        Arrays.sort(node.childNames);
+        node.children = new Node[node.childNames.length];
+        for (int i = 0; i < node.childNames.length; i++) {
+            node.children[i] = compile(children.get(node.childNames[i]));
+        }
+        return node;
+    }
+
+    private BitSet[] compileRolePermissions(Map<String, BitSet> permissions) {
+        if (permissions.isEmpty()) {
+            return null;
+        }
+        BitSet[] roles = new BitSet[PERMISSION_COUNT];
+        for (Map.Entry<String, BitSet> entry : permissions.entrySet()) {
+            BitSet bs = entry.getValue();
+            if (bs.isEmpty()) {
+                continue;
+            }
+            int roleId = getOrAddRoleId(entry.getKey());
+            for (int i = bs.nextSetBit(0); i >= 0 && i < PERMISSION_COUNT; i = bs.nextSetBit(i + 1)) {
+                if (roles[i] == null) {
+                    roles[i] = new BitSet();
+                }
+                roles[i].set(roleId);
+            }
+        }
+        return roles;
+    }
+
+    private Map<String, BitSet> copyUserPermissions(Map<String, BitSet> permissions) {
+        if (permissions.isEmpty()) {
+            return null;
+        }
+        Map<String, BitSet> copy = new HashMap<String, BitSet>(permissions.size() * 2);
+        for (Map.Entry<String, BitSet> entry : permissions.entrySet()) {
+            copy.put(entry.getKey(), (BitSet) entry.getValue().clone());
+        }
+        return copy;
+    }
+
+    private int getOrAddRoleId(String roleName) {
+        Integer roleId = roleIds.get(roleName);
+        if (roleId == null) {
+            roleId = roleNames.size();
+            roleNames.add(roleName);
+            roleIds.put(roleName, roleId);
+            if (!roleIdsIgnoreCase.containsKey(roleName)) {
+                roleIdsIgnoreCase.put(roleName, roleId);
+            }
+        }
+        return roleId;
+    }
+
+    private static class Node {
+
+        private String[] childNames;
+        private Node[] children;
+        // the role ids allowed and denied, indexed by the permission ordinal.
+        private BitSet[] roleAllowPermissions;
+        private BitSet[] roleDenyPermissions;
+        private Map<String, BitSet> userAllowPermissions;
+        private Map<String, BitSet> userDenyPermissions;
+
+        private Node getChild(String path, int start, int end) {
+            int low = 0;
+            int high = childNames.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(childNames[mid], path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private Boolean isUserAuthorized(String userName, int ordinal) {
+            BitSet bsDeny = userDenyPermissions != null ? userDenyPermissions.get(userName) : null;
+            if (bsDeny != null && bsDeny.get(ordinal)) {
+                return Boolean.FALSE;
+            }
+            BitSet bsAllow = userAllowPermissions != null ? userAllowPermissions.get(userName) : null;
+            if (bsAllow != null && bsAllow.get(ordinal)) {
+                return Boolean.TRUE;
+            }
+            return null;
+        }
+
+        /**
+         * Compares a name with a segment of the path in the order of {@link String#compareTo}.
+         */
+        private static int compare(String name, String path, int start, int end) {
+            int length = end - start;
+            int common = Math.min(name.length(), length);
+            for (int i = 0; i < common; i++) {
+                char c1 = name.charAt(i);
+                char c2 = path.charAt(start + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return name.length() - length;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -55,9 +56,11 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     private RealmConfiguration realmConfig = null;
     private boolean caseInSensitiveAuthorizationRules;
     private boolean verifyByRetrievingAllUserRoles;
+    private boolean compiledPermissionEvaluation;
     private String cacheIdentifier;
     private int tenantId;
     private final String GET_ALL_ROLES_OF_USER_ENABLED = "GetAllRolesOfUserEnabled";
+    private final String COMPILED_PERMISSION_EVALUATION_ENABLED = "CompiledPermissionEvaluationEnabled";
 
     /**
      * The root node of the tree
@@ -84,6 +87,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             verifyByRetrievingAllUserRoles = true;
         }
 
+        if("true".equals(realmConfig.getAuthorizationManagerProperty(COMPILED_PERMISSION_EVALUATION_ENABLED))){
+            compiledPermissionEvaluation = true;
+        }
+
         String userCoreCacheIdentifier = realmConfig.getUserStoreProperty(UserCoreConstants.
                         RealmConfig.PROPERTY_USER_CORE_CACHE_IDENTIFIER);
 
@@ -184,6 +191,14 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
         permissionTree.updatePermissionTree();
 
+        if (compiledPermissionEvaluation) {
+            boolean userAllowed = isUserAuthorizedByCompiledTree(unModifiedUser, userName,
+                    resourceId, action);
+            authorizationCache.addToCache(cacheIdentifier, this.tenantId, userName, resourceId,
+                    action, userAllowed);
+            return userAllowed;
+        }
+
         //following is related with user permission, and it is not hit in the current flow.
 		SearchResult sr =
 		                  permissionTree.getUserPermission(userName,
@@ -209,19 +224,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             }   
             
             if(verifyByRetrievingAllUserRoles){
-                String[] roles = null;
-                try {
-                    roles = userRealm.getUserStoreManager().getRoleListOfUser(userName);
-                } catch (UserStoreException e){
-                    if(log.isDebugEnabled()) {
-                        log.debug("Error getting role list of user : " + userName, e);
-                    }
-                }
-
-                if(roles == null || roles.length == 0){
-                    AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
-                    roles = manager.doGetRoleListOfUser(userName, "*");
-                }
+                String[] roles = getRoleListOfUser(userName);
 
                 Set<String> allowedRoleSet = new HashSet<String>(Arrays.asList(allowedRoles));
                 Set<String> userRoleSet = new HashSet<String>(Arrays.asList(modify(roles)));
@@ -278,6 +281,70 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         return userAllowed;
     }
 
+    /**
+     * Evaluates an authorization on the compiled permission tree. The roles allowed on the
+     * resource and the roles of the user are bitsets of role ids, so the user is authorized if
+     * they intersect.
+     */
+    private boolean isUserAuthorizedByCompiledTree(String unModifiedUser, String userName,
+            String resourceId, String action) throws UserStoreException {
+
+        TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
+        CompiledPermissionTree compiledTree = permissionTree.getCompiledPermissionTree();
+        if (compiledTree.isUserAuthorized(userName, resourceId, permission)) {
+            return true;
+        }
+
+        BitSet allowedRoles = compiledTree.getAllowedRoles(resourceId, permission);
+        if (allowedRoles.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No roles have permission for resource : " + resourceId + " action : " + action);
+            }
+            return false;
+        }
+
+        if (verifyByRetrievingAllUserRoles) {
+            BitSet userRoles = compiledTree.getRoleIds(getRoleListOfUser(userName),
+                    caseInSensitiveAuthorizationRules);
+            return allowedRoles.intersects(userRoles);
+        }
+
+        AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
+        for (int i = allowedRoles.nextSetBit(0); i >= 0; i = allowedRoles.nextSetBit(i + 1)) {
+            String role = compiledTree.getRoleName(i);
+            try {
+                if (manager.isUserInRole(unModifiedUser, role)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(unModifiedUser + " user is in role :  " + role);
+                    }
+                    return true;
+                }
+            } catch (UserStoreException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(unModifiedUser + " user is not in role :  " + role, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    private String[] getRoleListOfUser(String userName) throws UserStoreException {
+        String[] roles = null;
+        try {
+            roles = userRealm.getUserStoreManager().getRoleListOfUser(userName);
+        } catch (UserStoreException e){
+            if(log.isDebugEnabled()) {
+                log.debug("Error getting role list of user : " + userName, e);
+            }
+        }
+
+        if(roles == null || roles.length == 0){
+            AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
+            roles = manager.doGetRoleListOfUser(userName, "*");
+        }
+        return roles;
+    }
+
     public String[] getAllowedRolesForResource(String resourceId, String action)
             throws UserStoreException {
 
@@ -495,9 +562,11 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         }
         resourceId = modify(resourceId);
         /**
-         * Need to clear authz cache when resource authorization is cleared.
+         * Need to clear authz cache of the resource and the resources below it when resource
+         * authorization is cleared.
          */
-        authorizationCache.clearCacheByTenant(this.tenantId);
+        authorizationCache.clearCacheByResourceTree(cacheIdentifier, this.tenantId, null,
+                resourceId, null);
 
         Connection dbConnection = null;
         try {
@@ -532,9 +601,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         resourceId = modify(resourceId);
         action = modify(action);
 
-        /*need to clear tenant authz cache once role authorization is removed, currently there is
-        no way to remove cache entry by role.*/
-        authorizationCache.clearCacheByTenant(this.tenantId);
+        /*need to clear authz cache of the resource tree once role authorization is removed,
+        currently there is no way to remove cache entry by role.*/
+        authorizationCache.clearCacheByResourceTree(cacheIdentifier, this.tenantId, null,
+                resourceId, action);
         
         Connection dbConnection = null;
         try {
@@ -569,8 +639,8 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         resourceId = modify(resourceId);
         action = modify(action);
 
-        this.authorizationCache.clearCacheEntry(cacheIdentifier, tenantId, userName, resourceId,
-                                                                                        action);
+        this.authorizationCache.clearCacheByResourceTree(cacheIdentifier, tenantId, userName,
+                resourceId, action);
 
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
@@ -605,9 +675,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         roleName = modify(roleName);
         action = modify(action);
 
-        /*need to clear tenant authz cache once role authorization is removed, currently there is
-        no way to remove cache entry by role.*/
-        authorizationCache.clearCacheByTenant(this.tenantId);
+        /*need to clear authz cache of the action once role authorization is removed, currently
+        there is no way to remove cache entry by role.*/
+        authorizationCache.clearCacheByResourceTree(cacheIdentifier, this.tenantId, null, null,
+                action);
 
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
@@ -676,7 +747,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
         userName = modify(userName);
 
-        this.authorizationCache.clearCacheByTenant(tenantId);
+        this.authorizationCache.clearCacheByUser(tenantId, userName);
 
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
@@ -753,9 +824,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     private  void addAuthorizationForRole(String roleName, String resourceId, String action,
             short allow, boolean updateCache) throws UserStoreException {
 
-        /*need to clear tenant authz cache once role authorization is added, currently there is
-        no way to remove cache entry by role.*/
-        authorizationCache.clearCacheByTenant(this.tenantId);
+        /*need to clear authz cache of the resource tree once role authorization is added,
+        currently there is no way to remove cache entry by role.*/
+        authorizationCache.clearCacheByResourceTree(cacheIdentifier, this.tenantId, null,
+                resourceId, action);
 
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
@@ -811,9 +883,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     private void addAuthorizationForUser(String userName, String resourceId, String action,
             short allow, boolean updateCache) throws UserStoreException {
-        /*need to clear tenant authz cache once role authorization is removed, currently there is
-        no way to remove cache entry by role.*/
-        authorizationCache.clearCacheByTenant(this.tenantId);
+        /*need to clear authz cache of the user on the resource tree once user authorization is
+        added.*/
+        authorizationCache.clearCacheByResourceTree(cacheIdentifier, this.tenantId, userName,
+                resourceId, action);
         
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
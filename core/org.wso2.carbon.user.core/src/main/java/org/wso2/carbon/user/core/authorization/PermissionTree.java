@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -36,7 +37,6 @@ import javax.sql.DataSource;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.CarbonConstants;
-import org.wso2.carbon.registry.api.GhostResource;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.util.DatabaseUtil;
@@ -53,7 +53,18 @@ public class PermissionTree {
     
     private static final String PERMISSION_CACHE_MANAGER = "PERMISSION_CACHE_MANAGER";
     private static final String PERMISSION_CACHE = "PERMISSION_CACHE";
-    
+    // the number of changes held in the cache entry for nodes which are behind.
+    private static final int MAX_PUBLISHED_CHANGES = 100;
+
+    /**
+     * The tree is in step with the other nodes while it has the tree id of the cache entry and has
+     * applied its changes up to the last one.
+     */
+    private volatile String treeId;
+    private volatile long sequence;
+    private volatile String lastChangeId;
+    // compiled from the tree when needed, and dropped whenever the tree changes.
+    private volatile CompiledPermissionTree compiledTree;
 
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Lock read = readWriteLock.readLock();
@@ -86,89 +97,72 @@ public class PermissionTree {
 	 * Getting existing cache if the cache available, else returns a newly created cache.
 	 * This logic handles by javax.cache implementation
 	 */
-	private Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> getPermissionTreeCache() {
-		Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> cache = null;
+	private Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> getPermissionTreeCache() {
+		Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> cache = null;
 		CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(PERMISSION_CACHE_MANAGER);
 		cache = cacheManager.getCache(PERMISSION_CACHE);
 		return cache;
 	}
 	
     void authorizeUserInTree(String userName, String resourceId, String action, boolean updateCache) throws UserStoreException {
+        if (updateCache) {
+            makeChange(new PermissionTreeChange(PermissionTreeChange.Type.AUTHORIZE_USER, userName,
+                    resourceId, action));
+            return;
+        }
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() != null) {
-                List<String> paths = sr.getUnprocessedPaths();
-                TreeNode tn = sr.getLastNode().create(paths);
-                tn.authorizeUser(userName, PermissionTreeUtil.actionToPermission(action));
-
-            } else {
-                sr.getLastNode().authorizeUser(userName,
-                        PermissionTreeUtil.actionToPermission(action));
-            }
-            if (updateCache) {
-                invalidateCache(root);
-            }
+            compiledTree = null;
+            getOrCreateNode(resourceId).authorizeUser(userName,
+                    PermissionTreeUtil.actionToPermission(action));
         } finally {
             write.unlock();
         }
     }
 
     void denyUserInTree(String userName, String resourceId, String action, boolean updateCache) throws UserStoreException {
+        if (updateCache) {
+            makeChange(new PermissionTreeChange(PermissionTreeChange.Type.DENY_USER, userName,
+                    resourceId, action));
+            return;
+        }
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() != null) {
-                List<String> paths = sr.getUnprocessedPaths();
-                TreeNode tn = sr.getLastNode().create(paths);
-                tn.denyUser(userName, PermissionTreeUtil.actionToPermission(action));
-            } else {
-                sr.getLastNode().denyUser(userName, PermissionTreeUtil.actionToPermission(action));
-            }
-            if (updateCache) {
-                invalidateCache(root);
-            }
+            compiledTree = null;
+            getOrCreateNode(resourceId).denyUser(userName,
+                    PermissionTreeUtil.actionToPermission(action));
         } finally {
             write.unlock();
         }
     }
 
-    void authorizeRoleInTree(String roleName, String resourceId, String action, boolean updateCache ) throws UserStoreException {
+    void authorizeRoleInTree(String roleName, String resourceId, String action, boolean updateCache) throws UserStoreException {
+        if (updateCache) {
+            makeChange(new PermissionTreeChange(PermissionTreeChange.Type.AUTHORIZE_ROLE, roleName,
+                    resourceId, action));
+            return;
+        }
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() != null) {
-                List<String> paths = sr.getUnprocessedPaths();
-                TreeNode tn = sr.getLastNode().create(paths);
-                tn.authorizeRole(roleName, PermissionTreeUtil.actionToPermission(action));
-
-            } else {
-                sr.getLastNode().authorizeRole(roleName,
-                        PermissionTreeUtil.actionToPermission(action));
-            }
-            if (updateCache) {
-                invalidateCache(root);
-            }
+            compiledTree = null;
+            getOrCreateNode(resourceId).authorizeRole(roleName,
+                    PermissionTreeUtil.actionToPermission(action));
         } finally {
             write.unlock();
         }
     }
 
     void denyRoleInTree(String roleName, String resourceId, String action, boolean updateCache) throws UserStoreException {
+        if (updateCache) {
+            makeChange(new PermissionTreeChange(PermissionTreeChange.Type.DENY_ROLE, roleName,
+                    resourceId, action));
+            return;
+        }
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() != null) {
-                List<String> paths = sr.getUnprocessedPaths();
-                TreeNode tn = sr.getLastNode().create(paths);
-                tn.denyRole(roleName, PermissionTreeUtil.actionToPermission(action));
-
-            } else {
-                sr.getLastNode().denyRole(roleName, PermissionTreeUtil.actionToPermission(action));
-            }
-            if (updateCache) {
-                invalidateCache(root);
-            }
+            compiledTree = null;
+            getOrCreateNode(resourceId).denyRole(roleName,
+                    PermissionTreeUtil.actionToPermission(action));
         } finally {
             write.unlock();
         }
@@ -580,74 +574,33 @@ public class PermissionTree {
     }
 
     void clearRoleAuthorization(String roleName, String action) throws UserStoreException {
-        TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
-        clearRoleAuthorization(roleName, root, permission);
-        invalidateCache(root);
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_ROLE_ACTION, roleName,
+                null, action));
     }
 
     void updateRoleNameInCache(String roleName, String newRoleName) throws UserStoreException {
-        updateRoleNameInCache(roleName, newRoleName, root);
-        invalidateCache(root);
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.RENAME_ROLE, roleName, null,
+                null, newRoleName));
     }
 
     void clearRoleAuthorization(String roleName) throws UserStoreException {
-        clearRoleAuthorization(roleName, root);
-        invalidateCache(root);
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_ROLE, roleName, null,
+                null));
     }
     
     void clearRoleAuthorization(String roleName, String resourceId, String action) throws UserStoreException {
-        SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-        write.lock();
-        try {
-            if (sr.getUnprocessedPaths() == null) {
-                TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
-
-                Map<String, BitSet> allowRoles = sr.getLastNode().getRoleAllowPermissions();
-                BitSet bs = allowRoles.get(roleName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-
-                Map<String, BitSet> denyRoles = sr.getLastNode().getRoleDenyPermissions();
-                bs = denyRoles.get(roleName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-            }
-            invalidateCache(root);
-        } finally {
-            write.unlock();
-        }
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_ROLE_PERMISSION,
+                roleName, resourceId, action));
     }
     
     void clearUserAuthorization(String userName) throws UserStoreException {
-        clearUserAuthorization(userName, root);
-        invalidateCache(root);
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_USER, userName, null,
+                null));
     }
     
     void clearUserAuthorization(String userName, String resourceId, String action) throws UserStoreException {
-        write.lock();
-        try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() == null || sr.getUnprocessedPaths().isEmpty()) {
-                TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
-
-                Map<String, BitSet> allowUsers = sr.getLastNode().getUserAllowPermissions();
-                BitSet bs = allowUsers.get(userName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-
-                Map<String, BitSet> denyUsers = sr.getLastNode().getUserDenyPermissions();
-                bs = denyUsers.get(userName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-            }
-            invalidateCache(root);
-        } finally {
-            write.unlock();
-        }
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_USER_PERMISSION,
+                userName, resourceId, action));
     }
     
     /**
@@ -724,20 +677,191 @@ public class PermissionTree {
     
 
     void clearResourceAuthorizations(String resourceId) throws UserStoreException {
+        makeChange(new PermissionTreeChange(PermissionTreeChange.Type.CLEAR_RESOURCE, null,
+                resourceId, null));
+    }
+
+    /**
+     * Applies a change made on this node to the tree, and publishes it to the other nodes. If the
+     * tree is not in step with the changes published, or another node has published a change at
+     * the same time, the cache entry is removed instead, and the trees of all nodes are loaded
+     * again from the database.
+     *
+     * @param change the change
+     * @throws UserStoreException throws if fail to invalidate the cache
+     */
+    private void makeChange(PermissionTreeChange change) throws UserStoreException {
+        Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> permissionCache = this.getPermissionTreeCache();
+        PermissionTreeCacheKey cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
-            if (sr.getUnprocessedPaths() == null) {
-                sr.getLastNode().getUserAllowPermissions().clear();
-                sr.getLastNode().getUserDenyPermissions().clear();
-                sr.getLastNode().getRoleAllowPermissions().clear();
-                sr.getLastNode().getRoleDenyPermissions().clear();
+            PermissionTreeCacheEntry cacheEntry = null;
+            if (permissionCache != null) {
+                cacheEntry = permissionCache.get(cacheKey);
+            }
+            boolean inStep = cacheEntry != null && catchUp(cacheEntry);
+            applyChange(change);
+            PermissionTreeCacheEntry newCacheEntry = null;
+            if (inStep) {
+                newCacheEntry = cacheEntry.addChange(change, MAX_PUBLISHED_CHANGES);
+            }
+            // the cache compares and replaces the entry atomically across the cluster, so of two
+            // nodes publishing a change on the same entry only one succeeds
+            if (newCacheEntry != null &&
+                    permissionCache.replace(cacheKey, cacheEntry, newCacheEntry)) {
+                sequence = newCacheEntry.getLastSequence();
+                lastChangeId = change.getId();
+            } else {
+                invalidateCache(root);
             }
-            invalidateCache(root);
         } finally {
             write.unlock();
         }
     }
+
+    /**
+     * Applies the changes of the cache entry which have not been applied to the tree. The write
+     * lock must be held.
+     *
+     * @param cacheEntry the cache entry
+     * @return whether the tree is in step with the cache entry
+     */
+    private boolean catchUp(PermissionTreeCacheEntry cacheEntry) {
+        if (treeId == null || !treeId.equals(cacheEntry.getTreeId())) {
+            return false;
+        }
+        List<PermissionTreeChange> changes = cacheEntry.getChangesAfter(sequence, lastChangeId);
+        if (changes == null) {
+            return false;
+        }
+        for (PermissionTreeChange change : changes) {
+            applyChange(change);
+        }
+        sequence = cacheEntry.getLastSequence();
+        lastChangeId = cacheEntry.getLastChangeId();
+        if (log.isDebugEnabled() && !changes.isEmpty()) {
+            log.debug("Applied " + changes.size() + " permission tree changes of tenant " +
+                    tenantId);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tree compiled for evaluating authorizations, compiling it if the tree has
+     * changed since it was last compiled.
+     *
+     * @return the compiled tree
+     */
+    CompiledPermissionTree getCompiledPermissionTree() {
+        CompiledPermissionTree compiled = compiledTree;
+        if (compiled != null) {
+            return compiled;
+        }
+        read.lock();
+        try {
+            compiled = compiledTree;
+            if (compiled == null) {
+                // the tree cannot change while the read lock is held, so the compiled tree is
+                // dropped by any later change.
+                compiled = new CompiledPermissionTree(root);
+                compiledTree = compiled;
+            }
+            return compiled;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    private boolean isInStep(PermissionTreeCacheEntry cacheEntry) {
+        String lastChangeId = this.lastChangeId;
+        return cacheEntry.getTreeId().equals(treeId) && cacheEntry.getLastSequence() == sequence &&
+                (lastChangeId == null ? cacheEntry.getLastChangeId() == null :
+                        lastChangeId.equals(cacheEntry.getLastChangeId()));
+    }
+
+    /**
+     * Applies a change to the tree. The write lock must be held.
+     *
+     * @param change the change
+     */
+    private void applyChange(PermissionTreeChange change) {
+        compiledTree = null;
+        String name = change.getName();
+        String resourceId = change.getResourceId();
+        TreeNode.Permission permission = null;
+        if (change.getAction() != null) {
+            permission = PermissionTreeUtil.actionToPermission(change.getAction());
+        }
+        switch (change.getType()) {
+            case AUTHORIZE_USER:
+                getOrCreateNode(resourceId).authorizeUser(name, permission);
+                break;
+            case DENY_USER:
+                getOrCreateNode(resourceId).denyUser(name, permission);
+                break;
+            case AUTHORIZE_ROLE:
+                getOrCreateNode(resourceId).authorizeRole(name, permission);
+                break;
+            case DENY_ROLE:
+                getOrCreateNode(resourceId).denyRole(name, permission);
+                break;
+            case CLEAR_USER_PERMISSION:
+                clearPermission(name, resourceId, permission, false);
+                break;
+            case CLEAR_USER:
+                clearUserAuthorization(name, root);
+                break;
+            case CLEAR_ROLE_PERMISSION:
+                clearPermission(name, resourceId, permission, true);
+                break;
+            case CLEAR_ROLE_ACTION:
+                clearRoleAuthorization(name, root, permission);
+                break;
+            case CLEAR_ROLE:
+                clearRoleAuthorization(name, root);
+                break;
+            case RENAME_ROLE:
+                updateRoleNameInCache(name, change.getNewName(), root);
+                break;
+            case CLEAR_RESOURCE:
+                SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+                if (sr.getUnprocessedPaths() == null) {
+                    sr.getLastNode().getUserAllowPermissions().clear();
+                    sr.getLastNode().getUserDenyPermissions().clear();
+                    sr.getLastNode().getRoleAllowPermissions().clear();
+                    sr.getLastNode().getRoleDenyPermissions().clear();
+                }
+                break;
+        }
+    }
+
+    private TreeNode getOrCreateNode(String resourceId) {
+        SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+        if (sr.getUnprocessedPaths() != null) {
+            return sr.getLastNode().create(sr.getUnprocessedPaths());
+        }
+        return sr.getLastNode();
+    }
+
+    private void clearPermission(String name, String resourceId, TreeNode.Permission permission,
+                                 boolean isRole) {
+        SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+        if (sr.getUnprocessedPaths() == null || sr.getUnprocessedPaths().isEmpty()) {
+            Map<String, BitSet> allowed = isRole ? sr.getLastNode().getRoleAllowPermissions() :
+                    sr.getLastNode().getUserAllowPermissions();
+            BitSet bs = allowed.get(name);
+            if (bs != null) {
+                bs.clear(permission.ordinal());
+            }
+
+            Map<String, BitSet> denied = isRole ? sr.getLastNode().getRoleDenyPermissions() :
+                    sr.getLastNode().getUserDenyPermissions();
+            bs = denied.get(name);
+            if (bs != null) {
+                bs.clear(permission.ordinal());
+            }
+        }
+    }
     
 //////////////////////////////////////////////////////////////////////////////////////////
     /**
@@ -879,15 +1003,18 @@ public class PermissionTree {
      * Clears all permission information in current node.
      */
     void clear() {
-        Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> permissionCache = this.getPermissionTreeCache();
+        Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> permissionCache = this.getPermissionTreeCache();
         if(permissionCache != null) {
 	        write.lock();
 	        try {
 	            this.root.clearNodes();
 	            this.hashValueOfRootNode = -1;
+	            this.treeId = null;
+	            this.compiledTree = null;
 	            PermissionTreeCacheKey cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
 	            // TODO Is this clear all?
 	            permissionCache.remove(cacheKey);
+	            AuthorizationCache.getInstance().clearCacheByTenant(tenantId);
 	        } finally {
 	            write.unlock();
 	        }
@@ -896,48 +1023,80 @@ public class PermissionTree {
     }
 
     /**
-     * update permission tree from cache
+     * update permission tree from cache. The changes published by the other nodes are applied to
+     * the tree, and the tree is loaded again from the database only if it is not in step with them.
      * 
      * @throws org.wso2.carbon.user.core.UserStoreException
      *             throws if fail to update permission tree from DB
      */
 	void updatePermissionTree() throws UserStoreException {
-        Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> permissionCache = this.getPermissionTreeCache();
+        Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> permissionCache = this.getPermissionTreeCache();
         if(permissionCache != null) {
 			PermissionTreeCacheKey cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
-			GhostResource<TreeNode> cacheEntry = (GhostResource<TreeNode>) permissionCache.get(cacheKey);
-			if (permissionCache.containsKey(cacheKey) && cacheEntry != null) {
-				if (cacheEntry.getResource() == null) {
-					synchronized (this) {
-						cacheEntry = (GhostResource<TreeNode>) permissionCache.get(cacheKey);
-						if (cacheEntry.getResource() == null) {
-							updatePermissionTreeFromDB();
-							cacheEntry.setResource(root);
-							if (log.isDebugEnabled()) {
-								log.debug("Set resource to true");
-							}
+			PermissionTreeCacheEntry cacheEntry = permissionCache.get(cacheKey);
+			if (cacheEntry != null && isInStep(cacheEntry)) {
+				return;
+			}
+			synchronized (this) {
+				cacheEntry = permissionCache.get(cacheKey);
+				if (cacheEntry != null) {
+					write.lock();
+					try {
+						if (catchUp(cacheEntry)) {
+							return;
 						}
+					} finally {
+						write.unlock();
 					}
 				}
-			} else {
-				synchronized (this) {
-					updatePermissionTreeFromDB();
-					cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
-					cacheEntry = new GhostResource<TreeNode>(root);
+				// a node which has applied changes the entry does not hold has diverged from
+				// the other nodes, so all nodes load their trees again.
+				boolean diverged = cacheEntry != null &&
+						cacheEntry.getTreeId().equals(treeId) &&
+						sequence >= cacheEntry.getBaseSequence();
+				if (cacheEntry == null || diverged) {
+					cacheEntry = new PermissionTreeCacheEntry(UUID.randomUUID().toString());
+					loadPermissionTree(cacheEntry);
 					permissionCache.put(cacheKey, cacheEntry);
 					if (log.isDebugEnabled()) {
 						log.debug("Loaded from database");
 					}
+				} else {
+					loadPermissionTree(cacheEntry);
+					if (log.isDebugEnabled()) {
+						log.debug("Loaded from database to apply changes which are no longer held");
+					}
 				}
 			}
         }
 	}
+
+	/**
+	 * Loads the tree from the database, in step with the given cache entry. The changes of the
+	 * entry are in the database already. The authorization decisions cached for the tenant were
+	 * made on the previous tree, so they are cleared.
+	 */
+	private void loadPermissionTree(PermissionTreeCacheEntry cacheEntry) throws UserStoreException {
+		TreeNode newRoot = readPermissionTreeFromDB();
+		write.lock();
+		try {
+			this.root = newRoot;
+			this.compiledTree = null;
+			this.treeId = cacheEntry.getTreeId();
+			this.sequence = cacheEntry.getLastSequence();
+			this.lastChangeId = cacheEntry.getLastChangeId();
+			AuthorizationCache.getInstance().clearCacheByTenant(tenantId);
+		} finally {
+			write.unlock();
+		}
+	}
 	
 	private void invalidateCache(TreeNode root) throws UserStoreException {
-        Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> permissionCache = this.getPermissionTreeCache();
+        Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> permissionCache = this.getPermissionTreeCache();
         if(permissionCache != null) {
 			PermissionTreeCacheKey cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
 			permissionCache.remove(cacheKey);
+			this.treeId = null;
 			//sending cluster message
 //			CacheInvalidator invalidator = UMListenerServiceComponent.getCacheInvalidator();
 //			try {
@@ -967,6 +1126,19 @@ public class PermissionTree {
      *             throws if fail to update permission tree from DB
      */
     void updatePermissionTreeFromDB() throws UserStoreException {
+        TreeNode newRoot = readPermissionTreeFromDB();
+        write.lock();
+        try {
+            this.root = newRoot;
+            this.compiledTree = null;
+            this.treeId = null;
+            AuthorizationCache.getInstance().clearCacheByTenant(tenantId);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    private TreeNode readPermissionTreeFromDB() throws UserStoreException {
         PermissionTree tree = new PermissionTree();
         ResultSet rs = null;
         PreparedStatement prepStmt1 = null;
@@ -1011,14 +1183,7 @@ public class PermissionTree {
                 }
 
             }
-            
-            write.lock();
-            try {
-                this.root = tree.root;
-            } finally {
-                write.unlock();
-            }
-            
+            return tree.root;
         } catch (SQLException e) {
             throw new UserStoreException(
                     "Error loading authorizations. Please check the database. Error message is "
@@ -2,6 +2,9 @@ package org.wso2.carbon.user.core.authorization;
 
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /*
@@ -20,18 +23,118 @@ import java.io.Serializable;
  * limitations under the License.
  */
 
-//TODO create base cache entry class
+/**
+ * The permission tree cache entry of a tenant. It identifies the tree loaded from the database,
+ * and holds the latest changes made to it, numbered in the order they were made. A node whose tree
+ * has applied all changes up to a number only needs the changes after it to be in step. Entries
+ * are never modified, since local caches hold them by reference.
+ */
 public class PermissionTreeCacheEntry implements Serializable {
 
-    private static final long serialVersionUID = 3730841109352949847L;
-    private int treeHash;
+    private static final long serialVersionUID = -5417829342360735027L;
+
+    /** Identifies the load of the tree from the database the changes apply to */
+    private String treeId;
+    /** The number of the last change */
+    private long lastSequence;
+    /** The identifier of the change before the first change held */
+    private String baseChangeId;
+    private List<PermissionTreeChange> changes;
 
-    public PermissionTreeCacheEntry(int treeHash) {
-        this.treeHash = treeHash;
+    public PermissionTreeCacheEntry(String treeId) {
+        this(treeId, 0, null, Collections.<PermissionTreeChange>emptyList());
     }
 
-    public int getPermissionTreeCacheEntry() {
-        return treeHash;
+    private PermissionTreeCacheEntry(String treeId, long lastSequence, String baseChangeId,
+                                     List<PermissionTreeChange> changes) {
+        this.treeId = treeId;
+        this.lastSequence = lastSequence;
+        this.baseChangeId = baseChangeId;
+        this.changes = changes;
     }
 
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the number of the change before the first change held.
+     *
+     * @return the base sequence.
+     */
+    long getBaseSequence() {
+        return lastSequence - changes.size();
+    }
+
+    String getLastChangeId() {
+        return changes.isEmpty() ? baseChangeId : changes.get(changes.size() - 1).getId();
+    }
+
+    /**
+     * Creates an entry holding the changes of this entry and the given change, keeping the latest
+     * changes only.
+     *
+     * @param change     the change made.
+     * @param maxChanges the number of changes kept.
+     * @return the new entry.
+     */
+    PermissionTreeCacheEntry addChange(PermissionTreeChange change, int maxChanges) {
+        List<PermissionTreeChange> newChanges = new ArrayList<PermissionTreeChange>(changes);
+        newChanges.add(change);
+        String newBaseChangeId = baseChangeId;
+        while (newChanges.size() > maxChanges) {
+            newBaseChangeId = newChanges.remove(0).getId();
+        }
+        return new PermissionTreeCacheEntry(treeId, lastSequence + 1, newBaseChangeId,
+                newChanges);
+    }
+
+    /**
+     * Finds the changes made after the given change.
+     *
+     * @param sequence the number of the change.
+     * @param changeId the identifier of the change, which is null for the first load of the tree.
+     * @return the changes made after the given change, or null if they are no longer held, or if
+     *         the change is not the one made under that number.
+     */
+    List<PermissionTreeChange> getChangesAfter(long sequence, String changeId) {
+        long baseSequence = getBaseSequence();
+        if (sequence < baseSequence || sequence > lastSequence) {
+            return null;
+        }
+        int index = (int) (sequence - baseSequence);
+        String idAtSequence = index == 0 ? baseChangeId : changes.get(index - 1).getId();
+        if (idAtSequence == null ? changeId != null : !idAtSequence.equals(changeId)) {
+            return null;
+        }
+        return changes.subList(index, changes.size());
+    }
+
+    /**
+     * Entries are equal when they hold the same changes of the same tree, so that an entry can be
+     * replaced only by a node which has seen its last change.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PermissionTreeCacheEntry)) {
+            return false;
+        }
+        PermissionTreeCacheEntry that = (PermissionTreeCacheEntry) o;
+        String lastChangeId = getLastChangeId();
+        return treeId.equals(that.treeId) && lastSequence == that.lastSequence &&
+                (lastChangeId == null ? that.getLastChangeId() == null :
+                        lastChangeId.equals(that.getLastChangeId()));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * treeId.hashCode() + (int) (lastSequence ^ (lastSequence >>> 32));
+    }
 }
\ No newline at end of file
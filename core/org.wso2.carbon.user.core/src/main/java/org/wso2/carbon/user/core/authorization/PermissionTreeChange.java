@@ -0,0 +1,84 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * A change made to the permission tree of a tenant. Changes are published through the permission
+ * tree cache, so that the other nodes of the cluster apply them to their trees instead of loading
+ * the trees again from the database.
+ */
+class PermissionTreeChange implements Serializable {
+
+    private static final long serialVersionUID = -3180545934563372106L;
+
+    static enum Type { AUTHORIZE_USER, DENY_USER, CLEAR_USER_PERMISSION, CLEAR_USER,
+        AUTHORIZE_ROLE, DENY_ROLE, CLEAR_ROLE_PERMISSION, CLEAR_ROLE_ACTION, CLEAR_ROLE,
+        RENAME_ROLE, CLEAR_RESOURCE
+    }
+
+    /** Identifies the change among the changes made by all nodes */
+    private String id;
+    private Type type;
+    /** The name of the user or role changed */
+    private String name;
+    private String resourceId;
+    private String action;
+    /** The new name of a renamed role */
+    private String newName;
+
+    PermissionTreeChange(Type type, String name, String resourceId, String action) {
+        this(type, name, resourceId, action, null);
+    }
+
+    PermissionTreeChange(Type type, String name, String resourceId, String action,
+                         String newName) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.name = name;
+        this.resourceId = resourceId;
+        this.action = action;
+        this.newName = newName;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getResourceId() {
+        return resourceId;
+    }
+
+    String getAction() {
+        return action;
+    }
+
+    String getNewName() {
+        return newName;
+    }
+}
@@ -55,6 +55,7 @@ public class ActiveDirectoryUserStoreConstants {
         setProperty(UserStoreConfigConstants.maxRoleNameListLength,"Maximum Role List Length", "100", UserStoreConfigConstants.maxRoleNameListLengthDescription);
         setProperty(UserStoreConfigConstants.userRolesCacheEnabled,"Enable User Role Cache", "true", UserStoreConfigConstants.userRolesCacheEnabledDescription);
         setProperty(UserStoreConfigConstants.SCIMEnabled,"Enable SCIM", "false", UserStoreConfigConstants.SCIMEnabledDescription);
+        setProperty(UserStoreConfigConstants.pageSize,"Page Size", "1000", UserStoreConfigConstants.pageSizeDescription);
 
         Property readLDAPGroups = new Property(UserStoreConfigConstants.readGroups,"true","Read Groups#"+UserStoreConfigConstants.readLDAPGroupsDescription,null);
         //Mandatory only if readGroups is enabled
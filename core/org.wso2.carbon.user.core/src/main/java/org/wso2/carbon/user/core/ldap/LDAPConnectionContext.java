@@ -153,14 +153,14 @@ public class LDAPConnectionContext {
         //if dcMap is not populated, it is not DNS case
         if (dcMap == null) {
             try {
-                context = new InitialDirContext(environment);
+                context = new InitialLdapContext(environment, null);
 
             } catch (NamingException e) {
                 log.error("Error obtaining connection. " + e.getMessage(), e);
                 log.error("Trying again to get connection.");
 
                 try {
-                    context = new InitialDirContext(environment);
+                    context = new InitialLdapContext(environment, null);
                 } catch (Exception e1) {
                     log.error("Error obtaining connection for the second time" + e.getMessage(), e);
                     throw new UserStoreException("Error obtaining connection. " + e.getMessage(), e);
@@ -174,7 +174,7 @@ public class LDAPConnectionContext {
                 SRVRecord firstRecord = dcMap.get(firstKey);
                 //compose the connection URL
                 environment.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(firstRecord));
-                context = new InitialDirContext(environment);
+                context = new InitialLdapContext(environment, null);
                 
             } catch (NamingException e) {
                 log.error("Error obtaining connection to first Domain Controller." + e.getMessage(), e);
@@ -184,7 +184,7 @@ public class LDAPConnectionContext {
                     try {
                         SRVRecord srv = dcMap.get(integer);
                         environment.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(srv));
-                        context = new InitialDirContext(environment);
+                        context = new InitialLdapContext(environment, null);
                         break;
                     } catch (NamingException e1) {
                         if(integer == (dcMap.lastKey())){
@@ -200,6 +200,17 @@ public class LDAPConnectionContext {
 
     }
 
+    /**
+     * Returns a context which supports request controls, such as the paged results control used
+     * to read large search results one page at a time.
+     *
+     * @return the context
+     * @throws UserStoreException if a connection cannot be obtained
+     */
+    public LdapContext getLdapContext() throws UserStoreException {
+        return (LdapContext) getContext();
+    }
+
     @SuppressWarnings("unchecked")
     public void updateCredential(String connectionPassword) {
         /*
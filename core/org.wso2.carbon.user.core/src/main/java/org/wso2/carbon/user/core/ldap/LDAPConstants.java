@@ -52,6 +52,10 @@ public class LDAPConstants {
     public static final String MEMBERSHIP_ATTRIBUTE = "MembershipAttribute";
     public static final String EMPTY_ROLES_ALLOWED= "EmptyRolesAllowed";
     public static final String BACK_LINKS_ENABLED= "BackLinksEnabled";
+    //number of entries read in one page of a paged search
+    public static final String PAGE_SIZE = "PageSize";
+    //page size of searches read through a cursor, when no page size is configured
+    public static final int DEFAULT_PAGE_SIZE = 1000;
 
     //ldap glossary
     public static final String OBJECT_CLASS_NAME = "objectClass";
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import java.util.NoSuchElementException;
+
+import org.wso2.carbon.user.core.UserStoreException;
+
+/**
+ * Iterates over user or role names read from an LDAP user store, without holding all names in
+ * memory. The cursor must be closed once it is no longer used, to release its connection.
+ */
+public abstract class LDAPNameCursor {
+
+    private String nextName;
+    private boolean closed;
+
+    public boolean hasNext() throws UserStoreException {
+        if (nextName == null && !closed) {
+            nextName = readName();
+            if (nextName == null) {
+                close();
+            }
+        }
+        return nextName != null;
+    }
+
+    public String next() throws UserStoreException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String name = nextName;
+        nextName = null;
+        return name;
+    }
+
+    public void close() {
+        if (!closed) {
+            closed = true;
+            release();
+        }
+    }
+
+    /**
+     * Reads the next name.
+     *
+     * @return the next name, or null if there are no more names
+     * @throws UserStoreException if the names cannot be read
+     */
+    protected abstract String readName() throws UserStoreException;
+
+    /**
+     * Releases the connection the names are read over.
+     */
+    protected abstract void release();
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.PartialResultException;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.util.JNDIUtil;
+
+/**
+ * Reads the results of an LDAP search one page at a time, with the paged results control. Only
+ * the current page is held in memory. All pages of all search bases are read over the same
+ * context, so that one pooled connection serves the whole search. Directory servers which do not
+ * support paged results return all results in one page.
+ * <p/>
+ * The cursor must be closed once it is no longer used, to release its connection.
+ */
+public class LDAPSearchCursor {
+
+    private static Log log = LogFactory.getLog(LDAPSearchCursor.class);
+
+    private LdapContext context;
+    private String[] searchBases;
+    private String searchFilter;
+    private SearchControls searchControls;
+    private int pageSize;
+
+    private int searchBaseIndex = -1;
+    private byte[] cookie;
+    private NamingEnumeration<SearchResult> answer;
+    private SearchResult nextResult;
+    private boolean closed;
+
+    /**
+     * @param context        the context the search is made over, which is closed with the cursor
+     * @param searchBases    the search bases, searched one after the other
+     * @param searchFilter   the search filter
+     * @param searchControls the search controls
+     * @param pageSize       the number of entries read in one page
+     */
+    public LDAPSearchCursor(LdapContext context, String[] searchBases, String searchFilter,
+                            SearchControls searchControls, int pageSize) {
+        this.context = context;
+        this.searchBases = searchBases;
+        this.searchFilter = searchFilter;
+        this.searchControls = searchControls;
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasNext() throws UserStoreException {
+        if (nextResult != null) {
+            return true;
+        }
+        try {
+            while (!closed) {
+                if (answer != null && hasMore()) {
+                    nextResult = answer.next();
+                    return true;
+                }
+                if (!searchNextPage()) {
+                    close();
+                }
+            }
+            return false;
+        } catch (NamingException e) {
+            close();
+            log.debug(e.getMessage(), e);
+            throw new UserStoreException("Error in reading the search results of " + searchFilter
+                    + ". " + e.getMessage(), e);
+        }
+    }
+
+    public SearchResult next() throws UserStoreException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SearchResult result = nextResult;
+        nextResult = null;
+        return result;
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        JNDIUtil.closeNamingEnumeration(answer);
+        answer = null;
+        try {
+            JNDIUtil.closeContext(context);
+        } catch (UserStoreException e) {
+            // JNDIUtil logs failures to close
+        }
+    }
+
+    /**
+     * Checks for more results in the current page, and reads the cookie of the next page once
+     * the page has been read.
+     */
+    private boolean hasMore() throws NamingException {
+        try {
+            if (answer.hasMore()) {
+                return true;
+            }
+        } catch (PartialResultException e) {
+            // can be due to referrals in AD. so just ignore error
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage(), e);
+            }
+            cookie = null;
+            return false;
+        } catch (SizeLimitExceededException e) {
+            // the server does not return more results to this search
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage(), e);
+            }
+            cookie = null;
+            return false;
+        }
+        cookie = null;
+        Control[] controls = context.getResponseControls();
+        if (controls != null) {
+            for (Control control : controls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    byte[] responseCookie = ((PagedResultsResponseControl) control).getCookie();
+                    if (responseCookie != null && responseCookie.length > 0) {
+                        cookie = responseCookie;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches the next page of the current search base, or the first page of the next search
+     * base.
+     *
+     * @return false if there are no more pages
+     */
+    private boolean searchNextPage() throws NamingException {
+        if (cookie == null) {
+            searchBaseIndex++;
+            if (searchBaseIndex >= searchBases.length) {
+                return false;
+            }
+        }
+        try {
+            context.setRequestControls(new Control[] {
+                    new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL) });
+        } catch (IOException e) {
+            NamingException namingException =
+                    new NamingException("Error in creating the paged results control.");
+            namingException.setRootCause(e);
+            throw namingException;
+        }
+        JNDIUtil.closeNamingEnumeration(answer);
+        if (log.isDebugEnabled()) {
+            log.debug("Searching a page of " + pageSize + " entries. SearchBase: " +
+                      searchBases[searchBaseIndex] + " SearchFilter: " + searchFilter);
+        }
+        answer = context.search(searchBases[searchBaseIndex], searchFilter, searchControls);
+        return true;
+    }
+}
@@ -52,6 +52,7 @@ public class ReadOnlyLDAPUserStoreConstants {
         setProperty(UserStoreConfigConstants.maxRoleNameListLength,"Maximum Role List Length", "100", UserStoreConfigConstants.maxRoleNameListLengthDescription);
         setProperty(UserStoreConfigConstants.userRolesCacheEnabled,"Enable User Role Cache", "true", UserStoreConfigConstants.userRolesCacheEnabledDescription);
         setProperty(UserStoreConfigConstants.SCIMEnabled,"Enable SCIM", "false", UserStoreConfigConstants.SCIMEnabledDescription);
+        setProperty(UserStoreConfigConstants.pageSize,"Page Size", "0", UserStoreConfigConstants.pageSizeDescription);
 
         Property readLDAPGroups = new Property(UserStoreConfigConstants.readGroups,"false","Enable Read Groups#"+UserStoreConfigConstants.readLDAPGroupsDescription,null);
         //Mandatory only if readGroups is enabled
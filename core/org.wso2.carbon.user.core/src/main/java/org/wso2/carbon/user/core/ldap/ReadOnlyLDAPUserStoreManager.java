@@ -689,9 +689,6 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 			                             "Invalid character sequence entered for user serch. Please enter valid sequence.");
 		}
 
-		StringBuffer searchFilter =
-		                            new StringBuffer(
-		                                             realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_LIST_FILTER));
 		String searchBases = realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
 
 		String userNameProperty =
@@ -699,8 +696,6 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 
 		String serviceNameAttribute = "sn";
 
-		StringBuffer finalFilter = new StringBuffer();
-
 		// read the display name attribute - if provided
 		String displayNameAttribute =
 		                              realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
@@ -711,16 +706,13 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 			returnedAtts =
 			               new String[] { userNameProperty, serviceNameAttribute,
 			                             displayNameAttribute };
-			finalFilter.append("(&").append(searchFilter).append("(").append(displayNameAttribute)
-			    .append("=").append(filter).append("))");
 		} else {
 			returnedAtts = new String[] { userNameProperty, serviceNameAttribute };
-			finalFilter.append("(&").append(searchFilter).append("(").append(userNameProperty).append("=")
-			    .append(filter).append("))");
 		}
+		String finalFilter = getUserListFilter(filter);
 		
 		if(debug) {
-			log.debug("Listing users. SearchBase: " + searchBases + " Constructed-Filter: " + finalFilter.toString() );
+			log.debug("Listing users. SearchBase: " + searchBases + " Constructed-Filter: " + finalFilter );
 			log.debug("Search controls. Max Limit: " + maxItemLimit + " Max Time: " + searchTime);
 		}
 
@@ -729,63 +721,39 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 		NamingEnumeration<SearchResult> answer = null;
 		List<String> list = new ArrayList<String>();
 
+		int pageSize = getPageSize();
 		try {
-			dirContext = connectionSource.getContext();
-			// handle multiple search bases
-			String[] searchBaseArray = searchBases.split("#");
-			
-			for (String searchBase : searchBaseArray) {
-
-				answer = dirContext.search(searchBase, finalFilter.toString(), searchCtls);
-
-				while (answer.hasMoreElements()) {
-					SearchResult sr = (SearchResult) answer.next();
-					if (sr.getAttributes() != null) {
-						log.debug("Result found ..");
-						Attribute attr = sr.getAttributes().get(userNameProperty);
-
-						/*
-						 * If this is a service principle, just ignore and
-						 * iterate rest of the array. The entity is a service if
-						 * value of surname is Service
-						 */
-						Attribute attrSurname = sr.getAttributes().get(serviceNameAttribute);
-
-						if (attrSurname != null) {
-							if (debug) {
-								log.debug(serviceNameAttribute + " : " + attrSurname);
-							}
-							String serviceName = (String) attrSurname.get();
-							if (serviceName != null
-									&& serviceName
-											.equals(LDAPConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE)) {
-								continue;
-							}
+			if (pageSize > 0) {
+				// read page by page, so that server size limits do not cut the list short
+				searchCtls.setCountLimit(0);
+				LDAPSearchCursor cursor = new LDAPSearchCursor(connectionSource.getLdapContext(),
+				                                               searchBases.split("#"), finalFilter,
+				                                               searchCtls, Math.min(pageSize, maxItemLimit));
+				try {
+					while (list.size() < maxItemLimit && cursor.hasNext()) {
+						String name = getUserNameOfSearchResult(cursor.next(), userNameProperty,
+						                                        serviceNameAttribute, displayNameAttribute);
+						if (name != null) {
+							list.add(name);
 						}
+					}
+				} finally {
+					cursor.close();
+				}
+			} else {
+				dirContext = connectionSource.getContext();
+				// handle multiple search bases
+				String[] searchBaseArray = searchBases.split("#");
 
-						/*
-						 * if display name is provided, read that attribute
-						 */
-						Attribute displayName = null;
-						if (displayNameAttribute != null) {
-							displayName = sr.getAttributes().get(displayNameAttribute);
-							if (debug) {
-								log.debug(displayNameAttribute + " : " + displayName);
-							}
-						}
+				for (String searchBase : searchBaseArray) {
 
-						if (attr != null) {
-							String name = (String) attr.get();
-							String display = null;
-							if (displayName != null) {
-								display = (String) displayName.get();
-							}
-							// append the domain if exist
-							String domain = this.getRealmConfiguration().getUserStoreProperty(
-									UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
-							// get the name in the format of
-							// domainName/userName|domainName/displayName
-							name = UserCoreUtil.getCombinedName(domain, name, display);
+					answer = dirContext.search(searchBase, finalFilter, searchCtls);
+
+					while (answer.hasMoreElements()) {
+						String name = getUserNameOfSearchResult((SearchResult) answer.next(),
+						                                        userNameProperty, serviceNameAttribute,
+						                                        displayNameAttribute);
+						if (name != null) {
 							list.add(name);
 						}
 					}
@@ -810,6 +778,176 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 		return userNames;
 	}
 
+	/**
+	 * Returns a cursor over the users matching the given filter, which reads the users one page
+	 * at a time. Unlike {@link #doListUsers(String, int)}, the number of users is not limited, and
+	 * the users are not sorted.
+	 * 
+	 * @param filter the filter on user names, or display names if a display name attribute is
+	 *        configured
+	 * @return a cursor over the names of the users, which must be closed
+	 * @throws UserStoreException
+	 */
+	public LDAPNameCursor getUserListCursor(String filter) throws UserStoreException {
+		if (filter.contains("?") || filter.contains("**")) {
+			throw new UserStoreException(
+			                             "Invalid character sequence entered for user serch. Please enter valid sequence.");
+		}
+
+		final String userNameProperty =
+		                                realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+		final String serviceNameAttribute = "sn";
+		final String displayNameAttribute =
+		                                    realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+
+		SearchControls searchCtls = new SearchControls();
+		searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		searchCtls.setTimeLimit(getSearchTime());
+		if (displayNameAttribute != null) {
+			searchCtls.setReturningAttributes(new String[] { userNameProperty, serviceNameAttribute,
+			                                                displayNameAttribute });
+		} else {
+			searchCtls.setReturningAttributes(new String[] { userNameProperty, serviceNameAttribute });
+		}
+
+		String searchBases = realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
+		final LDAPSearchCursor cursor =
+		                                new LDAPSearchCursor(connectionSource.getLdapContext(),
+		                                                     searchBases.split("#"),
+		                                                     getUserListFilter(filter), searchCtls,
+		                                                     getCursorPageSize());
+		return new LDAPNameCursor() {
+			protected String readName() throws UserStoreException {
+				try {
+					while (cursor.hasNext()) {
+						String name = getUserNameOfSearchResult(cursor.next(), userNameProperty,
+						                                        serviceNameAttribute, displayNameAttribute);
+						if (name != null) {
+							return name;
+						}
+					}
+					return null;
+				} catch (NamingException e) {
+					log.debug(e.getMessage(), e);
+					throw new UserStoreException(e.getMessage(), e);
+				}
+			}
+
+			protected void release() {
+				cursor.close();
+			}
+		};
+	}
+
+	private String getUserListFilter(String filter) {
+		String searchFilter = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_LIST_FILTER);
+		String userNameProperty = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+		String displayNameAttribute =
+		                              realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+
+		StringBuffer finalFilter = new StringBuffer();
+		if (displayNameAttribute != null) {
+			finalFilter.append("(&").append(searchFilter).append("(").append(displayNameAttribute)
+			    .append("=").append(filter).append("))");
+		} else {
+			finalFilter.append("(&").append(searchFilter).append("(").append(userNameProperty).append("=")
+			    .append(filter).append("))");
+		}
+		return finalFilter.toString();
+	}
+
+	/**
+	 * Reads the name of a user entry found when listing users.
+	 * 
+	 * @return the name in the format of domainName/userName|domainName/displayName, or null if
+	 *         the entry is not a user to be listed
+	 */
+	private String getUserNameOfSearchResult(SearchResult sr, String userNameProperty,
+	                                         String serviceNameAttribute,
+	                                         String displayNameAttribute) throws NamingException {
+		boolean debug = log.isDebugEnabled();
+		if (sr.getAttributes() == null) {
+			return null;
+		}
+		log.debug("Result found ..");
+		Attribute attr = sr.getAttributes().get(userNameProperty);
+
+		/*
+		 * If this is a service principle, just ignore and
+		 * iterate rest of the array. The entity is a service if
+		 * value of surname is Service
+		 */
+		Attribute attrSurname = sr.getAttributes().get(serviceNameAttribute);
+
+		if (attrSurname != null) {
+			if (debug) {
+				log.debug(serviceNameAttribute + " : " + attrSurname);
+			}
+			String serviceName = (String) attrSurname.get();
+			if (serviceName != null
+					&& serviceName
+							.equals(LDAPConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE)) {
+				return null;
+			}
+		}
+
+		/*
+		 * if display name is provided, read that attribute
+		 */
+		Attribute displayName = null;
+		if (displayNameAttribute != null) {
+			displayName = sr.getAttributes().get(displayNameAttribute);
+			if (debug) {
+				log.debug(displayNameAttribute + " : " + displayName);
+			}
+		}
+
+		if (attr == null) {
+			return null;
+		}
+		String name = (String) attr.get();
+		String display = null;
+		if (displayName != null) {
+			display = (String) displayName.get();
+		}
+		// append the domain if exist
+		String domain = this.getRealmConfiguration().getUserStoreProperty(
+				UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
+		// get the name in the format of
+		// domainName/userName|domainName/displayName
+		return UserCoreUtil.getCombinedName(domain, name, display);
+	}
+
+	/**
+	 * Returns the configured number of entries read in one page of a search.
+	 * 
+	 * @return the page size, or zero if searches are not paged
+	 */
+	protected int getPageSize() {
+		String pageSize = realmConfig.getUserStoreProperty(LDAPConstants.PAGE_SIZE);
+		if (pageSize != null) {
+			try {
+				return Math.max(Integer.parseInt(pageSize.trim()), 0);
+			} catch (NumberFormatException e) {
+				log.warn("Invalid page size " + pageSize + ". Searches are not paged.");
+			}
+		}
+		return 0;
+	}
+
+	private int getCursorPageSize() {
+		int pageSize = getPageSize();
+		return pageSize > 0 ? pageSize : LDAPConstants.DEFAULT_PAGE_SIZE;
+	}
+
+	private int getSearchTime() {
+		try {
+			return Integer.parseInt(realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_MAX_SEARCH_TIME));
+		} catch (Exception e) {
+			return UserCoreConstants.MAX_SEARCH_TIME;
+		}
+	}
+
 	@Override
 	protected String[] doGetDisplayNamesForInternalRole(String[] userNames)
 	                                                                       throws UserStoreException {
@@ -1074,26 +1212,34 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 		DirContext dirContext = null;
 		NamingEnumeration<SearchResult> answer = null;
 
+		int pageSize = getPageSize();
 		try {
-			dirContext = connectionSource.getContext();
-			answer = dirContext.search(searchBase, finalFilter.toString(), searchCtls);
-			// append the domain if exist
-			String domain =
-			                this.getRealmConfiguration()
-			                    .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
-
-			while (answer.hasMoreElements()) {
-				SearchResult sr = (SearchResult) answer.next();
-				if (sr.getAttributes() != null) {
-					Attribute attr = sr.getAttributes().get(roleNameProperty);
-					if (attr != null) {
-						String name = (String) attr.get();
-						name = UserCoreUtil.addDomainToName(name, domain);
-						if (appendTenantDomain) {
-							String dn = sr.getNameInNamespace();
-							name = UserCoreUtil.addTenantDomainToEntry(name,
-									getTenantDomainFromRoleDN(dn, name));
+			if (pageSize > 0) {
+				// read page by page, so that server size limits do not cut the list short
+				searchCtls.setCountLimit(0);
+				LDAPSearchCursor cursor = new LDAPSearchCursor(connectionSource.getLdapContext(),
+				                                               new String[] { searchBase },
+				                                               finalFilter.toString(), searchCtls,
+				                                               Math.min(pageSize, maxItemLimit));
+				try {
+					while (roles.size() < maxItemLimit && cursor.hasNext()) {
+						String name = getRoleNameOfSearchResult(cursor.next(), roleNameProperty,
+						                                        appendTenantDomain);
+						if (name != null) {
+							roles.add(name);
 						}
+					}
+				} finally {
+					cursor.close();
+				}
+			} else {
+				dirContext = connectionSource.getContext();
+				answer = dirContext.search(searchBase, finalFilter.toString(), searchCtls);
+
+				while (answer.hasMoreElements()) {
+					String name = getRoleNameOfSearchResult((SearchResult) answer.next(),
+					                                        roleNameProperty, appendTenantDomain);
+					if (name != null) {
 						roles.add(name);
 					}
 				}
@@ -1116,6 +1262,92 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 		return roles;
 	}
 	
+	/**
+	 * Reads the name of a role entry found when listing roles.
+	 * 
+	 * @return the name of the role with the domain, or null if the entry has no role name
+	 */
+	private String getRoleNameOfSearchResult(SearchResult sr, String roleNameProperty,
+	                                         boolean appendTenantDomain) throws NamingException {
+		if (sr.getAttributes() == null) {
+			return null;
+		}
+		Attribute attr = sr.getAttributes().get(roleNameProperty);
+		if (attr == null) {
+			return null;
+		}
+		// append the domain if exist
+		String domain =
+		                this.getRealmConfiguration()
+		                    .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
+		String name = (String) attr.get();
+		name = UserCoreUtil.addDomainToName(name, domain);
+		if (appendTenantDomain) {
+			String dn = sr.getNameInNamespace();
+			name = UserCoreUtil.addTenantDomainToEntry(name,
+					getTenantDomainFromRoleDN(dn, name));
+		}
+		return name;
+	}
+
+	/**
+	 * Returns a cursor over the roles of the group search bases matching the given filter, which
+	 * reads the roles one page at a time. Unlike {@link #doGetRoleNames(String, int)}, the number
+	 * of roles is not limited.
+	 * 
+	 * @param filter the filter on role names
+	 * @return a cursor over the names of the roles, which must be closed
+	 * @throws UserStoreException
+	 */
+	public LDAPNameCursor getRoleListCursor(String filter) throws UserStoreException {
+		if (!readGroupsEnabled) {
+			return new LDAPNameCursor() {
+				protected String readName() {
+					return null;
+				}
+
+				protected void release() {
+				}
+			};
+		}
+
+		final String roleNameProperty =
+		                                realmConfig.getUserStoreProperty(LDAPConstants.GROUP_NAME_ATTRIBUTE);
+		String searchFilter = realmConfig.getUserStoreProperty(LDAPConstants.GROUP_NAME_LIST_FILTER);
+		String finalFilter = "(&" + searchFilter + "(" + roleNameProperty + "=" + filter + "))";
+
+		SearchControls searchCtls = new SearchControls();
+		searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		searchCtls.setTimeLimit(getSearchTime());
+		searchCtls.setReturningAttributes(new String[] { roleNameProperty });
+
+		String searchBases = realmConfig.getUserStoreProperty(LDAPConstants.GROUP_SEARCH_BASE);
+		final LDAPSearchCursor cursor =
+		                                new LDAPSearchCursor(connectionSource.getLdapContext(),
+		                                                     searchBases.split("#"), finalFilter,
+		                                                     searchCtls, getCursorPageSize());
+		return new LDAPNameCursor() {
+			protected String readName() throws UserStoreException {
+				try {
+					while (cursor.hasNext()) {
+						String name = getRoleNameOfSearchResult(cursor.next(), roleNameProperty, false);
+						if (name != null) {
+							return name;
+						}
+					}
+					return null;
+				} catch (NamingException e) {
+					log.debug(e.getMessage(), e);
+					throw new UserStoreException(e.getMessage(), e);
+				}
+			}
+
+			protected void release() {
+				cursor.close();
+			}
+		};
+	}
+
 	/**
 	 * Get the tenant domain for the provided distinguished name. If the role is
 	 * not a shared role returns the super tenant domain
@@ -1448,67 +1680,13 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
             String userNameProperty = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
             String displayNameAttribute = realmConfig
                     .getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
-            String[] returnedAttributes = { userNameProperty, displayNameAttribute };
 
             for (String user : userDNList) {
-                if (debug) {
-                    log.debug("Getting name attributes of: " + user);
+                String name = getUserNameOfDN(dirContext, user, userNameProperty,
+                        displayNameAttribute);
+                if (name != null) {
+                    userList.add(name);
                 }
-
-                Attributes userAttributes;
-                try {
-                    userAttributes = dirContext.getAttributes(user, returnedAttributes);
-
-                    String displayName = null;
-                    String userName = null;
-                    if (userAttributes != null) {
-                        Attribute userNameAttribute = userAttributes.get(userNameProperty);
-                        if (userNameAttribute != null) {
-                            userName = (String) userNameAttribute.get();
-                            if (debug) {
-                                log.debug("UserName: " + userName);
-                            }
-                        }
-                        if (displayNameAttribute != null) {
-                            Attribute displayAttribute = userAttributes.get(displayNameAttribute);
-                            if (displayAttribute != null) {
-                                displayName = (String) displayAttribute.get();
-                            }
-                            if (debug) {
-                                log.debug("DisplayName: " + displayName);
-                            }
-                        }
-                    }
-                    String domainName =
-                            realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
-
-                    // Username will be null in the special case where the
-                    // username attribute has changed to another
-                    // and having different userNameProperty than the current
-                    // user-mgt.xml
-                    if (userName != null) {
-                        user = UserCoreUtil.getCombinedName(domainName, userName, displayName);
-                        userList.add(user);
-                        if (debug) {
-                            log.debug(user + " is added to the result list");
-                        }
-                    }
-                    // Skip listing users which are not applicable to current
-                    // user-mgt.xml
-                    else {
-                        if (log.isDebugEnabled()) {
-                            log.debug("User " + user + " doesn't have the user name property : " +
-                                    userNameProperty);
-                        }
-                    }
-
-                } catch (NamingException e) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Error in reading user information in the user store for the user " +
-                                user + e.getMessage(), e);
-                    }
-                }
-
             }
             names = userList.toArray(new String[userList.size()]);
 
@@ -1528,6 +1706,205 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         return names;
     }
 
+	/**
+	 * Reads the name of the user with the given DN.
+	 * 
+	 * @return the name in the format of domainName/userName|domainName/displayName, or null if
+	 *         the user cannot be read
+	 */
+	private String getUserNameOfDN(DirContext dirContext, String user, String userNameProperty,
+	                               String displayNameAttribute) {
+		boolean debug = log.isDebugEnabled();
+		if (debug) {
+			log.debug("Getting name attributes of: " + user);
+		}
+		String[] returnedAttributes = { userNameProperty, displayNameAttribute };
+
+		try {
+			Attributes userAttributes = dirContext.getAttributes(user, returnedAttributes);
+
+			String displayName = null;
+			String userName = null;
+			if (userAttributes != null) {
+				Attribute userNameAttribute = userAttributes.get(userNameProperty);
+				if (userNameAttribute != null) {
+					userName = (String) userNameAttribute.get();
+					if (debug) {
+						log.debug("UserName: " + userName);
+					}
+				}
+				if (displayNameAttribute != null) {
+					Attribute displayAttribute = userAttributes.get(displayNameAttribute);
+					if (displayAttribute != null) {
+						displayName = (String) displayAttribute.get();
+					}
+					if (debug) {
+						log.debug("DisplayName: " + displayName);
+					}
+				}
+			}
+			String domainName =
+			                    realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
+
+			// Username will be null in the special case where the
+			// username attribute has changed to another
+			// and having different userNameProperty than the current
+			// user-mgt.xml
+			if (userName != null) {
+				user = UserCoreUtil.getCombinedName(domainName, userName, displayName);
+				if (debug) {
+					log.debug(user + " is added to the result list");
+				}
+				return user;
+			}
+			// Skip listing users which are not applicable to current
+			// user-mgt.xml
+			if (debug) {
+				log.debug("User " + user + " doesn't have the user name property : " +
+				          userNameProperty);
+			}
+		} catch (NamingException e) {
+			if (debug) {
+				log.debug("Error in reading user information in the user store for the user " +
+				          user + e.getMessage(), e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a cursor over the users of a role. If a member of attribute is configured, the users
+	 * are searched one page at a time. Otherwise the DNs of the members are read from the role,
+	 * and the name of each member is read as the cursor reaches it.
+	 * 
+	 * @param roleName the role
+	 * @return a cursor over the names of the users, which must be closed
+	 * @throws UserStoreException
+	 */
+	public LDAPNameCursor getUserListOfRoleCursor(String roleName) throws UserStoreException {
+		LDAPRoleContext context = (LDAPRoleContext) createRoleContext(roleName);
+		String memberOfProperty = realmConfig.getUserStoreProperty(LDAPConstants.MEMBEROF_ATTRIBUTE);
+		String membershipProperty = realmConfig.getUserStoreProperty(LDAPConstants.MEMBERSHIP_ATTRIBUTE);
+		final String userNameProperty =
+		                                realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+		final String displayNameAttribute =
+		                                    realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+		boolean memberOfEnabled = memberOfProperty != null && memberOfProperty.length() > 0;
+
+		SearchControls searchCtls = new SearchControls();
+		searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		searchCtls.setTimeLimit(getSearchTime());
+		searchCtls.setReturningAttributes(memberOfEnabled ? new String[0] :
+		                                  new String[] { membershipProperty });
+		String searchFilter = "(&" + context.getListFilter() + "(" + context.getRoleNameProperty() +
+		                      "=" + context.getRoleName() + "))";
+
+		final DirContext dirContext = connectionSource.getContext();
+		final List<String> memberDNs = new ArrayList<String>();
+		String roleDN = null;
+		NamingEnumeration<SearchResult> answer = null;
+		try {
+			for (String searchBase : context.getSearchBase().split("#")) {
+				try {
+					answer = dirContext.search(searchBase, searchFilter, searchCtls);
+					if (answer.hasMore()) {
+						SearchResult sr = answer.next();
+						roleDN = sr.getNameInNamespace();
+						Attribute members = sr.getAttributes() != null && !memberOfEnabled ?
+						                    sr.getAttributes().get(membershipProperty) : null;
+						if (members != null) {
+							NamingEnumeration<?> values = members.getAll();
+							while (values.hasMore()) {
+								memberDNs.add(values.next().toString());
+							}
+							JNDIUtil.closeNamingEnumeration(values);
+						}
+						break;
+					}
+				} catch (PartialResultException e) {
+					// can be due to referrals in AD. so just ignore error
+					if (log.isDebugEnabled()) {
+						log.debug(e.getMessage(), e);
+					}
+				} finally {
+					JNDIUtil.closeNamingEnumeration(answer);
+				}
+			}
+		} catch (NamingException e) {
+			JNDIUtil.closeContext(dirContext);
+			log.debug(e.getMessage(), e);
+			throw new UserStoreException("Error in reading the role " + roleName + " in the user store.", e);
+		}
+
+		if (roleDN != null && memberOfEnabled) {
+			JNDIUtil.closeContext(dirContext);
+			SearchControls userSearchCtls = new SearchControls();
+			userSearchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+			userSearchCtls.setTimeLimit(getSearchTime());
+			final String serviceNameAttribute = "sn";
+			if (displayNameAttribute != null) {
+				userSearchCtls.setReturningAttributes(new String[] { userNameProperty,
+				                                                    serviceNameAttribute,
+				                                                    displayNameAttribute });
+			} else {
+				userSearchCtls.setReturningAttributes(new String[] { userNameProperty,
+				                                                    serviceNameAttribute });
+			}
+			String userFilter = "(&" + realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_LIST_FILTER) +
+			                    "(" + memberOfProperty + "=" + roleDN + "))";
+			String searchBases = realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
+			final LDAPSearchCursor cursor =
+			                                new LDAPSearchCursor(connectionSource.getLdapContext(),
+			                                                     searchBases.split("#"), userFilter,
+			                                                     userSearchCtls, getCursorPageSize());
+			return new LDAPNameCursor() {
+				protected String readName() throws UserStoreException {
+					try {
+						while (cursor.hasNext()) {
+							String name = getUserNameOfSearchResult(cursor.next(), userNameProperty,
+							                                        serviceNameAttribute,
+							                                        displayNameAttribute);
+							if (name != null) {
+								return name;
+							}
+						}
+						return null;
+					} catch (NamingException e) {
+						log.debug(e.getMessage(), e);
+						throw new UserStoreException(e.getMessage(), e);
+					}
+				}
+
+				protected void release() {
+					cursor.close();
+				}
+			};
+		}
+
+		return new LDAPNameCursor() {
+			private int index = 0;
+
+			protected String readName() {
+				while (index < memberDNs.size()) {
+					String name = getUserNameOfDN(dirContext, memberDNs.get(index++),
+					                              userNameProperty, displayNameAttribute);
+					if (name != null) {
+						return name;
+					}
+				}
+				return null;
+			}
+
+			protected void release() {
+				try {
+					JNDIUtil.closeContext(dirContext);
+				} catch (UserStoreException e) {
+					// JNDIUtil logs failures to close
+				}
+			}
+		};
+	}
+
 	/**
 	 * This method will check whether back link support is enabled and will
 	 * return the effective
@@ -54,5 +54,37 @@ public class AuthorizationCacheTest extends BaseTestCase {
         }
     }
 
+    public void testClearCacheByResourceTree() throws Exception {
+        AuthorizationCache cache = AuthorizationCache.getInstance();
+        cache.addToCache("server", 2, "roadrunner", "/x/y", "read", true);
+        cache.addToCache("server", 2, "roadrunner", "/x/y/z", "read", true);
+        cache.addToCache("server", 2, "roadrunner", "/x/yz", "read", true);
+        cache.addToCache("server", 2, "roadrunner", "/x/y", "write", true);
+        cache.addToCache("server", 2, "coyote", "/x/y", "read", true);
+
+        cache.clearCacheByResourceTree("server", 2, "roadrunner", "/x/y/", "read");
+
+        assertCacheMiss(cache, "roadrunner", "/x/y", "read");
+        assertCacheMiss(cache, "roadrunner", "/x/y/z", "read");
+        assertTrue(cache.isUserAuthorized("server", 2, "roadrunner", "/x/yz", "read"));
+        assertTrue(cache.isUserAuthorized("server", 2, "roadrunner", "/x/y", "write"));
+        assertTrue(cache.isUserAuthorized("server", 2, "coyote", "/x/y", "read"));
+
+        cache.clearCacheByResourceTree("server", 2, null, "/", null);
+
+        assertCacheMiss(cache, "roadrunner", "/x/yz", "read");
+        assertCacheMiss(cache, "roadrunner", "/x/y", "write");
+        assertCacheMiss(cache, "coyote", "/x/y", "read");
+    }
+
+    private void assertCacheMiss(AuthorizationCache cache, String userName, String resourceId,
+                                 String action) {
+        try {
+            cache.isUserAuthorized("server", 2, userName, resourceId, action);
+            fail("The entry is cleared. Should be a cache miss");
+        } catch (AuthorizationCacheException e) {
+            assertTrue(true);
+        }
+    }
 
 }
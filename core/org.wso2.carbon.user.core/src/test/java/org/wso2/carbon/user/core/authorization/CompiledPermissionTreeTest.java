@@ -0,0 +1,103 @@
+/*
+ * Copyright 2005-2007 WSO2, Inc. (http://wso2.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+public class CompiledPermissionTreeTest extends BaseTestCase {
+
+    private static final String[] RESOURCES = {"/", "", "/x", "/x/", "/x/y", "/x/y/z", "/x/yz",
+            "/x//y", "x/y", "/x/y/z/w", "/a", "/a/b"};
+
+    public void testAllowedRolesMatchTree() throws Exception {
+        PermissionTree tree = createTree();
+        CompiledPermissionTree compiledTree = tree.getCompiledPermissionTree();
+
+        for (String resourceId : RESOURCES) {
+            for (TreeNode.Permission permission : TreeNode.Permission.values()) {
+                SearchResult sr = tree.getAllowedRolesForResource(null, null, permission,
+                        PermissionTreeUtil.toComponenets(resourceId));
+                Set<String> expected = new HashSet<String>(sr.getAllowedEntities());
+
+                Set<String> actual = new HashSet<String>();
+                BitSet roles = compiledTree.getAllowedRoles(resourceId, permission);
+                for (int i = roles.nextSetBit(0); i >= 0; i = roles.nextSetBit(i + 1)) {
+                    actual.add(compiledTree.getRoleName(i));
+                }
+                assertEquals(resourceId + " " + permission, expected, actual);
+            }
+        }
+    }
+
+    public void testUserPermissionsMatchTree() throws Exception {
+        PermissionTree tree = createTree();
+        CompiledPermissionTree compiledTree = tree.getCompiledPermissionTree();
+
+        for (String resourceId : RESOURCES) {
+            for (String user : new String[]{"roadrunner", "coyote"}) {
+                SearchResult sr = tree.getUserPermission(user, TreeNode.Permission.GET, null, null,
+                        PermissionTreeUtil.toComponenets(resourceId));
+                assertEquals(resourceId + " " + user, sr.getLastNodeAllowedAccess(),
+                        compiledTree.isUserAuthorized(user, resourceId, TreeNode.Permission.GET));
+            }
+        }
+    }
+
+    public void testRoleIds() throws Exception {
+        CompiledPermissionTree compiledTree = createTree().getCompiledPermissionTree();
+        BitSet allowed = compiledTree.getAllowedRoles("/x/y", TreeNode.Permission.GET);
+
+        assertTrue(allowed.intersects(compiledTree.getRoleIds(new String[]{"everyone", "admin"},
+                false)));
+        assertFalse(allowed.intersects(compiledTree.getRoleIds(new String[]{"Admin"}, false)));
+        assertTrue(allowed.intersects(compiledTree.getRoleIds(new String[]{"Admin"}, true)));
+        assertFalse(allowed.intersects(compiledTree.getRoleIds(new String[]{"unknown"}, false)));
+    }
+
+    public void testCompiledTreeDroppedOnChange() throws Exception {
+        PermissionTree tree = createTree();
+        CompiledPermissionTree compiledTree = tree.getCompiledPermissionTree();
+        assertSame(compiledTree, tree.getCompiledPermissionTree());
+
+        tree.authorizeRoleInTree("everyone", "/a/b", "read", false);
+        CompiledPermissionTree recompiledTree = tree.getCompiledPermissionTree();
+
+        assertNotSame(compiledTree, recompiledTree);
+        assertTrue(recompiledTree.getAllowedRoles("/a/b/c", TreeNode.Permission.GET).intersects(
+                recompiledTree.getRoleIds(new String[]{"everyone"}, false)));
+    }
+
+    private PermissionTree createTree() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null);
+        tree.authorizeRoleInTree("admin", "/", "read", false);
+        tree.authorizeRoleInTree("admin", "/", "write", false);
+        tree.authorizeRoleInTree("everyone", "/x", "read", false);
+        tree.denyRoleInTree("everyone", "/x/y", "read", false);
+        tree.authorizeRoleInTree("everyone", "/x/y/z", "read", false);
+        tree.denyRoleInTree("admin", "/x/yz", "write", false);
+        tree.authorizeRoleInTree("tester", "/x/y", "delete", false);
+        tree.authorizeUserInTree("roadrunner", "/x", "read", false);
+        tree.denyUserInTree("roadrunner", "/x/y/z", "read", false);
+        tree.denyUserInTree("coyote", "/x", "read", false);
+        tree.authorizeUserInTree("coyote", "/x/y", "read", false);
+        return tree;
+    }
+}
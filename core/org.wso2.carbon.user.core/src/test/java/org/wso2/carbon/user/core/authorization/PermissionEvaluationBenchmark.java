@@ -0,0 +1,172 @@
+/*
+ * Copyright 2005-2007 WSO2, Inc. (http://wso2.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the cost of deciding a user authorization by walking the {@link PermissionTree}, as
+ * JDBCAuthorizationManager.isUserAuthorized does on an authorization cache miss, against deciding
+ * it on the {@link CompiledPermissionTree}, for resource paths of 2 to 16 segments at 1 to 16
+ * threads. The tree grants and denies permissions to a few hundred roles along a set of deep
+ * branches, and the user has a handful of those roles.
+ * <p/>
+ * This is not run as a part of the build. The classes compared are package private, hence the
+ * benchmark is in their package. Run the main method, optionally passing the duration of each
+ * measurement in seconds.
+ */
+public class PermissionEvaluationBenchmark {
+
+    private static final int[] DEPTHS = {2, 4, 8, 16};
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+    private static final int BRANCHES = 16;
+    private static final int ROLES = 256;
+    private static final String USER = "benchmarkuser";
+    private static final String[] USER_ROLES =
+            {"everyone", "role3", "role40", "role77", "role128", "role201"};
+
+    private final PermissionTree tree;
+    private final boolean compiled;
+    private final AtomicLong allowed = new AtomicLong();
+
+    private PermissionEvaluationBenchmark(PermissionTree tree, boolean compiled) {
+        this.tree = tree;
+        this.compiled = compiled;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMillis = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1000;
+        PermissionTree tree = createTree();
+        // check that both evaluations agree, which also warms them up
+        PermissionEvaluationBenchmark treeWalk = new PermissionEvaluationBenchmark(tree, false);
+        PermissionEvaluationBenchmark compiledTree = new PermissionEvaluationBenchmark(tree, true);
+        for (int depth : DEPTHS) {
+            for (int branch = 0; branch < BRANCHES; branch++) {
+                String resourceId = getResourceId(branch, depth);
+                if (treeWalk.isUserAuthorized(resourceId) !=
+                        compiledTree.isUserAuthorized(resourceId)) {
+                    throw new IllegalStateException("The evaluations disagree on " + resourceId);
+                }
+            }
+        }
+
+        System.out.println("depth\tthreads\ttree walk ops/s\tcompiled ops/s");
+        for (int depth : DEPTHS) {
+            for (int threads : THREAD_COUNTS) {
+                long treeWalkOps =
+                        new PermissionEvaluationBenchmark(tree, false).run(depth, threads,
+                                durationMillis);
+                long compiledOps =
+                        new PermissionEvaluationBenchmark(tree, true).run(depth, threads,
+                                durationMillis);
+                System.out.println(depth + "\t" + threads + "\t" +
+                        treeWalkOps * 1000 / durationMillis + "\t" +
+                        compiledOps * 1000 / durationMillis);
+            }
+        }
+    }
+
+    // Each role is granted read on a node of one branch, and every seventh role is denied it
+    // deeper down the same branch.
+    private static PermissionTree createTree() throws Exception {
+        PermissionTree tree = new PermissionTree("benchmark", 1, null);
+        tree.authorizeRoleInTree("everyone", "/", "read", false);
+        tree.denyRoleInTree("everyone", "/b0", "read", false);
+        for (int i = 0; i < ROLES; i++) {
+            int branch = i % BRANCHES;
+            int depth = 1 + i % DEPTHS[DEPTHS.length - 1];
+            tree.authorizeRoleInTree("role" + i, getResourceId(branch, depth), "read", false);
+            if (i % 7 == 0) {
+                tree.denyRoleInTree("role" + i, getResourceId(branch, depth + 2), "read", false);
+            }
+        }
+        tree.authorizeUserInTree(USER, getResourceId(1, 3), "read", false);
+        tree.denyUserInTree(USER, getResourceId(1, 6), "read", false);
+        return tree;
+    }
+
+    private static String getResourceId(int branch, int depth) {
+        StringBuilder resourceId = new StringBuilder("/b").append(branch);
+        for (int i = 1; i < depth; i++) {
+            resourceId.append("/s").append(i);
+        }
+        return resourceId.toString();
+    }
+
+    private long run(final int depth, int threadCount, final long durationMillis)
+            throws Exception {
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final Random random = new Random(i);
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        long end = System.currentTimeMillis() + durationMillis;
+                        long count = 0;
+                        long allowedCount = 0;
+                        while (System.currentTimeMillis() < end) {
+                            if (isUserAuthorized(getResourceId(random.nextInt(BRANCHES), depth))) {
+                                allowedCount++;
+                            }
+                            count++;
+                        }
+                        operations.addAndGet(count);
+                        allowed.addAndGet(allowedCount);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operations.get();
+    }
+
+    private boolean isUserAuthorized(String resourceId) {
+        if (compiled) {
+            CompiledPermissionTree compiledTree = tree.getCompiledPermissionTree();
+            if (compiledTree.isUserAuthorized(USER, resourceId, TreeNode.Permission.GET)) {
+                return true;
+            }
+            return compiledTree.getAllowedRoles(resourceId, TreeNode.Permission.GET).intersects(
+                    compiledTree.getRoleIds(USER_ROLES, false));
+        }
+
+        SearchResult sr = tree.getUserPermission(USER, TreeNode.Permission.GET, null, null,
+                PermissionTreeUtil.toComponenets(resourceId));
+        if (sr.getLastNodeAllowedAccess()) {
+            return true;
+        }
+        sr = tree.getAllowedRolesForResource(null, null, TreeNode.Permission.GET,
+                PermissionTreeUtil.toComponenets(resourceId));
+        Set<String> allowedRoles = new HashSet<String>(sr.getAllowedEntities());
+        allowedRoles.retainAll(new HashSet<String>(Arrays.asList(USER_ROLES)));
+        return !allowedRoles.isEmpty();
+    }
+}
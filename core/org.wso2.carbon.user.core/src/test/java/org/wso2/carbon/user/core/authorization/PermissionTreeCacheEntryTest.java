@@ -0,0 +1,80 @@
+/*
+ * Copyright 2005-2007 WSO2, Inc. (http://wso2.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.List;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+public class PermissionTreeCacheEntryTest extends BaseTestCase {
+
+    public void testGetChangesAfter() throws Exception {
+        PermissionTreeCacheEntry entry = new PermissionTreeCacheEntry("tree");
+        PermissionTreeChange first = newChange("/x");
+        PermissionTreeChange second = newChange("/y");
+        entry = entry.addChange(first, 10).addChange(second, 10);
+
+        assertEquals(2, entry.getLastSequence());
+        List<PermissionTreeChange> changes = entry.getChangesAfter(0, null);
+        assertEquals(2, changes.size());
+        assertSame(first, changes.get(0));
+        assertSame(second, changes.get(1));
+
+        changes = entry.getChangesAfter(1, first.getId());
+        assertEquals(1, changes.size());
+        assertSame(second, changes.get(0));
+
+        assertTrue(entry.getChangesAfter(2, second.getId()).isEmpty());
+        assertNull(entry.getChangesAfter(3, null));
+        // a different change made under the same number
+        assertNull(entry.getChangesAfter(1, second.getId()));
+    }
+
+    public void testOldChangesDropped() throws Exception {
+        PermissionTreeCacheEntry entry = new PermissionTreeCacheEntry("tree");
+        PermissionTreeChange[] changes = new PermissionTreeChange[5];
+        for (int i = 0; i < changes.length; i++) {
+            changes[i] = newChange("/x" + i);
+            entry = entry.addChange(changes[i], 3);
+        }
+
+        assertEquals(5, entry.getLastSequence());
+        assertEquals(2, entry.getBaseSequence());
+        assertEquals(changes[4].getId(), entry.getLastChangeId());
+        assertNull(entry.getChangesAfter(1, changes[0].getId()));
+        List<PermissionTreeChange> held = entry.getChangesAfter(2, changes[1].getId());
+        assertEquals(3, held.size());
+        assertSame(changes[2], held.get(0));
+    }
+
+    public void testEntriesEqualOnLastChange() throws Exception {
+        PermissionTreeCacheEntry entry = new PermissionTreeCacheEntry("tree");
+        PermissionTreeChange change = newChange("/x");
+
+        assertEquals(entry, new PermissionTreeCacheEntry("tree"));
+        assertFalse(entry.equals(new PermissionTreeCacheEntry("other")));
+        assertEquals(entry.addChange(change, 10), entry.addChange(change, 10));
+        assertEquals(entry.addChange(change, 10).hashCode(),
+                entry.addChange(change, 10).hashCode());
+        // changes made by two nodes on the same entry
+        assertFalse(entry.addChange(change, 10).equals(entry.addChange(newChange("/x"), 10)));
+    }
+
+    private PermissionTreeChange newChange(String resourceId) {
+        return new PermissionTreeChange(PermissionTreeChange.Type.AUTHORIZE_USER, "roadrunner",
+                resourceId, "read");
+    }
+}
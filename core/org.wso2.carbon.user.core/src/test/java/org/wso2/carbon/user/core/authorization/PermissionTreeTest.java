@@ -0,0 +1,205 @@
+/*
+ * Copyright 2005-2007 WSO2, Inc. (http://wso2.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.user.core.authorization;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import javax.cache.Cache;
+import javax.cache.Caching;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.wso2.carbon.user.core.BaseTestCase;
+import org.wso2.carbon.user.core.UserCoreTestConstants;
+import org.wso2.carbon.utils.dbcreator.DatabaseCreator;
+
+/**
+ * Runs two permission trees sharing the permission tree cache, as two nodes of a cluster would.
+ */
+public class PermissionTreeTest extends BaseTestCase {
+
+    private static final String TEST_URL = "jdbc:h2:target/PermissionTreeTest/CARBON_TEST";
+    private static final int TENANT_ID = 3;
+
+    private static BasicDataSource dataSource;
+
+    private String cacheIdentifier;
+    private PermissionTreeCacheKey cacheKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        if (dataSource == null) {
+            String dbFolder = "target/PermissionTreeTest";
+            if ((new File(dbFolder)).exists()) {
+                deleteDir(new File(dbFolder));
+            }
+            BasicDataSource ds = new BasicDataSource();
+            ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+            ds.setUrl(TEST_URL);
+            new DatabaseCreator(ds).createRegistryDatabase();
+            dataSource = ds;
+        }
+        cacheIdentifier = getName();
+        cacheKey = new PermissionTreeCacheKey(cacheIdentifier, TENANT_ID);
+    }
+
+    public void testCatchUp() throws Exception {
+        PermissionTree node1 = newNode();
+        PermissionTree node2 = newNode();
+
+        node1.authorizeUserInTree("roadrunner", "/x", "read", true);
+        node1.denyUserInTree("roadrunner", "/x/y", "read", true);
+        assertEquals(2, getCache().get(cacheKey).getLastSequence());
+
+        // the database does not hold the changes, so they can only have been applied from the
+        // cache entry
+        node2.updatePermissionTree();
+        CompiledPermissionTree compiledTree = node2.getCompiledPermissionTree();
+        assertTrue(compiledTree.isUserAuthorized("roadrunner", "/x", TreeNode.Permission.GET));
+        assertFalse(compiledTree.isUserAuthorized("roadrunner", "/x/y", TreeNode.Permission.GET));
+
+        node2.clearUserAuthorization("roadrunner", "/x/y", "read");
+        node1.updatePermissionTree();
+        assertTrue(node1.getCompiledPermissionTree().isUserAuthorized("roadrunner", "/x/y",
+                TreeNode.Permission.GET));
+        assertEquals(3, getCache().get(cacheKey).getLastSequence());
+    }
+
+    public void testConcurrentPublish() throws Exception {
+        PermissionTree node1 = newNode();
+        PermissionTree node2 = newNode();
+        PermissionTreeCacheEntry entry = getCache().get(cacheKey);
+
+        node1.authorizeUserInTree("roadrunner", "/x", "read", true);
+
+        // a change node2 made on the entry node1 has replaced is not published over node1's
+        PermissionTreeChange change = new PermissionTreeChange(
+                PermissionTreeChange.Type.DENY_USER, "roadrunner", "/x", "read");
+        assertFalse(getCache().replace(cacheKey, entry, entry.addChange(change, 100)));
+        PermissionTreeCacheEntry published = getCache().get(cacheKey);
+        assertEquals(1, published.getLastSequence());
+
+        node2.denyUserInTree("roadrunner", "/x/y", "read", true);
+        published = getCache().get(cacheKey);
+        assertEquals(2, published.getLastSequence());
+        assertEquals(2, published.getChangesAfter(0, null).size());
+    }
+
+    public void testInterleavedChanges() throws Exception {
+        final PermissionTree node1 = newNode();
+        final PermissionTree node2 = newNode();
+        final int changesPerNode = 50;
+        final CyclicBarrier start = new CyclicBarrier(2);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final PermissionTree node = i == 0 ? node1 : node2;
+            final String user = "user" + i + "-";
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < changesPerNode; j++) {
+                            node.authorizeUserInTree(user + j, "/x", "read", true);
+                            node.updatePermissionTree();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        // a change published over another node's change would be applied by one node only
+        node1.updatePermissionTree();
+        node2.updatePermissionTree();
+        CompiledPermissionTree tree1 = node1.getCompiledPermissionTree();
+        CompiledPermissionTree tree2 = node2.getCompiledPermissionTree();
+        for (int i = 0; i < threads.length; i++) {
+            for (int j = 0; j < changesPerNode; j++) {
+                String user = "user" + i + "-" + j;
+                assertEquals(user, tree1.isUserAuthorized(user, "/x", TreeNode.Permission.GET),
+                        tree2.isUserAuthorized(user, "/x", TreeNode.Permission.GET));
+            }
+        }
+
+        // the nodes are in step with the published changes
+        node1.updatePermissionTree();
+        PermissionTreeCacheEntry entry = getCache().get(cacheKey);
+        if (entry != null) {
+            node1.authorizeUserInTree("roadrunner", "/x", "read", true);
+            assertEquals(entry.getLastSequence() + 1, getCache().get(cacheKey).getLastSequence());
+            node2.updatePermissionTree();
+            assertTrue(node2.getCompiledPermissionTree().isUserAuthorized("roadrunner", "/x",
+                    TreeNode.Permission.GET));
+        }
+    }
+
+    public void testDivergedTreesReloaded() throws Exception {
+        PermissionTree node1 = newNode();
+        PermissionTree node2 = newNode();
+        PermissionTreeCacheEntry entry = getCache().get(cacheKey);
+        String treeId = entry.getTreeId();
+
+        node1.authorizeUserInTree("roadrunner", "/x", "read", true);
+        // another node overwrote the entry with its own change, losing node1's change
+        getCache().put(cacheKey, entry.addChange(new PermissionTreeChange(
+                PermissionTreeChange.Type.AUTHORIZE_USER, "coyote", "/x", "read"), 100));
+        AuthorizationCache.getInstance().addToCache(cacheIdentifier, TENANT_ID, "roadrunner",
+                "/x", "read", true);
+
+        node1.updatePermissionTree();
+        PermissionTreeCacheEntry reloaded = getCache().get(cacheKey);
+        assertFalse(treeId.equals(reloaded.getTreeId()));
+        assertFalse(node1.getCompiledPermissionTree().isUserAuthorized("roadrunner", "/x",
+                TreeNode.Permission.GET));
+        try {
+            AuthorizationCache.getInstance().isUserAuthorized(cacheIdentifier, TENANT_ID,
+                    "roadrunner", "/x", "read");
+            fail("The authorizations of the tenant are cleared when the tree is reloaded");
+        } catch (AuthorizationCacheException e) {
+            assertTrue(true);
+        }
+
+        node2.updatePermissionTree();
+        assertFalse(node2.getCompiledPermissionTree().isUserAuthorized("coyote", "/x",
+                TreeNode.Permission.GET));
+        node2.authorizeUserInTree("coyote", "/x", "read", true);
+        node1.updatePermissionTree();
+        assertTrue(node1.getCompiledPermissionTree().isUserAuthorized("coyote", "/x",
+                TreeNode.Permission.GET));
+    }
+
+    private PermissionTree newNode() throws Exception {
+        PermissionTree tree = new PermissionTree(cacheIdentifier, TENANT_ID, dataSource);
+        tree.updatePermissionTree();
+        return tree;
+    }
+
+    private Cache<PermissionTreeCacheKey, PermissionTreeCacheEntry> getCache() {
+        return Caching.getCacheManagerFactory().getCacheManager("PERMISSION_CACHE_MANAGER")
+                .getCache("PERMISSION_CACHE");
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.PartialResultException;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.BaseTestCase;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreException;
+
+public class LDAPSearchCursorTest extends BaseTestCase {
+
+    private static final String USERS = "ou=Users,dc=wso2,dc=org";
+    private static final String SYSTEM_USERS = "ou=System,dc=wso2,dc=org";
+    private static final String GROUPS = "ou=Groups,dc=wso2,dc=org";
+
+    public void testReadsAllPagesOfAllSearchBases() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(USERS, entry("uid", "alice"), entry("uid", "bob"));
+        directory.addPage(USERS, entry("uid", "carol"));
+        directory.addPage(SYSTEM_USERS, entry("uid", "admin"));
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS, SYSTEM_USERS}, "(uid=*)", new SearchControls(), 2);
+        assertEquals(Arrays.asList("alice", "bob", "carol", "admin"), readAll(cursor, "uid"));
+
+        // the second page of a search base is requested with the cookie of the first page
+        assertEquals(Arrays.asList(USERS, USERS, SYSTEM_USERS), directory.searchedBases);
+        assertEquals(Arrays.asList(null, USERS + "#1", null), directory.requestedCookies);
+        assertEquals(Arrays.asList(2, 2, 2), directory.requestedPageSizes);
+        assertTrue(directory.closed);
+        assertEquals(0, directory.openAnswers);
+        assertFalse(cursor.hasNext());
+    }
+
+    public void testServerWithoutPagedResults() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.pagingSupported = false;
+        directory.addPage(USERS, entry("uid", "alice"), entry("uid", "bob"), entry("uid", "carol"));
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS}, "(uid=*)", new SearchControls(), 2);
+        assertEquals(Arrays.asList("alice", "bob", "carol"), readAll(cursor, "uid"));
+        assertEquals(1, directory.searchedBases.size());
+        assertTrue(directory.closed);
+    }
+
+    public void testPartialResultEndsSearchBase() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(USERS, entry("uid", "alice"));
+        directory.addPage(USERS, entry("uid", "bob"));
+        directory.addPage(SYSTEM_USERS, entry("uid", "admin"));
+        directory.partialResultBases.add(USERS);
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS, SYSTEM_USERS}, "(uid=*)", new SearchControls(), 1);
+        assertEquals(Arrays.asList("alice", "admin"), readAll(cursor, "uid"));
+        assertEquals(Arrays.asList(null, null), directory.requestedCookies);
+    }
+
+    public void testEmptySearchBase() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(SYSTEM_USERS, entry("uid", "admin"));
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS, SYSTEM_USERS}, "(uid=*)", new SearchControls(), 10);
+        assertEquals(Arrays.asList("admin"), readAll(cursor, "uid"));
+        try {
+            cursor.next();
+            fail("The cursor is exhausted");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testCloseReleasesContext() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(USERS, entry("uid", "alice"), entry("uid", "bob"));
+        directory.addPage(USERS, entry("uid", "carol"));
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS}, "(uid=*)", new SearchControls(), 2);
+        assertEquals("alice", cursor.next().getAttributes().get("uid").get());
+        cursor.close();
+        cursor.close();
+
+        assertTrue(directory.closed);
+        assertEquals(0, directory.openAnswers);
+        assertFalse(cursor.hasNext());
+        assertEquals(1, directory.searchedBases.size());
+    }
+
+    public void testSearchFailureClosesCursor() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.searchFailure = new NamingException("Connection lost");
+
+        LDAPSearchCursor cursor = new LDAPSearchCursor(directory.getContext(),
+                new String[]{USERS}, "(uid=*)", new SearchControls(), 2);
+        try {
+            cursor.hasNext();
+            fail("The search failure should be reported");
+        } catch (UserStoreException e) {
+            assertSame(directory.searchFailure, e.getCause());
+        }
+        assertTrue(directory.closed);
+        assertFalse(cursor.hasNext());
+    }
+
+    public void testUserListCursor() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(USERS, entry("uid", "alice"), entry("uid", "bob"));
+        directory.addPage(USERS, entry("uid", "ldap", "sn",
+                LDAPConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE), entry("cn", "no uid"));
+        directory.addPage(USERS, entry("uid", "carol"));
+
+        ReadOnlyLDAPUserStoreManager userStoreManager = createUserStoreManager(directory);
+        LDAPNameCursor cursor = userStoreManager.getUserListCursor("*");
+        List<String> names = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            names.add(cursor.next());
+        }
+
+        // service principals and entries without a user name are skipped
+        assertEquals(Arrays.asList("LDAP/alice", "LDAP/bob", "LDAP/carol"), names);
+        assertEquals("(&(objectClass=person)(uid=*))", directory.searchFilter);
+        assertEquals(Arrays.asList(2, 2, 2), directory.requestedPageSizes);
+        assertTrue(directory.closed);
+    }
+
+    public void testUserListCursorClosedEarly() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(USERS, entry("uid", "alice"), entry("uid", "bob"));
+        directory.addPage(USERS, entry("uid", "carol"));
+
+        ReadOnlyLDAPUserStoreManager userStoreManager = createUserStoreManager(directory);
+        LDAPNameCursor cursor = userStoreManager.getUserListCursor("*");
+        assertEquals("LDAP/alice", cursor.next());
+        cursor.close();
+
+        assertTrue(directory.closed);
+        assertEquals(0, directory.openAnswers);
+        assertEquals(1, directory.searchedBases.size());
+    }
+
+    public void testUserListCursorRejectsInvalidFilter() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        ReadOnlyLDAPUserStoreManager userStoreManager = createUserStoreManager(directory);
+        try {
+            userStoreManager.getUserListCursor("a**");
+            fail("The filter is invalid");
+        } catch (UserStoreException e) {
+            // expected
+        }
+        assertTrue(directory.searchedBases.isEmpty());
+    }
+
+    public void testRoleListCursor() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(GROUPS, entry("cn", "admin"), entry("cn", "everyone"));
+        directory.addPage(GROUPS, entry("cn", "support"));
+
+        ReadOnlyLDAPUserStoreManager userStoreManager = createUserStoreManager(directory, true);
+        LDAPNameCursor cursor = userStoreManager.getRoleListCursor("*");
+        List<String> names = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            names.add(cursor.next());
+        }
+
+        assertEquals(Arrays.asList("LDAP/admin", "LDAP/everyone", "LDAP/support"), names);
+        assertEquals("(&(objectClass=groupOfNames)(cn=*))", directory.searchFilter);
+        assertEquals(Arrays.asList(null, GROUPS + "#1"), directory.requestedCookies);
+        assertTrue(directory.closed);
+    }
+
+    public void testRoleListCursorWithoutGroups() throws Exception {
+        StubDirectory directory = new StubDirectory();
+        directory.addPage(GROUPS, entry("cn", "admin"));
+
+        ReadOnlyLDAPUserStoreManager userStoreManager = createUserStoreManager(directory);
+        LDAPNameCursor cursor = userStoreManager.getRoleListCursor("*");
+        assertFalse(cursor.hasNext());
+        cursor.close();
+        assertTrue(directory.searchedBases.isEmpty());
+    }
+
+    private ReadOnlyLDAPUserStoreManager createUserStoreManager(StubDirectory directory)
+            throws Exception {
+        return createUserStoreManager(directory, false);
+    }
+
+    private ReadOnlyLDAPUserStoreManager createUserStoreManager(final StubDirectory directory,
+                                                                boolean readGroupsEnabled)
+            throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(LDAPConstants.USER_NAME_ATTRIBUTE, "uid");
+        properties.put(LDAPConstants.USER_SEARCH_BASE, USERS);
+        properties.put(LDAPConstants.USER_NAME_LIST_FILTER, "(objectClass=person)");
+        properties.put(LDAPConstants.GROUP_NAME_ATTRIBUTE, "cn");
+        properties.put(LDAPConstants.GROUP_SEARCH_BASE, GROUPS);
+        properties.put(LDAPConstants.GROUP_NAME_LIST_FILTER, "(objectClass=groupOfNames)");
+        properties.put(LDAPConstants.PAGE_SIZE, "2");
+        properties.put(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME, "ldap");
+        RealmConfiguration realmConfig = new RealmConfiguration();
+        realmConfig.setUserStoreProperties(properties);
+
+        LDAPConnectionContext connectionSource = new LDAPConnectionContext(realmConfig) {
+            @Override
+            public LdapContext getLdapContext() {
+                return directory.getContext();
+            }
+        };
+        return new StubLDAPUserStoreManager(realmConfig, connectionSource, readGroupsEnabled);
+    }
+
+    private static List<String> readAll(LDAPSearchCursor cursor, String attribute)
+            throws Exception {
+        List<String> values = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            values.add((String) cursor.next().getAttributes().get(attribute).get());
+        }
+        return values;
+    }
+
+    private static SearchResult entry(String... attributes) {
+        BasicAttributes basicAttributes = new BasicAttributes(true);
+        for (int i = 0; i < attributes.length; i += 2) {
+            basicAttributes.put(attributes[i], attributes[i + 1]);
+        }
+        return new SearchResult(attributes[1], null, basicAttributes);
+    }
+
+    private static class StubLDAPUserStoreManager extends ReadOnlyLDAPUserStoreManager {
+
+        private StubLDAPUserStoreManager(RealmConfiguration realmConfig,
+                                         LDAPConnectionContext connectionSource,
+                                         boolean readGroupsEnabled) {
+            this.realmConfig = realmConfig;
+            this.connectionSource = connectionSource;
+            this.readGroupsEnabled = readGroupsEnabled;
+        }
+    }
+
+    /**
+     * An in-memory directory, searched over a proxied {@link LdapContext}. The cookie of a page is
+     * the search base and the index of the next page.
+     */
+    private static class StubDirectory implements InvocationHandler {
+
+        private Map<String, List<List<SearchResult>>> pages =
+                new HashMap<String, List<List<SearchResult>>>();
+        private List<String> partialResultBases = new ArrayList<String>();
+        private boolean pagingSupported = true;
+        private NamingException searchFailure;
+
+        private List<String> searchedBases = new ArrayList<String>();
+        private List<String> requestedCookies = new ArrayList<String>();
+        private List<Integer> requestedPageSizes = new ArrayList<Integer>();
+        private String searchFilter;
+        private int openAnswers;
+        private boolean closed;
+
+        private byte[] requestCookie;
+        private Control[] responseControls;
+
+        private void addPage(String searchBase, SearchResult... results) {
+            List<List<SearchResult>> basePages = pages.get(searchBase);
+            if (basePages == null) {
+                basePages = new ArrayList<List<SearchResult>>();
+                pages.put(searchBase, basePages);
+            }
+            basePages.add(Arrays.asList(results));
+        }
+
+        private LdapContext getContext() {
+            return (LdapContext) Proxy.newProxyInstance(LdapContext.class.getClassLoader(),
+                    new Class[]{LdapContext.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("setRequestControls".equals(name)) {
+                PagedResultsControl control = (PagedResultsControl) ((Control[]) args[0])[0];
+                readRequest(control.getEncodedValue());
+                return null;
+            } else if ("search".equals(name) && args.length == 3 && args[0] instanceof String) {
+                return search((String) args[0], (String) args[1]);
+            } else if ("getResponseControls".equals(name)) {
+                return responseControls;
+            } else if ("close".equals(name)) {
+                closed = true;
+                return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private NamingEnumeration<SearchResult> search(String searchBase, String filter)
+                throws Exception {
+            if (searchFailure != null) {
+                throw searchFailure;
+            }
+            String cookie = requestCookie.length > 0 ? new String(requestCookie, "UTF-8") : null;
+            searchedBases.add(searchBase);
+            requestedCookies.add(cookie);
+            searchFilter = filter;
+
+            List<List<SearchResult>> basePages = pages.get(searchBase);
+            if (basePages == null) {
+                basePages = new ArrayList<List<SearchResult>>();
+            }
+            List<SearchResult> results;
+            String nextCookie = "";
+            if (!pagingSupported) {
+                results = new ArrayList<SearchResult>();
+                for (List<SearchResult> page : basePages) {
+                    results.addAll(page);
+                }
+            } else {
+                int pageIndex = cookie == null ? 0 :
+                        Integer.parseInt(cookie.substring(cookie.indexOf('#') + 1));
+                results = pageIndex < basePages.size() ? basePages.get(pageIndex) :
+                        new ArrayList<SearchResult>();
+                if (pageIndex + 1 < basePages.size()) {
+                    nextCookie = searchBase + "#" + (pageIndex + 1);
+                }
+            }
+            responseControls = pagingSupported ? new Control[]{new PagedResultsResponseControl(
+                    PagedResultsResponseControl.OID, false, encodeResponse(nextCookie))} : null;
+            return new StubAnswer(results.iterator(), partialResultBases.contains(searchBase));
+        }
+
+        /**
+         * Reads the page size and cookie of a paged results request, which is the BER encoding
+         * of SEQUENCE { INTEGER size, OCTET STRING cookie }.
+         */
+        private void readRequest(byte[] value) {
+            int offset = 2;
+            int sizeLength = value[offset + 1];
+            int size = 0;
+            for (int i = 0; i < sizeLength; i++) {
+                size = (size << 8) | (value[offset + 2 + i] & 0xff);
+            }
+            requestedPageSizes.add(size);
+            offset += 2 + sizeLength;
+            requestCookie = Arrays.copyOfRange(value, offset + 2, offset + 2 + value[offset + 1]);
+        }
+
+        private static byte[] encodeResponse(String cookie) throws Exception {
+            byte[] cookieBytes = cookie.getBytes("UTF-8");
+            byte[] value = new byte[7 + cookieBytes.length];
+            value[0] = 0x30;
+            value[1] = (byte) (5 + cookieBytes.length);
+            value[2] = 0x02;
+            value[3] = 0x01;
+            value[4] = 0x00;
+            value[5] = 0x04;
+            value[6] = (byte) cookieBytes.length;
+            System.arraycopy(cookieBytes, 0, value, 7, cookieBytes.length);
+            return value;
+        }
+
+        private class StubAnswer implements NamingEnumeration<SearchResult> {
+
+            private Iterator<SearchResult> results;
+            private boolean partialResult;
+            private boolean answerClosed;
+
+            private StubAnswer(Iterator<SearchResult> results, boolean partialResult) {
+                this.results = results;
+                this.partialResult = partialResult;
+                openAnswers++;
+            }
+
+            public boolean hasMore() throws NamingException {
+                if (results.hasNext()) {
+                    return true;
+                }
+                if (partialResult) {
+                    throw new PartialResultException("Unprocessed continuation reference");
+                }
+                return false;
+            }
+
+            public SearchResult next() {
+                return results.next();
+            }
+
+            public boolean hasMoreElements() {
+                return results.hasNext();
+            }
+
+            public SearchResult nextElement() {
+                return results.next();
+            }
+
+            public void close() {
+                if (!answerClosed) {
+                    answerClosed = true;
+                    openAnswers--;
+                }
+            }
+        }
+    }
+}